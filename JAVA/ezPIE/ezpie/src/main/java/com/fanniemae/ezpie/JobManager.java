@@ -22,6 +22,7 @@ import org.w3c.dom.NodeList;
 import com.fanniemae.ezpie.common.DateUtilities;
 import com.fanniemae.ezpie.common.JsonUtilities;
 import com.fanniemae.ezpie.common.ProcessActions;
+import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.common.XmlUtilities;
 import com.fanniemae.ezpie.layout.JsonLayout;
 
@@ -99,7 +100,9 @@ public class JobManager {
 	}
 
 	public String processActions(NodeList nlActions) {
-		return ProcessActions.run(_session, nlActions, null);
+		// Parallelism on the definition element lets independent actions run at the same time, see ActionScheduler.
+		int parallelism = StringUtilities.toInteger(_session.getAttribute(_session.getJobDefinition(), "Parallelism"), 1);
+		return ProcessActions.run(_session, nlActions, null, parallelism);
 	}
 
 }
@@ -117,7 +117,7 @@ public class LogManager {
 		}
 	}
 
-	public void addFileDetails(String filename, String logGroup) {
+	public synchronized void addFileDetails(String filename, String logGroup) {
 		if (_logLevel == LogLevel.ERROR_ONLY) {
 			return;
 		}
@@ -271,7 +271,8 @@ public class LogManager {
 		updateLog(isError, logGroup, event, description, "", false, false);
 	}
 
-	protected void updateLog(Boolean isError, String logGroup, String event, String description, String cargo, Boolean preserveLayout, Boolean isHTML) {
+	// Synchronized, transforms running on several threads can log warnings.
+	protected synchronized void updateLog(Boolean isError, String logGroup, String event, String description, String cargo, Boolean preserveLayout, Boolean isHTML) {
 		if (!isError && (_logLevel == LogLevel.ERROR_ONLY)) {
 			return;
 		}
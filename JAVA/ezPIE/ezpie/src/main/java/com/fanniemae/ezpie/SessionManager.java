@@ -14,6 +14,7 @@ package com.fanniemae.ezpie;
 import java.io.File;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,7 @@ import org.w3c.dom.Node;
 import com.fanniemae.ezpie.common.CryptoUtilities;
 import com.fanniemae.ezpie.common.DataStream;
 import com.fanniemae.ezpie.common.DataTable;
+import com.fanniemae.ezpie.common.DataUtilities;
 import com.fanniemae.ezpie.common.Encryption;
 import com.fanniemae.ezpie.common.ExceptionUtilities;
 import com.fanniemae.ezpie.common.FileUtilities;
@@ -32,6 +34,8 @@ import com.fanniemae.ezpie.common.Miscellaneous;
 import com.fanniemae.ezpie.common.PieException;
 import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.common.XmlUtilities;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockCipher;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
 
 /**
  * 
@@ -64,6 +68,7 @@ public class SessionManager {
 
 	protected int _memoryLimit = 20;
 	protected int _cacheMinutes = 30;
+	protected CompressionType _dataCompression = CompressionType.None;
 	protected int _jobKey = -1;
 
 	protected Document _settingsDoc;
@@ -76,9 +81,16 @@ public class SessionManager {
 
 	protected Boolean _dataCachingEnabled = false;
 	protected Boolean _updateScanManager = false;
-	protected Boolean _lastAttributeSecure = false;
+	// Per thread, DataSources read in parallel resolve attributes at the same time.
+	protected ThreadLocal<Boolean> _lastAttributeSecure = new ThreadLocal<Boolean>() {
+		@Override
+		protected Boolean initialValue() {
+			return false;
+		}
+	};
 
-	protected Map<String, DataStream> _dataSets = new HashMap<String, DataStream>();
+	// Synchronized, actions run by the ActionScheduler add and read data sets at the same time.
+	protected Map<String, DataStream> _dataSets = Collections.synchronizedMap(new HashMap<String, DataStream>());
 
 	protected DataTable _codeLocations = null;
 
@@ -142,10 +154,13 @@ public class SessionManager {
 		}
 
 		_cacheMinutes = StringUtilities.toInteger(eleConfig.getAttribute("CacheMinutes"), 30);
+		_dataCompression = DataUtilities.compressionTypeToEnum(eleConfig.getAttribute("DataCompression"));
 		String encryptionKey = eleConfig.getAttribute("EncryptionKey");
 		if (StringUtilities.isNotNullOrEmpty(encryptionKey)) {
 			_encryptionKey = Encryption.setupKey(encryptionKey);
 		}
+		// Data files encrypt whole blocks with the settings key, without one they use per-field encryption.
+		BlockCipher.setDataFileKey((_encryptionKey == null) ? null : _encryptionKey[0]);
 
 		// Create Log page.
 		_logger = new LogManager(_templatePath, _logFilename, logFormat, logLevel);
@@ -258,7 +273,7 @@ public class SessionManager {
 	}
 
 	public Boolean lastAttributeSecure() {
-		return _lastAttributeSecure;
+		return _lastAttributeSecure.get();
 	}
 
 	public String getAttribute(Node ele, String name) {
@@ -278,22 +293,22 @@ public class SessionManager {
 			return "";
 		}
 
-		_lastAttributeSecure = false;
+		_lastAttributeSecure.set(false);
 		if (!ele.hasAttribute(name)) {
 			// Check for a secure version of the attribute name
 			String secureName = String.format("%s%s", name, SECURE_SUFFIX);
 			String hideName = String.format("%s%s", name, HIDE_SUFFIX);
 			if (ele.hasAttribute(secureName)) {
 				name = secureName;
-				_lastAttributeSecure = true;
+				_lastAttributeSecure.set(true);
 			} else if (ele.hasAttribute(hideName)) {
 				name = hideName;
-				_lastAttributeSecure = true;
+				_lastAttributeSecure.set(true);
 			}
 		}
 
 		String value = ele.getAttribute(name);
-		if (_lastAttributeSecure && (value != null) && value.startsWith(ENCRYPTED_PREFIX)) {
+		if (_lastAttributeSecure.get() && (value != null) && value.startsWith(ENCRYPTED_PREFIX)) {
 			// Need to decrypt this value if it is encrypted.
 			if (_encryptionKey == null) {
 				throw new PieException("No encryption key defined in settings file.");
@@ -365,7 +380,8 @@ public class SessionManager {
 		_logger.addErrorMessage(ex);
 	}
 
-	public Element getConnection(String connectionName) {
+	// Synchronized, the settings document is shared by DataSources read on several threads.
+	public synchronized Element getConnection(String connectionName) {
 		if (StringUtilities.isNullOrEmpty(connectionName)) {
 			return null;
 		}
@@ -431,8 +447,10 @@ public class SessionManager {
 			return dataSets;
 		}
 
-		for (Map.Entry<String, DataStream> kvp : _dataSets.entrySet()) {
-			dataSets.add(kvp.getKey());
+		synchronized (_dataSets) {
+			for (Map.Entry<String, DataStream> kvp : _dataSets.entrySet()) {
+				dataSets.add(kvp.getKey());
+			}
 		}
 		return dataSets;
 	}
@@ -497,7 +515,7 @@ public class SessionManager {
 		String value = getAttribute(element, attributeName);
 		if (StringUtilities.isNullOrEmpty(value)) {
 			value = resolveTokens(defaultValue);
-		} else if (_lastAttributeSecure || "UserID".equals(attributeName) || "Password".equals(attributeName)) {
+		} else if (_lastAttributeSecure.get() || "UserID".equals(attributeName) || "Password".equals(attributeName)) {
 			addLogMessage("", attributeName, getHiddenMessage());
 		} else if ("DataCacheEnabled".equals(attributeName) || "DataCacheMinutes".equals(attributeName)) {
 			// Skip these -- special case, need to show even if not set.
@@ -524,7 +542,7 @@ public class SessionManager {
 		String value = getAttribute(element, attributeName);
 		if (StringUtilities.isNullOrEmpty(value)) {
 			throw new PieException(errorMessage);
-		} else if (_lastAttributeSecure || "UserID".equals(attributeName) || "Password".equals(attributeName)) {
+		} else if (_lastAttributeSecure.get() || "UserID".equals(attributeName) || "Password".equals(attributeName)) {
 			addLogMessage("", attributeName, getHiddenMessage());
 		} else {
 			addLogMessage("", attributeName, value);
@@ -540,6 +558,10 @@ public class SessionManager {
 		return _cacheMinutes;
 	}
 
+	public CompressionType getDataCompression() {
+		return _dataCompression;
+	}
+
 	protected String getJarDirectory() {
 		try {
 			File fi = new File(SessionManager.class.getProtectionDomain().getCodeSource().getLocation().toURI().getPath());
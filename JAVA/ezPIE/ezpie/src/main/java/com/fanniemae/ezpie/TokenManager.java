@@ -36,8 +36,10 @@ import com.fanniemae.ezpie.common.XmlUtilities;
  */
 public class TokenManager {
 
-	protected HashMap<String, HashMap<String, String>> _tokens = new HashMap<String, HashMap<String, String>>();
-	protected Map<String, String> _dataTokens = null;
+	// Copy on write, DataSources read on several threads resolve tokens while others are added.
+	protected volatile HashMap<String, HashMap<String, String>> _tokens = new HashMap<String, HashMap<String, String>>();
+	// Data row tokens are kept per thread, transforms can resolve them for rows processed on several threads.
+	protected ThreadLocal<Map<String, String>> _dataTokens = new ThreadLocal<Map<String, String>>();
 
 	protected LogManager _logger;
 	protected Date _startDateTime = new Date();
@@ -71,21 +73,17 @@ public class TokenManager {
 	}
 
 	public void setDataTokens(Map<String, String> dataTokens) {
-		_dataTokens = dataTokens;
+		_dataTokens.set(dataTokens);
 	}
 
 	public void clearDataTokens() {
-		_dataTokens = null;
+		_dataTokens.remove();
 	}
 
-	public void addToken(String tokenType, String key, String value) {
-		HashMap<String, String> aTokenValues = new HashMap<String, String>();
-		if (_tokens.containsKey(tokenType)) {
-			aTokenValues = _tokens.get(tokenType);
-		}
-
+	public synchronized void addToken(String tokenType, String key, String value) {
+		HashMap<String, String> aTokenValues = copyTokens(tokenType);
 		aTokenValues.put(key, value);
-		_tokens.put(tokenType, aTokenValues);
+		putTokens(tokenType, aTokenValues);
 		if (hideIt(key)) {
 			_logger.addMessage("", TOKEN_ADDED, String.format(TOKEN_ADDED_FORMAT_STRING, _tokenPrefix, tokenType, key, _tokenSuffix, Constants.VALUE_HIDDEN_MESSAGE));
 			return;
@@ -101,11 +99,8 @@ public class TokenManager {
 		addTokens("Local", newTokens);
 	}
 
-	public void addTokens(String tokenType, Map<String, String> newTokens) {
-		HashMap<String, String> domainTokens = new HashMap<String, String>();
-		if (_tokens.containsKey(tokenType)) {
-			domainTokens = _tokens.get(tokenType);
-		}
+	public synchronized void addTokens(String tokenType, Map<String, String> newTokens) {
+		HashMap<String, String> domainTokens = copyTokens(tokenType);
 
 		int added = 0;
 		StringBuilder sb = new StringBuilder();
@@ -119,7 +114,7 @@ public class TokenManager {
 			sb.append(String.format(TOKEN_ADDED_FORMAT_STRING, _tokenPrefix, tokenType, key, _tokenSuffix, value));
 			added++;
 		}
-		_tokens.put(tokenType, domainTokens);
+		putTokens(tokenType, domainTokens);
 		_logger.addMessage("", added == 1 ? TOKEN_ADDED : TOKENS_ADDED, sb.toString());
 	}
 
@@ -132,8 +127,9 @@ public class TokenManager {
 	}
 
 	public String getTokenValue(String tokenType, String tokenKey) {
-		if (_tokens.containsKey(tokenType) && _tokens.get(tokenType).containsKey(tokenKey)) {
-			return _tokens.get(tokenType).get(tokenKey);
+		HashMap<String, String> tokenValues = _tokens.get(tokenType);
+		if ((tokenValues != null) && tokenValues.containsKey(tokenKey)) {
+			return tokenValues.get(tokenKey);
 		}
 		return "";
 	}
@@ -159,7 +155,9 @@ public class TokenManager {
 			return value;
 		}
 
-		String rawString = (_dataTokens == null) ? value.replace(String.format("%sData.", _tokenPrefix), "|Data|") : value;
+		Map<String, String> dataTokens = _dataTokens.get();
+		HashMap<String, HashMap<String, String>> tokens = _tokens;
+		String rawString = (dataTokens == null) ? value.replace(String.format("%sData.", _tokenPrefix), "|Data|") : value;
 
 		int tokenStart = rawString.indexOf(_tokenPrefix);
 		if (tokenStart == -1) {
@@ -192,10 +190,10 @@ public class TokenManager {
 			String tokenKey = aTokens[i].substring(tokenSplit + 1, iTokenEnd);
 
 			// Skip data tokens if no row of data is provided.
-			if ((_dataTokens == null) && "Data".equals(tokenGroup)) {
+			if ((dataTokens == null) && "Data".equals(tokenGroup)) {
 				continue;
-			} else if ("Data".equals(tokenGroup) && _dataTokens.containsKey(tokenKey)) {
-				value = value.replace(fullToken, _dataTokens.get(tokenKey));
+			} else if ("Data".equals(tokenGroup) && dataTokens.containsKey(tokenKey)) {
+				value = value.replace(fullToken, dataTokens.get(tokenKey));
 			} else if ("System".equals(tokenGroup)) {
 				// System tokens call methods
 				SimpleDateFormat sdf;
@@ -234,8 +232,8 @@ public class TokenManager {
 					value = value.replace(fullToken, UUID.randomUUID().toString());
 					break;
 				}
-			} else if (_tokens.containsKey(tokenGroup) && _tokens.get(tokenGroup).containsKey(tokenKey)) {
-				value = value.replace(fullToken, _tokens.get(tokenGroup).get(tokenKey));
+			} else if ((tokens.get(tokenGroup) != null) && tokens.get(tokenGroup).containsKey(tokenKey)) {
+				value = value.replace(fullToken, tokens.get(tokenGroup).get(tokenKey));
 			} else {
 				// if the token is not found, it evaluates to empty string.
 				value = value.replace(fullToken, "");
@@ -244,13 +242,8 @@ public class TokenManager {
 		return resolveTokens(value);
 	}
 
-	protected void loadTokenValues(String tokenType, String[][] kvps) {
-		HashMap<String, String> tokenKeyValues;
-		if (_tokens.containsKey(tokenType)) {
-			tokenKeyValues = _tokens.get(tokenType);
-		} else {
-			tokenKeyValues = new HashMap<String, String>();
-		}
+	protected synchronized void loadTokenValues(String tokenType, String[][] kvps) {
+		HashMap<String, String> tokenKeyValues = copyTokens(tokenType);
 
 		StringBuilder sb = new StringBuilder();
 		int length = kvps.length;
@@ -267,16 +260,31 @@ public class TokenManager {
 				sb.append(String.format(TOKEN_ADDED_FORMAT_STRING, _tokenPrefix, tokenType, name, _tokenSuffix, value));
 			}
 		}
-		_tokens.put(tokenType, tokenKeyValues);
+		putTokens(tokenType, tokenKeyValues);
 		_logger.addMessage("", length == 1 ? TOKEN_ADDED : TOKENS_ADDED, sb.toString());
 
 	}
 
+	protected HashMap<String, String> copyTokens(String tokenType) {
+		HashMap<String, String> tokenValues = _tokens.get(tokenType);
+		return (tokenValues == null) ? new HashMap<String, String>() : new HashMap<String, String>(tokenValues);
+	}
+
+	/**
+	 * Publishes a new copy of the token maps, readers keep using the maps they
+	 * started with. Callers hold the lock.
+	 */
+	protected void putTokens(String tokenType, HashMap<String, String> tokenValues) {
+		HashMap<String, HashMap<String, String>> tokens = new HashMap<String, HashMap<String, String>>(_tokens);
+		tokens.put(tokenType, tokenValues);
+		_tokens = tokens;
+	}
+
 	protected void loadTokenValues(Node tokenNode) {
 		loadTokenValues(tokenNode, "*");
 	}
 
-	protected void loadTokenValues(Node tokenNode, String xpath) {
+	protected synchronized void loadTokenValues(Node tokenNode, String xpath) {
 		if (tokenNode == null) {
 			return;
 		}
@@ -311,7 +319,7 @@ public class TokenManager {
 				continue;
 			}
 
-			HashMap<String, String> tokenKeyValues = _tokens.containsKey(tokenType) ? _tokens.get(tokenType) : new HashMap<String, String>();
+			HashMap<String, String> tokenKeyValues = copyTokens(tokenType);
 			for (int x = 0; x < attrCount; x++) {
 				boolean hideValue = false;
 				Node xA = attributes.item(x);
@@ -351,7 +359,7 @@ public class TokenManager {
 				linesAdded++;
 				addNewLine = true;
 			}
-			_tokens.put(tokenType, tokenKeyValues);
+			putTokens(tokenType, tokenKeyValues);
 		}
 		if ((tokensAdded == 0) && (linesAdded == 0)) {
 			// Nothing added, no log message needed.
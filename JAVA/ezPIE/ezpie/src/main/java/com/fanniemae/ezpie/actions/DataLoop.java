@@ -44,7 +44,7 @@ public class DataLoop extends Action {
 		String dataSetName = requiredAttribute("DataSetName");
 		DataStream _dataStream = _session.getDataStream(dataSetName);
 		int rowNumber = 0;
-		try (DataReader dr = new DataReader(_dataStream)) {
+		try (DataReader dr = DataReader.open(_dataStream)) {
 			String[] colNames = dr.getColumnNames();
 			DataType[] dataTypes = dr.getDataTypes();
 			while (!dr.eof()) {
@@ -17,13 +17,24 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.common.Constants;
 import com.fanniemae.ezpie.common.DataStream;
 import com.fanniemae.ezpie.common.DateUtilities;
 import com.fanniemae.ezpie.common.FileUtilities;
@@ -51,9 +62,16 @@ public class DataSet extends Action {
 	protected boolean _dataCacheEnabled = true;
 	protected int _dataCacheMinutes = -1;
 
+	protected int _parallelism = 1;
+	protected boolean _union = true;
+
 	public DataSet(SessionManager session, Element action) {
 		super(session, action);
 		_isInternal = StringUtilities.toBoolean(optionalAttribute("Internal", "False"));
+		// Number of DataSources read at the same time, each one on its own thread.
+		_parallelism = Math.max(1, StringUtilities.toInteger(optionalAttribute("Parallelism", "1"), 1));
+		// Union="False" keeps the result of each DataSource as its own data set, named DataSetName_1, DataSetName_2, ...
+		_union = StringUtilities.toBoolean(optionalAttribute("Union", "True"));
 	}
 
 	@Override
@@ -68,7 +86,6 @@ public class DataSet extends Action {
 		if (_dataCacheEnabled) {
 			_session.addLogMessage("", "DataCacheMinutes", Integer.toString(_dataCacheMinutes));
 		}
-		DataEngine de = new DataEngine(_session, _dataCacheEnabled, _dataCacheMinutes);
 		NodeList nl = XmlUtilities.selectNodes(_action, "DataSource");
 		Node loopNode = XmlUtilities.selectSingleNode(_action, "Loop");
 
@@ -78,17 +95,26 @@ public class DataSet extends Action {
 		}
 
 		// pull all the DataSource elements
+		List<Element> dataSources = new ArrayList<Element>();
+		List<Map<String, String>> sourceTokens = new ArrayList<Map<String, String>>();
 		for (int i = 0; i < length; i++) {
-			DataStream ds = de.getData((Element) (nl.item(i)));
-			_dataStreams.add(ds);
+			dataSources.add((Element) (nl.item(i)));
+			sourceTokens.add(dataTokens);
 		}
+		_dataStreams.addAll(getData(dataSources, sourceTokens));
 
 		// check for any loop elements
 		if (loopNode != null) {
 			_dataTokens = dataTokens;
 			runLoopDataSources(loopNode);
 		}
-		if (length == 1) {
+		_session.setDataTokens(dataTokens);
+		if (!_union) {
+			for (int i = 0; i < _dataStreams.size(); i++) {
+				_dataStreams.get(i).setInternal(_isInternal);
+				_session.addDataSet(String.format("%s_%d", _name, i + 1), _dataStreams.get(i));
+			}
+		} else if (length == 1) {
 			// Only one data source (should be majority of the time)
 			_dataStreams.get(0).setInternal(_isInternal);
 			_session.addDataSet(_name, _dataStreams.get(0));
@@ -99,6 +125,91 @@ public class DataSet extends Action {
 		return null;
 	}
 
+	/**
+	 * Reads the DataSources in declaration order and returns their data
+	 * streams in that order. With Parallelism above one, up to that many
+	 * are read at the same time. The first failure cancels the others, queued
+	 * DataSources are not started and running ones are interrupted.
+	 */
+	protected List<DataStream> getData(List<Element> dataSources, List<Map<String, String>> dataTokens) {
+		int count = dataSources.size();
+		List<DataStream> dataStreams = new ArrayList<DataStream>(count);
+		if ((_parallelism == 1) || (count < 2)) {
+			DataEngine de = new DataEngine(_session, _dataCacheEnabled, _dataCacheMinutes);
+			for (int i = 0; i < count; i++) {
+				_session.setDataTokens(dataTokens.get(i));
+				dataStreams.add(de.getData(dataSources.get(i)));
+			}
+			return dataStreams;
+		}
+
+		_session.addLogMessage("", "Parallel", String.format("Reading %,d DataSources, up to %,d at the same time.", count, _parallelism));
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(_parallelism, count));
+		CompletionService<DataStream> completed = new ExecutorCompletionService<DataStream>(pool);
+		List<Future<DataStream>> results = new ArrayList<Future<DataStream>>(count);
+		// Set by the first failure, before the failed thread can pick up the next DataSource.
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		try {
+			for (int i = 0; i < count; i++) {
+				// The DOM is not thread safe, each thread reads its own copy of the DataSource.
+				final Element dataSource = XmlUtilities.createXMLDocument(XmlUtilities.getOuterXml(dataSources.get(i))).getDocumentElement();
+				final Map<String, String> tokens = dataTokens.get(i);
+				results.add(completed.submit(new Callable<DataStream>() {
+					@Override
+					public DataStream call() throws Exception {
+						if (failed.get()) {
+							// Not read, the earlier failure is the one reported.
+							return null;
+						}
+						_session.setDataTokens(tokens);
+						try {
+							return new DataEngine(_session, _dataCacheEnabled, _dataCacheMinutes).getData(dataSource);
+						} catch (Exception ex) {
+							failed.set(true);
+							throw ex;
+						} finally {
+							_session.clearDataTokens();
+						}
+					}
+				}));
+			}
+			// Wait in completion order, so a failure is seen as soon as it happens.
+			for (int i = 0; i < count; i++) {
+				completed.take().get();
+			}
+			for (Future<DataStream> result : results) {
+				dataStreams.add(result.get());
+			}
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new PieException("Error while reading the DataSources in parallel. " + cause.getMessage(), cause);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new PieException("Interrupted while reading the DataSources in parallel.", ex);
+		} finally {
+			pool.shutdownNow();
+			awaitTermination(pool);
+		}
+		return dataStreams;
+	}
+
+	/**
+	 * Waits for interrupted reads to stop, so none of them is still writing to
+	 * the staging directory or the log once the action returns.
+	 */
+	protected void awaitTermination(ExecutorService pool) {
+		try {
+			if (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+				_session.addLogMessage(Constants.LOG_WARNING_MESSAGE, "Parallel", "DataSource reads still running one minute after they were cancelled.");
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	protected void unionDataStreams() {
 		// Merge the schema column names into a final list.
 		List<String> finalColumnNames = new ArrayList<String>();
@@ -155,7 +266,7 @@ public class DataSet extends Action {
 				}
 
 				// Open this datastream and add the contents to the final file.
-				try (DataReader dc = new DataReader(dataStream)) {
+				try (DataReader dc = DataReader.open(dataStream)) {
 					long rowCount = 0;
 					while (!dc.eof()) {
 						Object[] aValues = dc.getDataRow();
@@ -203,7 +314,9 @@ public class DataSet extends Action {
 		String dataSetName = requiredAttribute(loopNode, "DataSetName");
 		DataStream _dataStream = _session.getDataStream(dataSetName);
 		int rowNumber = 0;
-		try (DataReader dr = new DataReader(_dataStream)) {
+		List<Element> dataSources = new ArrayList<Element>();
+		List<Map<String, String>> sourceTokens = new ArrayList<Map<String, String>>();
+		try (DataReader dr = DataReader.open(_dataStream)) {
 			String[] colNames = dr.getColumnNames();
 			DataType[] dataTypes = dr.getDataTypes();
 			while (!dr.eof()) {
@@ -228,20 +341,20 @@ public class DataSet extends Action {
 					}
 				}
 
-				_session.setDataTokens(currentDataTokens);
 				NodeList nl = XmlUtilities.selectNodes(loopNode, "DataSource");
 				int length = nl.getLength();
-				// pull all the DataSource elements
-				DataEngine de = new DataEngine(_session, _dataCacheEnabled, _dataCacheMinutes);
+				// collect all the DataSource elements, they are read once the loop rows are known.
 				for (int i = 0; i < length; i++) {
-					Element dataSource = (Element) (nl.item(i));
+					Element dataSource = (Element) (nl.item(i).cloneNode(true));
 					// adding a random GUID to ensure that each datasource gets a unique file name.
 					dataSource.setAttribute("LoopControlMarker", UUID.randomUUID().toString());
-					_dataStreams.add(de.getData(dataSource));
+					dataSources.add(dataSource);
+					sourceTokens.add(currentDataTokens);
 				}
-				_session.clearDataTokens();
 			}
 			dr.close();
+			_dataStreams.addAll(getData(dataSources, sourceTokens));
+			_session.clearDataTokens();
 			// _session.addLogMessage("", "Data", String.format("%,d rows of data written.", iRowCount));
 			// _session.addLogMessage("", "Completed", String.format("Data saved to %s", _outputFilename));
 		} catch (Exception e) {
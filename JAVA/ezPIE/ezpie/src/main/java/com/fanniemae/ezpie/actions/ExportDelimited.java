@@ -11,11 +11,22 @@
 
 package com.fanniemae.ezpie.actions;
 
+import java.io.BufferedWriter;
+import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -24,10 +35,13 @@ import com.fanniemae.ezpie.SessionManager;
 import com.fanniemae.ezpie.common.Constants;
 import com.fanniemae.ezpie.common.DataStream;
 import com.fanniemae.ezpie.common.DateUtilities;
+import com.fanniemae.ezpie.common.ExceptionUtilities;
+import com.fanniemae.ezpie.common.FileUtilities;
 import com.fanniemae.ezpie.common.PieException;
 import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.common.XmlUtilities;
 import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -57,6 +71,7 @@ public class ExportDelimited extends Action {
 	protected boolean _appendData = false;
 	protected boolean _writeColumnNames = true;
 	protected boolean _removeCrLf = false;
+	protected int _parallelism = 1;
 
 	public ExportDelimited(SessionManager session, Element action) {
 		super(session, action, false);
@@ -72,6 +87,7 @@ public class ExportDelimited extends Action {
 		_writeColumnNames = StringUtilities.toBoolean(optionalAttribute("IncludeColumnNames"), _writeColumnNames);
 		_removeCrLf = StringUtilities.toBoolean(optionalAttribute("FlattenFieldStrings"), _removeCrLf);
 		_filenameToken = _session.optionalAttribute(action, "Name","ExportDelimited");
+		_parallelism = Math.max(1, StringUtilities.toInteger(optionalAttribute("Parallelism"), 1));
 	}
 
 	@Override
@@ -79,9 +95,10 @@ public class ExportDelimited extends Action {
 		_session.setDataTokens(dataTokens);
 		_dataStream = _session.getDataStream(_dataSetName);
 
-		try (DataReader dr = new DataReader(_dataStream); FileWriter fw = new FileWriter(_outputFilename, _appendData)) {
+		try (DataReader dr = DataReader.open(_dataStream); FileWriter fw = new FileWriter(_outputFilename, _appendData)) {
 			defineOutputColumns(dr.getColumnNames());
 			_outputColumnDataTypes = dr.getDataTypes();
+			dr.setColumnProjection(getInputColumnNames(dr.getColumnNames()));
 
 			if (!_appendData && _writeColumnNames) {
 				// Write Column Headers
@@ -93,34 +110,7 @@ public class ExportDelimited extends Action {
 				fw.append(_lineSeparator);
 			}
 
-			int iRowCount = 0;
-			// Write the data
-			while (!dr.eof()) {
-				Object[] dataRow = dr.getDataRow();
-
-				for (int i = 0; i < _outputLength; i++) {
-					if (i > 0)
-						fw.append(_delimiter);
-
-					if (_outputColumnIndexes[i] == -1) {
-						fw.append("");
-					} else if (dataRow[_outputColumnIndexes[i]] == null) {
-						fw.append("");						
-					} else if (_outputColumnDataTypes[_outputColumnIndexes[i]] == DataType.DateData) {
-						fw.append(DateUtilities.toIsoString((Date) dataRow[_outputColumnIndexes[i]]));
-					} else if (_outputColumnDataTypes[_outputColumnIndexes[i]] == DataType.StringData) {
-						fw.append(wrapString(dataRow[_outputColumnIndexes[i]]));
-					} else if (_outputColumnDataTypes[_outputColumnIndexes[i]] == DataType.DoubleData && _roundDoubles) {
-						fw.append(doubleFormat(dataRow[_outputColumnIndexes[i]]));
-					} else if (_outputColumnDataTypes[_outputColumnIndexes[i]] == DataType.DoubleData) {
-						fw.append(StringUtilities.formatAsNumber((double)dataRow[_outputColumnIndexes[i]]));						
-					} else {
-						fw.append(dataRow[_outputColumnIndexes[i]].toString());
-					}
-				}
-				fw.append(_lineSeparator);
-				iRowCount++;
-			}
+			int iRowCount = (_parallelism > 1) ? writeRangesInParallel(fw) : writeRows(dr, fw);
 			fw.close();
 			dr.close();
 			_session.addLogMessage("", "Data", String.format("%,d rows of data written.", iRowCount));
@@ -133,6 +123,102 @@ public class ExportDelimited extends Action {
 		return _outputFilename;
 	}
 
+	protected int writeRows(DataReader dr, Writer fw) throws IOException {
+		dr.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+		int iRowCount = 0;
+		RowCursor dataRow = dr.createRowCursor();
+		// Reused for every date value, toIsoString only formats it.
+		Date dateValue = new Date();
+		// Write the data
+		while (!dr.eof()) {
+			dr.getDataRow(dataRow);
+
+			for (int i = 0; i < _outputLength; i++) {
+				if (i > 0)
+					fw.append(_delimiter);
+
+				int column = _outputColumnIndexes[i];
+				if (column == -1) {
+					fw.append("");
+				} else if (dataRow.isNull(column)) {
+					fw.append("");						
+				} else if (_outputColumnDataTypes[column] == DataType.DateData) {
+					dateValue.setTime(dataRow.getEpochMillis(column));
+					fw.append(DateUtilities.toIsoString(dateValue));
+				} else if (_outputColumnDataTypes[column] == DataType.StringData) {
+					fw.append(wrapString(dataRow.getString(column)));
+				} else if (_outputColumnDataTypes[column] == DataType.DoubleData && _roundDoubles) {
+					fw.append(doubleFormat(dataRow.getDouble(column)));
+				} else if (_outputColumnDataTypes[column] == DataType.DoubleData) {
+					fw.append(StringUtilities.formatAsNumber(dataRow.getDouble(column)));						
+				} else if ((_outputColumnDataTypes[column] == DataType.IntegerData) || (_outputColumnDataTypes[column] == DataType.LongData)) {
+					fw.append(Long.toString(dataRow.getLong(column)));
+				} else {
+					fw.append(dataRow.getString(column));
+				}
+			}
+			fw.append(_lineSeparator);
+			iRowCount++;
+		}
+		return iRowCount;
+	}
+
+	/**
+	 * Formats block ranges of the data set (see DataReader.openRanges) on
+	 * separate threads into part files, then appends the parts in order.
+	 */
+	protected int writeRangesInParallel(Writer fw) throws IOException {
+		List<DataReader> ranges = DataReader.openRanges(_dataStream, _parallelism);
+		ExecutorService pool = Executors.newFixedThreadPool(ranges.size());
+		List<Future<Integer>> parts = new ArrayList<>();
+		List<String> partFilenames = new ArrayList<>();
+		int rowCount = 0;
+		try {
+			for (final DataReader range : ranges) {
+				final String partFilename = FileUtilities.getRandomFilename(_session.getStagingPath(), "txt");
+				partFilenames.add(partFilename);
+				range.setColumnProjection(getInputColumnNames(range.getColumnNames()));
+				parts.add(pool.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						try (Writer partWriter = new BufferedWriter(new FileWriter(partFilename))) {
+							return writeRows(range, partWriter);
+						}
+					}
+				}));
+			}
+
+			char[] buffer = new char[65536];
+			for (int i = 0; i < parts.size(); i++) {
+				rowCount += parts.get(i).get();
+				try (Reader partReader = new FileReader(partFilenames.get(i))) {
+					int length;
+					while ((length = partReader.read(buffer)) != -1) {
+						fw.write(buffer, 0, length);
+					}
+				}
+			}
+		} catch (ExecutionException ex) {
+			throw new PieException("Error while exporting a range of the data set. " + ex.getCause().getMessage(), ex.getCause());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new PieException("Interrupted while exporting the data set.", ex);
+		} finally {
+			pool.shutdownNow();
+			for (DataReader range : ranges) {
+				try {
+					range.close();
+				} catch (Exception ex) {
+					ExceptionUtilities.goSilent(ex);
+				}
+			}
+			for (String partFilename : partFilenames) {
+				FileUtilities.deleteFile(partFilename);
+			}
+		}
+		return rowCount;
+	}
+
 	protected void defineOutputColumns(String[] fileColumns) {
 		List<String> inputColumnNames = Arrays.asList(fileColumns);
 
@@ -168,6 +254,16 @@ public class ExportDelimited extends Action {
 		_outputLength = _outputColumnIndexes.length;
 	}
 
+	protected String[] getInputColumnNames(String[] fileColumns) {
+		List<String> columnNames = new ArrayList<String>();
+		for (int i = 0; i < _outputLength; i++) {
+			if (_outputColumnIndexes[i] != -1) {
+				columnNames.add(fileColumns[_outputColumnIndexes[i]]);
+			}
+		}
+		return columnNames.toArray(new String[columnNames.size()]);
+	}
+
 	protected String wrapString(Object objectValue) {
 		if (objectValue == null) {
 			return "";
@@ -200,10 +296,7 @@ public class ExportDelimited extends Action {
 		return value;
 	}
 
-	protected String doubleFormat(Object value) {
-		if (value == null) {
-			return "";
-		}
-		return String.format("%.2f", (double) value);
+	protected String doubleFormat(double value) {
+		return String.format("%.2f", value);
 	}
 }
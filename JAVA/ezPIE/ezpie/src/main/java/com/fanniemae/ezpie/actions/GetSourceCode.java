@@ -63,7 +63,7 @@ public class GetSourceCode extends RunCommand {
 		_session.addToken("LocalData", "aip_appname", "MyTestApplication");
 		// build command file
 		ReportBuilder batchCommands = new ReportBuilder();
-		try (DataReader dr = new DataReader(_session.getDataStream(datasetName))) {
+		try (DataReader dr = DataReader.open(_session.getDataStream(datasetName))) {
 			String[] columnNames = dr.getColumnNames();
 
 			int locationTypeIndex = ArrayUtilities.indexOf(columnNames, locationTypeColumn);
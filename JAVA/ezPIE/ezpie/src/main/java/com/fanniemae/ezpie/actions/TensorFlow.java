@@ -150,7 +150,7 @@ public class TensorFlow extends Action {
 	protected float[][] convertDataToFloatArray(String dataSetName) {
 		float[][] data = null;
 		DataStream ds = _session.getDataStream(dataSetName);
-		try (DataReader dr = new DataReader(ds)) {
+		try (DataReader dr = DataReader.open(ds)) {
 			defineInputColumns(dr.getColumnNames());
 
 			Object[] dataRow = null;
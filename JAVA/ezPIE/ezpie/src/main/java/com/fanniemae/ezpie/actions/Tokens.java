@@ -61,7 +61,7 @@ public class Tokens extends Action {
 		String dataSetName = requiredAttribute(child, "DataSetName");
 		DataStream dataStream = _session.getDataStream(dataSetName);
 
-		try (DataReader dr = new DataReader(dataStream)) {
+		try (DataReader dr = DataReader.open(dataStream)) {
 			String[] columnNames = dr.getColumnNames();
 			DataType[] outputColumnDataTypes = dr.getDataTypes();
 
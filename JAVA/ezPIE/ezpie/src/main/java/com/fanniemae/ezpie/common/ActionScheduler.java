@@ -0,0 +1,383 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.fanniemae.ezpie.SessionManager;
+
+/**
+ * Runs the actions of a definition on a pool of threads. Each action waits
+ * for the earlier actions it depends on, so the results match running them
+ * in document order:
+ * <ul>
+ * <li>DataSet, Export and Tokens actions depend on the earlier actions that
+ * write the tokens, data sets or files they use, or that use the ones they
+ * write.</li>
+ * <li>Log and LogComment actions wait for all earlier actions and all later
+ * actions wait for them, so the log reads in document order.</li>
+ * <li>Every other action (RunCommand, file operations, SendEmail, If, Loop,
+ * ...) waits for all earlier actions and all later actions wait for it,
+ * unless it is marked Independent="True".</li>
+ * <li>Processing ends at the first Stop action, as it does in document
+ * order.</li>
+ * </ul>
+ * After the first failure no further action is started and the running ones
+ * are interrupted. Unlike document order, actions that were already running
+ * may be later in the definition than the failed one, and earlier ones may
+ * not have finished.
+ *
+ * @since 2018-07-27
+ *
+ */
+
+public class ActionScheduler {
+	protected static final String ANY = "*";
+
+	protected SessionManager _session;
+	protected HashMap<String, String> _dataTokens;
+	protected int _parallelism;
+	protected String _tokenPrefix;
+	protected String _tokenSuffix;
+
+	protected List<ScheduledAction> _actions = new ArrayList<ScheduledAction>();
+	// Set by the first failure, before the failed thread can start another action.
+	protected AtomicBoolean _failed = new AtomicBoolean(false);
+
+	public ActionScheduler(SessionManager session, NodeList actionList, HashMap<String, String> dataTokens, int parallelism) {
+		_session = session;
+		_dataTokens = dataTokens;
+		_parallelism = Math.max(1, parallelism);
+		_tokenPrefix = session.getTokenPrefix();
+		_tokenSuffix = session.getTokenSuffix();
+
+		int length = actionList.getLength();
+		for (int i = 0; i < length; i++) {
+			Element actionElement = (Element) actionList.item(i);
+			String nodeName = actionElement.getNodeName();
+			if ("SharedElement".equals(nodeName) || "Note".equals(nodeName)) {
+				continue;
+			}
+			ScheduledAction action = describe(actionElement);
+			for (ScheduledAction earlier : _actions) {
+				if (action.dependsOn(earlier)) {
+					earlier._dependents.add(action);
+					action._waitingFor++;
+				}
+			}
+			_actions.add(action);
+			if ("Stop".equals(nodeName)) {
+				break;
+			}
+		}
+	}
+
+	public void run() {
+		int count = _actions.size();
+		_session.addLogMessage("", "Scheduler", String.format("Running %,d actions, up to %,d at the same time.", count, _parallelism));
+		ExecutorService pool = Executors.newFixedThreadPool(_parallelism);
+		CompletionService<ScheduledAction> completed = new ExecutorCompletionService<ScheduledAction>(pool);
+		try {
+			for (ScheduledAction action : _actions) {
+				if (action._waitingFor == 0) {
+					submit(completed, action);
+				}
+			}
+			for (int i = 0; i < count; i++) {
+				ScheduledAction action = completed.take().get();
+				if (action == null) {
+					// Skipped after a failure that has not been taken yet.
+					continue;
+				}
+				for (ScheduledAction dependent : action._dependents) {
+					dependent._waitingFor--;
+					if (dependent._waitingFor == 0) {
+						submit(completed, dependent);
+					}
+				}
+			}
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new PieException("Error while running the actions. " + cause.getMessage(), cause);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new PieException("Interrupted while running the actions.", ex);
+		} finally {
+			pool.shutdownNow();
+			awaitTermination(pool);
+		}
+	}
+
+	/**
+	 * Positions, among the scheduled actions, of the earlier actions the action
+	 * at the given position waits for.
+	 */
+	public List<Integer> getDependencies(int index) {
+		List<Integer> dependencies = new ArrayList<Integer>();
+		ScheduledAction action = _actions.get(index);
+		for (int i = 0; i < index; i++) {
+			if (_actions.get(i)._dependents.contains(action)) {
+				dependencies.add(i);
+			}
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Waits for interrupted actions to stop, so none of them is still running
+	 * once the failure is reported.
+	 */
+	protected void awaitTermination(ExecutorService pool) {
+		try {
+			if (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+				_session.addLogMessage(Constants.LOG_WARNING_MESSAGE, "Scheduler", "Actions still running one minute after they were cancelled.");
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	protected void submit(CompletionService<ScheduledAction> completed, final ScheduledAction action) {
+		completed.submit(new Callable<ScheduledAction>() {
+			@Override
+			public ScheduledAction call() throws Exception {
+				if (_failed.get()) {
+					// Not started, the earlier failure is the one reported.
+					return null;
+				}
+				try {
+					ProcessActions.runAction(_session, action._element, _dataTokens);
+				} catch (Exception ex) {
+					_failed.set(true);
+					throw ex;
+				}
+				return action;
+			}
+		});
+	}
+
+	protected ScheduledAction describe(Element actionElement) {
+		ScheduledAction action = new ScheduledAction(actionElement);
+		String nodeName = actionElement.getNodeName();
+		boolean independent = StringUtilities.toBoolean(actionElement.getAttribute("Independent"), false);
+		findReferences(actionElement, action);
+		switch (nodeName) {
+		case "DataSet":
+			String name = actionElement.getAttribute("Name");
+			action._dataSetWrites.add(name);
+			// Identical DataSources write the same data cache file.
+			NodeList dataSources = XmlUtilities.selectNodes(actionElement, ".//DataSource");
+			for (int i = 0; i < dataSources.getLength(); i++) {
+				action._cacheWrites.add(XmlUtilities.getOuterXml(dataSources.item(i)));
+				// Incremental refreshes add a Watermark token.
+				if (((Element) dataSources.item(i)).hasAttribute("WatermarkColumn")) {
+					action._tokenWrites.add("Watermark");
+				}
+			}
+			break;
+		case "Export":
+			action._tokenWrites.add(StringUtilities.isNullOrEmpty(actionElement.getAttribute("Name")) ? "ExportDelimited" : actionElement.getAttribute("Name"));
+			action._fileWrites.add(actionElement.getAttribute("Filename"));
+			break;
+		case "Tokens":
+		case "StaticTokens":
+			NodeList children = XmlUtilities.selectNodes(actionElement, "*");
+			for (int i = 0; i < children.getLength(); i++) {
+				Element child = (Element) children.item(i);
+				action._tokenWrites.add("DataSource".equals(child.getNodeName()) ? child.getAttribute("DataSetName") : child.getNodeName());
+			}
+			break;
+		case "Log":
+		case "LogComment":
+			// A barrier even when marked Independent, messages stay between the actions around them.
+			action._ordered = true;
+			break;
+		default:
+			if (independent) {
+				// Only the ordering on the file system is lifted, the tokens it adds are still seen in order.
+				action._tokenWrites.add(ANY);
+			} else {
+				action._ordered = true;
+			}
+		}
+		if (!action._ordered) {
+			// The DOM is not thread safe, actions that can run at the same time each read their own copy.
+			action._element = XmlUtilities.createXMLDocument(XmlUtilities.getOuterXml(actionElement)).getDocumentElement();
+		}
+		return action;
+	}
+
+	/**
+	 * Collects the token types, data set names and file names used in the
+	 * attributes and text of the action element and its children.
+	 */
+	protected void findReferences(Node node, ScheduledAction action) {
+		NamedNodeMap attributes = node.getAttributes();
+		if (attributes != null) {
+			for (int i = 0; i < attributes.getLength(); i++) {
+				Node attribute = attributes.item(i);
+				String attributeName = attribute.getNodeName();
+				String value = attribute.getNodeValue();
+				findTokens(value, action);
+				if ("DataSetName".equals(attributeName)) {
+					action._dataSetReads.add(value);
+				} else if ((node != action._source) && (attributeName.endsWith("Filename") || "Path".equals(attributeName))) {
+					action._fileReads.add(value);
+				}
+			}
+		}
+		NodeList children = node.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++) {
+			Node child = children.item(i);
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				findReferences(child, action);
+			} else if ((child.getNodeType() == Node.TEXT_NODE) || (child.getNodeType() == Node.CDATA_SECTION_NODE)) {
+				findTokens(child.getNodeValue(), action);
+			}
+		}
+	}
+
+	protected void findTokens(String value, ScheduledAction action) {
+		if (StringUtilities.isNullOrEmpty(value)) {
+			return;
+		}
+		int tokenStart = value.indexOf(_tokenPrefix);
+		while (tokenStart != -1) {
+			int tokenEnd = value.indexOf(_tokenSuffix, tokenStart + _tokenPrefix.length());
+			if (tokenEnd == -1) {
+				return;
+			}
+			String token = value.substring(tokenStart + _tokenPrefix.length(), tokenEnd);
+			int tokenSplit = token.indexOf('.');
+			if (tokenSplit > 0) {
+				String tokenType = token.substring(0, tokenSplit);
+				if ("DataSet".equals(tokenType)) {
+					action._dataSetReads.add(token.substring(tokenSplit + 1));
+				} else if (!"Data".equals(tokenType)) {
+					// Data tokens come from the current row, not from other actions.
+					action._tokenReads.add(tokenType);
+				}
+			}
+			tokenStart = value.indexOf(_tokenPrefix, tokenEnd + _tokenSuffix.length());
+		}
+	}
+
+	protected class ScheduledAction {
+		protected Element _source;
+		protected Element _element;
+		protected boolean _ordered = false;
+		protected Set<String> _tokenReads = new HashSet<String>();
+		protected Set<String> _tokenWrites = new HashSet<String>();
+		protected Set<String> _dataSetReads = new HashSet<String>();
+		protected Set<String> _dataSetWrites = new HashSet<String>();
+		protected Set<String> _fileReads = new HashSet<String>();
+		protected Set<String> _fileWrites = new HashSet<String>();
+		protected Set<String> _cacheWrites = new HashSet<String>();
+
+		protected List<ScheduledAction> _dependents = new ArrayList<ScheduledAction>();
+		protected int _waitingFor = 0;
+
+		protected ScheduledAction(Element element) {
+			_source = element;
+			_element = element;
+		}
+
+		protected boolean dependsOn(ScheduledAction earlier) {
+			if (_ordered || earlier._ordered) {
+				return true;
+			} else if (overlaps(earlier._tokenWrites, _tokenReads) || overlaps(_tokenWrites, earlier._tokenReads) || tokenWritesOverlap(earlier._tokenWrites, _tokenWrites)) {
+				return true;
+			} else if (dataSetsOverlap(earlier._dataSetWrites, _dataSetReads) || dataSetsOverlap(_dataSetWrites, earlier._dataSetReads) || dataSetsOverlap(earlier._dataSetWrites, _dataSetWrites)) {
+				return true;
+			} else if (filesOverlap(earlier._fileWrites, _fileReads) || filesOverlap(_fileWrites, earlier._fileReads) || filesOverlap(earlier._fileWrites, _fileWrites)) {
+				return true;
+			}
+			return overlaps(earlier._cacheWrites, _cacheWrites);
+		}
+	}
+
+	protected static boolean overlaps(Set<String> writes, Set<String> reads) {
+		if (writes.isEmpty() || reads.isEmpty()) {
+			return false;
+		} else if (writes.contains(ANY) || reads.contains(ANY)) {
+			return true;
+		}
+		for (String read : reads) {
+			if (writes.contains(read)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The unknown tokens of Independent actions keep them in order with each
+	 * other, not with the named tokens of DataSet, Export and Tokens actions.
+	 * Actions reading tokens still wait for both.
+	 */
+	protected static boolean tokenWritesOverlap(Set<String> earlier, Set<String> later) {
+		if (earlier.contains(ANY) || later.contains(ANY)) {
+			return earlier.contains(ANY) && later.contains(ANY);
+		}
+		return overlaps(earlier, later);
+	}
+
+	/**
+	 * Data sets kept separate (Union="False") are named after the DataSet
+	 * with a _1, _2, ... suffix.
+	 */
+	protected static boolean dataSetsOverlap(Set<String> writes, Set<String> reads) {
+		for (String write : writes) {
+			for (String read : reads) {
+				if (write.equalsIgnoreCase(read) || read.toLowerCase().startsWith(write.toLowerCase() + "_")) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * File names are compared before the tokens are resolved, a name with a
+	 * token could be any file.
+	 */
+	protected boolean filesOverlap(Set<String> writes, Set<String> reads) {
+		for (String write : writes) {
+			for (String read : reads) {
+				if (write.equalsIgnoreCase(read) || write.contains(_tokenPrefix) || read.contains(_tokenPrefix)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -16,6 +16,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -172,6 +173,10 @@ public final class DataUtilities {
 		case "java.sql.Timestamp":
 		case "SqlTimestampData":
 			return DataType.SqlTimestampData;
+		case "UUID":
+		case "java.util.UUID":
+		case "UUIDData":
+			return DataType.UUIDData;
 		case "Object":
 		case "java.lang.Object":
 		case "ObjectData":
@@ -185,6 +190,26 @@ public final class DataUtilities {
 		}
 	}
 
+	public static CompressionType compressionTypeToEnum(String compressionName) {
+		if ((compressionName == null) || compressionName.isEmpty()) {
+			return CompressionType.None;
+		}
+		switch (compressionName.toLowerCase()) {
+		case "none":
+		case "false":
+			return CompressionType.None;
+		case "deflate":
+		case "zip":
+			return CompressionType.Deflate;
+		case "lz4":
+			return CompressionType.LZ4;
+		case "snappy":
+			return CompressionType.Snappy;
+		default:
+			throw new PieException(String.format("%s compression is not supported. Use None, Deflate, LZ4 or Snappy.", compressionName));
+		}
+	}
+
 	public static Class<?> stringNameToJavaType(String typeName) {
 		try {
 			if (typeName == null) {
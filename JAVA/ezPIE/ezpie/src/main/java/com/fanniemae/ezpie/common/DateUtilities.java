@@ -26,18 +26,29 @@ import org.apache.commons.lang3.time.DurationFormatUtils;
 
 public final class DateUtilities {
 
-	protected static SimpleDateFormat _sdfISO = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-	protected static SimpleDateFormat _sdfPretty = new SimpleDateFormat("MMMM d, yyyy HH:mm:ss");
+	// SimpleDateFormat is not thread safe, each thread formats with its own copy.
+	protected static final ThreadLocal<SimpleDateFormat> _sdfISO = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+		}
+	};
+	protected static final ThreadLocal<SimpleDateFormat> _sdfPretty = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("MMMM d, yyyy HH:mm:ss");
+		}
+	};
 
 	private DateUtilities() {
 	}
 
 	public static String getCurrentDateTime() {
-		return _sdfISO.format(Calendar.getInstance().getTime());
+		return _sdfISO.get().format(Calendar.getInstance().getTime());
 	}
 
 	public static String getCurrentDateTimePretty() {
-		return _sdfPretty.format(Calendar.getInstance().getTime());
+		return _sdfPretty.get().format(Calendar.getInstance().getTime());
 	}
 	
 	public static String toPrettyString(Calendar value) {
@@ -45,11 +56,11 @@ public final class DateUtilities {
 	}
 
 	public static String toPrettyString(Date value) {
-		return (value == null) ? "" : _sdfPretty.format(value);
+		return (value == null) ? "" : _sdfPretty.get().format(value);
 	}
 	
 	public static String toIsoString(Date value) {
-		return (value == null) ? "" : _sdfISO.format(value);
+		return (value == null) ? "" : _sdfISO.get().format(value);
 	}
 
 	public static String toIsoString(Calendar value) {
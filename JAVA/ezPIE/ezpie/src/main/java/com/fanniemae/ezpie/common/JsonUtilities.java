@@ -42,7 +42,7 @@ public class JsonUtilities {
 		dataSet.put("Name", name);
 		JSONArray data = new JSONArray();
 
-		try (DataReader dr = new DataReader(ds)) {
+		try (DataReader dr = DataReader.open(ds)) {
 			String[] columnNames = dr.getColumnNames();
 			DataType[] dataTypes = dr.getDataTypes();
 			while (!dr.eof()) {
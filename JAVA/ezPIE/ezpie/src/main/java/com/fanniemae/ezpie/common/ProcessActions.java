@@ -67,146 +67,9 @@ public class ProcessActions {
 		if (length == 0)
 			return "";
 
-		boolean stopProcessing = false;
-		Action action = null;
 		try {
 			for (int i = 0; i < length; i++) {
-				Element actionElement = (Element) actionList.item(i);
-				switch (actionElement.getNodeName()) {
-				case "IncludeSharedElement":
-					throw new PieException("Please rename IncludeSharedElement to ImportSharedElement");
-				case "SharedElement":
-				case "Note":
-					continue;
-				case "Tokens":
-				case "StaticTokens":
-					action = new Tokens(session, actionElement);
-					break;
-				case "RunCommand":
-					// Run an external command or batch file
-					action = new RunCommand(session, actionElement);
-					break;
-				case "DataSet":
-					// Pull data and process
-					action = new DataSet(session, actionElement);
-					break;
-				case "Log":
-				case "LogComment":
-					action = new LogComment(session, actionElement);
-					break;
-				case "Export":
-					action = new ExportDelimited(session, actionElement);
-					break;
-				case "SvnCheckout":
-				case "Svn":
-					action = new Svn(session, actionElement);
-					break;
-				case "Directory":
-					action = new Directory(session, actionElement);
-					break;
-				case "WebClient":
-					action = new WebClient(session, actionElement);
-					break;
-				case "Zip":
-				case "UnZip":
-					action = new Compression(session, actionElement);
-					break;
-				case "ComponentScan":
-					action = new ComponentScan(session, actionElement);
-					break;
-				case "Maven":
-					action = new Maven(session, actionElement);
-					break;
-				case "Copy":
-					action = new Copy(session, actionElement);
-					break;
-				case "Move":
-					action = new Move(session, actionElement);
-					break;
-				case "Delete":
-					action = new Delete(session, actionElement);
-					break;
-				case "DeleteEmpty":
-					action = new DeleteEmpty(session, actionElement);
-					break;
-				case "Rename":
-					action = new Rename(session, actionElement);
-					break;
-				case "HighlightScan":
-					action = new HighlightScan(session, actionElement);
-					break;
-				case "MakeDirectory":
-					action = new MakeDirectory(session, actionElement);
-					break;
-				case "VersionFile":
-					action = new VersionFile(session, actionElement);
-					break;
-				case "CastScan":
-					action = new CastScan(session, actionElement);
-					break;
-				case "CastCreateSchemas":
-					action = new CastCreateSchemas(session, actionElement);
-					break;
-				case "ExecuteSql":
-					action = new ExecuteSql(session, actionElement);
-					break;
-				case "Sleep":
-					action = new Sleep(session, actionElement);
-					break;
-				case "Stop":
-					if (!"True".equalsIgnoreCase(session.getAttribute(actionElement, "Silent")))
-						session.addLogMessage("Stop", "Control Action", "Stopping definition processing. No error.");
-					action = null;
-					stopProcessing = true;
-					break;
-				case "UpdateStatus":
-					action = new UpdateStatus(session, actionElement);
-					break;
-				case "XmlEdit":
-					action = new XmlEdit(session, actionElement);
-					break;
-				case "If":
-					action = new IfElement(session, actionElement);
-					IfElement condition = (IfElement) action;
-					if (condition.evalToBoolean(dataTokens)) {
-						NodeList childActions = XmlUtilities.selectNodes(actionElement, "*");
-						run(session, childActions, dataTokens);
-					}
-					break;
-				case "VerifyJavaFiles":
-					action = new VerifyJavaFiles(session, actionElement);
-					break;
-				case "CreateJavaProjectFiles":
-					action = new CreateJavaProjectFiles(session, actionElement);
-					break;
-				case "SendEmail":
-					action = new SendEmail(session, actionElement);
-					break;
-				case "GetSourceCode":
-					action = new GetSourceCode(session, actionElement);
-					break;
-				case "Loop":
-					action = new DataLoop(session, actionElement);
-					break;
-				case "Schedule":
-					action = new Schedule(session, actionElement);
-					break;
-				case "GitClone":
-					action = new GitClone(session, actionElement);
-					break;
-				case "TensorFlow":
-					action = new TensorFlow(session, actionElement);
-					break;
-				default:
-					session.addLogMessage("** Warning **", actionList.item(i).getNodeName(), "Operation not currently supported.");
-				}
-
-				if (action != null) {
-					action.execute(dataTokens);
-					action = null;
-				}
-
-				if (stopProcessing)
+				if (runAction(session, (Element) actionList.item(i), dataTokens))
 					break;
 			}
 			return "";
@@ -216,4 +79,162 @@ public class ProcessActions {
 		}
 	}
 
+	/**
+	 * Runs the actions with up to parallelism of them at the same time, see
+	 * ActionScheduler. A parallelism of one runs them in document order.
+	 */
+	public static String run(SessionManager session, NodeList actionList, HashMap<String, String> dataTokens, int parallelism) {
+		if ((parallelism <= 1) || (actionList.getLength() < 2)) {
+			return run(session, actionList, dataTokens);
+		}
+		try {
+			new ActionScheduler(session, actionList, dataTokens, parallelism).run();
+			return "";
+		} catch (Exception ex) {
+			session.addErrorMessage(ex);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Runs one action element, returns true when processing should stop.
+	 */
+	public static boolean runAction(SessionManager session, Element actionElement, HashMap<String, String> dataTokens) {
+		boolean stopProcessing = false;
+		Action action = null;
+		switch (actionElement.getNodeName()) {
+		case "IncludeSharedElement":
+			throw new PieException("Please rename IncludeSharedElement to ImportSharedElement");
+		case "SharedElement":
+		case "Note":
+			return false;
+		case "Tokens":
+		case "StaticTokens":
+			action = new Tokens(session, actionElement);
+			break;
+		case "RunCommand":
+			// Run an external command or batch file
+			action = new RunCommand(session, actionElement);
+			break;
+		case "DataSet":
+			// Pull data and process
+			action = new DataSet(session, actionElement);
+			break;
+		case "Log":
+		case "LogComment":
+			action = new LogComment(session, actionElement);
+			break;
+		case "Export":
+			action = new ExportDelimited(session, actionElement);
+			break;
+		case "SvnCheckout":
+		case "Svn":
+			action = new Svn(session, actionElement);
+			break;
+		case "Directory":
+			action = new Directory(session, actionElement);
+			break;
+		case "WebClient":
+			action = new WebClient(session, actionElement);
+			break;
+		case "Zip":
+		case "UnZip":
+			action = new Compression(session, actionElement);
+			break;
+		case "ComponentScan":
+			action = new ComponentScan(session, actionElement);
+			break;
+		case "Maven":
+			action = new Maven(session, actionElement);
+			break;
+		case "Copy":
+			action = new Copy(session, actionElement);
+			break;
+		case "Move":
+			action = new Move(session, actionElement);
+			break;
+		case "Delete":
+			action = new Delete(session, actionElement);
+			break;
+		case "DeleteEmpty":
+			action = new DeleteEmpty(session, actionElement);
+			break;
+		case "Rename":
+			action = new Rename(session, actionElement);
+			break;
+		case "HighlightScan":
+			action = new HighlightScan(session, actionElement);
+			break;
+		case "MakeDirectory":
+			action = new MakeDirectory(session, actionElement);
+			break;
+		case "VersionFile":
+			action = new VersionFile(session, actionElement);
+			break;
+		case "CastScan":
+			action = new CastScan(session, actionElement);
+			break;
+		case "CastCreateSchemas":
+			action = new CastCreateSchemas(session, actionElement);
+			break;
+		case "ExecuteSql":
+			action = new ExecuteSql(session, actionElement);
+			break;
+		case "Sleep":
+			action = new Sleep(session, actionElement);
+			break;
+		case "Stop":
+			if (!"True".equalsIgnoreCase(session.getAttribute(actionElement, "Silent")))
+				session.addLogMessage("Stop", "Control Action", "Stopping definition processing. No error.");
+			action = null;
+			stopProcessing = true;
+			break;
+		case "UpdateStatus":
+			action = new UpdateStatus(session, actionElement);
+			break;
+		case "XmlEdit":
+			action = new XmlEdit(session, actionElement);
+			break;
+		case "If":
+			action = new IfElement(session, actionElement);
+			IfElement condition = (IfElement) action;
+			if (condition.evalToBoolean(dataTokens)) {
+				NodeList childActions = XmlUtilities.selectNodes(actionElement, "*");
+				run(session, childActions, dataTokens);
+			}
+			break;
+		case "VerifyJavaFiles":
+			action = new VerifyJavaFiles(session, actionElement);
+			break;
+		case "CreateJavaProjectFiles":
+			action = new CreateJavaProjectFiles(session, actionElement);
+			break;
+		case "SendEmail":
+			action = new SendEmail(session, actionElement);
+			break;
+		case "GetSourceCode":
+			action = new GetSourceCode(session, actionElement);
+			break;
+		case "Loop":
+			action = new DataLoop(session, actionElement);
+			break;
+		case "Schedule":
+			action = new Schedule(session, actionElement);
+			break;
+		case "GitClone":
+			action = new GitClone(session, actionElement);
+			break;
+		case "TensorFlow":
+			action = new TensorFlow(session, actionElement);
+			break;
+		default:
+			session.addLogMessage("** Warning **", actionElement.getNodeName(), "Operation not currently supported.");
+		}
+
+		if (action != null) {
+			action.execute(dataTokens);
+		}
+		return stopProcessing;
+	}
+
 }
@@ -19,6 +19,11 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -26,10 +31,12 @@ import org.w3c.dom.NodeList;
 import com.fanniemae.ezpie.SessionManager;
 import com.fanniemae.ezpie.common.Constants;
 import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.common.DataUtilities;
 import com.fanniemae.ezpie.common.DateUtilities;
 import com.fanniemae.ezpie.common.ExceptionUtilities;
 import com.fanniemae.ezpie.common.FileUtilities;
 import com.fanniemae.ezpie.common.PieException;
+import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.common.XmlUtilities;
 import com.fanniemae.ezpie.data.connectors.DataConnector;
 import com.fanniemae.ezpie.data.connectors.DataSetConnector;
@@ -39,9 +46,16 @@ import com.fanniemae.ezpie.data.connectors.ExcelConnector;
 import com.fanniemae.ezpie.data.connectors.RestConnector;
 import com.fanniemae.ezpie.data.connectors.SqlConnector;
 import com.fanniemae.ezpie.data.transforms.DataTransform;
+import com.fanniemae.ezpie.data.transforms.RowConsumer;
 import com.fanniemae.ezpie.datafiles.DataReader;
 import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.ShardManifest;
+import com.fanniemae.ezpie.datafiles.ShardedDataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.BloomFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.BinaryFileInfo;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
 
 /**
  * 
@@ -65,6 +79,21 @@ public class DataEngine {
 	protected Element _dataSource;
 	protected Element _connection;
 
+	protected DataFileLayout _dataFileLayout = DataFileLayout.Row;
+	protected CompressionType _compressionType = CompressionType.None;
+	protected boolean _rowOffsetFile = false;
+	protected boolean _writeBehind = false;
+	protected int _parallelism = 1;
+	protected String[] _bloomFilterColumns = new String[0];
+	protected double _bloomFilterFalsePositiveRate = BloomFilter.DEFAULT_FALSE_POSITIVE_RATE;
+	protected String _watermarkColumn = "";
+	protected long _shardRows = 0L;
+	protected long _shardBytes = 0L;
+	protected String[] _shardDirectories = new String[0];
+	protected boolean _pipeline = true;
+	protected boolean _pushdown = true;
+	protected List<DataTransform> _pushdownTransforms = new ArrayList<DataTransform>();
+
 	protected Map<Integer, Map<Integer, DataTransform>> _processingGroups = new HashMap<Integer, Map<Integer, DataTransform>>();
 
 	public DataEngine(SessionManager session, boolean localCacheEnabled, int localCacheMinutes) {
@@ -110,7 +139,43 @@ public class DataEngine {
 		}
 
 		_dataSource = dataSource;
+		// Columnar files let readers decode only the columns they use, only the final data file uses it.
+		String dataFileLayout = _session.optionalAttribute(dataSource, "DataFileLayout");
+		_dataFileLayout = "columnar".equalsIgnoreCase(dataFileLayout) ? DataFileLayout.Columnar : DataFileLayout.Row;
+		_compressionType = DataUtilities.compressionTypeToEnum(_session.optionalAttribute(dataSource, "DataCompression", _session.getDataCompression().toString()));
+		// Dense row offsets for data sets that are paged through or read by row number.
+		_rowOffsetFile = StringUtilities.toBoolean(_session.optionalAttribute(dataSource, "RowOffsetFile"), false);
+		// Overlaps reading the source with writing the data file to disk.
+		_writeBehind = StringUtilities.toBoolean(_session.optionalAttribute(dataSource, "WriteBehind"), false);
+		// Transform groups that read a data file can split it into ranges and process them on several threads.
+		_parallelism = Math.max(1, StringUtilities.toInteger(_session.optionalAttribute(dataSource, "Parallelism"), 1));
+		// Key columns of the final data file get per block Bloom filters for equality lookups.
+		_bloomFilterColumns = StringUtilities.split(_session.optionalAttribute(dataSource, "BloomFilterColumns"));
+		_bloomFilterFalsePositiveRate = StringUtilities.toDouble(_session.optionalAttribute(dataSource, "BloomFilterFalsePositiveRate"), BloomFilter.DEFAULT_FALSE_POSITIVE_RATE);
+		// Column that only grows (e.g. a last modified date), expired cache files only add the newer rows.
+		_watermarkColumn = _session.optionalAttribute(dataSource, "WatermarkColumn");
+		// Large results are split into shards of at most ShardRows rows or ShardMegabytes, spread over the ShardDirectories.
+		_shardRows = StringUtilities.toLong(_session.optionalAttribute(dataSource, "ShardRows"), 0L);
+		_shardBytes = StringUtilities.toLong(_session.optionalAttribute(dataSource, "ShardMegabytes"), 0L) * 1048576L;
+		_shardDirectories = StringUtilities.split(_session.optionalAttribute(dataSource, "ShardDirectories"));
+		for (int i = 0; i < _shardDirectories.length; i++) {
+			_shardDirectories[i] = FileUtilities.formatPath(_shardDirectories[i], _stagingPath, "ShardDirectories");
+		}
+		if (_shardDirectories.length == 0) {
+			_shardDirectories = new String[] { _stagingPath };
+		}
+		// Isolated transforms pass their rows straight to the next processing group instead of writing a data file.
+		_pipeline = StringUtilities.toBoolean(_session.optionalAttribute(dataSource, "Pipeline"), true);
+		// Leading Filter and ColumnFilter transforms are pushed into the SQL of the query.
+		_pushdown = StringUtilities.toBoolean(_session.optionalAttribute(dataSource, "Pushdown"), true);
 		defineProcessingGroups();
+		if (StringUtilities.isNotNullOrEmpty(_watermarkColumn)) {
+			dataStream = refreshIncrementally(finalDataFilename);
+			if (dataStream != null) {
+				return dataStream;
+			}
+		}
+		deleteShards(finalDataFilename);
 		List<String> tempFiles = new ArrayList<String>();
 		try {
 			String dataFilename = "";
@@ -121,59 +186,58 @@ public class DataEngine {
 
 				// Some data operations require access to then entire data stream
 				// they cannot be combined with other operations. E.g. Sort, Join
-				if ((operationCount == 1) && dataOperations.get(0).isolated()) {
+				if ((operationCount == 1) && dataOperations.get(0).isolated() && isPipelined(iGroup)) {
+					// The isolated transform and the next group make one pass, only the output of the group is written.
+					int isolatedGroup = iGroup;
+					iGroup++;
+					dataFilename = (iGroup + 1 == _processingGroupsCount) ? finalDataFilename : FileUtilities.getRandomFilename(_stagingPath, "dat");
+					try {
+						dataStream = processPipeline(dataStream, isolatedGroup, dataFilename);
+					} catch (IOException e) {
+						_session.addErrorMessage(e);
+					}
+				} else if ((operationCount == 1) && dataOperations.get(0).isolated()) {
 					_session.addLogMessage("", String.format("Processing Group #%d of %d", iGroup + 1, _processingGroupsCount), "");
 					dataOperations.get(0).addTransformLogMessage();
 					dataStream = dataOperations.get(0).processDataStream(dataStream, _memoryLimit);
 					_schema = dataStream.getSchema();
+				} else if ((iGroup + 1 == _processingGroupsCount) && isSharded()) {
+					try {
+						dataStream = writeShards(dataStream, dataOperations, dataFilename);
+					} catch (IOException e) {
+						_session.addErrorMessage(e);
+					}
 				} else {
 					// These operations can be combined - multiple operations during one
 					// pass through the data stream.
 					try (DataConnector dc = getConnector(dataStream); DataWriter dw = new DataWriter(dataFilename, _memoryLimit, false)) {
 						dc.open();
-						String[][] schema = dc.getDataSourceSchema();
-						if (operationCount > 0) {
-							_session.addLogMessage("", String.format("Data Transform Group #%d of %d", iGroup + 1, _processingGroupsCount), "");
-							// Update the schema based on the operations within this group.
-							for (int i = 0; i < operationCount; i++) {
-								dataOperations.get(i).addTransformLogMessage();
-								schema = dataOperations.get(i).UpdateSchema(schema);
-							}
-						}
-						_schema = schema;
-						dw.setDataColumns(schema);
+						String[][] schema = prepareGroup(dc, dataOperations, iGroup);
+						boolean finalDataFile = (iGroup + 1 == _processingGroupsCount);
+						setupGroupWriter(dw, schema, finalDataFile);
 						long rowCount = 0;
-						while (!dc.eof()) {
-							Object[] dataRow = dc.getDataRow();
-							if (dataRow == null) {
-								continue;
-							}
-							if (operationCount > 0) {
-								for (int i = 0; i < operationCount; i++) {
-									dataRow = dataOperations.get(i).processDataRow(dataRow);
-									if (dataRow != null) {
-										break;
-									}
+						long start = System.currentTimeMillis();
+						DataStream inputStream = getInputDataStream(dataStream);
+						if ((_parallelism > 1) && (inputStream != null) && isParallelSafe(dataOperations)) {
+							dc.close();
+							rowCount = processRangesInParallel(inputStream, dataOperations, schema, dw);
+						} else if ((_parallelism > 1) && ParallelRowProcessor.hasParallelStage(dataOperations)) {
+							rowCount = processRowsInParallel(dc, dataOperations, createWriterConsumer(dw));
+						} else {
+							while (!dc.eof()) {
+								// DataSets reading several DataSources interrupt the others after a failure.
+								if (Thread.currentThread().isInterrupted()) {
+									throw new PieException("Data read interrupted.");
+								}
+								Object[] dataRow = processDataRow(dataOperations, dc.getDataRow());
+								if (dataRow != null) {
+									dw.writeDataRow(dataRow);
+									rowCount++;
 								}
 							}
-							if (dataRow != null) {
-								dw.writeDataRow(dataRow);
-								rowCount++;
-							}
-						}
-						Calendar calendarExpires = Calendar.getInstance();
-						if (_localCacheEnabled) { //(_session.cachingEnabled())
-							calendarExpires.add(Calendar.MINUTE, _localCacheMinutes); // _session.getCacheMinutes());
 						}
-						dw.setFullRowCount(rowCount); // dc.getFullRowCount(_lFullRowCount));
-						dw.setBufferFirstRow(1); // dc.getBufferFirstRow());
-						dw.setBufferLastRow(rowCount); // dc.getBufferLastRow());
-						dw.setBufferExpires(calendarExpires.getTime());
-						dw.setFullRowCountKnown(true); // dc.getFullRowCountKnown());
-						dw.close();
 						dc.close();
-						dataStream = dw.getDataStream();
-						_session.addLogMessage("", "Data Returned", String.format("%,d rows (%,d bytes in %s)", rowCount, dataStream.getSize(), dataStream.IsMemory() ? "memorystream" : "filestream"));
+						dataStream = closeGroupWriter(dw, rowCount, start, finalDataFile);
 					} catch (IOException e) {
 						_session.addErrorMessage(e);
 					}
@@ -203,6 +267,560 @@ public class DataEngine {
 		return dataStream;
 	}
 
+	/**
+	 * Appends the source rows with a watermark past the highest value in the
+	 * expired cache file. The @Watermark.ColumnName~ token holds that value so
+	 * the source query can select only the new rows, on a full load it holds
+	 * the WatermarkStart attribute. Returns null when all rows have to be
+	 * loaded: there is no cache file or watermark yet, the transforms need
+	 * the whole data set, or the file cannot be appended to.
+	 */
+	protected DataStream refreshIncrementally(String filename) {
+		Object watermark = null;
+		boolean rowLocal = (_processingGroupsCount == 1) && isParallelSafe(_processingGroups.get(0));
+		if (_localCacheEnabled && rowLocal && (_dataFileLayout == DataFileLayout.Row) && !FileUtilities.isInvalidFile(filename)) {
+			watermark = readWatermark(filename);
+		}
+		if (watermark == null) {
+			_session.addToken("Watermark", _watermarkColumn, _session.optionalAttribute(_dataSource, "WatermarkStart"));
+			return null;
+		}
+		String watermarkText = (watermark instanceof Date) ? DateUtilities.toIsoString((Date) watermark) : watermark.toString();
+		_session.addToken("Watermark", _watermarkColumn, watermarkText);
+
+		Map<Integer, DataTransform> dataOperations = _processingGroups.get(0);
+		int operationCount = dataOperations.size();
+		long start = System.currentTimeMillis();
+		try (DataConnector dc = getConnector(null)) {
+			dc.open();
+			String[][] schema = dc.getDataSourceSchema();
+			for (int i = 0; i < operationCount; i++) {
+				dataOperations.get(i).addTransformLogMessage();
+				schema = dataOperations.get(i).UpdateSchema(schema);
+			}
+			int column = findColumn(schema, _watermarkColumn);
+			if (column == -1) {
+				throw new PieException(String.format("WatermarkColumn %s is not in the data set.", _watermarkColumn));
+			}
+
+			long appended = 0L;
+			try (DataWriter dw = DataWriter.openForAppend(filename, schema)) {
+				dw.setWriteBehind(_writeBehind);
+				while (!dc.eof()) {
+					Object[] dataRow = processDataRow(dataOperations, dc.getDataRow());
+					if ((dataRow != null) && (dataRow[column] != null) && (compareWatermark(dataRow[column], watermark) > 0)) {
+						dw.writeDataRow(dataRow);
+						appended++;
+					}
+				}
+				long rowCount = dw.getRowCount();
+				Calendar calendarExpires = Calendar.getInstance();
+				calendarExpires.add(Calendar.MINUTE, _localCacheMinutes);
+				dw.setFullRowCount(rowCount);
+				dw.setBufferFirstRow(1);
+				dw.setBufferLastRow(rowCount);
+				dw.setBufferExpires(calendarExpires.getTime());
+				dw.setFullRowCountKnown(true);
+				dw.close();
+				_schema = schema;
+				DataStream dataStream = dw.getDataStream();
+				long elapsed = System.currentTimeMillis() - start;
+				_session.addLogMessage("", "Incremental Refresh", String.format("Appended %,d rows with %s after %s, the cache now holds %,d rows (%,d ms).", appended, _watermarkColumn, watermarkText, rowCount, elapsed));
+				return dataStream;
+			}
+		} catch (Exception ex) {
+			ExceptionUtilities.goSilent(ex);
+			_session.addLogMessage(Constants.LOG_WARNING_MESSAGE, "Incremental Refresh", String.format("Reloading all rows. Reason: %s", ex.getMessage()));
+			_session.addToken("Watermark", _watermarkColumn, _session.optionalAttribute(_dataSource, "WatermarkStart"));
+			return null;
+		}
+	}
+
+	protected Object readWatermark(String filename) {
+		try (DataReader dr = new DataReader(filename)) {
+			int column = findColumn(dr.getSchema(), _watermarkColumn);
+			// Null when the file has no values or a block without a range, e.g. long strings.
+			return ((column == -1) || (dr.getZoneMap() == null)) ? null : dr.getZoneMap().getMaxValue(column);
+		} catch (Exception ex) {
+			ExceptionUtilities.goSilent(ex);
+			return null;
+		}
+	}
+
+	protected static int findColumn(String[][] schema, String columnName) {
+		for (int i = 0; i < schema.length; i++) {
+			if (schema[i][0].equalsIgnoreCase(columnName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected static int compareWatermark(Object value, Object watermark) {
+		if ((value instanceof Number) && (watermark instanceof Number)) {
+			if (isIntegral(value) && isIntegral(watermark)) {
+				return Long.compare(((Number) value).longValue(), ((Number) watermark).longValue());
+			}
+			return Double.compare(((Number) value).doubleValue(), ((Number) watermark).doubleValue());
+		} else if ((value instanceof Date) && (watermark instanceof Date)) {
+			return Long.compare(((Date) value).getTime(), ((Date) watermark).getTime());
+		} else if ((value instanceof Comparable) && value.getClass().isInstance(watermark)) {
+			return ((Comparable) value).compareTo(watermark);
+		}
+		return value.toString().compareTo(watermark.toString());
+	}
+
+	protected static boolean isIntegral(Object value) {
+		return (value instanceof Long) || (value instanceof Integer) || (value instanceof Short) || (value instanceof Byte);
+	}
+
+	protected Object[] processDataRow(Map<Integer, DataTransform> dataOperations, Object[] dataRow) {
+		return ParallelRowProcessor.processDataRow(dataOperations, dataRow);
+	}
+
+	/**
+	 * Reads the connector on the calling thread and transforms batches of rows
+	 * on Parallelism threads, the rows are written in their input order.
+	 */
+	protected long processRowsInParallel(DataConnector dc, Map<Integer, DataTransform> dataOperations, RowConsumer output) throws IOException {
+		try (ParallelRowProcessor processor = new ParallelRowProcessor(dataOperations, _parallelism, output)) {
+			while (!dc.eof()) {
+				processor.writeDataRow(dc.getDataRow());
+			}
+			processor.finish();
+			return processor.getRowCount();
+		}
+	}
+
+	protected static RowConsumer createWriterConsumer(final DataWriter dw) {
+		return new RowConsumer() {
+			@Override
+			public void setDataColumns(String[][] schema) throws IOException {
+				// The group schema is set on the writer before the rows arrive.
+			}
+
+			@Override
+			public void writeDataRow(Object[] dataRow) throws IOException {
+				dw.writeDataRow(dataRow);
+			}
+		};
+	}
+
+	/**
+	 * Updates the schema with the operations of the group and passes the
+	 * filters of the first operation to the data set reader.
+	 */
+	protected String[][] prepareGroup(DataConnector dc, Map<Integer, DataTransform> dataOperations, int iGroup) {
+		int operationCount = dataOperations.size();
+		String[][] schema = updateGroupSchema(dc.getDataSourceSchema(), dataOperations, iGroup);
+		if ((operationCount > 0) && (dc instanceof DataSetConnector)) {
+			// Rows removed by the first operation are never written, so its blocks and rows can be skipped.
+			DataSetConnector dataSet = (DataSetConnector) dc;
+			dataSet.setBlockFilter(dataOperations.get(0).getBlockFilter());
+			dataSet.setRowFilter(dataOperations.get(0).getRowFilter());
+			dataSet.setColumnProjection(dataOperations.get(0).getInputColumns());
+		}
+		return schema;
+	}
+
+	protected String[][] updateGroupSchema(String[][] schema, Map<Integer, DataTransform> dataOperations, int iGroup) {
+		int operationCount = dataOperations.size();
+		if (operationCount > 0) {
+			_session.addLogMessage("", String.format("Data Transform Group #%d of %d", iGroup + 1, _processingGroupsCount), "");
+			// Update the schema based on the operations within this group.
+			for (int i = 0; i < operationCount; i++) {
+				dataOperations.get(i).addTransformLogMessage();
+				schema = dataOperations.get(i).UpdateSchema(schema);
+			}
+		}
+		_schema = schema;
+		return schema;
+	}
+
+	/**
+	 * Only the final data file of the data source gets the layout, compression,
+	 * row offset and Bloom filter settings.
+	 */
+	protected void setupGroupWriter(DataWriter dw, String[][] schema, boolean finalDataFile) throws IOException {
+		dw.setDataColumns(schema);
+		dw.setWriteBehind(_writeBehind);
+		if (finalDataFile) {
+			dw.setDataFileLayout(_dataFileLayout);
+			dw.setCompression(_compressionType);
+			dw.setRowOffsetFile(_rowOffsetFile);
+			if (_bloomFilterColumns.length > 0) {
+				try {
+					dw.setBloomFilterColumns(_bloomFilterColumns, _bloomFilterFalsePositiveRate);
+				} catch (IllegalArgumentException ex) {
+					throw new PieException(ex.getMessage(), ex);
+				}
+			}
+		}
+	}
+
+	protected DataStream closeGroupWriter(DataWriter dw, long rowCount, long start, boolean finalDataFile) throws IOException {
+		Calendar calendarExpires = Calendar.getInstance();
+		if (_localCacheEnabled) { //(_session.cachingEnabled())
+			calendarExpires.add(Calendar.MINUTE, _localCacheMinutes); // _session.getCacheMinutes());
+		}
+		dw.setFullRowCount(rowCount); // dc.getFullRowCount(_lFullRowCount));
+		dw.setBufferFirstRow(1); // dc.getBufferFirstRow());
+		dw.setBufferLastRow(rowCount); // dc.getBufferLastRow());
+		dw.setBufferExpires(calendarExpires.getTime());
+		dw.setFullRowCountKnown(true); // dc.getFullRowCountKnown());
+		dw.close();
+		DataStream dataStream = dw.getDataStream();
+		_session.addLogMessage("", "Data Returned", String.format("%,d rows (%,d bytes in %s)", rowCount, dataStream.getSize(), dataStream.IsMemory() ? "memorystream" : "filestream"));
+		if (finalDataFile && (_compressionType != CompressionType.None)) {
+			long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+			long uncompressed = dw.getUncompressedBytes();
+			long compressed = dw.getCompressedBytes();
+			double percent = (uncompressed == 0L) ? 0.0 : (uncompressed - compressed) * 100.0 / uncompressed;
+			_session.addLogMessage("", "Compression", String.format("%s compressed %,d data bytes into %,d bytes (%.1f%% smaller) at %,d rows/sec.", _compressionType, uncompressed, compressed, percent, rowCount * 1000L / elapsed));
+		}
+		if (finalDataFile && (_bloomFilterColumns.length > 0)) {
+			long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+			long buildTime = dw.getBloomFilterMilliseconds();
+			_session.addLogMessage("", "Bloom Filters", String.format("%s (%.2f%% false positive rate) used %,d bytes and %,d ms to build (%.1f%% of the write time).", String.join(", ", _bloomFilterColumns), _bloomFilterFalsePositiveRate * 100.0, dw.getBloomFilterBytes(), buildTime, buildTime * 100.0 / elapsed));
+		}
+		return dataStream;
+	}
+
+	/**
+	 * True when the isolated transform of the group can stream its rows into
+	 * the next group. That group has to be a streaming group that does not
+	 * write shards, with Parallelism its rows are transformed in batches.
+	 */
+	protected boolean isPipelined(int iGroup) {
+		if (!_pipeline || (iGroup + 1 >= _processingGroupsCount) || !_processingGroups.get(iGroup).get(0).isPipelined()) {
+			return false;
+		}
+		Map<Integer, DataTransform> nextOperations = _processingGroups.get(iGroup + 1);
+		if ((nextOperations.size() == 1) && nextOperations.get(0).isolated()) {
+			return false;
+		} else if ((iGroup + 2 == _processingGroupsCount) && isSharded()) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Runs the isolated transform of processing group isolatedGroup with the
+	 * next processing group as its consumer. Blocking transforms (Sort, Join)
+	 * still read their input file, but their output rows go through the group
+	 * straight into the data file of the group.
+	 */
+	protected DataStream processPipeline(DataStream dataStream, int isolatedGroup, String dataFilename) throws IOException {
+		DataTransform isolated = _processingGroups.get(isolatedGroup).get(0);
+		final int iGroup = isolatedGroup + 1;
+		_session.addLogMessage("", String.format("Processing Group #%d of %d", isolatedGroup + 1, _processingGroupsCount), "");
+		isolated.addTransformLogMessage();
+		_session.addLogMessage("", "Pipeline", String.format("Passing the rows on to processing group #%d without an intermediate data file.", iGroup + 1));
+
+		final Map<Integer, DataTransform> dataOperations = _processingGroups.get(iGroup);
+		final boolean finalDataFile = (iGroup + 1 == _processingGroupsCount);
+		long start = System.currentTimeMillis();
+		try (final DataWriter dw = new DataWriter(dataFilename, _memoryLimit, false)) {
+			final long[] rowCount = new long[1];
+			final ParallelRowProcessor processor = ((_parallelism > 1) && ParallelRowProcessor.hasParallelStage(dataOperations)) ? new ParallelRowProcessor(dataOperations, _parallelism, createWriterConsumer(dw)) : null;
+			try {
+				isolated.processDataStream(dataStream, _memoryLimit, new RowConsumer() {
+					@Override
+					public void setDataColumns(String[][] schema) throws IOException {
+						setupGroupWriter(dw, updateGroupSchema(schema, dataOperations, iGroup), finalDataFile);
+					}
+
+					@Override
+					public void writeDataRow(Object[] dataRow) throws IOException {
+						if (processor != null) {
+							processor.writeDataRow(dataRow);
+							return;
+						}
+						dataRow = processDataRow(dataOperations, dataRow);
+						if (dataRow != null) {
+							dw.writeDataRow(dataRow);
+							rowCount[0]++;
+						}
+					}
+				});
+				if (processor != null) {
+					processor.finish();
+					rowCount[0] = processor.getRowCount();
+				}
+			} finally {
+				if (processor != null) {
+					processor.close();
+				}
+			}
+			return closeGroupWriter(dw, rowCount[0], start, finalDataFile);
+		}
+	}
+
+	protected boolean isSharded() {
+		return (_shardRows > 0L) || (_shardBytes > 0L);
+	}
+
+	/**
+	 * Writes the final data file of the data source as shards, the manifest
+	 * takes the place of the data file. Block ranges processed in parallel
+	 * each write their own shards, so no part is copied afterwards.
+	 */
+	protected DataStream writeShards(DataStream dataStream, Map<Integer, DataTransform> dataOperations, String manifestFilename) throws IOException {
+		long start = System.currentTimeMillis();
+		ShardManifest manifest = new ShardManifest();
+		try (DataConnector dc = getConnector(dataStream)) {
+			dc.open();
+			String[][] schema = prepareGroup(dc, dataOperations, _processingGroupsCount - 1);
+			DataStream inputStream = getInputDataStream(dataStream);
+			if ((_parallelism > 1) && (inputStream != null) && isParallelSafe(dataOperations)) {
+				dc.close();
+				processRangesIntoShards(inputStream, dataOperations, schema, manifest);
+			} else {
+				try (final ShardedDataWriter sw = createShardedWriter(schema)) {
+					if ((_parallelism > 1) && ParallelRowProcessor.hasParallelStage(dataOperations)) {
+						processRowsInParallel(dc, dataOperations, new RowConsumer() {
+							@Override
+							public void setDataColumns(String[][] schema) throws IOException {
+								// The schema is set when the sharded writer is created.
+							}
+
+							@Override
+							public void writeDataRow(Object[] dataRow) throws IOException {
+								sw.writeDataRow(dataRow);
+							}
+						});
+					} else {
+						while (!dc.eof()) {
+							Object[] dataRow = processDataRow(dataOperations, dc.getDataRow());
+							if (dataRow != null) {
+								sw.writeDataRow(dataRow);
+							}
+						}
+					}
+					sw.close();
+					manifest.addShards(sw.getManifest());
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			manifest.deleteShards();
+			throw ex;
+		}
+		manifest.write(manifestFilename);
+		DataStream shardedStream;
+		try (DataReader dr = DataReader.open(manifestFilename)) {
+			shardedStream = new DataStream(manifestFilename, dr.getHeader(), dr.getSchema());
+		} catch (IOException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new IOException("Error closing " + manifestFilename + ": " + ex.getMessage(), ex);
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		_session.addLogMessage("", "Data Returned", String.format("%,d rows in %,d shards (%,d bytes over %,d directories, %,d ms)", manifest.getRowCount(), manifest.getShardCount(), manifest.getBytes(), _shardDirectories.length, elapsed));
+		return shardedStream;
+	}
+
+	protected ShardedDataWriter createShardedWriter(String[][] schema) {
+		ShardedDataWriter sw = new ShardedDataWriter(null, _shardDirectories, _shardRows, _shardBytes);
+		sw.setDataColumns(schema);
+		sw.setDataFileLayout(_dataFileLayout);
+		sw.setCompression(_compressionType);
+		sw.setWriteBehind(_writeBehind);
+		if (_bloomFilterColumns.length > 0) {
+			sw.setBloomFilterColumns(_bloomFilterColumns, _bloomFilterFalsePositiveRate);
+		}
+		Calendar calendarExpires = Calendar.getInstance();
+		if (_localCacheEnabled) {
+			calendarExpires.add(Calendar.MINUTE, _localCacheMinutes);
+		}
+		sw.setBufferExpires(calendarExpires.getTime());
+		return sw;
+	}
+
+	/**
+	 * Same ranges as processRangesInParallel, each range writes its shards
+	 * and the manifest lists them in range order.
+	 */
+	protected void processRangesIntoShards(DataStream inputStream, final Map<Integer, DataTransform> dataOperations, final String[][] schema, ShardManifest manifest) throws IOException {
+		List<DataReader> ranges = DataReader.openRanges(inputStream, _parallelism);
+		_session.addLogMessage("", "Parallel", String.format("Processing the input data in %,d ranges on separate threads.", ranges.size()));
+
+		ExecutorService pool = Executors.newFixedThreadPool(ranges.size());
+		List<ShardedDataWriter> writers = new ArrayList<>();
+		List<Future<Object>> parts = new ArrayList<>();
+		try {
+			for (final DataReader range : ranges) {
+				final ShardedDataWriter sw = createShardedWriter(schema);
+				writers.add(sw);
+				parts.add(pool.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						try (ShardedDataWriter writer = sw) {
+							if (dataOperations.size() > 0) {
+								range.setBlockFilter(dataOperations.get(0).getBlockFilter());
+								range.setRowFilter(dataOperations.get(0).getRowFilter());
+								range.setColumnProjection(dataOperations.get(0).getInputColumns());
+							}
+							range.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+							while (!range.eof()) {
+								Object[] dataRow = processDataRow(dataOperations, range.getDataRow());
+								if (dataRow != null) {
+									writer.writeDataRow(dataRow);
+								}
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Object> part : parts) {
+				part.get();
+			}
+			for (ShardedDataWriter sw : writers) {
+				manifest.addShards(sw.getManifest());
+			}
+		} catch (ExecutionException ex) {
+			deleteWriterShards(writers);
+			throw new PieException("Error while processing a range of the data in parallel. " + ex.getCause().getMessage(), ex.getCause());
+		} catch (InterruptedException ex) {
+			deleteWriterShards(writers);
+			Thread.currentThread().interrupt();
+			throw new PieException("Interrupted while processing the data in parallel.", ex);
+		} finally {
+			pool.shutdownNow();
+			for (DataReader range : ranges) {
+				try {
+					range.close();
+				} catch (Exception ex) {
+					ExceptionUtilities.goSilent(ex);
+				}
+			}
+		}
+	}
+
+	protected void deleteWriterShards(List<ShardedDataWriter> writers) {
+		for (ShardedDataWriter sw : writers) {
+			try {
+				sw.close();
+			} catch (IOException ex) {
+				ExceptionUtilities.goSilent(ex);
+			}
+			sw.getManifest().deleteShards();
+		}
+	}
+
+	/**
+	 * The shards of an earlier sharded data set are removed before the data
+	 * set is written again, plain data files are simply overwritten.
+	 */
+	protected void deleteShards(String filename) {
+		try {
+			ShardManifest.deleteDataSet(filename);
+		} catch (IOException ex) {
+			ExceptionUtilities.goSilent(ex);
+			_session.addLogMessage(Constants.LOG_WARNING_MESSAGE, "Cleanup", String.format("Could not delete the shards of %s. Reason: %s", filename, ex.getMessage()));
+		}
+	}
+
+	protected boolean isParallelSafe(Map<Integer, DataTransform> dataOperations) {
+		for (DataTransform operation : dataOperations.values()) {
+			if (!operation.isParallelSafe()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The data file a processing group reads, null when the group reads from
+	 * an external source.
+	 */
+	protected DataStream getInputDataStream(DataStream dataStream) {
+		if (dataStream != null) {
+			return dataStream;
+		} else if ("dataset".equalsIgnoreCase(_dataSource.getAttribute("Type"))) {
+			return _session.getDataStream(_session.getAttribute(_dataSource, "DataSetName"));
+		}
+		return null;
+	}
+
+	/**
+	 * Splits the input data file into block ranges (see DataReader.openRanges)
+	 * and runs the group on one thread per range. Each range writes its own
+	 * part, the parts are then copied into the output in range order so the
+	 * rows keep their original order.
+	 */
+	protected long processRangesInParallel(DataStream inputStream, final Map<Integer, DataTransform> dataOperations, final String[][] schema, DataWriter dw) throws IOException {
+		List<DataReader> ranges = DataReader.openRanges(inputStream, _parallelism);
+		final int partMemoryLimit = (_memoryLimit > 0) ? Math.max(1, _memoryLimit / ranges.size()) : _memoryLimit;
+		_session.addLogMessage("", "Parallel", String.format("Processing the input data in %,d ranges on separate threads.", ranges.size()));
+
+		ExecutorService pool = Executors.newFixedThreadPool(ranges.size());
+		List<Future<DataStream>> parts = new ArrayList<>();
+		List<String> partFilenames = new ArrayList<>();
+		long rowCount = 0;
+		try {
+			for (final DataReader range : ranges) {
+				final String partFilename = FileUtilities.getRandomFilename(_stagingPath, "dat");
+				partFilenames.add(partFilename);
+				parts.add(pool.submit(new Callable<DataStream>() {
+					@Override
+					public DataStream call() throws Exception {
+						return processRange(range, dataOperations, schema, partFilename, partMemoryLimit);
+					}
+				}));
+			}
+
+			for (Future<DataStream> part : parts) {
+				try (DataReader dr = new DataReader(part.get())) {
+					dr.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+					RowCursor row = dr.createRowCursor();
+					while (!dr.eof()) {
+						dr.getDataRow(row);
+						dw.writeDataRow(row);
+						rowCount++;
+					}
+				}
+			}
+		} catch (ExecutionException ex) {
+			throw new PieException("Error while processing a range of the data in parallel. " + ex.getCause().getMessage(), ex.getCause());
+		} catch (Exception ex) {
+			throw new PieException("Error while processing the data in parallel. " + ex.getMessage(), ex);
+		} finally {
+			pool.shutdownNow();
+			for (DataReader range : ranges) {
+				try {
+					range.close();
+				} catch (Exception ex) {
+					ExceptionUtilities.goSilent(ex);
+				}
+			}
+			for (String partFilename : partFilenames) {
+				FileUtilities.deleteFile(partFilename);
+			}
+		}
+		return rowCount;
+	}
+
+	protected DataStream processRange(DataReader range, Map<Integer, DataTransform> dataOperations, String[][] schema, String partFilename, int memoryLimit) throws Exception {
+		try (DataWriter dw = new DataWriter(partFilename, memoryLimit, false)) {
+			dw.setDataColumns(schema);
+			if (dataOperations.size() > 0) {
+				range.setBlockFilter(dataOperations.get(0).getBlockFilter());
+				range.setRowFilter(dataOperations.get(0).getRowFilter());
+				range.setColumnProjection(dataOperations.get(0).getInputColumns());
+			}
+			range.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+			while (!range.eof()) {
+				Object[] dataRow = processDataRow(dataOperations, range.getDataRow());
+				if (dataRow != null) {
+					dw.writeDataRow(dataRow);
+				}
+			}
+			return dw.getDataStream();
+		}
+	}
+
 	protected DataConnector getConnector(DataStream inputStream) {
 		if (inputStream != null) {
 			return new DataSetConnector(_session, inputStream, false);
@@ -214,7 +832,11 @@ public class DataEngine {
 			throw new PieException("DataSource Type attribute not defined.");
 		case "sp":
 		case "sql":
-			return new SqlConnector(_session, _dataSource, false);
+			SqlConnector sqlConnector = new SqlConnector(_session, _dataSource, false);
+			if (_pushdown) {
+				sqlConnector.setPushdownTransforms(_pushdownTransforms);
+			}
+			return sqlConnector;
 		case "directory":
 			return new DirectoryConnector(_session, _dataSource, false);
 		case "delimited":
@@ -234,6 +856,7 @@ public class DataEngine {
 		NodeList nlTransforms = XmlUtilities.selectNodes(_dataSource, "*");
 		ExecutionPlanner planner = new ExecutionPlanner(_session);
 		_processingGroups = planner.getExecutionPlan(nlTransforms);
+		_pushdownTransforms = planner.getPushdownTransforms();
 		_processingGroupsCount = _processingGroups.size();
 	}
 
@@ -244,7 +867,7 @@ public class DataEngine {
 		if (FileUtilities.isInvalidFile(filename))
 			return null;
 
-		try (DataReader dr = new DataReader(filename)) {
+		try (DataReader dr = DataReader.open(filename)) {
 			schema = dr.getSchema();
 			header = dr.getHeader();
 			Date expires = dr.getBufferExpires();
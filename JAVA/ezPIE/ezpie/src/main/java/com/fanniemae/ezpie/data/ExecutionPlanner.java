@@ -11,13 +11,17 @@
 
 package com.fanniemae.ezpie.data;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.data.transforms.ColumnFilter;
+import com.fanniemae.ezpie.data.transforms.CompareFilter;
 import com.fanniemae.ezpie.data.transforms.DataTransform;
 import com.fanniemae.ezpie.data.transforms.TransformFactory;
 
@@ -30,11 +34,21 @@ import com.fanniemae.ezpie.data.transforms.TransformFactory;
 public class ExecutionPlanner {
 
 	protected SessionManager _session;
+	protected List<DataTransform> _pushdownTransforms = new ArrayList<DataTransform>();
 
 	public ExecutionPlanner(SessionManager session) {
 		_session = session;
 	}
 
+	/**
+	 * The Filter and ColumnFilter transforms the data source starts with, in
+	 * order. SqlConnector can push them into the query, they stay in the
+	 * execution plan.
+	 */
+	public List<DataTransform> getPushdownTransforms() {
+		return _pushdownTransforms;
+	}
+
 	public Map<Integer, Map<Integer, DataTransform>> getExecutionPlan(NodeList transforms) {
 		Map<Integer, Map<Integer, DataTransform>> processingGroups = new HashMap<Integer, Map<Integer, DataTransform>>();
 		Map<Integer, DataTransform> currentTransformGroup = new HashMap<Integer, DataTransform>();
@@ -46,12 +60,18 @@ public class ExecutionPlanner {
 			return processingGroups;
 		}
 
+		boolean leadingFilters = true;
 		for (int i = 0; i < iLen; i++) {
 			Element eleTransform = (Element) transforms.item(i);
 			DataTransform currentTransform = TransformFactory.getTransform(_session, eleTransform);
 			if (currentTransform == null) {
 				continue;
-			} else if (currentTransform.isolated()) {
+			}
+			leadingFilters = leadingFilters && !currentTransform.isolated() && ((currentTransform instanceof CompareFilter) || (currentTransform instanceof ColumnFilter));
+			if (leadingFilters) {
+				_pushdownTransforms.add(currentTransform);
+			}
+			if (currentTransform.isolated()) {
 				if (currentTransformGroup.size() > 0) {
 					// put the previous transforms into a processing group
 					processingGroups.put(processingGroups.size(), currentTransformGroup);
@@ -0,0 +1,180 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.data;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fanniemae.ezpie.common.PieException;
+import com.fanniemae.ezpie.data.transforms.DataTransform;
+import com.fanniemae.ezpie.data.transforms.RowConsumer;
+
+/**
+ * Runs the transforms of a processing group on a pool of threads. Rows are
+ * collected into batches, the batches are transformed in parallel and the
+ * rows are passed on to the output in their original order. Transforms
+ * from the first one that is not parallel safe (e.g. SequenceColumn) onward
+ * run in that ordered stage, on the calling thread.
+ *
+ * @since 2018-07-25
+ *
+ */
+
+public class ParallelRowProcessor extends RowConsumer implements AutoCloseable {
+	public static final int DEFAULT_BATCH_ROWS = 1024;
+
+	protected final Map<Integer, DataTransform> _parallelStage = new HashMap<Integer, DataTransform>();
+	protected final Map<Integer, DataTransform> _orderedStage = new HashMap<Integer, DataTransform>();
+	protected final RowConsumer _output;
+	protected final int _batchRows;
+	protected final int _maxBatchesInFlight;
+	protected final ExecutorService _pool;
+	protected final ArrayDeque<Future<List<Object[]>>> _batches = new ArrayDeque<Future<List<Object[]>>>();
+
+	protected List<Object[]> _batch;
+	protected long _rowCount = 0L;
+
+	public ParallelRowProcessor(Map<Integer, DataTransform> dataOperations, int threads, RowConsumer output) {
+		this(dataOperations, threads, DEFAULT_BATCH_ROWS, output);
+	}
+
+	public ParallelRowProcessor(Map<Integer, DataTransform> dataOperations, int threads, int batchRows, RowConsumer output) {
+		int operationCount = dataOperations.size();
+		for (int i = 0; i < operationCount; i++) {
+			DataTransform operation = dataOperations.get(i);
+			if (_orderedStage.isEmpty() && operation.isParallelSafe()) {
+				_parallelStage.put(_parallelStage.size(), operation);
+			} else {
+				_orderedStage.put(_orderedStage.size(), operation);
+			}
+		}
+		_output = output;
+		_batchRows = Math.max(1, batchRows);
+		_maxBatchesInFlight = Math.max(1, threads) * 2;
+		_pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		_batch = new ArrayList<Object[]>(_batchRows);
+	}
+
+	/**
+	 * True when the first transform can run in parallel, otherwise every
+	 * transform would run in the ordered stage and the pool only adds overhead.
+	 */
+	public static boolean hasParallelStage(Map<Integer, DataTransform> dataOperations) {
+		return (dataOperations.size() > 0) && dataOperations.get(0).isParallelSafe();
+	}
+
+	/**
+	 * Runs the row through the transforms, null once a transform removes it.
+	 */
+	public static Object[] processDataRow(Map<Integer, DataTransform> dataOperations, Object[] dataRow) {
+		int operationCount = dataOperations.size();
+		for (int i = 0; (i < operationCount) && (dataRow != null); i++) {
+			dataRow = dataOperations.get(i).processDataRow(dataRow);
+		}
+		return dataRow;
+	}
+
+	@Override
+	public void setDataColumns(String[][] schema) throws IOException {
+		_output.setDataColumns(schema);
+	}
+
+	@Override
+	public void writeDataRow(Object[] dataRow) throws IOException {
+		if (dataRow == null) {
+			return;
+		}
+		// Connectors reuse their row array, the batch needs its own copy.
+		_batch.add(dataRow.clone());
+		if (_batch.size() >= _batchRows) {
+			submitBatch();
+		}
+	}
+
+	/**
+	 * Waits for the remaining batches and writes their rows.
+	 */
+	public void finish() throws IOException {
+		submitBatch();
+		while (!_batches.isEmpty()) {
+			writeNextBatch();
+		}
+	}
+
+	/**
+	 * Rows passed on to the output.
+	 */
+	public long getRowCount() {
+		return _rowCount;
+	}
+
+	@Override
+	public void close() {
+		_pool.shutdownNow();
+	}
+
+	protected void submitBatch() throws IOException {
+		if (_batch.isEmpty()) {
+			return;
+		}
+		final List<Object[]> batch = _batch;
+		_batch = new ArrayList<Object[]>(_batchRows);
+		_batches.add(_pool.submit(new Callable<List<Object[]>>() {
+			@Override
+			public List<Object[]> call() throws Exception {
+				List<Object[]> rows = new ArrayList<Object[]>(batch.size());
+				for (Object[] dataRow : batch) {
+					dataRow = processDataRow(_parallelStage, dataRow);
+					if (dataRow != null) {
+						rows.add(dataRow);
+					}
+				}
+				return rows;
+			}
+		}));
+		while (_batches.size() >= _maxBatchesInFlight) {
+			writeNextBatch();
+		}
+	}
+
+	protected void writeNextBatch() throws IOException {
+		List<Object[]> rows;
+		try {
+			rows = _batches.poll().get();
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new PieException("Error while processing a batch of rows in parallel. " + cause.getMessage(), cause);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new PieException("Interrupted while processing the rows in parallel.", ex);
+		}
+		for (Object[] dataRow : rows) {
+			dataRow = processDataRow(_orderedStage, dataRow);
+			if (dataRow != null) {
+				_output.writeDataRow(dataRow);
+				_rowCount++;
+			}
+		}
+	}
+}
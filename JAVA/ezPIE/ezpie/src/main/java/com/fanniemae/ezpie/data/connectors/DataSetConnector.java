@@ -20,6 +20,8 @@ import com.fanniemae.ezpie.common.DataStream;
 import com.fanniemae.ezpie.common.PieException;
 import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowFilter;
 
 /**
  * 
@@ -54,7 +56,8 @@ public class DataSetConnector extends DataConnector {
 	@Override
 	public Boolean open() {
 		try {
-			_dr = new DataReader(_dataStream);
+			_dr = DataReader.open(_dataStream);
+			_dr.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
 			_dataSchema = _dr.getSchema();
 		} catch (IOException ex) {
 			throw new PieException("Could not open requested data stream.", ex);
@@ -62,6 +65,39 @@ public class DataSetConnector extends DataConnector {
 		return null;
 	}
 
+	/**
+	 * Skips the data file blocks the filter rules out, call after open.
+	 */
+	public void setBlockFilter(BlockFilter filter) {
+		try {
+			_dr.setBlockFilter(filter);
+		} catch (IOException ex) {
+			throw new PieException("Could not set the block filter of the data stream.", ex);
+		}
+	}
+
+	/**
+	 * Skips the rows the filter rules out, call after open.
+	 */
+	public void setRowFilter(RowFilter filter) {
+		try {
+			_dr.setRowFilter(filter);
+		} catch (IOException ex) {
+			throw new PieException("Could not set the row filter of the data stream.", ex);
+		}
+	}
+
+	/**
+	 * Leaves the values of the other columns undecoded, null for all columns.
+	 */
+	public void setColumnProjection(String[] columnNames) {
+		try {
+			_dr.setColumnProjection(columnNames);
+		} catch (IOException ex) {
+			throw new PieException("Could not set the column projection of the data stream.", ex);
+		}
+	}
+
 	@Override
 	public Boolean eof() {
 		try {
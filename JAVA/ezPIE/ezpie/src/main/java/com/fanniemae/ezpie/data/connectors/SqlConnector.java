@@ -20,11 +20,17 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.common.ArrayUtilities;
 import com.fanniemae.ezpie.common.Constants;
 import com.fanniemae.ezpie.common.DataUtilities;
 import com.fanniemae.ezpie.common.ExceptionUtilities;
@@ -33,6 +39,10 @@ import com.fanniemae.ezpie.common.PieException;
 import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.common.XmlUtilities;
 import com.fanniemae.ezpie.data.DataProvider;
+import com.fanniemae.ezpie.data.jdbcproviders.JdbcProvider;
+import com.fanniemae.ezpie.data.jdbcproviders.JdbcProviderFactory;
+import com.fanniemae.ezpie.data.transforms.ColumnFilter;
+import com.fanniemae.ezpie.data.transforms.DataTransform;
 
 /**
  * 
@@ -42,6 +52,8 @@ import com.fanniemae.ezpie.data.DataProvider;
  */
 
 public class SqlConnector extends DataConnector {
+	protected static final Pattern ORDER_BY = Pattern.compile("\\border\\s+by\\b", Pattern.CASE_INSENSITIVE);
+
 	protected DataProvider _provider;
 	protected Connection _con;
 	protected PreparedStatement _pstmt;
@@ -53,6 +65,9 @@ public class SqlConnector extends DataConnector {
 
 	protected String[] _fieldNames;
 
+	protected List<DataTransform> _pushdownTransforms = null;
+	protected List<Object> _pushdownParameters = new ArrayList<Object>();
+
 	protected Boolean _isStoredProcedure = false;
 	protected Boolean _calledCommandCancel = false;
 	protected Boolean _usingTransactions = false;
@@ -90,6 +105,14 @@ public class SqlConnector extends DataConnector {
 		}
 	}
 
+	/**
+	 * Filter and ColumnFilter transforms the data source starts with (see
+	 * ExecutionPlanner), pushed into the query when possible.
+	 */
+	public void setPushdownTransforms(List<DataTransform> transforms) {
+		_pushdownTransforms = transforms;
+	}
+
 	@Override
 	public Boolean open() {
 		try {
@@ -101,13 +124,16 @@ public class SqlConnector extends DataConnector {
 			if (_isStoredProcedure) {
 				_pstmt = _con.prepareCall(_sqlStoredProcedure);
 			} else {
-				_pstmt = _con.prepareStatement(_sqlCommand);
+				_pstmt = _con.prepareStatement(pushdownCommand());
 			}
 			_connectionString = _con.getMetaData().getURL();
 
 			_session.addLogMessage("", "ConnectionName", _connection.getAttribute("Name"));
 
-			addSqlParameters();
+			int parameterCount = addSqlParameters(_pstmt, true);
+			for (int i = 0; i < _pushdownParameters.size(); i++) {
+				_pstmt.setObject(parameterCount + i + 1, _pushdownParameters.get(i));
+			}
 			String sCommandTimeout = _dataSource.getAttribute("CommandTimeout");
 			if (StringUtilities.isNullOrEmpty(sCommandTimeout)) {
 				sCommandTimeout = _connection.getAttribute("CommandTimeout");
@@ -250,13 +276,122 @@ public class SqlConnector extends DataConnector {
 		return !isPostgreSQL();
 	}
 
-	protected void addSqlParameters() throws SQLException {
+	/**
+	 * Wraps the command in a subselect with the select list and WHERE clause
+	 * of the pushdown transforms, so the server only returns the rows and
+	 * columns they keep. The transforms still run on the results. Only done
+	 * for server types with known identifier quoting, the command is
+	 * returned unchanged when nothing can be pushed.
+	 */
+	protected String pushdownCommand() {
+		_pushdownParameters.clear();
+		if ((_pushdownTransforms == null) || _pushdownTransforms.isEmpty() || _usingTransactions || _schemaOnly) {
+			return _sqlCommand;
+		}
+		JdbcProvider provider = JdbcProviderFactory.getQuotingProvider(_session, _connectionType);
+		if (provider == null) {
+			return _sqlCommand;
+		}
+		String command = _sqlCommand.trim();
+		while (command.endsWith(";")) {
+			command = command.substring(0, command.length() - 1).trim();
+		}
+		if (ORDER_BY.matcher(command).find()) {
+			_session.addLogMessage("", "Pushdown", "Not used, the rows of a query with ORDER BY have to keep their order.");
+			return _sqlCommand;
+		}
+
+		String[][] schema;
+		try {
+			schema = readCommandSchema(command);
+		} catch (SQLException ex) {
+			ExceptionUtilities.goSilent(ex);
+			_session.addLogMessage(Constants.LOG_WARNING_MESSAGE, "Pushdown", "Not used, the command could not be read as a subselect. " + ex.getMessage());
+			return _sqlCommand;
+		}
+
+		Set<String> columnNames = new HashSet<String>();
+		for (int i = 0; i < schema.length; i++) {
+			if (StringUtilities.isNullOrEmpty(schema[i][0]) || !columnNames.add(schema[i][0].toLowerCase())) {
+				// Unnamed and duplicate columns are renamed while reading, they cannot be selected by name.
+				return _sqlCommand;
+			}
+		}
+
+		// Filters still run on the results, so the columns they read are selected as well.
+		List<String> predicates = new ArrayList<String>();
+		Set<String> selectedColumns = new HashSet<String>();
+		String[][] outputSchema = ArrayUtilities.cloneArray(schema);
+		for (DataTransform transform : _pushdownTransforms) {
+			if (transform instanceof ColumnFilter) {
+				// Planned without UpdateSchema, the transform is set up later on the schema actually read.
+				outputSchema = ((ColumnFilter) transform).projectSchema(outputSchema);
+				continue;
+			}
+			String predicate = transform.getSqlPredicate(outputSchema, provider, _pushdownParameters);
+			if (predicate != null) {
+				predicates.add(predicate);
+			}
+			if (transform.getDataColumn() != null) {
+				selectedColumns.add(transform.getDataColumn().toLowerCase());
+			}
+		}
+		for (int i = 0; i < outputSchema.length; i++) {
+			selectedColumns.add(outputSchema[i][0].toLowerCase());
+		}
+
+		StringBuilder selectList = new StringBuilder();
+		int selectCount = 0;
+		for (int i = 0; i < schema.length; i++) {
+			if (selectedColumns.contains(schema[i][0].toLowerCase())) {
+				selectList.append((selectCount == 0) ? "" : ", ").append(provider.quoteIdentifier(schema[i][0]));
+				selectCount++;
+			}
+		}
+		if (predicates.isEmpty() && (selectCount == schema.length)) {
+			return _sqlCommand;
+		}
+
+		StringBuilder sql = new StringBuilder();
+		sql.append("SELECT ").append((selectCount == schema.length) ? "*" : selectList.toString());
+		sql.append(" FROM (").append(command).append(") pie_source");
+		for (int i = 0; i < predicates.size(); i++) {
+			sql.append((i == 0) ? " WHERE " : " AND ").append(predicates.get(i));
+		}
+		_session.addLogMessage("", "Pushdown", String.format("%,d of %,d columns selected, %,d filters pushed into the query.", selectCount, schema.length, predicates.size()));
+		_session.addLogMessagePreserveLayout("", "Command", sql.toString());
+		return sql.toString();
+	}
+
+	/**
+	 * Column names and Java classes of the command, read without returning
+	 * any rows.
+	 */
+	protected String[][] readCommandSchema(String command) throws SQLException {
+		try (PreparedStatement pstmt = _con.prepareStatement(String.format("SELECT * FROM (%s) pie_source WHERE 1 = 0", command))) {
+			addSqlParameters(pstmt, false);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				ResultSetMetaData rsmd = rs.getMetaData();
+				String[][] schema = new String[rsmd.getColumnCount()][2];
+				for (int i = 0; i < schema.length; i++) {
+					schema[i][0] = rsmd.getColumnName(i + 1);
+					schema[i][1] = rsmd.getColumnClassName(i + 1);
+				}
+				return schema;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of parameters set.
+	 */
+	protected int addSqlParameters(PreparedStatement pstmt, boolean logValues) throws SQLException {
 		// Add parameters in the order listed.
 		// Check report definition for defined parameters
 		NodeList parameterList = XmlUtilities.selectNodes(_dataSource, "SqlParameter");
 		int length = parameterList.getLength();
 		if (length == 0)
-			return;
+			return 0;
 
 		java.util.Date javaDate;
 		for (int i = 0; i < length; i++) {
@@ -266,44 +401,44 @@ public class SqlConnector extends DataConnector {
 			String paramType = _session.getAttribute(eleParameter, "SqlType").trim();
 			String nullValue = _session.getAttribute(eleParameter, "NullValue");
 			if (value.equals(nullValue)) {
-				_pstmt.setNull(paramNumber, DataUtilities.dbStringTypeToJavaSqlType(paramType));
+				pstmt.setNull(paramNumber, DataUtilities.dbStringTypeToJavaSqlType(paramType));
 			}
 
 			String typeUsed = "";
 			switch (DataUtilities.dbStringTypeToJavaSqlType(paramType)) {
 			case Types.BIGINT:
-				_pstmt.setLong(paramNumber, Long.parseLong(value));
+				pstmt.setLong(paramNumber, Long.parseLong(value));
 				typeUsed = "bigint";
 				break;
 			case Types.BOOLEAN:
-				_pstmt.setBoolean(paramNumber, Boolean.parseBoolean(value));
+				pstmt.setBoolean(paramNumber, Boolean.parseBoolean(value));
 				typeUsed = "boolean";
 				break;
 			case Types.DECIMAL:
-				_pstmt.setBigDecimal(paramNumber, new BigDecimal(value));
+				pstmt.setBigDecimal(paramNumber, new BigDecimal(value));
 				typeUsed = "decimal";
 				break;
 			case Types.DATE:
 				javaDate = StringUtilities.toDate(value);
-				_pstmt.setDate(paramNumber, new java.sql.Date(javaDate.getTime()));
+				pstmt.setDate(paramNumber, new java.sql.Date(javaDate.getTime()));
 				typeUsed = "date";
 				break;
 			case Types.DOUBLE:
-				_pstmt.setDouble(paramNumber, Double.parseDouble(value));
+				pstmt.setDouble(paramNumber, Double.parseDouble(value));
 				typeUsed = "double";
 				break;
 			case Types.INTEGER:
-				_pstmt.setInt(paramNumber, Integer.parseInt(value));
+				pstmt.setInt(paramNumber, Integer.parseInt(value));
 				typeUsed = "integer";
 				break;
 			case Types.TIME:
 				javaDate = StringUtilities.toDate(value);
-				_pstmt.setTime(paramNumber, new java.sql.Time(javaDate.getTime()));
+				pstmt.setTime(paramNumber, new java.sql.Time(javaDate.getTime()));
 				typeUsed = "time";
 				break;
 			case Types.TIMESTAMP:
 				javaDate = StringUtilities.toDate(value);
-				_pstmt.setTimestamp(paramNumber, new java.sql.Timestamp(javaDate.getTime()));
+				pstmt.setTimestamp(paramNumber, new java.sql.Timestamp(javaDate.getTime()));
 				typeUsed = "timestamp";
 				break;
 			case Types.CHAR:
@@ -311,16 +446,19 @@ public class SqlConnector extends DataConnector {
 			case Types.LONGVARCHAR:
 			case Types.NVARCHAR:
 			case Types.VARCHAR:
-				_pstmt.setString(paramNumber, value);
+				pstmt.setString(paramNumber, value);
 				typeUsed = "string";
 				break;
 			default:
-				_pstmt.setString(paramNumber, value);
+				pstmt.setString(paramNumber, value);
 				typeUsed = "string";
 				break;
 			}
-			_session.addLogMessage("", "SQL Parameter", String.format("Parameter #%d is set to %s (%s)", paramNumber, value, typeUsed));
+			if (logValues) {
+				_session.addLogMessage("", "SQL Parameter", String.format("Parameter #%d is set to %s (%s)", paramNumber, value, typeUsed));
+			}
 		}
+		return length;
 	}
 
 	@Override
@@ -78,4 +78,12 @@ public abstract class JdbcProvider {
 		return latestDriver.getAbsolutePath();
 	}
 
+	/**
+	 * Quoted column name for SQL generated by ezPIE (see SqlConnector
+	 * pushdown), null when the quoting rules of the server are unknown.
+	 */
+	public String quoteIdentifier(String name) {
+		return null;
+	}
+
 }
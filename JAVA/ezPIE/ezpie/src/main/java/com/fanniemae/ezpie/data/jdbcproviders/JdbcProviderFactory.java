@@ -39,4 +39,22 @@ public class JdbcProviderFactory {
 		}
 	}
 
+	/**
+	 * Provider for server types with known identifier quoting, null for the
+	 * generic provider.
+	 */
+	public static JdbcProvider getQuotingProvider(SessionManager session, String sqlServerType) {
+		if (sqlServerType == null) {
+			return null;
+		}
+		switch (sqlServerType.toLowerCase()) {
+		case "postgres":
+		case "sqlserver":
+		case "oracle":
+			return getProvider(session, sqlServerType);
+		default:
+			return null;
+		}
+	}
+
 }
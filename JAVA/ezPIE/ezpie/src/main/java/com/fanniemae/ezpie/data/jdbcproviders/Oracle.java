@@ -30,4 +30,9 @@ public class Oracle extends JdbcProvider {
 		_port = 1521;
 	}
 
+	@Override
+	public String quoteIdentifier(String name) {
+		return "\"" + name.replace("\"", "\"\"") + "\"";
+	}
+
 }
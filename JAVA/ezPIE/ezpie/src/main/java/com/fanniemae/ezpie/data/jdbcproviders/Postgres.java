@@ -30,4 +30,9 @@ public class Postgres extends JdbcProvider {
 		_port = 5342;
 	}
 
+	@Override
+	public String quoteIdentifier(String name) {
+		return "\"" + name.replace("\"", "\"\"") + "\"";
+	}
+
 }
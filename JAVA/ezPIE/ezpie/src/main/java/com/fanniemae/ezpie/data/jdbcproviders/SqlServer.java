@@ -30,4 +30,9 @@ public class SqlServer extends JdbcProvider {
 		_port = 1433;
 	}
 
+	@Override
+	public String quoteIdentifier(String name) {
+		return "[" + name.replace("]", "]]") + "]";
+	}
+
 }
@@ -12,6 +12,7 @@
 package com.fanniemae.ezpie.data.transforms;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
@@ -38,9 +39,16 @@ public class CalculationColumn extends DataTransform {
 	protected String _jsFunctionFile = "";
 	protected String _formula = "";
 	protected ScriptEngine _engine;
+	// Script engines are not shared between threads, each thread evaluating rows gets its own.
+	protected ThreadLocal<ScriptEngine> _threadEngines = new ThreadLocal<ScriptEngine>() {
+		@Override
+		protected ScriptEngine initialValue() {
+			return createEngine();
+		}
+	};
 	
 	protected int _errorLimit = 1;
-	protected int _errors = 0;
+	protected AtomicInteger _errors = new AtomicInteger();
 	
 	public CalculationColumn(SessionManager session, Element transform) {
 		super(session, transform);
@@ -66,15 +74,13 @@ public class CalculationColumn extends DataTransform {
 		_columnType = getOptionalAttribute("ResultType","String");
 		_errorLimit = StringUtilities.toInteger(getOptionalAttribute("ErrorLimit"),1);
 		
-		ScriptEngineManager manager = new ScriptEngineManager();
-		// Check for the newer nashorn engine first, then if not found default to JavaScript.
-		_engine = manager.getEngineByName("nashorn");
-		if (_engine == null) {
-			_engine = manager.getEngineByName("JavaScript");
-			if (_engine == null) {
-				throw new RuntimeException("Could not find a valid Javascript engine to evaluate expressions.");
-			}
-		}
+		_engine = createEngine();
+		_threadEngines.set(_engine);
+	}
+
+	@Override
+	public boolean isParallelSafe() {
+		return true;
 	}
 
 	@Override
@@ -85,18 +91,31 @@ public class CalculationColumn extends DataTransform {
 		dataRow = addDataColumn(dataRow);
 		dataRow[_outColumnIndex] = evaluate(resolvedForumla);
 		_session.clearDataTokens();
-		_rowsProcessed++;
+		_rowsProcessed.increment();
 		return dataRow;
 	}
 	
+	protected static ScriptEngine createEngine() {
+		ScriptEngineManager manager = new ScriptEngineManager();
+		// Check for the newer nashorn engine first, then if not found default to JavaScript.
+		ScriptEngine engine = manager.getEngineByName("nashorn");
+		if (engine == null) {
+			engine = manager.getEngineByName("JavaScript");
+			if (engine == null) {
+				throw new RuntimeException("Could not find a valid Javascript engine to evaluate expressions.");
+			}
+		}
+		return engine;
+	}
+	
 	private Object evaluate(String expression) {
 		try {
 			// evaluate the JavaScript expression
-			return _engine.eval(expression);
+			return _threadEngines.get().eval(expression);
 		} catch (ScriptException e) {
-			_errors++;
-			_session.addLogMessage(String.format(Constants.LOG_WARNING_MESSAGE,_errors),"Evaluation", String.format("Could not evaluate JavaScript formula \"%s\". Reason: %s", expression, e.getMessage()));
-			if (_errors >= _errorLimit)
+			int errors = _errors.incrementAndGet();
+			_session.addLogMessage(String.format(Constants.LOG_WARNING_MESSAGE,errors),"Evaluation", String.format("Could not evaluate JavaScript formula \"%s\". Reason: %s", expression, e.getMessage()));
+			if (errors >= _errorLimit)
 			   throw new PieException(String.format("Calculation formula evaluation error limit of %d reached. The ErrorLimit attribute of the Calculation transform controls this behavior.", _errorLimit), e);
 		}
 		return null;
@@ -54,7 +54,7 @@ public class ColorColumn extends DataTransform {
 		}
 		dataRow = addDataColumn(dataRow);
 		dataRow[_outColumnIndex] = _cu.nextColor();
-		_rowsProcessed++;
+		_rowsProcessed.increment();
 		return dataRow;
 	}
 
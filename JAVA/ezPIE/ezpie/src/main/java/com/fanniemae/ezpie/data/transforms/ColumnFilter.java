@@ -79,66 +79,85 @@ public class ColumnFilter extends DataTransform {
 		return newDataRow;
 	}
 
+	/**
+	 * Only the kept columns are decoded. Called after UpdateSchema.
+	 */
 	@Override
-	public String[][] UpdateSchema(String[][] inputSchema) {
-		_inputSchema = inputSchema;
-		int length = 0;
-		int pos = 0;
-
-		if ((_removeColumnNames != null) && (_removeColumnNames.length > 0)) {
-			length = _removeColumnNames.length;
-			_skipIndexes = new ArrayList<Integer>();
-			for (int i = 0; i < length; i++) {
-				int colIndex = ArrayUtilities.indexOf(inputSchema, _removeColumnNames[i], true);
-				if (colIndex > -1) {
-					_skipIndexes.add(colIndex);
-				}
+	public String[] getInputColumns() {
+		List<String> columnNames = new ArrayList<String>();
+		for (int i = 0; i < _inputSchema.length; i++) {
+			boolean kept = (_keepIndexes != null) ? _keepIndexes.contains(i) : (_skipIndexes == null) || !_skipIndexes.contains(i);
+			if (kept) {
+				columnNames.add(_inputSchema[i][0]);
 			}
+		}
+		return columnNames.toArray(new String[columnNames.size()]);
+	}
 
-			length = _skipIndexes.size();
-			if (length == 0) {
-				return inputSchema;
-			}
+	@Override
+	public boolean isParallelSafe() {
+		return true;
+	}
 
-			String[][] newSchema = new String[inputSchema.length - length][2];
-			for (int i = 0; i < inputSchema.length; i++) {
-				if (!_skipIndexes.contains(i)) {
-					newSchema[pos][0] = inputSchema[i][0];
-					newSchema[pos][1] = inputSchema[i][1];
-					pos++;
-				}
-			}
+	@Override
+	public String[][] UpdateSchema(String[][] inputSchema) {
+		_inputSchema = inputSchema;
+		String[][] newSchema = inputSchema;
+		if ((_removeColumnNames != null) && (_removeColumnNames.length > 0)) {
+			_skipIndexes = findIndexes(inputSchema, _removeColumnNames);
+			newSchema = selectColumns(inputSchema, _skipIndexes, false);
+		} else if ((_keepColumnNames != null) && (_keepColumnNames.length > 0)) {
+			_keepIndexes = findIndexes(inputSchema, _keepColumnNames);
+			newSchema = selectColumns(inputSchema, _keepIndexes, true);
+		}
+		if (newSchema != inputSchema) {
 			_columnCount = newSchema.length;
-			return newSchema;
+		}
+		return newSchema;
+	}
 
+	/**
+	 * The schema UpdateSchema returns, without changing the state of the
+	 * transform. SqlConnector uses it to plan the pushdown query.
+	 */
+	public String[][] projectSchema(String[][] inputSchema) {
+		if ((_removeColumnNames != null) && (_removeColumnNames.length > 0)) {
+			return selectColumns(inputSchema, findIndexes(inputSchema, _removeColumnNames), false);
 		} else if ((_keepColumnNames != null) && (_keepColumnNames.length > 0)) {
-			length = _keepColumnNames.length;
-			_keepIndexes = new ArrayList<Integer>();
-			for (int i = 0; i < length; i++) {
-				int colIndex = ArrayUtilities.indexOf(inputSchema, _keepColumnNames[i], true);
-				if (colIndex > -1) {
-					_keepIndexes.add(colIndex);
-				}
-			}
+			return selectColumns(inputSchema, findIndexes(inputSchema, _keepColumnNames), true);
+		}
+		return inputSchema;
+	}
 
-			length = _keepIndexes.size();
-			if (length == 0) {
-				return inputSchema;
+	protected static List<Integer> findIndexes(String[][] inputSchema, String[] columnNames) {
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int i = 0; i < columnNames.length; i++) {
+			int colIndex = ArrayUtilities.indexOf(inputSchema, columnNames[i], true);
+			if (colIndex > -1) {
+				indexes.add(colIndex);
 			}
+		}
+		return indexes;
+	}
 
-			String[][] newSchema = new String[length][2];
-			for (int i = 0; i < inputSchema.length; i++) {
-				if (_keepIndexes.contains(i)) {
-					newSchema[pos][0] = inputSchema[i][0];
-					newSchema[pos][1] = inputSchema[i][1];
-					pos++;
-				}
-			}
-			_columnCount = newSchema.length;
-			return newSchema;
+	/**
+	 * Returns the input schema itself when none of the named columns exist.
+	 */
+	protected static String[][] selectColumns(String[][] inputSchema, List<Integer> indexes, boolean keep) {
+		if (indexes.size() == 0) {
+			return inputSchema;
 		}
 
-		return inputSchema;
+		int pos = 0;
+		String[][] newSchema = new String[keep ? indexes.size() : inputSchema.length - indexes.size()][2];
+		for (int i = 0; i < inputSchema.length; i++) {
+			if (indexes.contains(i) == keep) {
+				newSchema[pos][0] = inputSchema[i][0];
+				newSchema[pos][1] = inputSchema[i][1];
+				pos++;
+			}
+		}
+		return newSchema;
 	}
 
 }
@@ -11,14 +11,26 @@
 
 package com.fanniemae.ezpie.data.transforms;
 
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
 import org.w3c.dom.Element;
 
 import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.common.ArrayUtilities;
 import com.fanniemae.ezpie.common.DataUtilities;
 import com.fanniemae.ezpie.common.PieException;
 import com.fanniemae.ezpie.common.StringUtilities;
+import com.fanniemae.ezpie.data.jdbcproviders.JdbcProvider;
 import com.fanniemae.ezpie.data.transforms.compare.Compare;
 import com.fanniemae.ezpie.data.transforms.compare.CompareFactory;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.LazyDataRow;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.ZoneMap;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
  * 
@@ -30,13 +42,17 @@ import com.fanniemae.ezpie.data.transforms.compare.CompareFactory;
 public class CompareFilter extends DataTransform {
 
 	protected enum CompareType {
-		EQUALS, NOT_EQUALS, LESS_THAN, GREATER_THAN, LESS_THAN_EQUAL_TO, GREATER_THAN_EQUAL_TO
+		EQUALS, NOT_EQUALS, LESS_THAN, GREATER_THAN, LESS_THAN_EQUAL_TO, GREATER_THAN_EQUAL_TO, IN, NOT_IN
 	}
 
 	protected CompareType _compareType = CompareType.EQUALS;
 	protected String _compareValue;
 	protected Compare _compareMethod;
-	protected boolean _callInitializer = true;
+
+	// In and NotIn - one compare method and value per comma separated CompareValue entry.
+	protected Object[] _compareValues;
+	protected Compare[] _compareMethods;
+	protected volatile boolean _callInitializer = true;
 
 	public CompareFilter(SessionManager session, Element transform) {
 		super(session, transform, false);
@@ -54,7 +70,6 @@ public class CompareFilter extends DataTransform {
 	public Object[] processDataRow(Object[] dataRow) {
 		if (_callInitializer) {
 			initializeCompare();
-			_callInitializer = false;
 		}
 		
 		if (dataRow == null) {
@@ -64,7 +79,7 @@ public class CompareFilter extends DataTransform {
 		if (isFiltered(dataRow[_sourceColumnIndex])) {
 			return null;
 		}
-		_rowsProcessed++;
+		_rowsProcessed.increment();
 		return dataRow;
 	}
 
@@ -97,17 +112,243 @@ public class CompareFilter extends DataTransform {
 		case "greaterthanequalto":
 		case ">=":
 			return CompareType.GREATER_THAN_EQUAL_TO;
+		case "in":
+			return CompareType.IN;
+		case "notin":
+			return CompareType.NOT_IN;
+		default:
+			throw new PieException(String.format("%s is not a supported compare type.  Please use <, >, =, <=, >=, In, or NotIn.", value));
+		}
+	}
+
+	@Override
+	public BlockFilter getBlockFilter() {
+		return new BlockFilter() {
+			@Override
+			public boolean skipBlock(ZoneMap zoneMap, int block) {
+				return isBlockFiltered(zoneMap, block);
+			}
+		};
+	}
+
+	@Override
+	public RowFilter getRowFilter() {
+		return new RowFilter() {
+			@Override
+			public boolean skipRow(LazyDataRow row) throws IOException {
+				if (_callInitializer) {
+					initializeCompare();
+				}
+				return isFiltered(row.getValue(_sourceColumnIndex));
+			}
+		};
+	}
+
+	@Override
+	public boolean isParallelSafe() {
+		return true;
+	}
+
+	/**
+	 * Only numeric columns are pushed, string collations and date time zones
+	 * of the server can differ from the compare classes. Null values sort
+	 * below every compare value, so they are kept where smaller values are.
+	 */
+	@Override
+	public String getSqlPredicate(String[][] schema, JdbcProvider provider, List<Object> parameters) {
+		int columnIndex = ArrayUtilities.indexOf(schema, _dataColumn, true);
+		if (columnIndex == -1) {
+			return null;
+		}
+		DataType dataType = DataUtilities.dataTypeToEnum(schema[columnIndex][1]);
+		switch (dataType) {
+		case ByteData:
+		case ShortData:
+		case IntegerData:
+		case LongData:
+		case DoubleData:
+		case FloatData:
+		case BigDecimalData:
+			break;
+		default:
+			return null;
+		}
+
+		String[] values = ((_compareType == CompareType.IN) || (_compareType == CompareType.NOT_IN)) ? StringUtilities.split(_compareValue) : new String[] { _compareValue };
+		if (values.length == 0) {
+			return null;
+		}
+		Object[] compareValues = new Object[values.length];
+		StringBuilder placeholders = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			compareValues[i] = StringUtilities.isNullOrEmpty(values[i]) ? null : toCompareValue(dataType, values[i]);
+			if (compareValues[i] == null) {
+				return null;
+			}
+			placeholders.append((i == 0) ? "?" : ", ?");
+		}
+
+		String column = provider.quoteIdentifier(schema[columnIndex][0]);
+		String predicate;
+		switch (_compareType) {
+		case EQUALS:
+			predicate = String.format("(%1$s IS NULL OR %1$s <> ?)", column);
+			break;
+		case NOT_EQUALS:
+			predicate = String.format("%s = ?", column);
+			break;
+		case LESS_THAN:
+			predicate = String.format("(%1$s IS NULL OR %1$s <= ?)", column);
+			break;
+		case GREATER_THAN:
+			predicate = String.format("%s >= ?", column);
+			break;
+		case LESS_THAN_EQUAL_TO:
+			predicate = String.format("(%1$s IS NULL OR %1$s < ?)", column);
+			break;
+		case GREATER_THAN_EQUAL_TO:
+			predicate = String.format("%s > ?", column);
+			break;
+		case IN:
+			predicate = String.format("(%1$s IS NULL OR %1$s NOT IN (%2$s))", column, placeholders);
+			break;
+		case NOT_IN:
+			predicate = String.format("%s IN (%s)", column, placeholders);
+			break;
 		default:
-			throw new PieException(String.format("%s is not a supported compare type.  Please use <, >, =, <=, or >=.", value));
+			return null;
+		}
+		for (Object compareValue : compareValues) {
+			parameters.add(compareValue);
+		}
+		return predicate;
+	}
+
+	protected synchronized void initializeCompare() {
+		if (_callInitializer) {
+			DataType dataType = DataUtilities.dataTypeToEnum(_sourceColumnType);
+			String[] values = ((_compareType == CompareType.IN) || (_compareType == CompareType.NOT_IN)) ? StringUtilities.split(_compareValue) : new String[] { _compareValue };
+			if (values.length == 0) {
+				values = new String[] { _compareValue };
+			}
+			_compareValues = new Object[values.length];
+			_compareMethods = new Compare[values.length];
+			for (int i = 0; i < values.length; i++) {
+				_compareValues[i] = toCompareValue(dataType, values[i]);
+				_compareMethods[i] = CompareFactory.getCompareMethod(dataType, _compareValues[i]);
+			}
+			_compareMethod = _compareMethods[0];
+			_callInitializer = false;
+		}
+	}
+
+	/**
+	 * The compare classes expect the Java type of the column.
+	 */
+	protected Object toCompareValue(DataType dataType, String compareValue) {
+		if (StringUtilities.isNullOrEmpty(compareValue)) {
+			return (dataType == DataType.StringData) ? compareValue : null;
+		}
+		try {
+			switch (dataType) {
+			case ByteData:
+				return Byte.parseByte(compareValue.trim());
+			case ShortData:
+				return Short.parseShort(compareValue.trim());
+			case IntegerData:
+				return Integer.parseInt(compareValue.trim());
+			case LongData:
+				return Long.parseLong(compareValue.trim());
+			case DoubleData:
+				return Double.parseDouble(compareValue.trim());
+			case FloatData:
+				return Float.parseFloat(compareValue.trim());
+			case BigDecimalData:
+				return StringUtilities.toBigDecimal(compareValue, null);
+			case DateData:
+			case SqlTimestampData:
+				Date date = StringUtilities.toDate(compareValue);
+				if (date == null) {
+					throw new PieException(String.format("%s is not a valid %s date value.", compareValue, _dataColumn));
+				}
+				return (dataType == DataType.DateData) ? date : new Timestamp(date.getTime());
+			default:
+				return compareValue;
+			}
+		} catch (NumberFormatException ex) {
+			throw new PieException(String.format("%s is not a valid %s value.", compareValue, _dataColumn), ex);
 		}
 	}
 
-	protected void initializeCompare() {
-		_compareMethod = CompareFactory.getCompareMethod(DataUtilities.dataTypeToEnum(_sourceColumnType), _compareValue);
+	/**
+	 * True when every row of the block is removed. The compare result of a
+	 * value falls between the results of the block minimum and maximum, null
+	 * values are compared as null. NotEquals and NotIn keep only the compare
+	 * values, so a block without any of them (by range or Bloom filter) is
+	 * skipped as well.
+	 */
+	protected boolean isBlockFiltered(ZoneMap zoneMap, int block) {
+		if (_callInitializer) {
+			initializeCompare();
+		}
+		if (_sourceColumnIndex >= zoneMap.getColumnCount()) {
+			return false;
+		} else if ((_compareType == CompareType.NOT_EQUALS) || (_compareType == CompareType.NOT_IN)) {
+			return !mightContainCompareValue(zoneMap, block);
+		} else if (_compareType == CompareType.IN) {
+			return (zoneMap.getNullCount(block, _sourceColumnIndex) == zoneMap.getRowCount(block)) && isFiltered((Object) null);
+		}
+
+		long nullCount = zoneMap.getNullCount(block, _sourceColumnIndex);
+		if ((nullCount > 0L) && !isFiltered(_compareMethod.compareTo(null))) {
+			return false;
+		} else if (nullCount == zoneMap.getRowCount(block)) {
+			return true;
+		} else if (!zoneMap.hasRange(block, _sourceColumnIndex)) {
+			return false;
+		}
+
+		int high = Integer.signum(_compareMethod.compareTo(zoneMap.getMinValue(block, _sourceColumnIndex)));
+		int low = Integer.signum(_compareMethod.compareTo(zoneMap.getMaxValue(block, _sourceColumnIndex)));
+		for (int result = low; result <= high; result++) {
+			if (!isFiltered(result)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected boolean mightContainCompareValue(ZoneMap zoneMap, int block) {
+		boolean hasRange = zoneMap.hasRange(block, _sourceColumnIndex);
+		for (int i = 0; i < _compareMethods.length; i++) {
+			if (_compareValues[i] == null) {
+				if (zoneMap.getNullCount(block, _sourceColumnIndex) > 0L) {
+					return true;
+				}
+			} else if (hasRange && ((_compareMethods[i].compareTo(zoneMap.getMinValue(block, _sourceColumnIndex)) < 0) || (_compareMethods[i].compareTo(zoneMap.getMaxValue(block, _sourceColumnIndex)) > 0))) {
+				continue;
+			} else if ((zoneMap.getNullCount(block, _sourceColumnIndex) < zoneMap.getRowCount(block)) && zoneMap.mightContain(block, _sourceColumnIndex, _compareValues[i])) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	protected boolean isFiltered(Object value) {
-		int result = _compareMethod.compareTo(value);
+		if ((_compareType == CompareType.IN) || (_compareType == CompareType.NOT_IN)) {
+			boolean found = false;
+			for (Compare compareMethod : _compareMethods) {
+				if (compareMethod.compareTo(value) == 0) {
+					found = true;
+					break;
+				}
+			}
+			return (_compareType == CompareType.IN) ? found : !found;
+		}
+		return isFiltered(_compareMethod.compareTo(value));
+	}
+
+	protected boolean isFiltered(int result) {
 		switch (_compareType) {
 		case EQUALS:
 			return result == 0;
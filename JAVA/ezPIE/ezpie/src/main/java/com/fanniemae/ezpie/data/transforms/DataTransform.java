@@ -14,6 +14,7 @@ package com.fanniemae.ezpie.data.transforms;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.w3c.dom.Element;
 
@@ -25,8 +26,11 @@ import com.fanniemae.ezpie.common.PieException;
 import com.fanniemae.ezpie.common.ReportBuilder;
 import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.common.XmlUtilities;
+import com.fanniemae.ezpie.data.jdbcproviders.JdbcProvider;
 import com.fanniemae.ezpie.datafiles.DataReader;
 import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowFilter;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -52,7 +56,8 @@ public abstract class DataTransform {
 
 	protected int _outColumnIndex;
 	protected int _sourceColumnIndex;
-	protected int _rowsProcessed;
+	// Parallel safe transforms process rows on several threads, see ParallelRowProcessor.
+	protected final LongAdder _rowsProcessed = new LongAdder();
 	protected int _rowsRemaining;
 	protected int _rowsReturned;
 	protected int _rowsRemoved;
@@ -98,9 +103,13 @@ public abstract class DataTransform {
 	public DataStream processDataStream(DataStream inputStream, int memoryLimit) {
 		DataStream outputStream = null;
 		String tempFilename = FileUtilities.getRandomFilename(_session.getStagingPath());
-		try (DataReader br = new DataReader(inputStream); DataWriter bw = new DataWriter(tempFilename, memoryLimit)) {
+		try (DataReader br = DataReader.open(inputStream); DataWriter bw = new DataWriter(tempFilename, memoryLimit)) {
 			String[][] schema = br.getSchema();
 			schema = UpdateSchema(schema);
+			br.setBlockFilter(getBlockFilter());
+			br.setRowFilter(getRowFilter());
+			br.setColumnProjection(getInputColumns());
+			br.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
 
 			bw.setDataColumns(schema);
 			int rowCount = 0;
@@ -130,12 +139,91 @@ public abstract class DataTransform {
 		return outputStream;
 	}
 
+	/**
+	 * Pipelined version of processDataStream, the output rows go to the
+	 * consumer instead of a data file. Returns the number of rows.
+	 */
+	public long processDataStream(DataStream inputStream, int memoryLimit, RowConsumer output) {
+		try (DataReader br = DataReader.open(inputStream)) {
+			String[][] schema = br.getSchema();
+			schema = UpdateSchema(schema);
+			br.setBlockFilter(getBlockFilter());
+			br.setRowFilter(getRowFilter());
+			br.setColumnProjection(getInputColumns());
+			br.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+
+			output.setDataColumns(schema);
+			long rowCount = 0;
+			while (!br.eof()) {
+				Object[] dataRow = processDataRow(br.getDataRow());
+				if (dataRow != null) {
+					output.writeDataRow(dataRow);
+					rowCount++;
+				}
+			}
+			br.close();
+			return rowCount;
+		} catch (Exception ex) {
+			throw new PieException(String.format("Error while running %s data stream transformation.", _transformElementName), ex);
+		}
+	}
+
 	public boolean isolated() {
 		return _isolate;
 	}
 
+	/**
+	 * True when the pipelined processDataStream is supported, so an isolated
+	 * transform can pass its rows straight to the next processing group.
+	 */
+	public boolean isPipelined() {
+		return true;
+	}
+
 	public abstract Object[] processDataRow(Object[] dataRow);
 
+	/**
+	 * True when processDataRow only depends on the row it is given and may be
+	 * called from several threads at once, so ranges of the input can be
+	 * processed in parallel (see DataEngine Parallelism).
+	 */
+	public boolean isParallelSafe() {
+		return false;
+	}
+
+	/**
+	 * Transforms that only remove rows can return a filter so data file readers
+	 * skip the blocks where every row would be removed. Called after UpdateSchema.
+	 */
+	public BlockFilter getBlockFilter() {
+		return null;
+	}
+
+	/**
+	 * Row level version of getBlockFilter. The filter decodes only the columns
+	 * it looks at, so rows it removes are never fully read.
+	 */
+	public RowFilter getRowFilter() {
+		return null;
+	}
+
+	/**
+	 * Input columns the transform reads or passes on, null for all of them.
+	 * Readers leave the values of the other columns undecoded.
+	 */
+	public String[] getInputColumns() {
+		return null;
+	}
+
+	/**
+	 * SQL version of getRowFilter for queries wrapped by SqlConnector. The
+	 * predicate has to keep every row the transform keeps, values are bound
+	 * as the parameters (?) added to the list. Null when it cannot be pushed.
+	 */
+	public String getSqlPredicate(String[][] schema, JdbcProvider provider, List<Object> parameters) {
+		return null;
+	}
+
 	public String[][] UpdateSchema(String[][] schema) {
 		_inputSchema =  ArrayUtilities.cloneArray(schema);
 		_outColumnIndex = ArrayUtilities.indexOf(schema, _name, true);
@@ -198,7 +286,7 @@ public abstract class DataTransform {
 	}
 
 	public int getRowsProcessed() {
-		return _rowsProcessed;
+		return _rowsProcessed.intValue();
 	}
 
 	public int getRowsRemaining() {
@@ -27,6 +27,7 @@ import com.fanniemae.ezpie.common.PieException;
 import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.datafiles.DataReader;
 import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -86,25 +87,38 @@ public class Index extends DataTransform {
 		throw new PieException(String.format("%s requires access to the entire data set.  It cannot be combined with other data transformations.",_transform.getNodeName()));
 	}
 
+	/**
+	 * The output is the index, not the data rows.
+	 */
+	@Override
+	public boolean isPipelined() {
+		return false;
+	}
+
 	@Override
 	public DataStream processDataStream(DataStream inputStream, int memoryLimit) {
 		DataStream outputStream = null;
 
-		try (DataReader dr = new DataReader(inputStream);) {
+		try (DataReader dr = DataReader.open(inputStream);) {
 			String[] inputColumnNames = dr.getColumnNames();
 			DataType[] inputColumnTypes = dr.getDataTypes();
 			updateIndexInstructions(inputColumnNames, inputColumnTypes);
+			// Only the key columns are needed to build the index.
+			dr.setColumnProjection(_columnNames);
 
 			int indexEntryCount = 0;
+			RowCursor row = dr.createRowCursor();
 			while (!dr.eof()) {
 				long offset = dr.getPosition();
-				Object[] dataRow = dr.getDataRow();
+				dr.getDataRow(row);
 				IndexDataRow rowKeys = new IndexDataRow(offset, _numberOfKeys);
 
 				for (int i = 0; i < _numberOfKeys; i++) {
-					Object dataPoint = _inputColumnIndexes[i] == -1 ? null : dataRow[_inputColumnIndexes[i]];
-					DataType dataType = _inputColumnIndexes[i] == -1 ? DataType.StringData : inputColumnTypes[_inputColumnIndexes[i]];
-					rowKeys.setDataPoint(i, dataPoint, dataType, _isAscending[i]);
+					if (_inputColumnIndexes[i] == -1) {
+						rowKeys.setDataPoint(i, null, DataType.StringData, _isAscending[i]);
+					} else {
+						rowKeys.setDataPoint(i, row, _inputColumnIndexes[i], inputColumnTypes[_inputColumnIndexes[i]], _isAscending[i]);
+					}
 				}
 				_indexDataList.add(rowKeys);
 				indexEntryCount++;
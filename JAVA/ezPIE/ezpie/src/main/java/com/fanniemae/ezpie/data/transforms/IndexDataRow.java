@@ -15,6 +15,7 @@ import java.math.BigDecimal;
 import java.util.Date;
 
 import com.fanniemae.ezpie.common.PieException;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 //@formatter:off
@@ -75,6 +76,27 @@ class IndexDataRow implements Comparable<IndexDataRow> {
 		}
 	}
 
+	public void setDataPoint(int index, RowCursor row, int column, DataType dataType, boolean isAscending) {
+		if (row.isNull(column)) {
+			setDataPoint(index, null, dataType, isAscending);
+			return;
+		}
+		switch (dataType) {
+		case IntegerData:
+			_dataRowKeys[index] = new IndexDataPoint(row.getInt(column), isAscending);
+			break;
+		case LongData:
+			_dataRowKeys[index] = new IndexDataPoint(row.getLong(column), isAscending);
+			break;
+		case DoubleData:
+			_dataRowKeys[index] = new IndexDataPoint(row.getDouble(column), isAscending);
+			break;
+		default:
+			setDataPoint(index, row.getObject(column), dataType, isAscending);
+			break;
+		}
+	}
+
 	public int getStreamChannel() {
 		return _streamChannel;
 	}
@@ -13,7 +13,6 @@ package com.fanniemae.ezpie.data.transforms;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
@@ -31,6 +30,7 @@ import com.fanniemae.ezpie.common.XmlUtilities;
 import com.fanniemae.ezpie.data.DataEngine;
 import com.fanniemae.ezpie.datafiles.DataReader;
 import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -127,10 +127,45 @@ public class Join extends DataTransform {
 
 	@Override
 	public DataStream processDataStream(DataStream inputStream, int memoryLimit) {
+		String outputFilename = FileUtilities.getRandomFilename(_session.getStagingPath(), "dat");
+		try (final DataWriter dw = new DataWriter(outputFilename, memoryLimit)) {
+			long rowCount = processDataStream(inputStream, memoryLimit, new RowConsumer() {
+				@Override
+				public void setDataColumns(String[][] schema) throws IOException {
+					dw.setDataColumns(schema);
+				}
+
+				@Override
+				public void writeDataRow(Object[] dataRow) throws IOException {
+					dw.writeDataRow(dataRow);
+				}
+
+				@Override
+				public void writeDataRow(RowCursor row) throws IOException {
+					dw.writeDataRow(row);
+				}
+			});
+
+			Calendar calendarExpires = Calendar.getInstance();
+			calendarExpires.add(Calendar.MINUTE, 30);
+			dw.setFullRowCount(rowCount);
+			dw.setBufferFirstRow(1);
+			dw.setBufferLastRow(rowCount);
+			dw.setBufferExpires(calendarExpires.getTime());
+			dw.setFullRowCountKnown(true);
+			dw.close();
+			return dw.getDataStream();
+		} catch (IOException ex) {
+			throw new RuntimeException("Error while writing the joined data.", ex);
+		}
+	}
+
+	@Override
+	public long processDataStream(DataStream inputStream, int memoryLimit, RowConsumer output) {
 		if (_joinType == JoinType.UNION) {
-			return unionDataStreams(inputStream, memoryLimit);
-		} 
-		return joinDataStreams(inputStream, memoryLimit);
+			return unionDataStreams(inputStream, output);
+		}
+		return joinDataStreams(inputStream, memoryLimit, output);
 	}
 
 	protected JoinType setJoinType(String join) {
@@ -193,6 +228,15 @@ public class Join extends DataTransform {
 		}
 	}
 
+	protected String[][] getFinalSchema() {
+		String[][] schema = new String[_finalColumnNames.length][2];
+		for (int i = 0; i < schema.length; i++) {
+			schema[i][0] = _finalColumnNames[i];
+			schema[i][1] = _finalDataTypes[i].toString();
+		}
+		return schema;
+	}
+
 	protected void bufferIndexData(DataReader dr, boolean isRight) {
 		List<IndexDataRow> buffer = new ArrayList<IndexDataRow>();
 		try {
@@ -223,8 +267,7 @@ public class Join extends DataTransform {
 		}
 	}
 	
-	protected DataStream joinDataStreams(DataStream inputStream, int memoryLimit) {
-		DataStream outputStream = null;
+	protected long joinDataStreams(DataStream inputStream, int memoryLimit, RowConsumer output) {
 		// Get the right side data (create new instance of data engine)
 		DataEngine de = new DataEngine(_session, _session.cachingEnabled(), _session.getCacheMinutes());
 		DataStream rightDataStream = de.getData((Element) _rightDataSource);
@@ -235,14 +278,12 @@ public class Join extends DataTransform {
 		_session.addLogMessage("", "Index Right", "Indexing the right side data.");
 		indexData = TransformFactory.getIndexTransform(_session, _rightJoinColumns);
 		DataStream rightIndexStream = indexData.processDataStream(rightDataStream, memoryLimit);
-		// Join the data and write the final file.
-		String outputFilename = FileUtilities.getRandomFilename(_session.getStagingPath(), "dat");
+		// Join the data and pass on the joined rows.
 		//@formatter:off
 		try (DataReader leftIndex = new DataReader(leftIndexStream); 
-				DataReader leftData = new DataReader(inputStream); 
+				DataReader leftData = DataReader.open(inputStream, true); 
 				DataReader rightIndex = new DataReader(rightIndexStream); 
-				DataReader rightData = new DataReader(rightDataStream);
-				DataWriter dw = new DataWriter(outputFilename, memoryLimit);) {
+				DataReader rightData = DataReader.open(rightDataStream, true);) {
             //@formatter:on
 			_leftIndexNames = leftIndex.getColumnNames();
 			_leftIndexTypes = leftIndex.getDataTypes();
@@ -254,9 +295,12 @@ public class Join extends DataTransform {
 			_rightColumnTypes = rightData.getDataTypes();
 			// Merge the two schemas (remove duplicate columns from the right side)
 			mergeSchemas();
-			dw.setDataColumns(_finalColumnNames, _finalDataTypes);
-			Object[] completeDataRow = new Object[_joinSchema.length];
-			int rowCount = 0;
+			output.setDataColumns(getFinalSchema());
+			RowCursor completeDataRow = new RowCursor(_finalDataTypes);
+			RowCursor rightSideOnlyDataRow = new RowCursor(_finalDataTypes);
+			RowCursor leftRow = leftData.createRowCursor();
+			RowCursor rightRow = rightData.createRowCursor();
+			long rowCount = 0;
 			int rightLastIndexRead = 0;
 			// Need to adjust code to work with large data sets.
 			while (!leftIndex.eof() && !rightIndex.eof()) {
@@ -264,10 +308,10 @@ public class Join extends DataTransform {
 				bufferIndexData(rightIndex, true);
 				int rightStartIndex = 0;
 				for (int left = 0; left < _leftIndexBuffer.length; left++) {
-					Object[] leftRow = leftData.getDataRowAt(_leftIndexBuffer[left].getRowStart());
-					Arrays.fill(completeDataRow, null);
-					for (int i = 0; i < leftRow.length; i++) {
-						completeDataRow[i] = leftRow[i];
+					leftData.getDataRowAt(_leftIndexBuffer[left].getRowStart(), leftRow);
+					completeDataRow.clear();
+					for (int i = 0; i < leftRow.getColumnCount(); i++) {
+						completeDataRow.copyFrom(i, leftRow, i);
 					}
 					boolean writtenRow = false;
 					boolean firstMatch = false;
@@ -283,24 +327,24 @@ public class Join extends DataTransform {
 								rightStartIndex = right;
 								firstMatch = true;
 							}
-							Object[] rightRow = rightData.getDataRowAt(_rightIndexBuffer[right].getRowStart());
+							rightData.getDataRowAt(_rightIndexBuffer[right].getRowStart(), rightRow);
 							for (int i = 0; i < _joinSchema.length; i++) {
 								if (_joinSchema[i].isRightSide()) {
-									completeDataRow[i] = rightRow[_joinSchema[i].getColumnIndex()];
+									completeDataRow.copyFrom(i, rightRow, _joinSchema[i].getColumnIndex());
 								}
 							}
-							dw.writeDataRow(completeDataRow);
+							output.writeDataRow(completeDataRow);
 							rowCount++;
 							writtenRow = true;
 						} else if ((compareValue > 0) && !_rightIndexBuffer[right].haveUsed() && ((_joinType == JoinType.RIGHTOUTERJOIN) || (_joinType == JoinType.OUTERJOIN))) {
-							Object[] rightSideOnlyDataRow = new Object[_joinSchema.length];
-							Object[] rightRow = rightData.getDataRowAt(_rightIndexBuffer[right].getRowStart());
+							rightSideOnlyDataRow.clear();
+							rightData.getDataRowAt(_rightIndexBuffer[right].getRowStart(), rightRow);
 							for (int i = 0; i < _joinSchema.length; i++) {
 								if (_joinSchema[i].isRightSide()) {
-									rightSideOnlyDataRow[i] = rightRow[i];
+									rightSideOnlyDataRow.copyFrom(i, rightRow, i);
 								}
 							}
-							dw.writeDataRow(rightSideOnlyDataRow);
+							output.writeDataRow(rightSideOnlyDataRow);
 							rowCount++;
 							writtenRow = true;
 						} else if (compareValue < 0) {
@@ -308,21 +352,21 @@ public class Join extends DataTransform {
 						}
 					}
 					if (!writtenRow && ((_joinType == JoinType.LEFTOUTERJOIN) || (_joinType == JoinType.OUTERJOIN))) {
-						dw.writeDataRow(completeDataRow);
+						output.writeDataRow(completeDataRow);
 						rowCount++;
 					}
 				}
 			}
 			if (leftIndex.eof() && (rightLastIndexRead + 1 < _rightIndexBuffer.length) && ((_joinType == JoinType.OUTERJOIN) || (_joinType == JoinType.RIGHTOUTERJOIN))) {
 				for (int right = rightLastIndexRead + 1; right < _rightIndexBuffer.length; right++) {
-					Object[] rightSideOnlyDataRow = new Object[_joinSchema.length];
-					Object[] rightRow = rightData.getDataRowAt(_rightIndexBuffer[right].getRowStart());
+					rightSideOnlyDataRow.clear();
+					rightData.getDataRowAt(_rightIndexBuffer[right].getRowStart(), rightRow);
 					for (int i = 0; i < _joinSchema.length; i++) {
 						if (_joinSchema[i].isRightSide()) {
-							rightSideOnlyDataRow[i] = rightRow[i];
+							rightSideOnlyDataRow.copyFrom(i, rightRow, i);
 						}
 					}
-					dw.writeDataRow(rightSideOnlyDataRow);
+					output.writeDataRow(rightSideOnlyDataRow);
 					rowCount++;
 				}
 			}
@@ -330,33 +374,20 @@ public class Join extends DataTransform {
 			rightIndex.close();
 			leftData.close();
 			leftIndex.close();
-
-			Calendar calendarExpires = Calendar.getInstance();
-			calendarExpires.add(Calendar.MINUTE, 30);
-			dw.setFullRowCount(rowCount);
-			dw.setBufferFirstRow(1);
-			dw.setBufferLastRow(rowCount);
-			dw.setBufferExpires(calendarExpires.getTime());
-			dw.setFullRowCountKnown(true);
-			dw.close();
-			outputStream = dw.getDataStream();
+			return rowCount;
 		} catch (Exception ex) {
 			throw new RuntimeException("Error while joining data sources.", ex);
 		}
-		return outputStream;
 	}
 	
-	protected DataStream unionDataStreams(DataStream inputStream, int memoryLimit) {
-		DataStream outputStream = null;
+	protected long unionDataStreams(DataStream inputStream, RowConsumer output) {
 		// Get the right side data (create new instance of data engine)
 		DataEngine de = new DataEngine(_session, _session.cachingEnabled(), _session.getCacheMinutes());
 		DataStream rightDataStream = de.getData((Element) _rightDataSource);
-		// Union the data and write the final file.
-		String outputFilename = FileUtilities.getRandomFilename(_session.getStagingPath(), "dat");
+		// Union the data and pass on the rows.
 		//@formatter:off
-		try (DataReader leftData = new DataReader(inputStream);
-				DataReader rightData = new DataReader(rightDataStream);
-				DataWriter dw = new DataWriter(outputFilename, memoryLimit);) {
+		try (DataReader leftData = DataReader.open(inputStream);
+				DataReader rightData = DataReader.open(rightDataStream);) {
             //@formatter:on
 			_leftColumnNames = leftData.getColumnNames();
 			_leftColumnTypes = leftData.getDataTypes();
@@ -364,48 +395,42 @@ public class Join extends DataTransform {
 			_rightColumnTypes = rightData.getDataTypes();
 			// Merge the two schemas (remove duplicate columns from the right side)
 			mergeSchemas();
-			dw.setDataColumns(_finalColumnNames, _finalDataTypes);
-			Object[] completeDataRow = new Object[_joinSchema.length];
-			int rowCount = 0;
+			output.setDataColumns(getFinalSchema());
+			leftData.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+			rightData.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+			RowCursor completeDataRow = new RowCursor(_finalDataTypes);
+			RowCursor leftRow = leftData.createRowCursor();
+			RowCursor rightRow = rightData.createRowCursor();
+			long rowCount = 0;
 			
 			// Write left side data first
 			while (!leftData.eof()) {
-				Object[] leftRow = leftData.getDataRow();
-				Arrays.fill(completeDataRow, null);
-				for (int i = 0; i < leftRow.length; i++) {
-					completeDataRow[i] = leftRow[i];
+				leftData.getDataRow(leftRow);
+				completeDataRow.clear();
+				for (int i = 0; i < leftRow.getColumnCount(); i++) {
+					completeDataRow.copyFrom(i, leftRow, i);
 				}
-				dw.writeDataRow(completeDataRow);
+				output.writeDataRow(completeDataRow);
 				rowCount++;
 			}
 			
 			// Write right side data next
 			while (!rightData.eof()) {
-				Object[] rightRow = rightData.getDataRow();
-				Arrays.fill(completeDataRow, null);
+				rightData.getDataRow(rightRow);
+				completeDataRow.clear();
 				for (int i = 0; i < _joinSchema.length; i++) {
 					if (_joinSchema[i].isRightSide()) {
-						completeDataRow[i] = rightRow[i];
+						completeDataRow.copyFrom(i, rightRow, i);
 					}
 				}
-				dw.writeDataRow(completeDataRow);
+				output.writeDataRow(completeDataRow);
 				rowCount++;
 			}
 			rightData.close();
 			leftData.close();
-
-			Calendar calendarExpires = Calendar.getInstance();
-			calendarExpires.add(Calendar.MINUTE, 30);
-			dw.setFullRowCount(rowCount);
-			dw.setBufferFirstRow(1);
-			dw.setBufferLastRow(rowCount);
-			dw.setBufferExpires(calendarExpires.getTime());
-			dw.setFullRowCountKnown(true);
-			dw.close();
-			outputStream = dw.getDataStream();
+			return rowCount;
 		} catch (Exception ex) {
 			throw new RuntimeException("Error during union operation of the data sources.", ex);
 		}
-		return outputStream;		
 	}
 }
@@ -37,6 +37,11 @@ public class RenameColumn extends DataTransform {
 		return dataRow;
 	}
 
+	@Override
+	public boolean isParallelSafe() {
+		return true;
+	}
+
 	@Override
 	public String[][] UpdateSchema(String[][] schema) {
 		String[] newColumnNames = StringUtilities.split(getRequiredAttribute("NewColumnNames"));
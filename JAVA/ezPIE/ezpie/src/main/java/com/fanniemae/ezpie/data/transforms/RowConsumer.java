@@ -0,0 +1,40 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.data.transforms;
+
+import java.io.IOException;
+
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
+
+/**
+ * Receives the output rows of a transform that streams them (see
+ * DataTransform.processDataStream with a consumer) instead of writing a
+ * data file, e.g. the next processing group of DataEngine. The columns
+ * are set once, before the first row.
+ *
+ * @since 2018-07-24
+ *
+ */
+
+public abstract class RowConsumer {
+
+	public abstract void setDataColumns(String[][] schema) throws IOException;
+
+	public abstract void writeDataRow(Object[] dataRow) throws IOException;
+
+	/**
+	 * The cursor is reused by the caller, consumers that keep rows copy them.
+	 */
+	public void writeDataRow(RowCursor row) throws IOException {
+		writeDataRow(row.toArray());
+	}
+}
@@ -50,7 +50,7 @@ public class SequenceColumn extends DataTransform {
 		dataRow = addDataColumn(dataRow);
 		dataRow[_outColumnIndex] = _sequenceNumber;
 		_sequenceNumber += _increment;
-		_rowsProcessed++;
+		_rowsProcessed.increment();
 		return dataRow;		
 	}
 
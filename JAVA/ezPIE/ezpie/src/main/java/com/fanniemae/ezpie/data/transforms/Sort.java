@@ -11,16 +11,29 @@
 
 package com.fanniemae.ezpie.data.transforms;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.w3c.dom.Element;
 
 import com.fanniemae.ezpie.SessionManager;
 import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.common.ExceptionUtilities;
 import com.fanniemae.ezpie.common.FileUtilities;
 import com.fanniemae.ezpie.common.PieException;
+import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.datafiles.DataReader;
 import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.ShardManifest;
+import com.fanniemae.ezpie.datafiles.ShardedDataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -32,28 +45,97 @@ import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 public class Sort extends Index {
 
+	protected long _shardRows;
+	protected String[] _shardDirectories;
+
 	public Sort(SessionManager session, Element transform) {
 		super(session, transform);
+		// The sorted rows can be written as shards of ShardRows rows, one thread per shard.
+		_shardRows = StringUtilities.toLong(getOptionalAttribute("ShardRows"), 0L);
+		_shardDirectories = StringUtilities.split(getOptionalAttribute("ShardDirectories"));
+		for (int i = 0; i < _shardDirectories.length; i++) {
+			_shardDirectories[i] = FileUtilities.formatPath(_shardDirectories[i], _session.getStagingPath(), "ShardDirectories");
+		}
+		if (_shardDirectories.length == 0) {
+			_shardDirectories = new String[] { _session.getStagingPath() };
+		}
 	}
 	
 	@Override
 	public DataStream processDataStream(DataStream inputStream, int memoryLimit) {
 		DataStream indexStream = super.processDataStream(inputStream, memoryLimit);
+		if (_shardRows > 0L) {
+			return writeSortedShards(inputStream, indexStream);
+		}
 		return writeSortedFile(inputStream, indexStream, memoryLimit);
 	}
 
+	/**
+	 * Sharded output is written by several threads, it cannot be streamed.
+	 */
+	@Override
+	public boolean isPipelined() {
+		return _shardRows <= 0L;
+	}
+
+	/**
+	 * Reads the input rows in index order and passes them on, only the input
+	 * and the index are materialized.
+	 */
+	@Override
+	public long processDataStream(DataStream inputStream, int memoryLimit, RowConsumer output) {
+		DataStream indexStream = super.processDataStream(inputStream, memoryLimit);
+		long rowCount = 0;
+		try (DataReader dr = DataReader.open(inputStream, true); DataReader drIndex = new DataReader(indexStream)) {
+			output.setDataColumns(dr.getSchema());
+			RowCursor row = dr.createRowCursor();
+			if (_indexData != null) {
+				for (IndexDataRow keys : _indexData) {
+					dr.getDataRowAt(keys.getRowStart(), row);
+					output.writeDataRow(row);
+					rowCount++;
+				}
+			} else {
+				// Merged external index files, the last index column holds the row position.
+				while (!drIndex.eof()) {
+					Object[] keys = drIndex.getDataRow();
+					dr.getDataRowAt((long) keys[_numberOfKeys], row);
+					output.writeDataRow(row);
+					rowCount++;
+				}
+			}
+			_indexDataList = null;
+			_indexData = null;
+		} catch (Exception ex) {
+			throw new PieException("Error while trying to stream the sorted rows.", ex);
+		}
+		return rowCount;
+	}
+
 
 	protected DataStream writeSortedFile(DataStream inputStream, DataStream indexStream, int memoryLimit) {
 		DataStream outputStream = null;
 		String sortedFilename = FileUtilities.getRandomFilename(_session.getStagingPath());
 		int rowCount = 0;
-		try (DataReader dr = new DataReader(inputStream); DataReader drIndex = new DataReader(indexStream); DataWriter dw = new DataWriter(sortedFilename, memoryLimit)) {
+		try (DataReader dr = DataReader.open(inputStream, true); DataReader drIndex = new DataReader(indexStream); DataWriter dw = new DataWriter(sortedFilename, memoryLimit)) {
 			String[] columnNames = dr.getColumnNames();
 			DataType[] columnTypes = dr.getDataTypes();
 			dw.setDataColumns(columnNames, columnTypes);
-			for (IndexDataRow keys : _indexData) {
-				dw.writeDataRow(dr.getDataRowAt(keys.getRowStart()));
-				rowCount++;
+			RowCursor row = dr.createRowCursor();
+			if (_indexData != null) {
+				for (IndexDataRow keys : _indexData) {
+					dr.getDataRowAt(keys.getRowStart(), row);
+					dw.writeDataRow(row);
+					rowCount++;
+				}
+			} else {
+				// Merged external index files, the last index column holds the row position.
+				while (!drIndex.eof()) {
+					Object[] keys = drIndex.getDataRow();
+					dr.getDataRowAt((long) keys[_numberOfKeys], row);
+					dw.writeDataRow(row);
+					rowCount++;
+				}
 			}
 			Calendar calendarExpires = Calendar.getInstance();
 			calendarExpires.add(Calendar.MINUTE, 30);
@@ -73,4 +155,110 @@ public class Sort extends Index {
 		}
 		return outputStream;
 	}
+
+	/**
+	 * Each shard holds a consecutive slice of the sorted index and is written
+	 * by its own thread with its own reader of the input. When the index was
+	 * merged from external index files, each thread also reads its own slice
+	 * of the merged index stream.
+	 */
+	protected DataStream writeSortedShards(final DataStream inputStream, final DataStream indexStream) {
+		final IndexDataRow[] indexData = _indexData;
+		String manifestFilename = FileUtilities.getRandomFilename(_session.getStagingPath(), "dat");
+		Calendar calendarExpires = Calendar.getInstance();
+		calendarExpires.add(Calendar.MINUTE, 30);
+
+		List<ShardedDataWriter> writers = new ArrayList<>();
+		ShardManifest manifest = new ShardManifest();
+		ExecutorService pool = null;
+		try {
+			String[][] schema;
+			try (DataReader dr = DataReader.open(inputStream)) {
+				schema = dr.getSchema();
+			}
+			long rowCount;
+			if (indexData != null) {
+				rowCount = indexData.length;
+			} else {
+				try (DataReader drIndex = new DataReader(indexStream)) {
+					rowCount = drIndex.getFullRowCount();
+				}
+			}
+			int shardCount = (int) Math.max(1L, (rowCount + _shardRows - 1L) / _shardRows);
+			pool = Executors.newFixedThreadPool(Math.min(shardCount, Runtime.getRuntime().availableProcessors()));
+			List<Future<Object>> parts = new ArrayList<>();
+			for (int shard = 0; shard < shardCount; shard++) {
+				final long firstRow = Math.min(rowCount, shard * _shardRows);
+				final long endRow = Math.min(rowCount, firstRow + _shardRows);
+				final ShardedDataWriter sw = new ShardedDataWriter(null, new String[] { _shardDirectories[shard % _shardDirectories.length] }, 0L, 0L);
+				sw.setDataColumns(schema);
+				sw.setBufferExpires(calendarExpires.getTime());
+				writers.add(sw);
+				parts.add(pool.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						try (DataReader dr = DataReader.open(inputStream, true); ShardedDataWriter writer = sw) {
+							RowCursor row = dr.createRowCursor();
+							if (indexData != null) {
+								for (int i = (int) firstRow; i < endRow; i++) {
+									dr.getDataRowAt(indexData[i].getRowStart(), row);
+									writer.writeDataRow(row);
+								}
+							} else if (firstRow < endRow) {
+								// Merged external index files, the last index column holds the row position.
+								try (DataReader drIndex = new DataReader(indexStream)) {
+									Object[] keys = drIndex.getDataRowByRowNumber(firstRow + 1L);
+									for (long i = firstRow; i < endRow; i++) {
+										if (i > firstRow) {
+											keys = drIndex.getDataRow();
+										}
+										dr.getDataRowAt((long) keys[_numberOfKeys], row);
+										writer.writeDataRow(row);
+									}
+								}
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Object> part : parts) {
+				part.get();
+			}
+			for (ShardedDataWriter sw : writers) {
+				manifest.addShards(sw.getManifest());
+			}
+			manifest.write(manifestFilename);
+
+			DataStream outputStream;
+			try (DataReader dr = DataReader.open(manifestFilename)) {
+				outputStream = new DataStream(manifestFilename, dr.getHeader(), dr.getSchema());
+			}
+			_indexDataList = null;
+			_indexData = null;
+			_session.addLogMessage("", "Data Returned", String.format("%,d rows in %,d shards (%,d bytes)", manifest.getRowCount(), manifest.getShardCount(), manifest.getBytes()));
+			return outputStream;
+		} catch (ExecutionException ex) {
+			deleteShards(writers);
+			throw new PieException("Error while trying to write the sorted shards. " + ex.getCause().getMessage(), ex.getCause());
+		} catch (Exception ex) {
+			deleteShards(writers);
+			throw new PieException("Error while trying to write the sorted shards.", ex);
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+		}
+	}
+
+	protected void deleteShards(List<ShardedDataWriter> writers) {
+		for (ShardedDataWriter sw : writers) {
+			try {
+				sw.close();
+			} catch (IOException ex) {
+				ExceptionUtilities.goSilent(ex);
+			}
+			sw.getManifest().deleteShards();
+		}
+	}
 }
@@ -36,6 +36,14 @@ import com.fanniemae.ezpie.common.StringUtilities;
 public class TimespanColumn extends DataTransform {
 
 	protected TransformDateValue _formatDateValue;
+	protected String _timePeriod;
+	// The date value classes keep a Calendar, each thread processing rows gets its own instance.
+	protected ThreadLocal<TransformDateValue> _threadDateValues = new ThreadLocal<TransformDateValue>() {
+		@Override
+		protected TransformDateValue initialValue() {
+			return inializeFormatClass(_timePeriod);
+		}
+	};
 
 	protected int _dayOfWeekShift = 0;
 	protected Calendar _fiscalStart = Calendar.getInstance();
@@ -104,7 +112,14 @@ public class TimespanColumn extends DataTransform {
 		// Populate the arrays with the server culture day and month names.
 		populateNameArrays(sCulture);
 
+		_timePeriod = sTimePeriod;
 		_formatDateValue = inializeFormatClass(sTimePeriod);
+		_threadDateValues.set(_formatDateValue);
+	}
+
+	@Override
+	public boolean isParallelSafe() {
+		return true;
 	}
 
 	@Override
@@ -113,8 +128,8 @@ public class TimespanColumn extends DataTransform {
 			return dataRow;
 		}
 		dataRow = addDataColumn(dataRow);
-		dataRow[_outColumnIndex] = _formatDateValue.transform((Date) dataRow[_sourceColumnIndex]);
-		_rowsProcessed++;
+		dataRow[_outColumnIndex] = _threadDateValues.get().transform((Date) dataRow[_sourceColumnIndex]);
+		_rowsProcessed.increment();
 		return dataRow;
 	}
 
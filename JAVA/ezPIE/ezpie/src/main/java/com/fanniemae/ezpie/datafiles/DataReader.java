@@ -11,11 +11,23 @@
 
 package com.fanniemae.ezpie.datafiles;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -25,12 +37,19 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
+import com.fanniemae.ezpie.common.ArrayUtilities;
 import com.fanniemae.ezpie.common.CryptoUtilities;
 import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.common.DataUtilities;
+import com.fanniemae.ezpie.common.ExceptionUtilities;
 import com.fanniemae.ezpie.common.FileUtilities;
 import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.common.XmlUtilities;
 import com.fanniemae.ezpie.datafiles.lowlevel.BinaryInputStream;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockCipher;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockCompressor;
+import com.fanniemae.ezpie.datafiles.lowlevel.CompressedBlockInputStream;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataRow;
@@ -45,9 +64,17 @@ import com.fanniemae.ezpie.datafiles.lowlevel.FieldLong;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldObject;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldReadWrite;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldString;
+import com.fanniemae.ezpie.datafiles.lowlevel.FieldStringDictionary;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldStringEncrypted;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldUUID;
+import com.fanniemae.ezpie.datafiles.lowlevel.LazyDataRow;
+import com.fanniemae.ezpie.datafiles.lowlevel.MappedDataInputStream;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.ZoneMap;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.ColumnTypes;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -64,20 +91,102 @@ public class DataReader extends DataFormat {
 	protected DataReader _drSourceData = null;
 	protected long _endOfDataBlock;
 	protected String[][] _dataSchema = new String[][] {};
+	protected String[] _columnEncodings;
+	protected Map<Integer, String[]> _stringDictionaries = new HashMap<>();
+	protected BlockCipher _blockCipher = null;
+
+	// Root schema attributes, kept so cached footers can recreate the block cipher.
+	protected String _encryption = "";
+	protected long _encryptionNonce = 0L;
+	protected byte[] _keyCheck = null;
+
+	// Parsed footers of recently opened data files. The key includes the modification time and length, so rewritten files are parsed again.
+	protected static final int HEADER_CACHE_SIZE = 256;
+	protected static final Map<String, CachedFooter> _headerCache = Collections.synchronizedMap(new LinkedHashMap<String, CachedFooter>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedFooter> eldest) {
+			return size() > HEADER_CACHE_SIZE;
+		}
+	});
+	protected String _headerCacheKey = null;
+	protected boolean _footerFromCache = false;
+
+	// Dense row offset side file, opened on first use.
+	protected MappedDataInputStream _rowOffsets = null;
+	protected long _rowOffsetsStart = 0L;
+	protected boolean _rowOffsetsChecked = false;
+
+	// Column projection, null when all columns are returned.
+	protected boolean[] _projectedColumns = null;
+
+	// Columnar layout - row group directory and the decoded values of the current row group.
+	protected int[] _rowGroupSizes;
+	protected long[] _rowGroupFirstRows;
+	protected long[][] _columnChunkOffsets;
+	protected Object[][] _rowGroupValues;
+	protected int _currentRowGroup = -1;
+	protected long _rowOrdinal = 0L;
+	protected long _columnarRowCount = 0L;
+
+	// Row files start a block (date bases and zone map) at every index entry.
+	protected long[] _blockStarts;
+
+	// Compact encoding - row null bitmap and the date bases of each date block.
+	protected byte[] _nullBitmap;
+	protected int[] _dateColumns = new int[0];
+	protected long[][] _dateBases;
+	protected long _dateBlockStart = -1L;
+	protected long _dateBlockEnd = -1L;
+
+	// Zone maps - sequential reads skip the blocks the block filter rules out.
+	protected ZoneMap _zoneMap = null;
+	protected BlockFilter _blockFilter = null;
+	protected long _zoneBlockStart = -1L;
+	protected long _zoneBlockEnd = -1L;
+	protected int _checkedRowGroup = -1;
+	protected long _skippedRowCount = 0L;
+
+	// Row filter - asked about each row of a row file through a lazily decoded view of it.
+	protected RowFilter _rowFilter = null;
+	protected LazyRow _lazyRow = null;
+	protected long _keptRowPosition = -1L;
+
+	// Sequential scan mode - rows decoded ahead of the caller by a background thread.
+	public static final int DEFAULT_READ_AHEAD_BATCHES = 4;
+	protected static final int READ_AHEAD_BATCH_ROWS = 1024;
+	protected ReadAhead _readAhead = null;
+
+	// Block range readers (see openRanges) stop at this position or row ordinal, -1 for the end of the data.
+	protected long _rangeEnd = -1L;
 
 	public DataReader(DataStream ds) throws IOException {
+		this(ds, false);
+	}
+
+	/**
+	 * Memory mapped readers are intended for random access (getDataRowAt,
+	 * moveToRow). Each seek is only a position change instead of a new buffered
+	 * stream. Memory based data streams ignore the memoryMapped flag.
+	 */
+	public DataReader(DataStream ds, boolean memoryMapped) throws IOException {
 		if (ds.IsMemory()) {
 			_bis = new BinaryInputStream(ds.getMemorystream());
 		} else {
 			_filename = ds.getFilename();
-			_bis = new BinaryInputStream(_filename);
+			_bis = new BinaryInputStream(_filename, memoryMapped);
 		}
 		initialize();
 	}
 
 	public DataReader(String filename) throws IOException {
+		this(filename, false);
+	}
+
+	public DataReader(String filename, boolean memoryMapped) throws IOException {
 		_filename = filename;
-		_bis = new BinaryInputStream(filename);
+		_bis = new BinaryInputStream(filename, memoryMapped);
 		initialize();
 	}
 
@@ -86,9 +195,38 @@ public class DataReader extends DataFormat {
 		initialize();
 	}
 
+	/**
+	 * Opens a data file, or the shards of a sharded data set as one data set
+	 * when the file is a shard manifest (see ShardedDataWriter).
+	 */
+	public static DataReader open(DataStream ds) throws IOException {
+		return open(ds, false);
+	}
+
+	public static DataReader open(DataStream ds, boolean memoryMapped) throws IOException {
+		if (!ds.IsMemory() && ShardManifest.isManifest(ds.getFilename())) {
+			return new ShardedDataReader(ds.getFilename(), memoryMapped);
+		}
+		return new DataReader(ds, memoryMapped);
+	}
+
+	public static DataReader open(String filename) throws IOException {
+		if (ShardManifest.isManifest(filename)) {
+			return new ShardedDataReader(filename);
+		}
+		return new DataReader(filename);
+	}
+
 	@Override
 	public void close() throws Exception {
+		if (_readAhead != null) {
+			_readAhead.stop();
+			_readAhead = null;
+		}
 		if ((_bis != null) && (!_disposed)) {
+			if (_rowOffsets != null) {
+				_rowOffsets.close();
+			}
 			_bis.close();
 			_disposed = true;
 		}
@@ -98,14 +236,287 @@ public class DataReader extends DataFormat {
 	}
 
 	public boolean eof() throws IOException {
-		return _bis.getPosition() >= _endOfDataBlock;
+		if (_readAhead != null) {
+			return _readAhead.eof();
+		}
+		return endOfData();
+	}
+
+	/**
+	 * Sequential scan mode. A background thread reads and decodes the next
+	 * batches of rows into a bounded queue, so eof/getDataRow do not wait on
+	 * the disk. Random access (getDataRowAt, moveToRow, getDataRowByRowNumber)
+	 * turns the read-ahead off and continues from the first row the caller has
+	 * not read yet. Zero or less turns it off.
+	 */
+	public void setReadAhead(int batches) throws IOException {
+		stopReadAhead();
+		if (batches > 0) {
+			_readAhead = new ReadAhead(batches);
+		}
+	}
+
+	public boolean isReadAhead() {
+		return _readAhead != null;
+	}
+
+	protected void stopReadAhead() throws IOException {
+		if (_readAhead == null) {
+			return;
+		}
+		ReadAhead readAhead = _readAhead;
+		_readAhead = null;
+		readAhead.stop();
+
+		long[] state = readAhead.nextRowState();
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			_rowOrdinal = state[0];
+		} else {
+			_bis.seek(state[0]);
+		}
+		_currentRowNumber = state[1];
+		_skippedRowCount = state[2];
+		_zoneBlockStart = -1L;
+		_zoneBlockEnd = -1L;
+		_checkedRowGroup = -1;
+	}
+
+	protected boolean endOfData() throws IOException {
+		while (true) {
+			if ((_blockFilter != null) && (_zoneMap != null)) {
+				skipFilteredBlocks();
+			}
+			if (_dataFileLayout == DataFileLayout.Columnar) {
+				return _rowOrdinal >= ((_rangeEnd == -1L) ? _columnarRowCount : _rangeEnd);
+			}
+			long position = _bis.getPosition();
+			if (position >= ((_rangeEnd == -1L) ? _endOfDataBlock : _rangeEnd)) {
+				return true;
+			} else if ((_rowFilter == null) || (position == _keptRowPosition)) {
+				return false;
+			}
+
+			// The row is read again from its start when it is kept.
+			if (_lazyRow == null) {
+				_lazyRow = new LazyRow();
+			}
+			_lazyRow.begin();
+			if (!_rowFilter.skipRow(_lazyRow)) {
+				_bis.rewind();
+				_keptRowPosition = position;
+				return false;
+			}
+			_lazyRow.skipRest();
+			_currentRowNumber++;
+			_skippedRowCount++;
+		}
+	}
+
+	/**
+	 * Opens up to count readers over disjoint, consecutive block ranges of
+	 * the data. Read in list order they return every row exactly once, so each
+	 * reader can be handed to its own thread.
+	 */
+	public static List<DataReader> openRanges(DataStream ds, int count) throws IOException {
+		List<DataReader> readers = new ArrayList<>();
+		try {
+			DataReader first = open(ds);
+			readers.add(first);
+			int blocks = first.getBlockCount();
+			int ranges = Math.max(1, Math.min(count, blocks));
+			for (int i = 1; i < ranges; i++) {
+				readers.add(open(ds));
+			}
+			for (int i = 0; (i < ranges) && (blocks > 0); i++) {
+				readers.get(i).setBlockRange((int) ((long) blocks * i / ranges), (int) ((long) blocks * (i + 1) / ranges));
+			}
+		} catch (IOException ex) {
+			for (DataReader reader : readers) {
+				try {
+					reader.close();
+				} catch (Exception closeEx) {
+					ExceptionUtilities.goSilent(closeEx);
+				}
+			}
+			throw ex;
+		}
+		return readers;
+	}
+
+	/**
+	 * Row files have a block at the start of the data and at each index
+	 * entry, the blocks of columnar files are the row groups.
+	 */
+	public int getBlockCount() {
+		return (_dataFileLayout == DataFileLayout.Columnar) ? _rowGroupSizes.length : _blockStarts.length;
+	}
+
+	/**
+	 * Limits sequential reads to the blocks from firstBlock up to, but not
+	 * including, endBlock.
+	 */
+	public void setBlockRange(int firstBlock, int endBlock) throws IOException {
+		int blocks = getBlockCount();
+		if ((firstBlock < 0) || (endBlock > blocks) || (firstBlock > endBlock)) {
+			throw new IOException(String.format("Block range %d to %d is outside of the %d data file blocks.", firstBlock, endBlock, blocks));
+		}
+		int readAheadBatches = (_readAhead == null) ? 0 : _readAhead.getCapacity();
+		stopReadAhead();
+
+		long firstOrdinal;
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			firstOrdinal = (firstBlock < blocks) ? _rowGroupFirstRows[firstBlock] : _columnarRowCount;
+			_rowOrdinal = firstOrdinal;
+			_rangeEnd = (endBlock < blocks) ? _rowGroupFirstRows[endBlock] : _columnarRowCount;
+		} else {
+			if (firstBlock == blocks) {
+				firstOrdinal = _lastRow - _firstRow + 1L;
+				_bis.seek(_endOfDataBlock);
+			} else {
+				firstOrdinal = (firstBlock == 0) ? 0L : _indexBlock.get(firstBlock - 1).getRowNumber();
+				_bis.seek(_blockStarts[firstBlock]);
+			}
+			_rangeEnd = (endBlock < blocks) ? _blockStarts[endBlock] : _endOfDataBlock;
+		}
+		_currentRowNumber = _firstRow - 1L + firstOrdinal;
+		_zoneBlockStart = -1L;
+		_zoneBlockEnd = -1L;
+		_checkedRowGroup = -1;
+		setReadAhead(readAheadBatches);
+	}
+
+	/**
+	 * Limits the values returned by getDataRow to the named columns. The row
+	 * arrays keep their full width, columns that are not projected are null.
+	 * Columnar data files skip the other column chunks entirely.
+	 */
+	public void setColumnProjection(String[] columnNames) throws IOException {
+		int readAheadBatches = (_readAhead == null) ? 0 : _readAhead.getCapacity();
+		stopReadAhead();
+		try {
+			applyColumnProjection(columnNames);
+		} finally {
+			setReadAhead(readAheadBatches);
+		}
+	}
+
+	protected void applyColumnProjection(String[] columnNames) {
+		_currentRowGroup = -1;
+		if ((columnNames == null) || (columnNames.length == 0)) {
+			_projectedColumns = null;
+			return;
+		}
+
+		String[] fileColumns = _dataRow.getColumnNames();
+		_projectedColumns = new boolean[fileColumns.length];
+		for (String columnName : columnNames) {
+			for (int i = 0; i < fileColumns.length; i++) {
+				if (fileColumns[i].equalsIgnoreCase(columnName)) {
+					_projectedColumns[i] = true;
+				}
+			}
+		}
 	}
 
 	public String getFilename() {
 		return _filename;
 	}
 
+	// Index, data end and columns of the file, used by DataWriter.openForAppend.
+	protected List<IndexEntry> getIndexEntries() {
+		return _indexBlock;
+	}
+
+	protected long getIndexStart() {
+		return _indexStart;
+	}
+
+	protected DataRow getSchemaRow() {
+		return _dataRow;
+	}
+
+	/**
+	 * Per block minimum, maximum and null count of each column. Null for data
+	 * files written before zone maps were added.
+	 */
+	public ZoneMap getZoneMap() {
+		return _zoneMap;
+	}
+
+	/**
+	 * While reading sequentially (eof/getDataRow), blocks the filter rules out
+	 * are skipped without being read or decompressed. The filter is only asked
+	 * about blocks the reader enters at their first row.
+	 */
+	public void setBlockFilter(BlockFilter filter) throws IOException {
+		int readAheadBatches = (_readAhead == null) ? 0 : _readAhead.getCapacity();
+		stopReadAhead();
+		_blockFilter = filter;
+		_zoneBlockStart = -1L;
+		_zoneBlockEnd = -1L;
+		_checkedRowGroup = -1;
+		setReadAhead(readAheadBatches);
+	}
+
+	/**
+	 * While reading sequentially (eof/getDataRow), rows of row files the
+	 * filter rules out are skipped. The filter decodes only the columns it
+	 * asks for, the other values are skipped by their length. Columnar files
+	 * ignore the row filter.
+	 */
+	public void setRowFilter(RowFilter filter) throws IOException {
+		int readAheadBatches = (_readAhead == null) ? 0 : _readAhead.getCapacity();
+		stopReadAhead();
+		_rowFilter = filter;
+		_keptRowPosition = -1L;
+		setReadAhead(readAheadBatches);
+	}
+
+	public long getSkippedRowCount() {
+		return _skippedRowCount;
+	}
+
+	/**
+	 * Row number of the last row read or skipped, the row number before the
+	 * next row.
+	 */
+	protected long getCurrentRowNumber() {
+		return (_readAhead != null) ? _readAhead.nextRowState()[1] : _currentRowNumber;
+	}
+
+	protected void skipFilteredBlocks() throws IOException {
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			while (_rowOrdinal < _columnarRowCount) {
+				int group = Arrays.binarySearch(_rowGroupFirstRows, _rowOrdinal);
+				group = (group < 0) ? -group - 2 : group;
+				if ((group == _checkedRowGroup) || (_rowOrdinal != _rowGroupFirstRows[group]) || !_blockFilter.skipBlock(_zoneMap, group)) {
+					_checkedRowGroup = group;
+					return;
+				}
+				_rowOrdinal += _rowGroupSizes[group];
+				_currentRowNumber += _rowGroupSizes[group];
+				_skippedRowCount += _rowGroupSizes[group];
+			}
+			return;
+		}
+
+		long position = _bis.getPosition();
+		while ((position < _endOfDataBlock) && ((position < _zoneBlockStart) || (position >= _zoneBlockEnd))) {
+			int block = findBlock(position);
+			_zoneBlockStart = _blockStarts[block];
+			_zoneBlockEnd = (block + 1 < _blockStarts.length) ? _blockStarts[block + 1] : _endOfDataBlock;
+			if ((position != _zoneBlockStart) || !_blockFilter.skipBlock(_zoneMap, block)) {
+				return;
+			}
+			position = _zoneBlockEnd;
+			_bis.seek(position);
+			_currentRowNumber += _zoneMap.getRowCount(block);
+			_skippedRowCount += _zoneMap.getRowCount(block);
+		}
+	}
+
 	public DataRow getDataRowAndSchemaAt(long offSet) throws IOException {
+		stopReadAhead();
 		_bis.seek(offSet);
 		return getDataRowAndSchema();
 	}
@@ -119,37 +530,85 @@ public class DataReader extends DataFormat {
 	}
 
 	public void moveToRow(long rowNumber) throws IOException {
+		stopReadAhead();
 		rowNumber = (rowNumber <= 0L) ? 1L : rowNumber;
 
-		_currentRowNumber = _firstRow - 1L;
 		if ((rowNumber > _fullRowCount) || (rowNumber > _lastRow)) {
-			_bis.seek(_endOfDataBlock);
+			if (_dataFileLayout == DataFileLayout.Columnar) {
+				_rowOrdinal = _columnarRowCount;
+			} else {
+				_bis.seek(_endOfDataBlock);
+			}
 			_currentRowNumber = _lastRow;
-		} else if (rowNumber == 1L) {
-			_bis.seek(_startOfDataBlock);
-		} else if (_indexBlock.size() > 0) {
-			long lRowNum = _firstRow - 1L;
-			long lPosition = _startOfDataBlock;
-			int iLength = _indexBlock.size();
-			for (int i = 0; i < iLength; i++) {
-				if (_indexBlock.get(i).getRowNumber() + _firstRow - 1L < rowNumber) {
-					lRowNum = _indexBlock.get(i).getRowNumber() + _firstRow - 1L;
-					lPosition = _indexBlock.get(i).getOffSet();
+			return;
+		}
+		seekToRowOrdinal((rowNumber == 1L) ? 0L : rowNumber - _firstRow + 1L);
+	}
+
+	/**
+	 * Returns the row with the given row number (first row is _firstRow).
+	 * Uses the row offset side file when there is one, otherwise the nearest
+	 * index entry.
+	 */
+	public Object[] getDataRowByRowNumber(long rowNumber) throws IOException {
+		stopReadAhead();
+		seekToRowOrdinal(rowNumber - _firstRow);
+		return getDataRow();
+	}
+
+	protected void seekToRowOrdinal(long ordinal) throws IOException {
+		_currentRowNumber = _firstRow - 1L + ordinal;
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			_rowOrdinal = ordinal;
+			return;
+		}
+
+		if (openRowOffsetFile() && (_rowOffsetsStart + ordinal * 8L + 8L <= _rowOffsets.getLength())) {
+			_rowOffsets.seek(_rowOffsetsStart + ordinal * 8L);
+			_bis.seek(_rowOffsets.readLong());
+			return;
+		}
+
+		// Binary search for the last index entry at or before the row.
+		int low = 0;
+		int high = _indexBlock.size() - 1;
+		int entry = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (_indexBlock.get(mid).getRowNumber() <= ordinal) {
+				entry = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		long rowOrdinal = (entry == -1) ? 0L : _indexBlock.get(entry).getRowNumber();
+		_bis.seek((entry == -1) ? _startOfDataBlock : _indexBlock.get(entry).getOffSet());
+		_currentRowNumber = _firstRow - 1L + rowOrdinal;
+		// Row and block filters do not apply, every row counts.
+		while ((_bis.getPosition() < _endOfDataBlock) && (rowOrdinal < ordinal)) {
+			skipDataRow();
+			rowOrdinal++;
+		}
+	}
+
+	protected boolean openRowOffsetFile() throws IOException {
+		if (!_rowOffsetsChecked) {
+			_rowOffsetsChecked = true;
+			String rowOffsetFilename = getRowOffsetFilename(_filename);
+			if (StringUtilities.isNotNullOrEmpty(_filename) && FileUtilities.isValidFile(rowOffsetFilename)) {
+				_rowOffsets = new MappedDataInputStream(rowOffsetFilename);
+				// Ignore side files left over from an older copy of the data file.
+				if (_fingerPrint.equals(_rowOffsets.readUTF())) {
+					_rowOffsetsStart = _rowOffsets.getPosition();
 				} else {
-					break;
+					_rowOffsets.close();
+					_rowOffsets = null;
 				}
 			}
-			_currentRowNumber = lRowNum;
-			_bis.seek(lPosition);
-			while (!eof() && (_currentRowNumber < rowNumber)) {
-				skipDataRow();
-			}
-		} else {
-			while (!eof() && (_currentRowNumber < rowNumber)) {
-				skipDataRow();
-				// getRowValues();
-			}
 		}
+		return _rowOffsets != null;
 	}
 
 	public void skipDataRow(long numberOfRows) throws IOException {
@@ -159,34 +618,269 @@ public class DataReader extends DataFormat {
 	}
 
 	public void skipDataRow() throws IOException {
+		if (_readAhead != null) {
+			_readAhead.next();
+			return;
+		}
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			_rowOrdinal++;
+			_currentRowNumber++;
+			return;
+		}
+		if (isCompactEncoding()) {
+			readCompactDataRow(null);
+			_currentRowNumber++;
+			return;
+		}
 		// Just advancing the file pointer, no need to load the values.
 		for (int i = 0; i < _dataRow.getColumnCount(); i++) {
 			if (_dataRow.getColumnType(i) == ColumnTypes.DataValue) {
-				_readMethods[i].Read();
+				_readMethods[i].Skip();
 			}
 		}
 		_currentRowNumber++;
 	}
 
+	/**
+	 * For columnar data files the position is the row ordinal returned by
+	 * getPosition, for row data files it is the byte offset of the row.
+	 */
 	public Object[] getDataRowAt(long position) throws IOException {
-		_bis.seek(position);
+		stopReadAhead();
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			_rowOrdinal = position;
+		} else {
+			_bis.seek(position);
+		}
 		return getDataRow();
 	}
 
 	public Object[] getDataRow() throws IOException {
+		if (_readAhead != null) {
+			return _readAhead.next();
+		}
+		return readDataRow();
+	}
+
+	protected Object[] readDataRow() throws IOException {
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			return getColumnarDataRow();
+		}
+
 		int length = _dataRow.getColumnCount();
 		Object[] aData = new Object[length];
+		if (isCompactEncoding()) {
+			readCompactDataRow(aData);
+			_currentRowNumber++;
+			return aData;
+		}
 		for (int i = 0; i < length; i++) {
 			if (_dataRow.getColumnType(i) == ColumnTypes.GlobalValue) {
 				aData[i] = _dataRow.getValue(i);
-			} else {
+			} else if (_projectedColumns == null || _projectedColumns[i]) {
 				aData[i] = _readMethods[i].Read();
+			} else {
+				_readMethods[i].Skip();
 			}
 		}
 		_currentRowNumber++;
 		return aData;
 	}
 
+	/**
+	 * Reads the null bitmap and the non-null values of the current row. When
+	 * aData and row are null the values are only skipped.
+	 */
+	protected void readCompactDataRow(Object[] aData) throws IOException {
+		readCompactDataRow(aData, null);
+	}
+
+	protected void readCompactDataRow(Object[] aData, RowCursor row) throws IOException {
+		if (_dateColumns.length > 0) {
+			long position = _bis.getPosition();
+			if ((position < _dateBlockStart) || (position >= _dateBlockEnd)) {
+				selectDateBlock(position);
+			}
+		}
+
+		_bis.readFully(_nullBitmap);
+		int length = _dataRow.getColumnCount();
+		int bit = 0;
+		for (int i = 0; i < length; i++) {
+			if (_dataRow.getColumnType(i) == ColumnTypes.GlobalValue) {
+				if (aData != null) {
+					aData[i] = _dataRow.getValue(i);
+				} else if (row != null) {
+					row.setObject(i, _dataRow.getValue(i));
+				}
+				continue;
+			}
+			boolean isNull = (_nullBitmap[bit >> 3] & (1 << (bit & 7))) != 0;
+			bit++;
+			if (isNull) {
+				if (row != null) {
+					row.setNull(i);
+				}
+				continue;
+			} else if ((aData == null && row == null) || ((_projectedColumns != null) && !_projectedColumns[i])) {
+				_readMethods[i].SkipValue();
+				if (row != null) {
+					row.setNull(i);
+				}
+			} else if (row != null) {
+				_readMethods[i].ReadValue(row, i);
+			} else {
+				aData[i] = _readMethods[i].ReadValue();
+			}
+		}
+	}
+
+	protected void selectDateBlock(long position) {
+		int block = findBlock(position);
+		_dateBlockStart = _blockStarts[block];
+		_dateBlockEnd = (block + 1 < _blockStarts.length) ? _blockStarts[block + 1] : Long.MAX_VALUE;
+		setDateBases(block);
+	}
+
+	protected int findBlock(long position) {
+		int block = Arrays.binarySearch(_blockStarts, position);
+		// Empty blocks share their start with the next block, use the last one.
+		if (block >= 0) {
+			while ((block + 1 < _blockStarts.length) && (_blockStarts[block + 1] == position)) {
+				block++;
+			}
+		} else {
+			block = Math.max(0, -block - 2);
+		}
+		return block;
+	}
+
+	protected void setDateBases(int block) {
+		for (int i = 0; i < _dateColumns.length; i++) {
+			((FieldDate) _readMethods[_dateColumns[i]]).setBase(_dateBases[block][i]);
+		}
+	}
+
+	/**
+	 * Reads the next row into a reusable cursor (see createRowCursor). Integer,
+	 * long, double and date values are not boxed.
+	 */
+	public void getDataRow(RowCursor row) throws IOException {
+		int length = _dataRow.getColumnCount();
+		if (_readAhead != null) {
+			Object[] values = _readAhead.next();
+			for (int i = 0; i < length; i++) {
+				row.setObject(i, values[i]);
+			}
+			return;
+		}
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			int groupRow = locateColumnarRow();
+			for (int i = 0; i < length; i++) {
+				if (_dataRow.getColumnType(i) == ColumnTypes.GlobalValue) {
+					row.setObject(i, _dataRow.getValue(i));
+				} else if (_rowGroupValues[i] != null) {
+					row.setObject(i, _rowGroupValues[i][groupRow]);
+				} else {
+					row.setNull(i);
+				}
+			}
+			_rowOrdinal++;
+		} else if (isCompactEncoding()) {
+			readCompactDataRow(null, row);
+		} else {
+			for (int i = 0; i < length; i++) {
+				if (_dataRow.getColumnType(i) == ColumnTypes.GlobalValue) {
+					row.setObject(i, _dataRow.getValue(i));
+					continue;
+				}
+				if ((_projectedColumns != null) && !_projectedColumns[i]) {
+					_readMethods[i].Skip();
+					row.setNull(i);
+				} else {
+					_readMethods[i].Read(row, i);
+				}
+			}
+		}
+		_currentRowNumber++;
+	}
+
+	public void getDataRowAt(long position, RowCursor row) throws IOException {
+		stopReadAhead();
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			_rowOrdinal = position;
+		} else {
+			_bis.seek(position);
+		}
+		getDataRow(row);
+	}
+
+	public RowCursor createRowCursor() {
+		return new RowCursor(_dataRow.getDataTypes());
+	}
+
+	protected int locateColumnarRow() throws IOException {
+		if (_rowOrdinal >= _columnarRowCount) {
+			throw new IOException("Attempted to read past the end of the data.");
+		}
+
+		int group = _currentRowGroup;
+		if ((group < 0) || (_rowOrdinal < _rowGroupFirstRows[group]) || (_rowOrdinal >= _rowGroupFirstRows[group] + _rowGroupSizes[group])) {
+			group = Arrays.binarySearch(_rowGroupFirstRows, _rowOrdinal);
+			group = (group < 0) ? -group - 2 : group;
+			readRowGroup(group);
+		}
+		return (int) (_rowOrdinal - _rowGroupFirstRows[group]);
+	}
+
+	protected Object[] getColumnarDataRow() throws IOException {
+		int row = locateColumnarRow();
+		int length = _dataRow.getColumnCount();
+		Object[] aData = new Object[length];
+		for (int i = 0; i < length; i++) {
+			if (_dataRow.getColumnType(i) == ColumnTypes.GlobalValue) {
+				aData[i] = _dataRow.getValue(i);
+			} else if (_rowGroupValues[i] != null) {
+				aData[i] = _rowGroupValues[i][row];
+			}
+		}
+		_rowOrdinal++;
+		_currentRowNumber++;
+		return aData;
+	}
+
+	protected void readRowGroup(int group) throws IOException {
+		int rowCount = _rowGroupSizes[group];
+		if (_dateColumns.length > 0) {
+			setDateBases(group);
+		}
+		for (int i = 0; i < _rowGroupValues.length; i++) {
+			boolean projected = (_projectedColumns == null) || _projectedColumns[i];
+			if ((_dataRow.getColumnType(i) == ColumnTypes.GlobalValue) || !projected) {
+				_rowGroupValues[i] = null;
+				continue;
+			}
+			if ((_rowGroupValues[i] == null) || (_rowGroupValues[i].length < rowCount)) {
+				_rowGroupValues[i] = new Object[rowCount];
+			}
+			_bis.seek(_columnChunkOffsets[group][i]);
+			FieldReadWrite readMethod = _readMethods[i];
+			Object[] values = _rowGroupValues[i];
+			if (isCompactEncoding()) {
+				byte[] nulls = new byte[(rowCount + 7) >> 3];
+				_bis.readFully(nulls);
+				for (int row = 0; row < rowCount; row++) {
+					values[row] = ((nulls[row >> 3] & (1 << (row & 7))) != 0) ? null : readMethod.ReadValue();
+				}
+				continue;
+			}
+			for (int row = 0; row < rowCount; row++) {
+				values[row] = readMethod.Read();
+			}
+		}
+		_currentRowGroup = group;
+	}
+
 	public Object getHeaderInformation(DataFileEnums.BinaryFileInfo key) {
 		return _HeaderInformation.get(key);
 	}
@@ -204,6 +898,16 @@ public class DataReader extends DataFormat {
 	}
 
 	public long getPosition() throws IOException {
+		if (_readAhead != null) {
+			return _readAhead.nextRowState()[0];
+		}
+		return streamPosition();
+	}
+
+	protected long streamPosition() throws IOException {
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			return _rowOrdinal;
+		}
 		return _bis.getPosition();
 	}
 
@@ -213,15 +917,161 @@ public class DataReader extends DataFormat {
 
 	protected void initialize() throws IOException {
 		readHeader();
+		if (!_footerFromCache) {
+			readStringDictionarySection();
+			if (_dataFileLayout == DataFileLayout.Columnar) {
+				readColumnChunkSection();
+			} else {
+				_blockStarts = new long[_indexBlock.size() + 1];
+				_blockStarts[0] = _startOfDataBlock;
+				for (int i = 0; i < _indexBlock.size(); i++) {
+					_blockStarts[i + 1] = _indexBlock.get(i).getOffSet();
+				}
+			}
+			readZoneMapSection();
+			readBloomFilterSection();
+			if (isCompactEncoding()) {
+				readDateBaseSection();
+			}
+			if (_headerCacheKey != null) {
+				_headerCache.put(_headerCacheKey, new CachedFooter(this));
+			}
+		}
+
 		int length = _dataRow.getColumnCount();
 		_readMethods = new FieldReadWrite[length];
 		for (int i = 0; i < _readMethods.length; i++) {
-			_readMethods[i] = getReadMethod(_dataRow.getDataType(i));
+			if ("Dictionary".equals(_columnEncodings[i])) {
+				_readMethods[i] = new FieldStringDictionary(_bis, _isEncrypted && (_blockCipher == null), _stringDictionaries.get(i));
+			} else {
+				_readMethods[i] = getReadMethod(_dataRow.getDataType(i));
+			}
+		}
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			_rowGroupValues = new Object[length][];
+		}
+		if (isCompactEncoding()) {
+			int dataColumns = 0;
+			for (int i = 0; i < length; i++) {
+				if (_dataRow.getColumnType(i) == ColumnTypes.DataValue) {
+					dataColumns++;
+				}
+			}
+			_nullBitmap = new byte[(dataColumns + 7) >> 3];
+		}
+	}
+
+	protected void readDateBaseSection() throws IOException {
+		byte[] section = _footerSections.get(DATE_BASE_SECTION);
+		if (section == null) {
+			return;
+		}
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(section))) {
+			int blockCount = dis.readInt();
+			_dateColumns = new int[dis.readInt()];
+			for (int i = 0; i < _dateColumns.length; i++) {
+				_dateColumns[i] = dis.readInt();
+			}
+			_dateBases = new long[blockCount][_dateColumns.length];
+			for (int block = 0; block < blockCount; block++) {
+				for (int i = 0; i < _dateColumns.length; i++) {
+					_dateBases[block][i] = dis.readLong();
+				}
+			}
+		}
+
+		if ((_dataFileLayout == DataFileLayout.Row) && (_dateBases.length != _blockStarts.length)) {
+			throw new IOException("Data file date blocks do not match the index.");
+		}
+	}
+
+	protected void readBloomFilterSection() throws IOException {
+		byte[] section = _footerSections.get(BLOOM_FILTER_SECTION);
+		if ((section == null) || (_zoneMap == null)) {
+			return;
+		}
+		if (_blockCipher != null) {
+			section = Arrays.copyOf(_blockCipher.apply(BLOOM_FILTER_CIPHER_OFFSET, section, section.length), section.length);
+		}
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(section))) {
+			_zoneMap.readBloomFilters(dis);
+		}
+	}
+
+	protected void readZoneMapSection() throws IOException {
+		byte[] section = _footerSections.get(ZONE_MAP_SECTION);
+		if (section == null) {
+			return;
+		}
+		if (_blockCipher != null) {
+			section = Arrays.copyOf(_blockCipher.apply(ZONE_MAP_CIPHER_OFFSET, section, section.length), section.length);
+		}
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(section))) {
+			_zoneMap = ZoneMap.read(dis, _dataRow.getDataTypes(), _isEncrypted);
+		}
+		int blockCount = (_dataFileLayout == DataFileLayout.Columnar) ? _rowGroupSizes.length : _blockStarts.length;
+		if (_zoneMap.getBlockCount() != blockCount) {
+			throw new IOException("Data file zone maps do not match the index.");
+		}
+	}
+
+	protected void readStringDictionarySection() throws IOException {
+		byte[] section = _footerSections.get(STRING_DICTIONARY_SECTION);
+		if (section == null) {
+			return;
+		}
+		if (_blockCipher != null) {
+			section = Arrays.copyOf(_blockCipher.apply(STRING_DICTIONARY_CIPHER_OFFSET, section, section.length), section.length);
+		}
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(section))) {
+			int dictionaryCount = dis.readInt();
+			for (int i = 0; i < dictionaryCount; i++) {
+				int column = dis.readInt();
+				String[] entries = new String[dis.readInt()];
+				for (int x = 0; x < entries.length; x++) {
+					String entry = dis.readUTF();
+					// Interned so every occurrence of a code shares one String instance.
+					entries[x] = (_isEncrypted ? CryptoUtilities.EncryptDecrypt(entry) : entry).intern();
+				}
+				_stringDictionaries.put(column, entries);
+			}
+		}
+	}
+
+	protected void readColumnChunkSection() throws IOException {
+		byte[] section = _footerSections.get(COLUMN_CHUNK_SECTION);
+		if (section == null) {
+			throw new IOException("Columnar data file is missing the column chunk directory.");
+		}
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(section))) {
+			int groupCount = dis.readInt();
+			int columnCount = dis.readInt();
+			_rowGroupSizes = new int[groupCount];
+			_rowGroupFirstRows = new long[groupCount];
+			_columnChunkOffsets = new long[groupCount][columnCount];
+			_columnarRowCount = 0L;
+			for (int i = 0; i < groupCount; i++) {
+				_rowGroupSizes[i] = dis.readInt();
+				_rowGroupFirstRows[i] = _columnarRowCount;
+				_columnarRowCount += _rowGroupSizes[i];
+				for (int column = 0; column < columnCount; column++) {
+					_columnChunkOffsets[i][column] = dis.readLong();
+				}
+			}
 		}
 	}
 
 	protected void readHeader() throws IOException {
-		_byteFileType = _bis.readByte();
+		byte fileType = _bis.readByte();
+		if (fileType == ShardManifest.FILE_TYPE) {
+			throw new IOException(String.format("%s is the manifest of a sharded data set, open it with DataReader.open.", _filename));
+		}
+		_byteFileType = (byte) (fileType & 0x0F);
+		_encodingVersion = (fileType >> 4) & 0x0F;
+		if (_encodingVersion > LONG_STRING_ENCODING) {
+			throw new IOException(String.format("Data file encoding version %d is not supported by this version of ezPIE.", _encodingVersion));
+		}
+		_bis.setLongStrings(_encodingVersion >= LONG_STRING_ENCODING);
 		_isEncrypted = _bis.readBoolean();
 		_fingerPrint = _bis.readUTF();
 		_sourceDataFilename = _bis.readUTF();
@@ -236,6 +1086,65 @@ public class DataReader extends DataFormat {
 		_endOfDataBlock = _indexStart;
 		_startOfDataBlock = _bis.getPosition();
 
+		// Files opened before only need their finger print checked, the parsed footer is reused.
+		_headerCacheKey = getHeaderCacheKey();
+		CachedFooter cached = (_headerCacheKey == null) ? null : _headerCache.get(_headerCacheKey);
+		if (cached != null) {
+			cached.restore(this);
+			_footerFromCache = true;
+		} else {
+			readFooter();
+		}
+		populateHeaderInformation();
+
+		try {
+			if (BlockCipher.ALGORITHM.equals(_encryption)) {
+				byte[] key = BlockCipher.getDataFileKey();
+				if (key == null) {
+					throw new IOException(String.format("%s data file is encrypted with the EncryptionKey setting, which is not defined.", _filename));
+				}
+				_blockCipher = new BlockCipher(key, _encryptionNonce);
+				// Files written before the key check was added are read without it.
+				if ((_keyCheck != null) && !Arrays.equals(_keyCheck, _blockCipher.getKeyCheck(KEY_CHECK_CIPHER_OFFSET, _keyCheck.length))) {
+					throw new IOException(String.format("%s data file is encrypted with a different EncryptionKey.", _filename));
+				}
+			} else if (StringUtilities.isNotNullOrEmpty(_encryption)) {
+				throw new IOException(String.format("%s data file encryption is not supported.", _encryption));
+			}
+		} catch (IOException ex) {
+			throw new IOException("Error reading data file header. ", ex);
+		}
+
+		// If this is a view file, check for source data.
+		if (_byteFileType == 1) {
+			File fd = new File(_filename);
+			File dir = fd.getParentFile();
+			String dataFilename = dir.getParent();
+			if (!dataFilename.endsWith(java.io.File.separator)) {
+				dataFilename += java.io.File.separator;
+			}
+			dataFilename += _sourceDataFilename;
+			if (FileUtilities.isInvalidFile(dataFilename)) {
+				throw new IOException(String.format("Could not find the %s data file.", dataFilename));
+			}
+
+			_drSourceData = new DataReader(dataFilename, _bis.isMemoryMapped());
+			// Check to be sure the finger print still matches.
+			if (!_fingerPrint.equals(_drSourceData.getFingerPrint())) {
+				// This file must be recreated based on the new data.
+			}
+		}
+
+		// Data blocks are compressed and/or encrypted, from here on positions are virtual offsets.
+		if ((_compressionType != CompressionType.None) || (_blockCipher != null)) {
+			_bis.enableBlockCompression(new BlockCompressor(_compressionType), _blockCipher, _startOfDataBlock, _indexStart);
+			_startOfDataBlock = CompressedBlockInputStream.toVirtualOffset(_startOfDataBlock, 0);
+			_endOfDataBlock = CompressedBlockInputStream.toVirtualOffset(_indexStart, 0);
+		}
+		_bis.seek(_startOfDataBlock);
+	}
+
+	protected void readFooter() throws IOException {
 		// Jump to the Index
 		_bis.seek(_indexStart);
 		_indexBlock = new ArrayList<>();
@@ -253,62 +1162,122 @@ public class DataReader extends DataFormat {
 			_schemaXML = CryptoUtilities.EncryptDecrypt(_schemaXML);
 		}
 
-		populateHeaderInformation();
+		// Optional sections that follow the schema.
+		while (_bis.getPosition() < _bis.getLength()) {
+			String sectionName = _bis.readUTF();
+			byte[] section = new byte[_bis.readInt()];
+			_bis.readFully(section);
+			_footerSections.put(sectionName, section);
+		}
+		_keyCheck = _footerSections.get(KEY_CHECK_SECTION);
 
 		try {
-			Document doc = XmlUtilities.createXMLDocument(_schemaXML);
-			XPathFactory xFactory = XPathFactory.newInstance();
-			XPath xp = xFactory.newXPath();
-			XPathExpression expr = xp.compile("FileInfo/DataInfo/DataColumn");
-
-			NodeList nodes = (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
-			if (nodes.getLength() == 0) {
-				throw new IOException("Data file does not contain any column information.");
+			if (_footerSections.containsKey(SCHEMA_SECTION)) {
+				readSchemaSection();
+			} else {
+				readSchemaXml();
 			}
+		} catch (XPathExpressionException | IOException ex) {
+			throw new IOException("Error reading data file header. ", ex);
+		}
+	}
 
-			_dataRow = new DataRow(nodes.getLength());
-			_dataSchema = new String[nodes.getLength()][2];
-			for (int i = 0; i < nodes.getLength(); i++) {
-				Element elementColumn = (Element) nodes.item(i);
-
-				DataFileEnums.ColumnTypes eColType = DataFileEnums.ColumnTypes.DataValue;
+	/**
+	 * Binary copy of the schema written by newer data files, read instead of
+	 * parsing the schema XML.
+	 */
+	protected void readSchemaSection() throws IOException {
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(_footerSections.get(SCHEMA_SECTION)))) {
+			if (DataFileLayout.Columnar.toString().equals(readSchemaString(dis))) {
+				_dataFileLayout = DataFileLayout.Columnar;
+			}
+			_compressionType = DataUtilities.compressionTypeToEnum(readSchemaString(dis));
+			_encryption = readSchemaString(dis);
+			_encryptionNonce = dis.readLong();
 
-				String name = elementColumn.getAttribute("Name");
-				String dataType = elementColumn.getAttribute("DataType");
-				String sGlobalValue = elementColumn.getAttribute("GlobalValue");
+			int columnCount = dis.readInt();
+			if (columnCount == 0) {
+				throw new IOException("Data file does not contain any column information.");
+			}
+			_dataRow = new DataRow(columnCount);
+			_dataSchema = new String[columnCount][2];
+			_columnEncodings = new String[columnCount];
+			for (int i = 0; i < columnCount; i++) {
+				String name = readSchemaString(dis);
+				String dataType = readSchemaString(dis);
+				ColumnTypes columnType = ColumnTypes.DataValue;
 				Object globalValue = null;
-				if ("GlobalValue".equalsIgnoreCase(elementColumn.getAttribute("ColumnType"))) {
-					eColType = DataFileEnums.ColumnTypes.GlobalValue;
-					globalValue = StringUtilities.toObject(dataType, sGlobalValue);
+				if (dis.readBoolean()) {
+					columnType = ColumnTypes.GlobalValue;
+					globalValue = StringUtilities.toObject(dataType, readSchemaString(dis));
 				}
-				_dataRow.DefineColumn(i, name, eColType, dataType, globalValue);
+				_dataRow.DefineColumn(i, name, columnType, dataType, globalValue);
 				_dataSchema[i][0] = name;
 				_dataSchema[i][1] = dataType;
+				_columnEncodings[i] = readSchemaString(dis);
 			}
-		} catch (XPathExpressionException | IOException ex) {
-			throw new IOException("Error reading data file header. ", ex);
 		}
+	}
 
-		// If this is a view file, check for source data.
-		if (_byteFileType == 1) {
-			File fd = new File(_filename);
-			File dir = fd.getParentFile();
-			String dataFilename = dir.getParent();
-			if (!dataFilename.endsWith(java.io.File.separator)) {
-				dataFilename += java.io.File.separator;
-			}
-			dataFilename += _sourceDataFilename;
-			if (FileUtilities.isInvalidFile(dataFilename)) {
-				throw new IOException(String.format("Could not find the %s data file.", dataFilename));
-			}
+	protected String readSchemaString(DataInputStream dis) throws IOException {
+		String value = dis.readUTF();
+		return _isEncrypted ? CryptoUtilities.EncryptDecrypt(value) : value;
+	}
 
-			_drSourceData = new DataReader(dataFilename);
-			// Check to be sure the finger print still matches.
-			if (!_fingerPrint.equals(_drSourceData.getFingerPrint())) {
-				// This file must be recreated based on the new data.
+	protected void readSchemaXml() throws IOException, XPathExpressionException {
+		Document doc = XmlUtilities.createXMLDocument(_schemaXML);
+		if (DataFileLayout.Columnar.toString().equals(doc.getDocumentElement().getAttribute("Layout"))) {
+			_dataFileLayout = DataFileLayout.Columnar;
+		}
+		_compressionType = DataUtilities.compressionTypeToEnum(doc.getDocumentElement().getAttribute("Compression"));
+		_encryption = doc.getDocumentElement().getAttribute("Encryption");
+		if (BlockCipher.ALGORITHM.equals(_encryption)) {
+			_encryptionNonce = Long.parseLong(doc.getDocumentElement().getAttribute("EncryptionNonce"));
+		}
+		XPathFactory xFactory = XPathFactory.newInstance();
+		XPath xp = xFactory.newXPath();
+		XPathExpression expr = xp.compile("FileInfo/DataInfo/DataColumn");
+
+		NodeList nodes = (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
+		if (nodes.getLength() == 0) {
+			throw new IOException("Data file does not contain any column information.");
+		}
+
+		_dataRow = new DataRow(nodes.getLength());
+		_dataSchema = new String[nodes.getLength()][2];
+		_columnEncodings = new String[nodes.getLength()];
+		for (int i = 0; i < nodes.getLength(); i++) {
+			Element elementColumn = (Element) nodes.item(i);
+
+			DataFileEnums.ColumnTypes eColType = DataFileEnums.ColumnTypes.DataValue;
+
+			String name = elementColumn.getAttribute("Name");
+			String dataType = elementColumn.getAttribute("DataType");
+			String sGlobalValue = elementColumn.getAttribute("GlobalValue");
+			Object globalValue = null;
+			if ("GlobalValue".equalsIgnoreCase(elementColumn.getAttribute("ColumnType"))) {
+				eColType = DataFileEnums.ColumnTypes.GlobalValue;
+				globalValue = StringUtilities.toObject(dataType, sGlobalValue);
 			}
+			_dataRow.DefineColumn(i, name, eColType, dataType, globalValue);
+			_dataSchema[i][0] = name;
+			_dataSchema[i][1] = dataType;
+			_columnEncodings[i] = elementColumn.getAttribute("Encoding");
 		}
-		_bis.seek(_startOfDataBlock);
+	}
+
+	protected String getHeaderCacheKey() {
+		if (StringUtilities.isNullOrEmpty(_filename)) {
+			return null;
+		}
+		return String.format("%s|%d|%d", _fingerPrint, new File(_filename).lastModified(), _bis.getLength());
+	}
+
+	/**
+	 * Empties the cache of parsed data file footers.
+	 */
+	public static void clearHeaderCache() {
+		_headerCache.clear();
 	}
 
 	private FieldReadWrite getReadMethod(DataType columnDataType) throws IOException {
@@ -331,7 +1300,7 @@ public class DataReader extends DataFormat {
 		case LongData:
 			return new FieldLong(_bis);
 		case StringData:
-			if (_isEncrypted) {
+			if (_isEncrypted && (_blockCipher == null)) {
 				return new FieldStringEncrypted(_bis);
 			} else {
 				return new FieldString(_bis);
@@ -344,4 +1313,331 @@ public class DataReader extends DataFormat {
 			throw new IOException("Data type " + columnDataType.toString() + " is not currently supported by the data engine.");
 		}
 	}
+
+	/**
+	 * Everything parsed from the footer of a data file. Shared by all readers
+	 * of the file, so none of it may be changed after it is cached.
+	 */
+	protected static class CachedFooter {
+		protected ArrayList<IndexEntry> _indexBlock;
+		protected String _schemaXML;
+		protected DataFileLayout _dataFileLayout;
+		protected CompressionType _compressionType;
+		protected String _encryption;
+		protected long _encryptionNonce;
+		protected byte[] _keyCheck;
+
+		protected String[][] _dataSchema;
+		protected ColumnTypes[] _columnTypes;
+		protected DataType[] _dataTypes;
+		protected Object[] _globalValues;
+		protected String[] _columnEncodings;
+
+		protected Map<Integer, String[]> _stringDictionaries;
+		protected int[] _rowGroupSizes;
+		protected long[] _rowGroupFirstRows;
+		protected long[][] _columnChunkOffsets;
+		protected long _columnarRowCount;
+		protected long[] _blockStarts;
+		protected int[] _dateColumns;
+		protected long[][] _dateBases;
+		protected ZoneMap _zoneMap;
+
+		protected CachedFooter(DataReader reader) {
+			_indexBlock = reader._indexBlock;
+			_schemaXML = reader._schemaXML;
+			_dataFileLayout = reader._dataFileLayout;
+			_compressionType = reader._compressionType;
+			_encryption = reader._encryption;
+			_encryptionNonce = reader._encryptionNonce;
+			_keyCheck = reader._keyCheck;
+
+			int columnCount = reader._dataRow.getColumnCount();
+			_dataSchema = ArrayUtilities.cloneArray(reader._dataSchema);
+			_columnTypes = new ColumnTypes[columnCount];
+			_dataTypes = reader._dataRow.getDataTypes().clone();
+			_globalValues = new Object[columnCount];
+			for (int i = 0; i < columnCount; i++) {
+				_columnTypes[i] = reader._dataRow.getColumnType(i);
+				_globalValues[i] = reader._dataRow.getValue(i);
+			}
+			_columnEncodings = reader._columnEncodings;
+
+			_stringDictionaries = reader._stringDictionaries;
+			_rowGroupSizes = reader._rowGroupSizes;
+			_rowGroupFirstRows = reader._rowGroupFirstRows;
+			_columnChunkOffsets = reader._columnChunkOffsets;
+			_columnarRowCount = reader._columnarRowCount;
+			_blockStarts = reader._blockStarts;
+			_dateColumns = reader._dateColumns;
+			_dateBases = reader._dateBases;
+			_zoneMap = reader._zoneMap;
+		}
+
+		protected void restore(DataReader reader) {
+			reader._indexBlock = _indexBlock;
+			reader._schemaXML = _schemaXML;
+			reader._dataFileLayout = _dataFileLayout;
+			reader._compressionType = _compressionType;
+			reader._encryption = _encryption;
+			reader._encryptionNonce = _encryptionNonce;
+			reader._keyCheck = _keyCheck;
+
+			// Callers change the schema arrays, every reader gets its own copy.
+			reader._dataSchema = ArrayUtilities.cloneArray(_dataSchema);
+			reader._dataRow = new DataRow(_dataTypes.length);
+			for (int i = 0; i < _dataTypes.length; i++) {
+				reader._dataRow.DefineColumn(i, _dataSchema[i][0], _columnTypes[i], _dataTypes[i], _globalValues[i]);
+			}
+			reader._columnEncodings = _columnEncodings;
+
+			reader._stringDictionaries = _stringDictionaries;
+			reader._rowGroupSizes = _rowGroupSizes;
+			reader._rowGroupFirstRows = _rowGroupFirstRows;
+			reader._columnChunkOffsets = _columnChunkOffsets;
+			reader._columnarRowCount = _columnarRowCount;
+			reader._blockStarts = _blockStarts;
+			reader._dateColumns = _dateColumns;
+			reader._dateBases = _dateBases;
+			reader._zoneMap = _zoneMap;
+		}
+	}
+
+	/**
+	 * Rows decoded by the read-ahead thread. The reader state (position, row
+	 * number and skipped row count) before each row is kept so the reader can
+	 * continue without the read-ahead from any row.
+	 */
+	protected static class RowBatch {
+		protected Object[][] _rows;
+		protected long[] _states; // position, row number, skipped row count
+		protected int _count = 0;
+		protected long[] _endState;
+		protected boolean _last = false;
+
+		protected RowBatch(int size) {
+			_rows = new Object[size][];
+			_states = new long[size * 3];
+		}
+
+		protected void add(long position, long rowNumber, long skippedRowCount, Object[] dataRow) {
+			int offset = _count * 3;
+			_states[offset] = position;
+			_states[offset + 1] = rowNumber;
+			_states[offset + 2] = skippedRowCount;
+			_rows[_count++] = dataRow;
+		}
+	}
+
+	/**
+	 * The current row as seen by the row filter. Values are decoded when the
+	 * filter asks for them, the columns in front of them are skipped by their
+	 * stored length. Asking for an earlier column reads the row again from
+	 * its start.
+	 */
+	protected class LazyRow extends LazyDataRow {
+		protected final Object[] _values;
+		protected final boolean[] _decoded;
+		protected int _nextColumn;
+		protected int _nextBit;
+
+		protected LazyRow() {
+			_values = new Object[_dataRow.getColumnCount()];
+			_decoded = new boolean[_values.length];
+		}
+
+		@Override
+		public int getColumnCount() {
+			return _values.length;
+		}
+
+		protected void begin() throws IOException {
+			if (isCompactEncoding() && (_dateColumns.length > 0)) {
+				long position = _bis.getPosition();
+				if ((position < _dateBlockStart) || (position >= _dateBlockEnd)) {
+					selectDateBlock(position);
+				}
+			}
+			_bis.mark();
+			if (isCompactEncoding()) {
+				_bis.readFully(_nullBitmap);
+			}
+			Arrays.fill(_values, null);
+			Arrays.fill(_decoded, false);
+			_nextColumn = 0;
+			_nextBit = 0;
+		}
+
+		@Override
+		public Object getValue(int column) throws IOException {
+			if (_dataRow.getColumnType(column) == ColumnTypes.GlobalValue) {
+				return _dataRow.getValue(column);
+			} else if (_decoded[column]) {
+				return _values[column];
+			} else if (column < _nextColumn) {
+				_bis.rewind();
+				if (isCompactEncoding()) {
+					_bis.skipFully(_nullBitmap.length);
+				}
+				_nextColumn = 0;
+				_nextBit = 0;
+			}
+			while (_nextColumn <= column) {
+				readNext(_nextColumn == column);
+			}
+			return _values[column];
+		}
+
+		protected void skipRest() throws IOException {
+			while (_nextColumn < _values.length) {
+				readNext(false);
+			}
+		}
+
+		protected void readNext(boolean decode) throws IOException {
+			int i = _nextColumn++;
+			if (_dataRow.getColumnType(i) == ColumnTypes.GlobalValue) {
+				return;
+			}
+			boolean compact = isCompactEncoding();
+			if (compact) {
+				int bit = _nextBit++;
+				if ((_nullBitmap[bit >> 3] & (1 << (bit & 7))) != 0) {
+					_decoded[i] = true;
+					return;
+				}
+			}
+			if (!decode) {
+				if (compact) {
+					_readMethods[i].SkipValue();
+				} else {
+					_readMethods[i].Skip();
+				}
+				return;
+			}
+			_values[i] = compact ? _readMethods[i].ReadValue() : _readMethods[i].Read();
+			_decoded[i] = true;
+		}
+	}
+
+	protected class ReadAhead implements Runnable {
+		protected final int _capacity;
+		protected final BlockingQueue<RowBatch> _batches;
+		protected final Thread _thread;
+		protected final long[] _startState;
+		protected volatile boolean _stopped = false;
+		protected volatile Exception _error = null;
+
+		// Only used by the caller's thread.
+		protected RowBatch _current = null;
+		protected int _index = 0;
+
+		protected ReadAhead(int capacity) throws IOException {
+			_capacity = capacity;
+			_batches = new ArrayBlockingQueue<>(capacity);
+			_startState = readerState();
+			_thread = new Thread(this, "ezPIE read-ahead");
+			_thread.setDaemon(true);
+			_thread.start();
+		}
+
+		protected int getCapacity() {
+			return _capacity;
+		}
+
+		@Override
+		public void run() {
+			long[] lastState = _startState;
+			try {
+				boolean done = false;
+				while (!done && !_stopped) {
+					RowBatch batch = new RowBatch(READ_AHEAD_BATCH_ROWS);
+					while (!_stopped && !(done = endOfData()) && (batch._count < READ_AHEAD_BATCH_ROWS)) {
+						batch.add(streamPosition(), _currentRowNumber, _skippedRowCount, readDataRow());
+					}
+					batch._endState = lastState = readerState();
+					batch._last = done;
+					_batches.put(batch);
+				}
+			} catch (InterruptedException ex) {
+				_error = new InterruptedIOException("Read-ahead thread interrupted.");
+				putLastBatch(lastState);
+			} catch (IOException | RuntimeException ex) {
+				_error = ex;
+				putLastBatch(lastState);
+			}
+		}
+
+		protected long[] readerState() throws IOException {
+			return new long[] { streamPosition(), _currentRowNumber, _skippedRowCount };
+		}
+
+		protected void putLastBatch(long[] state) {
+			RowBatch batch = new RowBatch(0);
+			batch._endState = state;
+			batch._last = true;
+			try {
+				while (!_stopped && !_batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		protected boolean eof() throws IOException {
+			while ((_current == null) || (_index >= _current._count)) {
+				if ((_current != null) && _current._last) {
+					if (_error != null) {
+						throw new IOException("Error while reading ahead in the data file. " + _error.getMessage(), _error);
+					}
+					return true;
+				}
+				try {
+					_current = _batches.take();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the read-ahead thread.");
+				}
+				_index = 0;
+			}
+			return false;
+		}
+
+		protected Object[] next() throws IOException {
+			if (eof()) {
+				throw new EOFException("No more data rows to read.");
+			}
+			Object[] dataRow = _current._rows[_index];
+			_current._rows[_index++] = null;
+			return dataRow;
+		}
+
+		/**
+		 * Position, row number and skipped row count of the first row not yet
+		 * returned to the caller.
+		 */
+		protected long[] nextRowState() {
+			if (_current == null) {
+				return _startState;
+			}
+			return (_index < _current._count) ? Arrays.copyOfRange(_current._states, _index * 3, _index * 3 + 3) : _current._endState;
+		}
+
+		/**
+		 * The thread is not interrupted, an interrupt closes the file channel
+		 * of memory mapped and seekable streams. Emptying the queue unblocks it.
+		 */
+		protected void stop() throws IOException {
+			_stopped = true;
+			try {
+				while (_thread.isAlive()) {
+					_batches.clear();
+					_thread.join(10);
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while stopping the read-ahead thread.");
+			}
+		}
+	}
 }
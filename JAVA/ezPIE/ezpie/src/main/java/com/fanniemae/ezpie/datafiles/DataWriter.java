@@ -11,10 +11,14 @@
 
 package com.fanniemae.ezpie.datafiles;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -23,12 +27,17 @@ import java.util.UUID;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import com.fanniemae.ezpie.common.CryptoUtilities;
+import com.fanniemae.ezpie.common.DataUtilities;
 import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.common.DateUtilities;
 import com.fanniemae.ezpie.common.StringUtilities;
 import com.fanniemae.ezpie.common.XmlUtilities;
 import com.fanniemae.ezpie.datafiles.lowlevel.BinaryOutputStream;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockCipher;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockCompressor;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataRow;
@@ -47,8 +56,14 @@ import com.fanniemae.ezpie.datafiles.lowlevel.FieldReadWrite;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldShort;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldSqlTimestamp;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldString;
+import com.fanniemae.ezpie.datafiles.lowlevel.FieldStringDictionary;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldStringEncrypted;
 import com.fanniemae.ezpie.datafiles.lowlevel.FieldUUID;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
+import com.fanniemae.ezpie.datafiles.lowlevel.ZoneMap;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.ColumnTypes;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -59,6 +74,8 @@ import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
  */
 
 public class DataWriter extends DataFormat {
+	protected static final int COMPRESSED_BLOCK_SIZE = 1048576; // Uncompressed size that triggers a new block.
+
 	private final BinaryOutputStream _bos;
 	protected FieldReadWrite[] _writeMethods = null;
 
@@ -68,6 +85,36 @@ public class DataWriter extends DataFormat {
 
 	protected String[][] _schema;
 
+	// Data blocks are encrypted when the settings define an EncryptionKey, otherwise strings are encrypted one at a time.
+	protected BlockCipher _blockCipher = null;
+
+	// String columns use an adaptive dictionary unless turned off.
+	protected boolean _dictionaryEncoding = true;
+	protected int _dictionaryMaxEntries = FieldStringDictionary.DEFAULT_MAX_ENTRIES;
+
+	// Columnar layout - rows are buffered into row groups and written one column chunk at a time.
+	protected Object[][] _rowGroup = null;
+	protected int _rowGroupRowCount = 0;
+	protected List<Integer> _rowGroupSizes = new ArrayList<>();
+	protected List<long[]> _columnChunkOffsets = new ArrayList<>();
+
+	// Index entries are added by data size as well as row count.
+	protected long _lastIndexBytes = 0L;
+
+	// Optional dense row offset side file.
+	protected DataOutputStream _rowOffsets = null;
+
+	// Compact encoding - null bitmap for the current row and the date block bases.
+	protected byte[] _nullBitmap;
+	protected int[] _dateColumns = new int[0];
+	protected List<long[]> _dateBases = new ArrayList<>();
+
+	// Min, max and null count of each column for every index block or row group.
+	protected ZoneMap _zoneMap = null;
+
+	// Append mode - the blocks of the existing rows are closed, the first appended row starts a new one.
+	protected boolean _appendBlockPending = false;
+
 	public DataWriter(String filename) throws IOException {
 		this(filename, 20, "", null, false);
 	}
@@ -88,6 +135,7 @@ public class DataWriter extends DataFormat {
 		_filename = filename;
 		_sourceDataFilename = sourceDataFilename;
 		_byteFileType = 1;
+		_encodingVersion = LONG_STRING_ENCODING;
 
 		if (isDynamicSqlBuffer) {
 			_indexInterval = 500L; // Used by index to determine how often to add
@@ -109,16 +157,135 @@ public class DataWriter extends DataFormat {
 		}
 
 		_bos = new BinaryOutputStream(_filename, memoryLimitInMegabytes, _fingerPrint);
+		_bos.setLongStrings(true);
+		byte[] key = BlockCipher.getDataFileKey();
+		if (_isEncrypted && (key != null)) {
+			_blockCipher = new BlockCipher(key, BlockCipher.newNonce());
+			_bos.setBlockCipher(_blockCipher);
+		}
 		writeInitialHeader(); // Place holder for final information.
 	}
 
+	/**
+	 * Opens an existing data file to add rows to the end of it. The schema
+	 * must match the file. The index, footer and header are rewritten by
+	 * close. Only unencrypted row layout files written with zone maps can be
+	 * appended to, other files throw an IOException and are left unchanged.
+	 */
+	public static DataWriter openForAppend(String filename, String[][] columnNamesAndTypes) throws IOException {
+		DataReader existing = new DataReader(filename);
+		try {
+			return new DataWriter(existing, columnNamesAndTypes);
+		} finally {
+			closeReader(existing);
+		}
+	}
+
+	protected DataWriter(DataReader existing, String[][] columnNamesAndTypes) throws IOException {
+		String filename = existing.getFilename();
+		Map<DataFileEnums.BinaryFileInfo, Object> header = existing.getHeader();
+		if (existing.getDataFileLayout() != DataFileLayout.Row) {
+			throw new IOException(String.format("Rows can only be appended to row layout data files. %s is %s.", filename, existing.getDataFileLayout()));
+		} else if ((Byte) header.get(DataFileEnums.BinaryFileInfo.FileType) != 0) {
+			throw new IOException(String.format("Rows cannot be appended to the view file %s.", filename));
+		} else if (StringUtilities.isNotNullOrEmpty(existing._encryption)) {
+			// Rewriting the encrypted footer sections would reuse the key stream of the file nonce.
+			throw new IOException(String.format("Rows cannot be appended to the encrypted data file %s.", filename));
+		} else if (existing._zoneMap == null) {
+			throw new IOException(String.format("%s was written without zone maps, rows cannot be appended to it.", filename));
+		}
+		checkAppendSchema(existing, columnNamesAndTypes);
+
+		_filename = filename;
+		_fingerPrint = existing.getFingerPrint();
+		_sourceDataFilename = (String) header.get(DataFileEnums.BinaryFileInfo.DatFilename);
+		_byteFileType = 0;
+		_isEncrypted = (Boolean) header.get(DataFileEnums.BinaryFileInfo.Encrypted);
+		_encodingVersion = existing.getEncodingVersion();
+		_fullRowCountKnown = (Boolean) header.get(DataFileEnums.BinaryFileInfo.FullRowCountKnown);
+		_fullRowCount = existing.getFullRowCount();
+		_firstRow = existing.getBufferFirstRow();
+		_lastRow = existing.getBufferLastRow();
+		_dateExpires = existing.getBufferExpires();
+		_indexBlock = new ArrayList<>(existing.getIndexEntries());
+		ZoneMap zoneMap = existing._zoneMap.reopen();
+		long rowCount = 0L;
+		for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+			rowCount += zoneMap.getRowCount(block);
+		}
+		if ((existing._dateBases != null) && (rowCount > 0L)) {
+			for (long[] bases : existing._dateBases) {
+				_dateBases.add(bases.clone());
+			}
+		}
+		_dictionaryEncoding = false;
+		for (int i = 0; i < columnNamesAndTypes.length; i++) {
+			_dictionaryEncoding |= "Dictionary".equals(existing._columnEncodings[i]);
+		}
+
+		// The reader is closed before the file is truncated.
+		long appendPosition = existing.getIndexStart();
+		closeReader(existing);
+		DataReader._headerCache.remove(existing._headerCacheKey);
+
+		_bos = new BinaryOutputStream(_filename, _fingerPrint, appendPosition);
+		_bos.setLongStrings(_encodingVersion >= LONG_STRING_ENCODING);
+		_compressionType = existing.getCompressionType();
+		if (_compressionType != CompressionType.None) {
+			_bos.setBlockCompression(new BlockCompressor(_compressionType));
+		}
+		setDataColumns(columnNamesAndTypes);
+		for (Map.Entry<Integer, String[]> dictionary : existing._stringDictionaries.entrySet()) {
+			((FieldStringDictionary) _writeMethods[dictionary.getKey()]).setDictionary(dictionary.getValue());
+		}
+		_zoneMap = zoneMap;
+
+		_currentRowNumber = rowCount;
+		_appendBlockPending = rowCount > 0L;
+		_lastIndexBytes = _bos.getDataBytesWritten();
+		String rowOffsetFilename = getRowOffsetFilename(_filename);
+		if (new File(rowOffsetFilename).isFile()) {
+			_rowOffsets = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(rowOffsetFilename, true)));
+		}
+	}
+
+	protected static void checkAppendSchema(DataReader existing, String[][] columnNamesAndTypes) throws IOException {
+		DataRow dataRow = existing.getSchemaRow();
+		int columnCount = dataRow.getColumnCount();
+		if (columnCount != columnNamesAndTypes.length) {
+			throw new IOException(String.format("%s has %d columns, the appended rows have %d.", existing.getFilename(), columnCount, columnNamesAndTypes.length));
+		}
+		for (int i = 0; i < columnCount; i++) {
+			DataType dataType = adjustedDataType(DataUtilities.dataTypeToEnum(columnNamesAndTypes[i][1]));
+			if ((dataRow.getColumnType(i) != ColumnTypes.DataValue) || !dataRow.getColumnName(i).equals(columnNamesAndTypes[i][0]) || (dataRow.getDataType(i) != dataType)) {
+				throw new IOException(String.format("Column %d of %s (%s %s) does not match the appended column %s %s.", i + 1, existing.getFilename(), dataRow.getColumnName(i), dataRow.getDataType(i), columnNamesAndTypes[i][0], columnNamesAndTypes[i][1]));
+			}
+		}
+	}
+
+	protected static void closeReader(DataReader reader) throws IOException {
+		try {
+			reader.close();
+		} catch (IOException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new IOException("Error closing " + reader.getFilename() + ": " + ex.getMessage(), ex);
+		}
+	}
+
 	@Override
 	public void close() throws IOException {
 		if ((_bos != null) && (!_disposed)) {
 			try {
+				if (_dataFileLayout == DataFileLayout.Columnar) {
+					writeRowGroup();
+				}
 				writeFooter();
 				writeFinalHeader();
 			} finally {
+				if (_rowOffsets != null) {
+					_rowOffsets.close();
+				}
 				_bos.close();
 				_disposed = true;
 			}
@@ -148,6 +315,131 @@ public class DataWriter extends DataFormat {
 		setupColumnWriters();
 	}
 
+	public void setDataFileLayout(DataFileLayout layout) {
+		if (_currentRowNumber > 0) {
+			throw new IllegalStateException("The data file layout must be set before the first data row is written.");
+		}
+		_dataFileLayout = (layout == null) ? DataFileLayout.Row : layout;
+	}
+
+	public void setDictionaryEncoding(boolean value) {
+		if (_writeMethods != null) {
+			throw new IllegalStateException("Dictionary encoding must be set before the data columns are defined.");
+		}
+		_dictionaryEncoding = value;
+	}
+
+	public void setEncodingVersion(int version) {
+		if (_currentRowNumber > 0) {
+			throw new IllegalStateException("The data file encoding must be set before the first data row is written.");
+		} else if ((version < LEGACY_ENCODING) || (version > LONG_STRING_ENCODING)) {
+			throw new IllegalArgumentException(String.format("Data file encoding version %d is not supported.", version));
+		}
+		_encodingVersion = version;
+		_bos.setLongStrings(version >= LONG_STRING_ENCODING);
+	}
+
+	public void setIndexByteInterval(long bytes) {
+		_indexByteInterval = (bytes <= 0L) ? Long.MAX_VALUE : bytes;
+	}
+
+	/**
+	 * Writes the position of every row to a side file (see
+	 * getRowOffsetFilename) so readers can go to any row without the index.
+	 * Only used by row layout data files written to disk.
+	 */
+	public void setRowOffsetFile(boolean value) throws IOException {
+		if (_currentRowNumber > 0) {
+			throw new IllegalStateException("The row offset file must be requested before the first data row is written.");
+		} else if (!value || StringUtilities.isNullOrEmpty(_filename) || (_dataFileLayout == DataFileLayout.Columnar)) {
+			return;
+		}
+		_rowOffsets = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getRowOffsetFilename(_filename))));
+		_rowOffsets.writeUTF(_fingerPrint);
+	}
+
+	/**
+	 * Disk writes run on a background thread so the caller (e.g. a JDBC fetch
+	 * loop) is not stalled by each buffer flush. Write errors surface on close.
+	 */
+	public void setWriteBehind(boolean value) throws IOException {
+		_bos.setWriteBehind(value);
+	}
+
+	public void setCompression(CompressionType compressionType) {
+		if (_currentRowNumber > 0) {
+			throw new IllegalStateException("The data file compression must be set before the first data row is written.");
+		}
+		_compressionType = (compressionType == null) ? CompressionType.None : compressionType;
+		if (_compressionType != CompressionType.None) {
+			_bos.setBlockCompression(new BlockCompressor(_compressionType));
+		}
+	}
+
+	/**
+	 * Key columns get a Bloom filter per block, so readers looking for a few
+	 * values skip the blocks that do not contain them. Call after
+	 * setDataColumns and before the first row.
+	 */
+	public void setBloomFilterColumns(String[] columnNames, double falsePositiveRate) {
+		if (_zoneMap == null) {
+			throw new IllegalStateException("Bloom filter columns must be set after the data columns are defined.");
+		}
+		int[] columns = new int[columnNames.length];
+		for (int i = 0; i < columnNames.length; i++) {
+			columns[i] = -1;
+			for (int x = 0; x < _columnCount; x++) {
+				if (_dataRow.getColumnName(x).equalsIgnoreCase(columnNames[i].trim())) {
+					columns[i] = x;
+					break;
+				}
+			}
+			if (columns[i] == -1) {
+				throw new IllegalArgumentException(String.format("Bloom filter column %s is not in the data set.", columnNames[i]));
+			}
+		}
+		_zoneMap.setBloomFilterColumns(columns, falsePositiveRate);
+	}
+
+	public long getBloomFilterBytes() {
+		return (_zoneMap == null) ? 0L : _zoneMap.getBloomFilterBytes();
+	}
+
+	public long getBloomFilterMilliseconds() {
+		return (_zoneMap == null) ? 0L : _zoneMap.getBloomFilterNanos() / 1000000L;
+	}
+
+	/**
+	 * Rows in the file, including the existing rows of an appended file.
+	 */
+	public long getRowCount() {
+		return _currentRowNumber;
+	}
+
+	public long getUncompressedBytes() {
+		return _bos.getUncompressedBytes();
+	}
+
+	public long getCompressedBytes() {
+		return _bos.getCompressedBytes();
+	}
+
+	/**
+	 * Size of the file so far, including the string dictionaries that are
+	 * written with the footer.
+	 */
+	public long getBytesWritten() {
+		long bytes = _bos.getBytesWritten();
+		if (_writeMethods != null) {
+			for (int i = 0; i < _writeMethods.length; i++) {
+				if (_writeMethods[i] instanceof FieldStringDictionary) {
+					bytes += ((FieldStringDictionary) _writeMethods[i]).getDictionaryBytes();
+				}
+			}
+		}
+		return bytes;
+	}
+
 	public void setGlobalValue(String columnName, String dataType, String value) {
 		_globalValues.put(columnName, new String[] { dataType, value });
 	}
@@ -157,12 +449,16 @@ public class DataWriter extends DataFormat {
 	}
 
 	public void writeDataRow(Object[] data) throws IOException {
-		if (_currentRowNumber == _nextBreak) {
-			IndexEntry ie = new IndexEntry();
-			ie.setRowNumber(_currentRowNumber);
-			ie.setOffSet(_bos.getPosition());
-			_indexBlock.add(ie);
-			_nextBreak += _indexInterval;
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			writeColumnarDataRow(data);
+			return;
+		}
+
+		startDataRow();
+		_zoneMap.add(data);
+		if (isCompactEncoding()) {
+			writeCompactDataRow(data);
+			return;
 		}
 
 		for (int i = 0; i < _columnCount; i++) {
@@ -175,6 +471,298 @@ public class DataWriter extends DataFormat {
 		_currentRowNumber++;
 	}
 
+	/**
+	 * Writes the row held by a reusable cursor (see createRowCursor). Integer,
+	 * long, double and date values are written without boxing.
+	 */
+	public void writeDataRow(RowCursor row) throws IOException {
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			writeColumnarDataRow(row.toArray());
+			return;
+		}
+
+		startDataRow();
+		_zoneMap.add(row);
+		if (isCompactEncoding()) {
+			Arrays.fill(_nullBitmap, (byte) 0);
+			for (int i = 0; i < _columnCount; i++) {
+				if (row.isNull(i)) {
+					_nullBitmap[i >> 3] |= 1 << (i & 7);
+				}
+			}
+			_bos.write(_nullBitmap);
+			for (int i = 0; i < _columnCount; i++) {
+				if (!row.isNull(i)) {
+					_writeMethods[i].WriteValue(row, i);
+				}
+			}
+		} else {
+			for (int i = 0; i < _columnCount; i++) {
+				_writeMethods[i].Write(row, i);
+			}
+		}
+		_currentRowNumber++;
+	}
+
+	public RowCursor createRowCursor() {
+		return new RowCursor(_dataRow.getDataTypes());
+	}
+
+	protected void startDataRow() throws IOException {
+		boolean newBlock = _bos.isBlockCompressed() && (!_bos.inBlock() || (_bos.getBlockSize() >= COMPRESSED_BLOCK_SIZE));
+		if (newBlock) {
+			_bos.startBlock();
+		}
+		// Every block starts with an index entry, so readers only decompress the block they need.
+		if (_appendBlockPending) {
+			_appendBlockPending = false;
+			startIndexBlock();
+		} else if ((_currentRowNumber > 0) && (newBlock || (_currentRowNumber == _nextBreak) || (_bos.getDataBytesWritten() - _lastIndexBytes >= _indexByteInterval))) {
+			addIndexEntry();
+		}
+		if (_rowOffsets != null) {
+			_rowOffsets.writeLong(_bos.getPosition());
+		}
+	}
+
+	protected void writeCompactDataRow(Object[] data) throws IOException {
+		Arrays.fill(_nullBitmap, (byte) 0);
+		for (int i = 0; i < _columnCount; i++) {
+			if (data[i] == null) {
+				_nullBitmap[i >> 3] |= 1 << (i & 7);
+			}
+		}
+		_bos.write(_nullBitmap);
+		for (int i = 0; i < _columnCount; i++) {
+			if (data[i] != null) {
+				_writeMethods[i].WriteValue(data[i]);
+			}
+		}
+		_currentRowNumber++;
+	}
+
+	protected void addIndexEntry() {
+		// Each index entry starts a new date block and zone, so a reader positioned by the index knows the date bases.
+		closeDateBlock();
+		_zoneMap.closeBlock();
+		startIndexBlock();
+	}
+
+	protected void startIndexBlock() {
+		IndexEntry ie = new IndexEntry();
+		ie.setRowNumber(_currentRowNumber);
+		ie.setOffSet(_bos.getPosition());
+		_indexBlock.add(ie);
+		_nextBreak = _currentRowNumber + _indexInterval;
+		_lastIndexBytes = _bos.getDataBytesWritten();
+	}
+
+	protected void writeColumnarDataRow(Object[] data) throws IOException {
+		if (_rowGroup == null) {
+			_rowGroup = new Object[(int) _indexInterval][];
+		}
+		// Callers often reuse the row array, so keep a copy until the row group is written.
+		_rowGroup[_rowGroupRowCount++] = Arrays.copyOf(data, _columnCount);
+		_zoneMap.add(data);
+		_currentRowNumber++;
+		if (_rowGroupRowCount == _rowGroup.length) {
+			writeRowGroup();
+		}
+	}
+
+	protected void writeRowGroup() throws IOException {
+		if (_rowGroupRowCount == 0) {
+			return;
+		}
+
+		boolean compressed = _bos.isBlockCompressed();
+		if (compressed) {
+			_bos.startBlock();
+		}
+		IndexEntry ie = new IndexEntry();
+		ie.setRowNumber(_currentRowNumber - _rowGroupRowCount);
+		ie.setOffSet(_bos.getPosition());
+		_indexBlock.add(ie);
+
+		long[] chunkOffsets = new long[_columnCount];
+		for (int column = 0; column < _columnCount; column++) {
+			if (compressed) {
+				_bos.startBlock();
+			}
+			chunkOffsets[column] = _bos.getPosition();
+			FieldReadWrite writeMethod = _writeMethods[column];
+			if (isCompactEncoding()) {
+				writeCompactColumnChunk(column, writeMethod, compressed);
+				continue;
+			}
+			for (int row = 0; row < _rowGroupRowCount; row++) {
+				// Column chunks are read sequentially, so large chunks can span several blocks.
+				if (compressed && (_bos.getBlockSize() >= COMPRESSED_BLOCK_SIZE)) {
+					_bos.startBlock();
+				}
+				Object value = _rowGroup[row][column];
+				writeMethod.Write(value, value == null);
+			}
+		}
+		_rowGroupSizes.add(_rowGroupRowCount);
+		_columnChunkOffsets.add(chunkOffsets);
+		closeDateBlock();
+		_zoneMap.closeBlock();
+
+		Arrays.fill(_rowGroup, 0, _rowGroupRowCount, null);
+		_rowGroupRowCount = 0;
+	}
+
+	protected void writeCompactColumnChunk(int column, FieldReadWrite writeMethod, boolean compressed) throws IOException {
+		// Null bitmap for the whole chunk followed by the non-null values.
+		byte[] nulls = new byte[(_rowGroupRowCount + 7) >> 3];
+		for (int row = 0; row < _rowGroupRowCount; row++) {
+			if (_rowGroup[row][column] == null) {
+				nulls[row >> 3] |= 1 << (row & 7);
+			}
+		}
+		_bos.write(nulls);
+		for (int row = 0; row < _rowGroupRowCount; row++) {
+			if (compressed && (_bos.getBlockSize() >= COMPRESSED_BLOCK_SIZE)) {
+				_bos.startBlock();
+			}
+			Object value = _rowGroup[row][column];
+			if (value != null) {
+				writeMethod.WriteValue(value);
+			}
+		}
+	}
+
+	protected void closeDateBlock() {
+		if (!isCompactEncoding() || (_dateColumns.length == 0)) {
+			return;
+		}
+		long[] bases = new long[_dateColumns.length];
+		for (int i = 0; i < _dateColumns.length; i++) {
+			bases[i] = ((FieldDate) _writeMethods[_dateColumns[i]]).startNewBlock();
+		}
+		_dateBases.add(bases);
+	}
+
+	protected byte[] buildDateBaseSection() throws IOException {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream dos = new DataOutputStream(baos)) {
+			dos.writeInt(_dateBases.size());
+			dos.writeInt(_dateColumns.length);
+			for (int column : _dateColumns) {
+				dos.writeInt(column);
+			}
+			for (long[] bases : _dateBases) {
+				for (long base : bases) {
+					dos.writeLong(base);
+				}
+			}
+			dos.flush();
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * Binary copy of the schema XML so readers do not need to parse the XML.
+	 */
+	protected byte[] buildSchemaSection() throws IOException {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream dos = new DataOutputStream(baos)) {
+			writeSchemaString(dos, _dataFileLayout.toString());
+			writeSchemaString(dos, _compressionType.toString());
+			writeSchemaString(dos, (_blockCipher == null) ? "" : BlockCipher.ALGORITHM);
+			dos.writeLong((_blockCipher == null) ? 0L : _blockCipher.getNonce());
+
+			int columnCount = _dataRow.getColumnCount();
+			dos.writeInt(columnCount + _globalValues.size());
+			for (int i = 0; i < columnCount; i++) {
+				writeSchemaString(dos, _dataRow.getColumnName(i));
+				writeSchemaString(dos, _dataRow.getDataType(i).toString());
+				dos.writeBoolean(false);
+				writeSchemaString(dos, (_writeMethods[i] instanceof FieldStringDictionary) ? "Dictionary" : "");
+			}
+			for (Map.Entry<String, String[]> kvp : _globalValues.entrySet()) {
+				writeSchemaString(dos, kvp.getKey());
+				writeSchemaString(dos, kvp.getValue()[0]);
+				dos.writeBoolean(true);
+				writeSchemaString(dos, kvp.getValue()[1]);
+				writeSchemaString(dos, "");
+			}
+			dos.flush();
+			return baos.toByteArray();
+		}
+	}
+
+	protected void writeSchemaString(DataOutputStream dos, String value) throws IOException {
+		dos.writeUTF(_isEncrypted ? CryptoUtilities.EncryptDecrypt(value) : value);
+	}
+
+	protected byte[] buildZoneMapSection() throws IOException {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream dos = new DataOutputStream(baos)) {
+			_zoneMap.write(dos, _isEncrypted);
+			dos.flush();
+			byte[] section = baos.toByteArray();
+			if (_blockCipher != null) {
+				// The ranges describe the data, so they are encrypted with it.
+				section = Arrays.copyOf(_blockCipher.apply(ZONE_MAP_CIPHER_OFFSET, section, section.length), section.length);
+			}
+			return section;
+		}
+	}
+
+	protected byte[] buildBloomFilterSection() throws IOException {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream dos = new DataOutputStream(baos)) {
+			_zoneMap.writeBloomFilters(dos);
+			dos.flush();
+			byte[] section = baos.toByteArray();
+			if (_blockCipher != null) {
+				section = Arrays.copyOf(_blockCipher.apply(BLOOM_FILTER_CIPHER_OFFSET, section, section.length), section.length);
+			}
+			return section;
+		}
+	}
+
+	protected byte[] buildColumnChunkSection() throws IOException {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream dos = new DataOutputStream(baos)) {
+			int groupCount = _rowGroupSizes.size();
+			dos.writeInt(groupCount);
+			dos.writeInt(_columnCount);
+			for (int i = 0; i < groupCount; i++) {
+				dos.writeInt(_rowGroupSizes.get(i));
+				for (long offset : _columnChunkOffsets.get(i)) {
+					dos.writeLong(offset);
+				}
+			}
+			dos.flush();
+			return baos.toByteArray();
+		}
+	}
+
+	protected byte[] buildStringDictionarySection() throws IOException {
+		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream dos = new DataOutputStream(baos)) {
+			List<Integer> columns = new ArrayList<>();
+			for (int i = 0; i < _columnCount; i++) {
+				if (_writeMethods[i] instanceof FieldStringDictionary) {
+					columns.add(i);
+				}
+			}
+			dos.writeInt(columns.size());
+			for (int column : columns) {
+				List<String> entries = ((FieldStringDictionary) _writeMethods[column]).getDictionary();
+				dos.writeInt(column);
+				dos.writeInt(entries.size());
+				for (String entry : entries) {
+					dos.writeUTF(_isEncrypted ? CryptoUtilities.EncryptDecrypt(entry) : entry);
+				}
+			}
+			dos.flush();
+			byte[] section = baos.toByteArray();
+			if (_blockCipher != null) {
+				// The entries are the values of the data blocks, so they are encrypted with them.
+				section = Arrays.copyOf(_blockCipher.apply(STRING_DICTIONARY_CIPHER_OFFSET, section, section.length), section.length);
+			}
+			return section;
+		}
+	}
+
 	public DataStream getDataStream() throws IOException {
 		this.close();
 		if (_bos == null) {
@@ -218,6 +806,19 @@ public class DataWriter extends DataFormat {
 			_dataRow.setDataType(i, adjustedDataType(_dataRow.getDataType(i)));
 		}
 		_columnCount = _dataRow.getColumnCount();
+		_zoneMap = new ZoneMap(_dataRow.getDataTypes());
+		_nullBitmap = new byte[(_columnCount + 7) >> 3];
+
+		List<Integer> dateColumns = new ArrayList<>();
+		for (int i = 0; i < _columnCount; i++) {
+			if (_writeMethods[i] instanceof FieldDate) {
+				dateColumns.add(i);
+			}
+		}
+		_dateColumns = new int[dateColumns.size()];
+		for (int i = 0; i < _dateColumns.length; i++) {
+			_dateColumns[i] = dateColumns.get(i);
+		}
 	}
 
 	protected void writeInitialHeader() throws IOException {
@@ -232,7 +833,7 @@ public class DataWriter extends DataFormat {
 		byte[] aHeader;
 		//@formatter:off
 		try (ByteArrayOutputStream baos = new ByteArrayOutputStream(); DataOutputStream dos = new DataOutputStream(baos)) {
-			dos.writeByte(_byteFileType);          // (byte) Data file type 0=Data, 1=View
+			dos.writeByte(_byteFileType | (_encodingVersion << 4)); // (byte) Data file type 0=Data, 1=View. High 4 bits are the encoding version.
 			dos.writeBoolean(_isEncrypted);        // (Boolean) Encrypted True/False
 			dos.writeUTF(_fingerPrint);            // (string) The internal UUID used to identify this file.
 			dos.writeUTF(_sourceDataFilename);     // (string) Write the name of the source dat file. '' if this is a dat file.
@@ -252,6 +853,8 @@ public class DataWriter extends DataFormat {
 	}
 
 	protected void writeFooter() throws IOException {
+		_bos.endBlock();
+
 		// Write the index
 		_indexStart = _bos.getPosition();
 		for (IndexEntry indexEntry : _indexBlock) {
@@ -264,6 +867,36 @@ public class DataWriter extends DataFormat {
 		// Write the InfoBlock
 		_schemaStart = _bos.getPosition();
 		Document xmlSchemaDoc = XmlUtilities.createXMLDocument("<FileInfo><DataInfo /></FileInfo>");
+		if (_compressionType != CompressionType.None) {
+			xmlSchemaDoc.getDocumentElement().setAttribute("Compression", _compressionType.toString());
+		}
+		if (_blockCipher != null) {
+			xmlSchemaDoc.getDocumentElement().setAttribute("Encryption", BlockCipher.ALGORITHM);
+			xmlSchemaDoc.getDocumentElement().setAttribute("EncryptionNonce", Long.toString(_blockCipher.getNonce()));
+			_footerSections.put(KEY_CHECK_SECTION, _blockCipher.getKeyCheck(KEY_CHECK_CIPHER_OFFSET, KEY_CHECK_LENGTH));
+		}
+		if (_dictionaryEncoding && (_writeMethods != null)) {
+			_footerSections.put(STRING_DICTIONARY_SECTION, buildStringDictionarySection());
+		}
+		if ((isCompactEncoding()) && (_dateColumns.length > 0)) {
+			if ((_dataFileLayout == DataFileLayout.Row) && !_appendBlockPending) {
+				closeDateBlock();
+			}
+			_footerSections.put(DATE_BASE_SECTION, buildDateBaseSection());
+		}
+		if (_zoneMap != null) {
+			if ((_dataFileLayout == DataFileLayout.Row) && !_appendBlockPending) {
+				_zoneMap.closeBlock();
+			}
+			_footerSections.put(ZONE_MAP_SECTION, buildZoneMapSection());
+			if (_zoneMap.getBloomFilterBytes() > 0L) {
+				_footerSections.put(BLOOM_FILTER_SECTION, buildBloomFilterSection());
+			}
+		}
+		if (_dataFileLayout == DataFileLayout.Columnar) {
+			xmlSchemaDoc.getDocumentElement().setAttribute("Layout", _dataFileLayout.toString());
+			_footerSections.put(COLUMN_CHUNK_SECTION, buildColumnChunkSection());
+		}
 		if ((_dataRow != null) && (_dataRow.getColumnNames() != null)) {
 			int columnCount = _dataRow.getColumnCount();
 			for (int i = 0; i < columnCount; i++) {
@@ -272,12 +905,19 @@ public class DataWriter extends DataFormat {
 				eleCol.setAttribute("Name", columnName);
 				eleCol.setAttribute("DataType", _dataRow.getDataType(i).toString());
 				eleCol.setAttribute("ColumnType", _dataRow.getColumnType(i).toString());
+				if (_writeMethods[i] instanceof FieldStringDictionary) {
+					eleCol.setAttribute("Encoding", "Dictionary");
+				}
 				// eleCol.SetAttribute("GlobalValue",
 				// _DataRow.aValues[i].ToString());
-				// eleCol.SetAttribute("NullCount",
-				// _aColumnDetails[i].NullCount.ToString());
-				// eleCol.SetAttribute("MinValue", _aColumnDetails[i].MinValue);
-				// eleCol.SetAttribute("MaxValue", _aColumnDetails[i].MaxValue);
+				eleCol.setAttribute("NullCount", Long.toString(_zoneMap.getNullCount(i)));
+				// String ranges can be MAX_STRING_LENGTH characters each, they are only kept in the zone map section.
+				Object minValue = _zoneMap.getMinValue(i);
+				Object maxValue = _zoneMap.getMaxValue(i);
+				if ((minValue != null) && (maxValue != null) && !(minValue instanceof String) && (_blockCipher == null)) {
+					eleCol.setAttribute("MinValue", (minValue instanceof Date) ? DateUtilities.toIsoString((Date) minValue) : minValue.toString());
+					eleCol.setAttribute("MaxValue", (maxValue instanceof Date) ? DateUtilities.toIsoString((Date) maxValue) : maxValue.toString());
+				}
 				// eleCol.SetAttribute("MinLength",
 				// _aColumnDetails[i].MinLength.ToString());
 				// eleCol.SetAttribute("MaxLength",
@@ -309,6 +949,20 @@ public class DataWriter extends DataFormat {
 			}
 		}
 		_schemaXML = XmlUtilities.xmlDocumentToString(xmlSchemaDoc);
+		if (utfLength(_isEncrypted ? CryptoUtilities.EncryptDecrypt(_schemaXML) : _schemaXML) > MAX_UTF_LENGTH) {
+			// writeUTF is limited to 64 KB, very wide files leave the column statistics to the zone map section.
+			NodeList columns = xmlSchemaDoc.getElementsByTagName("DataColumn");
+			for (int i = 0; i < columns.getLength(); i++) {
+				Element eleCol = (Element) columns.item(i);
+				eleCol.removeAttribute("NullCount");
+				eleCol.removeAttribute("MinValue");
+				eleCol.removeAttribute("MaxValue");
+			}
+			_schemaXML = XmlUtilities.xmlDocumentToString(xmlSchemaDoc);
+		}
+		if (_dataRow != null) {
+			_footerSections.put(SCHEMA_SECTION, buildSchemaSection());
+		}
 
 		if (_isEncrypted) {
 			_bos.writeUTF(CryptoUtilities.EncryptDecrypt(_schemaXML));
@@ -316,10 +970,16 @@ public class DataWriter extends DataFormat {
 			_bos.writeUTF(_schemaXML);
 		}
 
+		for (Map.Entry<String, byte[]> section : _footerSections.entrySet()) {
+			_bos.writeUTF(section.getKey());
+			_bos.writeInt(section.getValue().length);
+			_bos.write(section.getValue());
+		}
+
 		_dateCreated = new Date();
 	}
 
-	private DataType adjustedDataType(DataType ColumnDataType) {
+	private static DataType adjustedDataType(DataType ColumnDataType) {
 		// Simplified code to convert some types into others. E.g. Byte, Int16,
 		// SByte ==> Int32
 		switch (ColumnDataType) {
@@ -365,7 +1025,9 @@ public class DataWriter extends DataFormat {
 		case SqlTimestampData:
 			return new FieldSqlTimestamp(_bos);
 		case StringData:
-			if (_isEncrypted) {
+			if (_dictionaryEncoding) {
+				return new FieldStringDictionary(_bos, _isEncrypted && (_blockCipher == null), _dictionaryMaxEntries);
+			} else if (_isEncrypted && (_blockCipher == null)) {
 				return new FieldStringEncrypted(_bos);
 			} else {
 				return new FieldString(_bos);
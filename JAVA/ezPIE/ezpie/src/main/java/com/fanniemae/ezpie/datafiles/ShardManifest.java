@@ -0,0 +1,187 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.fanniemae.ezpie.common.FileUtilities;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
+
+/**
+ * Lists the data files (shards) of a sharded data set in row order, with
+ * the row count and size of each. The column statistics of a shard are in
+ * its own zone map. Manifests start with FILE_TYPE where data files have
+ * their file type byte, so DataReader.open can tell them apart.
+ *
+ * @since 2018-07-23
+ *
+ */
+
+public class ShardManifest {
+	public static final byte FILE_TYPE = 0x0E;
+	protected static final int MANIFEST_VERSION = 1;
+
+	protected String _fingerPrint;
+	protected List<Shard> _shards = new ArrayList<>();
+
+	public ShardManifest() {
+		_fingerPrint = UUID.randomUUID().toString();
+	}
+
+	public static boolean isManifest(String filename) {
+		File file = new File(filename);
+		if (!file.isFile()) {
+			return false;
+		}
+		try (FileInputStream fis = new FileInputStream(file)) {
+			return fis.read() == FILE_TYPE;
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	public static ShardManifest read(String filename) throws IOException {
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+			if (dis.readByte() != FILE_TYPE) {
+				throw new IOException(String.format("%s is not a sharded data set manifest.", filename));
+			}
+			int version = dis.readInt();
+			if (version > MANIFEST_VERSION) {
+				throw new IOException(String.format("Shard manifest version %d is not supported by this version of ezPIE.", version));
+			}
+			ShardManifest manifest = new ShardManifest();
+			manifest._fingerPrint = dis.readUTF();
+			int count = dis.readInt();
+			for (int i = 0; i < count; i++) {
+				manifest.addShard(dis.readUTF(), dis.readLong(), dis.readLong());
+			}
+			if (count == 0) {
+				throw new IOException(String.format("Shard manifest %s does not list any shards.", filename));
+			}
+			return manifest;
+		}
+	}
+
+	public void write(String filename) throws IOException {
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+			dos.writeByte(FILE_TYPE);
+			dos.writeInt(MANIFEST_VERSION);
+			dos.writeUTF(_fingerPrint);
+			dos.writeInt(_shards.size());
+			for (Shard shard : _shards) {
+				dos.writeUTF(shard.getFilename());
+				dos.writeLong(shard.getRowCount());
+				dos.writeLong(shard.getBytes());
+			}
+		}
+	}
+
+	public String getFingerPrint() {
+		return _fingerPrint;
+	}
+
+	public void addShard(String filename, long rowCount, long bytes) {
+		_shards.add(new Shard(filename, rowCount, bytes));
+	}
+
+	/**
+	 * Adds the shards of another manifest after the shards of this one, e.g.
+	 * the parts of a data set written on several threads.
+	 */
+	public void addShards(ShardManifest manifest) {
+		_shards.addAll(manifest._shards);
+	}
+
+	public List<Shard> getShards() {
+		return Collections.unmodifiableList(_shards);
+	}
+
+	public int getShardCount() {
+		return _shards.size();
+	}
+
+	public Shard getShard(int index) {
+		return _shards.get(index);
+	}
+
+	public long getRowCount() {
+		long rowCount = 0L;
+		for (Shard shard : _shards) {
+			rowCount += shard.getRowCount();
+		}
+		return rowCount;
+	}
+
+	public long getBytes() {
+		long bytes = 0L;
+		for (Shard shard : _shards) {
+			bytes += shard.getBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Deletes the shards and their row offset files. Shards that are already
+	 * gone are ignored, so a partly removed data set can be cleaned up.
+	 */
+	public void deleteShards() {
+		for (Shard shard : _shards) {
+			FileUtilities.deleteFile(shard.getFilename());
+			FileUtilities.deleteFile(DataFormat.getRowOffsetFilename(shard.getFilename()));
+		}
+	}
+
+	/**
+	 * Deletes the data set of the manifest file, the manifest last.
+	 */
+	public static void deleteDataSet(String filename) throws IOException {
+		if (isManifest(filename)) {
+			read(filename).deleteShards();
+			FileUtilities.deleteFile(filename);
+		}
+	}
+
+	public static class Shard {
+		protected final String _filename;
+		protected final long _rowCount;
+		protected final long _bytes;
+
+		public Shard(String filename, long rowCount, long bytes) {
+			_filename = filename;
+			_rowCount = rowCount;
+			_bytes = bytes;
+		}
+
+		public String getFilename() {
+			return _filename;
+		}
+
+		public long getRowCount() {
+			return _rowCount;
+		}
+
+		public long getBytes() {
+			return _bytes;
+		}
+	}
+}
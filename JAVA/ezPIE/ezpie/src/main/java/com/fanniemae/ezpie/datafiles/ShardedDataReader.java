@@ -0,0 +1,306 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.ZoneMap;
+
+/**
+ * Reads the shards listed in a shard manifest (see ShardedDataWriter) as
+ * one data set. Schema and header come from the first shard, with the row
+ * count of the whole data set. Positions are row ordinals, as in columnar
+ * data files, and each block is a shard. Only one shard is open at a time,
+ * block, row and column settings are passed on to each shard as it opens.
+ *
+ * @since 2018-07-23
+ *
+ */
+
+public class ShardedDataReader extends DataReader {
+
+	protected final ShardManifest _manifest;
+	protected final boolean _memoryMapped;
+	// Row ordinal of the first row of each shard, the last entry is the row count.
+	protected final long[] _shardFirstRows;
+
+	protected DataReader _shard = null;
+	protected int _shardIndex = -1;
+	protected int _firstShard = 0;
+	protected int _endShard;
+	protected long _closedSkippedRows = 0L;
+
+	protected BlockFilter _shardBlockFilter = null;
+	protected RowFilter _shardRowFilter = null;
+	protected String[] _shardProjection = null;
+	protected int _shardReadAhead = 0;
+
+	public ShardedDataReader(String manifestFilename) throws IOException {
+		this(manifestFilename, false);
+	}
+
+	public ShardedDataReader(String manifestFilename, boolean memoryMapped) throws IOException {
+		this(manifestFilename, ShardManifest.read(manifestFilename), memoryMapped);
+	}
+
+	protected ShardedDataReader(String manifestFilename, ShardManifest manifest, boolean memoryMapped) throws IOException {
+		super(manifest.getShard(0).getFilename());
+		// Only the schema and header of the first shard are used, each shard gets its own reader.
+		closeStream(this);
+		_manifest = manifest;
+		_memoryMapped = memoryMapped;
+		_endShard = manifest.getShardCount();
+		_shardFirstRows = new long[_endShard + 1];
+		for (int i = 0; i < _endShard; i++) {
+			_shardFirstRows[i + 1] = _shardFirstRows[i] + manifest.getShard(i).getRowCount();
+		}
+
+		_filename = manifestFilename;
+		_fingerPrint = manifest.getFingerPrint();
+		_fullRowCount = _shardFirstRows[_endShard];
+		_firstRow = 1L;
+		_lastRow = _fullRowCount;
+		populateHeaderInformation();
+	}
+
+	public ShardManifest getManifest() {
+		return _manifest;
+	}
+
+	@Override
+	public void close() throws Exception {
+		closeShard();
+		super.close();
+	}
+
+	@Override
+	public boolean eof() throws IOException {
+		if ((_shard == null) && !openShard(_firstShard)) {
+			return true;
+		}
+		while (_shard.eof()) {
+			if (!openShard(_shardIndex + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Object[] getDataRow() throws IOException {
+		if (eof()) {
+			throw new EOFException("No more data rows to read.");
+		}
+		return _shard.getDataRow();
+	}
+
+	@Override
+	public void getDataRow(RowCursor row) throws IOException {
+		if (eof()) {
+			throw new EOFException("No more data rows to read.");
+		}
+		_shard.getDataRow(row);
+	}
+
+	@Override
+	public void skipDataRow() throws IOException {
+		if (eof()) {
+			throw new EOFException("No more data rows to read.");
+		}
+		_shard.skipDataRow();
+	}
+
+	@Override
+	public Object[] getDataRowAt(long position) throws IOException {
+		seekToRowOrdinal(position);
+		return _shard.getDataRow();
+	}
+
+	@Override
+	public void getDataRowAt(long position, RowCursor row) throws IOException {
+		seekToRowOrdinal(position);
+		_shard.getDataRow(row);
+	}
+
+	@Override
+	public Object[] getDataRowByRowNumber(long rowNumber) throws IOException {
+		return getDataRowAt(rowNumber - _firstRow);
+	}
+
+	@Override
+	public void moveToRow(long rowNumber) throws IOException {
+		rowNumber = (rowNumber <= 0L) ? 1L : rowNumber;
+		if (rowNumber > _lastRow) {
+			seekToRowOrdinal(_fullRowCount);
+		} else {
+			seekToRowOrdinal((rowNumber == 1L) ? 0L : rowNumber - _firstRow + 1L);
+		}
+	}
+
+	/**
+	 * Random access, the shard range and the filters do not apply.
+	 */
+	@Override
+	protected void seekToRowOrdinal(long ordinal) throws IOException {
+		if ((ordinal < 0L) || (ordinal > _fullRowCount)) {
+			throw new EOFException(String.format("Row ordinal %,d is outside of the %,d rows of the sharded data set.", ordinal, _fullRowCount));
+		}
+		int shard = Arrays.binarySearch(_shardFirstRows, 0, _manifest.getShardCount(), ordinal);
+		// Empty shards share their first row with the next shard, use the last one.
+		if (shard >= 0) {
+			while ((shard + 1 < _manifest.getShardCount()) && (_shardFirstRows[shard + 1] == ordinal)) {
+				shard++;
+			}
+		} else {
+			shard = -shard - 2;
+		}
+		if ((_shard == null) || (_shardIndex != shard)) {
+			closeShard();
+			_shardIndex = shard;
+			_shard = new DataReader(_manifest.getShard(shard).getFilename(), _memoryMapped);
+			applySettings(_shard);
+		}
+		_shard.stopReadAhead();
+		_shard.seekToRowOrdinal(ordinal - _shardFirstRows[shard]);
+	}
+
+	@Override
+	public long getPosition() throws IOException {
+		if (_shard == null) {
+			return _shardFirstRows[_firstShard];
+		}
+		return _shardFirstRows[_shardIndex] + _shard.getCurrentRowNumber() - _shard.getBufferFirstRow() + 1L;
+	}
+
+	@Override
+	public void setReadAhead(int batches) throws IOException {
+		_shardReadAhead = Math.max(0, batches);
+		if (_shard != null) {
+			_shard.setReadAhead(_shardReadAhead);
+		}
+	}
+
+	@Override
+	public boolean isReadAhead() {
+		return _shardReadAhead > 0;
+	}
+
+	@Override
+	public void setBlockFilter(BlockFilter filter) throws IOException {
+		_shardBlockFilter = filter;
+		if (_shard != null) {
+			_shard.setBlockFilter(filter);
+		}
+	}
+
+	@Override
+	public void setRowFilter(RowFilter filter) throws IOException {
+		_shardRowFilter = filter;
+		if (_shard != null) {
+			_shard.setRowFilter(filter);
+		}
+	}
+
+	@Override
+	public void setColumnProjection(String[] columnNames) throws IOException {
+		_shardProjection = columnNames;
+		if (_shard != null) {
+			_shard.setColumnProjection(columnNames);
+		}
+	}
+
+	@Override
+	public long getSkippedRowCount() {
+		return _closedSkippedRows + ((_shard == null) ? 0L : _shard.getSkippedRowCount());
+	}
+
+	/**
+	 * Each shard has its own zone map, see getShardReader.
+	 */
+	@Override
+	public ZoneMap getZoneMap() {
+		return null;
+	}
+
+	@Override
+	public int getBlockCount() {
+		return _manifest.getShardCount();
+	}
+
+	@Override
+	public void setBlockRange(int firstBlock, int endBlock) throws IOException {
+		int blocks = getBlockCount();
+		if ((firstBlock < 0) || (endBlock > blocks) || (firstBlock > endBlock)) {
+			throw new IOException(String.format("Block range %d to %d is outside of the %d shards.", firstBlock, endBlock, blocks));
+		}
+		closeShard();
+		_firstShard = firstBlock;
+		_endShard = endBlock;
+	}
+
+	/**
+	 * Opens a reader on one shard, e.g. to look at its zone map. The caller
+	 * closes it.
+	 */
+	public DataReader getShardReader(int shard) throws IOException {
+		return new DataReader(_manifest.getShard(shard).getFilename(), _memoryMapped);
+	}
+
+	protected boolean openShard(int shard) throws IOException {
+		closeShard();
+		if ((shard < _firstShard) || (shard >= _endShard)) {
+			return false;
+		}
+		_shardIndex = shard;
+		_shard = new DataReader(_manifest.getShard(shard).getFilename(), _memoryMapped);
+		applySettings(_shard);
+		_shard.setReadAhead(_shardReadAhead);
+		return true;
+	}
+
+	protected void applySettings(DataReader shard) throws IOException {
+		if (_shardBlockFilter != null) {
+			shard.setBlockFilter(_shardBlockFilter);
+		}
+		if (_shardRowFilter != null) {
+			shard.setRowFilter(_shardRowFilter);
+		}
+		if (_shardProjection != null) {
+			shard.setColumnProjection(_shardProjection);
+		}
+	}
+
+	protected void closeShard() throws IOException {
+		if (_shard == null) {
+			return;
+		}
+		DataReader shard = _shard;
+		_shard = null;
+		_closedSkippedRows += shard.getSkippedRowCount();
+		closeStream(shard);
+	}
+
+	protected static void closeStream(DataReader reader) throws IOException {
+		try {
+			reader.close();
+		} catch (IOException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new IOException("Error closing " + reader.getFilename() + ": " + ex.getMessage(), ex);
+		}
+	}
+}
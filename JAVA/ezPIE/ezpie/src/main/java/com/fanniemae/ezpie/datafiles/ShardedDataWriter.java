@@ -0,0 +1,197 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.common.FileUtilities;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+
+/**
+ * Writes a data set as several data files (shards). A new shard is started
+ * once the current one reaches the row or byte limit, the shards are placed
+ * round robin over the shard directories. Close writes the manifest (see
+ * ShardManifest), DataReader.open reads the shards back as one data set.
+ * Writers without a manifest filename only collect their shards, e.g. one
+ * part of a data set written on several threads.
+ *
+ * @since 2018-07-23
+ *
+ */
+
+public class ShardedDataWriter implements AutoCloseable {
+
+	// Spreads the first shard of writers that run side by side over the directories.
+	protected static final AtomicInteger _directoryRotation = new AtomicInteger();
+
+	protected final String _manifestFilename;
+	protected final String[] _directories;
+	protected final long _maxRows;
+	protected final long _maxBytes;
+	protected int _nextDirectory;
+
+	protected String[][] _schema;
+	protected DataFileLayout _dataFileLayout = DataFileLayout.Row;
+	protected CompressionType _compressionType = CompressionType.None;
+	protected String[] _bloomFilterColumns = new String[0];
+	protected double _bloomFilterFalsePositiveRate;
+	protected boolean _writeBehind = false;
+	protected Date _bufferExpires = null;
+
+	protected DataWriter _shard = null;
+	protected String _shardFilename = null;
+	protected ShardManifest _manifest = new ShardManifest();
+	protected boolean _closed = false;
+
+	/**
+	 * A zero maxRows or maxBytes means no limit.
+	 */
+	public ShardedDataWriter(String manifestFilename, String[] directories, long maxRows, long maxBytes) {
+		if ((directories == null) || (directories.length == 0)) {
+			throw new IllegalArgumentException("Sharded data sets require at least one shard directory.");
+		}
+		_manifestFilename = manifestFilename;
+		_directories = directories.clone();
+		_maxRows = Math.max(0L, maxRows);
+		_maxBytes = Math.max(0L, maxBytes);
+		_nextDirectory = (_directoryRotation.getAndIncrement() & Integer.MAX_VALUE) % _directories.length;
+	}
+
+	public void setDataColumns(String[][] columnNamesAndTypes) {
+		_schema = columnNamesAndTypes;
+	}
+
+	public void setDataFileLayout(DataFileLayout layout) {
+		_dataFileLayout = layout;
+	}
+
+	public void setCompression(CompressionType compressionType) {
+		_compressionType = compressionType;
+	}
+
+	public void setBloomFilterColumns(String[] columnNames, double falsePositiveRate) {
+		_bloomFilterColumns = columnNames;
+		_bloomFilterFalsePositiveRate = falsePositiveRate;
+	}
+
+	public void setWriteBehind(boolean value) {
+		_writeBehind = value;
+	}
+
+	public void setBufferExpires(Date value) {
+		_bufferExpires = value;
+	}
+
+	public void writeDataRow(Object[] data) throws IOException {
+		nextShard().writeDataRow(data);
+	}
+
+	public void writeDataRow(RowCursor row) throws IOException {
+		nextShard().writeDataRow(row);
+	}
+
+	/**
+	 * Rows written to the shards so far.
+	 */
+	public long getRowCount() {
+		return _manifest.getRowCount() + ((_shard == null) ? 0L : _shard.getRowCount());
+	}
+
+	/**
+	 * The manifest is complete once the writer is closed.
+	 */
+	public ShardManifest getManifest() {
+		return _manifest;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (_closed) {
+			return;
+		}
+		_closed = true;
+		// An empty data set still gets one shard, it holds the schema.
+		if ((_shard == null) && (_manifest.getShardCount() == 0)) {
+			openShard();
+		}
+		closeShard();
+		if (_manifestFilename != null) {
+			_manifest.write(_manifestFilename);
+		}
+	}
+
+	public DataStream getDataStream() throws IOException {
+		close();
+		if (_manifestFilename == null) {
+			throw new IOException("Sharded data sets without a manifest filename have no data stream.");
+		}
+		try (DataReader dr = new ShardedDataReader(_manifestFilename)) {
+			return new DataStream(_manifestFilename, dr.getHeader(), dr.getSchema());
+		} catch (IOException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new IOException("Error closing " + _manifestFilename + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	protected DataWriter nextShard() throws IOException {
+		if (_closed) {
+			throw new IOException("Sharded data writer is already closed.");
+		} else if ((_shard != null) && (((_maxRows > 0L) && (_shard.getRowCount() >= _maxRows)) || ((_maxBytes > 0L) && (_shard.getBytesWritten() >= _maxBytes)))) {
+			closeShard();
+		}
+		if (_shard == null) {
+			openShard();
+		}
+		return _shard;
+	}
+
+	protected void openShard() throws IOException {
+		String directory = _directories[_nextDirectory];
+		_nextDirectory = (_nextDirectory + 1) % _directories.length;
+		_shardFilename = new File(FileUtilities.getRandomFilename(directory, "dat")).getAbsolutePath();
+		_shard = new DataWriter(_shardFilename, 0, false);
+		_shard.setDataColumns(_schema);
+		_shard.setDataFileLayout(_dataFileLayout);
+		_shard.setCompression(_compressionType);
+		// Sharded readers use row ordinals as positions, the row offsets make them direct seeks.
+		_shard.setRowOffsetFile(_dataFileLayout == DataFileLayout.Row);
+		_shard.setWriteBehind(_writeBehind);
+		if (_bloomFilterColumns.length > 0) {
+			_shard.setBloomFilterColumns(_bloomFilterColumns, _bloomFilterFalsePositiveRate);
+		}
+	}
+
+	protected void closeShard() throws IOException {
+		if (_shard == null) {
+			return;
+		}
+		DataWriter shard = _shard;
+		_shard = null;
+		long rowCount = shard.getRowCount();
+		shard.setFullRowCount(rowCount);
+		shard.setBufferFirstRow(1);
+		shard.setBufferLastRow(rowCount);
+		shard.setFullRowCountKnown(true);
+		if (_bufferExpires != null) {
+			shard.setBufferExpires(_bufferExpires);
+		}
+		shard.close();
+		_manifest.addShard(_shardFilename, rowCount, new File(_shardFilename).length());
+	}
+}
@@ -12,11 +12,13 @@
 package com.fanniemae.ezpie.datafiles.lowlevel;
 
 import java.io.BufferedInputStream;
+import java.io.DataInput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 
 import com.fanniemae.ezpie.common.ExceptionUtilities;
 
@@ -36,22 +38,50 @@ public class BinaryInputStream implements AutoCloseable {
 	protected FileInputStream _fis = null;
 	protected BufferedInputStream _bis = null;
 	protected SeekableDataInputStream _dis = null;
+	protected MappedDataInputStream _mis = null;
+	protected DataInput _input = null;
+
+	// Block compression - data blocks are read through the block stream using virtual offsets.
+	protected CompressedBlockInputStream _blockStream = null;
+	protected SeekableDataInputStream _blockDis = null;
+
+	protected boolean _isMemoryMapped = false;
 
 	protected long _length = 0;
 
+	// Encoding version 2 strings - varint byte length and UTF-8 instead of writeUTF.
+	protected boolean _longStrings = false;
+	protected byte[] _stringBuffer = new byte[256];
+
+	// Position saved by mark. Plain file streams return to it through the read buffer instead of a new one.
+	protected static final int MARK_LIMIT = 1048576;
+	protected long _markPosition = -1L;
+
 	public BinaryInputStream(String Filename) throws FileNotFoundException, IOException {
+		this(Filename, false);
+	}
+
+	public BinaryInputStream(String Filename, boolean memoryMapped) throws FileNotFoundException, IOException {
 		_filename = Filename;
 		File fd = new File(_filename);
 		if (!fd.exists()) {
 			throw new FileNotFoundException(_filename + " file was not found.");
 		}
 		_length = fd.length();
+		_isFilestream = true;
+
+		if (memoryMapped) {
+			_mis = new MappedDataInputStream(_filename);
+			_input = _mis;
+			_isMemoryMapped = true;
+			return;
+		}
 
 		_raf = new RandomAccessFile(_filename, "r");
 		_fis = new FileInputStream(_raf.getFD());
 		_bis = new BufferedInputStream(_fis);
 		_dis = new SeekableDataInputStream(_bis);
-		_isFilestream = true;
+		_input = _dis;
 	}
 
 	public BinaryInputStream(byte[] aBuffer) throws IOException {
@@ -61,28 +91,123 @@ public class BinaryInputStream implements AutoCloseable {
 		_length = aBuffer.length;
 		_bais = new SeekableByteArrayInputStream(aBuffer);
 		_dis = new SeekableDataInputStream(_bais);
+		_input = _dis;
+	}
+
+	/**
+	 * Once enabled, all positions are virtual offsets into the compressed
+	 * blocks between startOfBlocks and endOfBlocks (see
+	 * CompressedBlockInputStream). Read the header and footer first.
+	 */
+	public void enableBlockCompression(BlockCompressor compressor, BlockCipher cipher, long startOfBlocks, long endOfBlocks) {
+		_blockStream = new CompressedBlockInputStream(this, compressor, cipher, startOfBlocks, endOfBlocks);
+		_blockDis = new SeekableDataInputStream(_blockStream);
+		_input = _blockDis;
+	}
+
+	public boolean isBlockCompressed() {
+		return _blockStream != null;
 	}
 
 	public void seek(long pos) throws IOException {
-		if (_isFilestream) {
+		if (_blockStream != null) {
+			_blockStream.seek(pos);
+		} else {
+			seekRaw(pos);
+		}
+	}
+
+	protected void seekRaw(long pos) throws IOException {
+		if (_isMemoryMapped) {
+			_mis.seek(pos);
+		} else if (_isFilestream) {
 			_raf.seek(pos);
 			_bis = new BufferedInputStream(_fis);
 			_dis = new SeekableDataInputStream(_bis, pos);
+			if (_blockStream == null) {
+				_input = _dis;
+			}
 		} else {
 			if (pos < Integer.MIN_VALUE || pos > Integer.MAX_VALUE) {
 				throw new IllegalArgumentException(pos + " cannot be cast to int without changing its value.");
 			}
+			// The byte array stream is not buffered, so only the position needs to be reset.
 			_bais.seek((int) pos);
-			_dis = new SeekableDataInputStream(_bais, pos);
+			_dis.setPosition(pos);
+		}
+	}
+
+	/**
+	 * Saves the current position for rewind, e.g. the start of a row whose
+	 * values are read out of order.
+	 */
+	public void mark() throws IOException {
+		_markPosition = getPosition();
+		if (isBufferedFile()) {
+			_bis.mark(MARK_LIMIT);
+		}
+	}
+
+	/**
+	 * Returns to the position saved by mark. Memory, memory mapped and block
+	 * streams seek, plain file streams reuse their read buffer unless more
+	 * than MARK_LIMIT bytes were read since the mark.
+	 */
+	public void rewind() throws IOException {
+		if (_markPosition == -1L) {
+			throw new IOException("Data stream rewind called without a mark.");
+		}
+		if (isBufferedFile()) {
+			try {
+				_bis.reset();
+				_dis.setPosition(_markPosition);
+				return;
+			} catch (IOException ex) {
+				ExceptionUtilities.goSilent(ex);
+			}
 		}
+		seek(_markPosition);
+	}
+
+	protected boolean isBufferedFile() {
+		return _isFilestream && !_isMemoryMapped && (_blockStream == null);
 	}
 
 	public long getPosition() throws IOException {
-		return _dis.getPosition();
+		if (_blockStream != null) {
+			return _blockStream.getPosition();
+		}
+		return _isMemoryMapped ? _mis.getPosition() : _dis.getPosition();
+	}
+
+	protected DataInput getRawInput() {
+		return _isMemoryMapped ? _mis : _dis;
+	}
+
+	public long getLength() {
+		return _length;
+	}
+
+	public boolean isMemoryMapped() {
+		return _isMemoryMapped;
 	}
 
 	@Override
 	public void close() throws IOException {
+		try {
+			if (_blockStream != null) {
+				_blockStream.close();
+			}
+		} catch (IOException ex) {
+			ExceptionUtilities.goSilent(ex);
+		}
+		try {
+			if (_mis != null) {
+				_mis.close();
+			}
+		} catch (IOException ex) {
+			ExceptionUtilities.goSilent(ex);
+		}
 		try {
 			if (_dis != null) {
 				_dis.close();
@@ -121,62 +246,140 @@ public class BinaryInputStream implements AutoCloseable {
 	}
 
 	public int read(byte[] b) throws IOException {
-		return _dis.read(b);
+		return read(b, 0, b.length);
 	}
 
 	public int read(byte[] b, int off, int len) throws IOException {
-		return _dis.read(b, off, len);
+		if (_blockStream != null) {
+			return _blockDis.read(b, off, len);
+		}
+		return _isMemoryMapped ? _mis.read(b, off, len) : _dis.read(b, off, len);
 	}
 
 	public boolean readBoolean() throws IOException {
-		return _dis.readBoolean();
+		return _input.readBoolean();
 	}
 
 	public byte readByte() throws IOException {
-		return _dis.readByte();
+		return _input.readByte();
 	}
 
 	public char readChar() throws IOException {
-		return _dis.readChar();
+		return _input.readChar();
 	}
 
 	public double readDouble() throws IOException {
-		return _dis.readDouble();
+		return _input.readDouble();
 	}
 
 	public float readFloat() throws IOException {
-		return _dis.readFloat();
+		return _input.readFloat();
 	}
 
 	public void readFully(byte[] b) throws IOException {
-		_dis.readFully(b);
+		_input.readFully(b);
 	}
 
 	public void readFully(byte[] b, int off, int len) throws IOException {
-		_dis.readFully(b, off, len);
+		_input.readFully(b, off, len);
 	}
 
 	public int readInt() throws IOException {
-		return _dis.readInt();
+		return _input.readInt();
 	}
 
 	public long readLong() throws IOException {
-		return _dis.readLong();
+		return _input.readLong();
 	}
 
 	public short readShort() throws IOException {
-		return _dis.readShort();
+		return _input.readShort();
 	}
 
 	public int readUnsignedByte() throws IOException {
-		return _dis.readUnsignedByte();
+		return _input.readUnsignedByte();
 	}
 
 	public int readUnsignedShort() throws IOException {
-		return _dis.readUnsignedShort();
+		return _input.readUnsignedShort();
 	}
 
 	public String readUTF() throws IOException {
-		return _dis.readUTF();
+		return _input.readUTF();
+	}
+
+	public void setLongStrings(boolean value) {
+		_longStrings = value;
+	}
+
+	/**
+	 * Reads a string value written by BinaryOutputStream.writeString.
+	 */
+	public String readString() throws IOException {
+		if (!_longStrings) {
+			return _input.readUTF();
+		}
+		int length = readVarInt();
+		byte[] buffer = (length <= _stringBuffer.length) ? _stringBuffer : new byte[length];
+		if ((buffer != _stringBuffer) && (length <= BinaryOutputStream.MAX_STRING_BUFFER)) {
+			_stringBuffer = buffer;
+		}
+		_input.readFully(buffer, 0, length);
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] < 0) {
+				return new String(buffer, 0, length, StandardCharsets.UTF_8);
+			}
+		}
+		// Plain ASCII, every byte is one character.
+		return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Moves past a string value without decoding it. Both string encodings
+	 * start with the byte length, so only the length is read.
+	 */
+	public void skipString() throws IOException {
+		skipFully(_longStrings ? readVarInt() : _input.readUnsignedShort());
+	}
+
+	public void skipFully(int length) throws IOException {
+		while (length > 0) {
+			int skipped = _input.skipBytes(length);
+			if (skipped <= 0) {
+				// skipBytes may stop early, readByte reports the end of the stream.
+				_input.readByte();
+				skipped = 1;
+			}
+			length -= skipped;
+		}
+	}
+
+	public int readVarInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = _input.readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer in data file.");
+	}
+
+	public long readSignedVarLong() throws IOException {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public long readVarLong() throws IOException {
+		long value = 0L;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = _input.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length long in data file.");
 	}
 }
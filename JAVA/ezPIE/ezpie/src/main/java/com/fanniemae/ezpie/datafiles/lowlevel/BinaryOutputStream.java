@@ -17,7 +17,9 @@ import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 import com.fanniemae.ezpie.common.ExceptionUtilities;
@@ -39,11 +41,27 @@ public class BinaryOutputStream implements AutoCloseable {
     protected String _fingerPrint;
 
     protected DataOutputStream _dos = null;
+    protected CountingOutputStream _counter = null;  // long position, _dos.size() stops at 2 GB
     protected FileOutputStream _fos = null;
-    protected BufferedOutputStream _bos = null;
-    protected ByteArrayOutputStream _baos = null;  // aka memory stream
+    protected OutputStream _bos = null;  // buffered or write-behind file stream
+    protected OffHeapOutputStream _memory = null;  // aka memory stream, direct 1 MB chunks
 
     protected byte[] _memoryBuffer = null;
+    protected boolean _writeBehind = false;
+
+    // Encoding version 2 strings - varint byte length and UTF-8, no 64 KB limit.
+    public static final int MAX_STRING_BUFFER = 65536;
+    protected boolean _longStrings = false;
+    protected byte[] _stringBuffer = new byte[256];
+
+    // Block compression - values are buffered and written as compressed blocks.
+    protected BlockCompressor _compressor = null;
+    protected BlockCipher _cipher = null;
+    protected BlockBuffer _blockBuffer = null;
+    protected DataOutputStream _blockDos = null;
+    protected long _blockStart = -1L;
+    protected long _uncompressedBytes = 0L;
+    protected long _compressedBytes = 0L;
 
     public BinaryOutputStream(String Filename) throws FileNotFoundException {
         this(Filename, 0, UUID.randomUUID().toString());
@@ -68,29 +86,53 @@ public class BinaryOutputStream implements AutoCloseable {
             _isFilestream = true;
         } else {                                 // Hybrid operation
             _monitorMemory = true;
-            _memoryLimit = MemoryLimitMegabytes * 1048576;
+            _memoryLimit = MemoryLimitMegabytes * 1048576L;
         }
 
         // Open the correct output type
         if (_isFilestream) {
-            _fos = new FileOutputStream(_filename);
-            _bos = new BufferedOutputStream(_fos);
-            _dos = new DataOutputStream(_bos);
+            openFileStream(0L);
         } else {
-            _baos = new ByteArrayOutputStream();
-            _dos = new DataOutputStream(_baos);
+            _memory = new OffHeapOutputStream();
+            _counter = new CountingOutputStream(_memory);
+            _dos = new DataOutputStream(_counter);
+        }
+        _isOpen = true;
+    }
+
+    /**
+     * Reopens an existing data file for appending. Everything from position
+     * on (the index and footer of the file) is truncated, new data is written
+     * from there.
+     */
+    public BinaryOutputStream(String Filename, String FingerPrint, long position) throws IOException {
+        _filename = Filename;
+        _fingerPrint = FingerPrint;
+        _isFilestream = true;
+        try (RandomAccessFile raf = new RandomAccessFile(_filename, "rw")) {
+            if (raf.length() < position) {
+                throw new IOException(String.format("%s is shorter than the append position %,d.", _filename, position));
+            }
+            raf.setLength(position);
         }
+        _fos = new FileOutputStream(_filename, true);
+        openFileStream(position);
         _isOpen = true;
     }
 
     @Override
     public void close() throws IOException {
+        IOException writeBehindError = null;
         try {
             if (_dos != null) {
                 _dos.flush();
                 _dos.close();
             }
         } catch (IOException ex) {
+            // Data written by the background thread is lost, the caller has to know.
+            if (_bos instanceof WriteBehindOutputStream) {
+                writeBehindError = ex;
+            }
         	ExceptionUtilities.goSilent(ex);
         }
         try {
@@ -109,6 +151,9 @@ public class BinaryOutputStream implements AutoCloseable {
         	ExceptionUtilities.goSilent(ex);
         }
         _isOpen = false;
+        if (writeBehindError != null) {
+            throw writeBehindError;
+        }
     }
 
     public void writeFinalHeader(byte[] b) throws IOException {
@@ -119,17 +164,129 @@ public class BinaryOutputStream implements AutoCloseable {
                 raf.close();
             } 
         } else {
-            _memoryBuffer = _baos.toByteArray();
-            System.arraycopy(b, 0, _memoryBuffer, 0, b.length);
+            _memory.patch(0L, b);
+            _memoryBuffer = _memory.toByteArray();
+            _memory.reset();
         }
     }
     
+    /**
+     * File data is handed to a background thread (see WriteBehindOutputStream)
+     * so the caller can keep producing rows while the disk write runs. Errors
+     * from the background thread are thrown by a later write or by close.
+     */
+    public void setWriteBehind(boolean value) throws IOException {
+        if (value == _writeBehind) {
+            return;
+        }
+        _writeBehind = value;
+        if (_isFilestream && _isOpen) {
+            _dos.flush();
+            if (_bos instanceof WriteBehindOutputStream) {
+                ((WriteBehindOutputStream) _bos).finish();
+            } else {
+                _bos.flush();
+            }
+            openFileStream(_counter.getCount());
+        }
+    }
+
     public boolean IsFilestream() {
         return _isFilestream;
     }
 
     public long getPosition() {
-       return _dos.size();
+        if (_blockStart != -1L) {
+            return CompressedBlockInputStream.toVirtualOffset(_blockStart, _blockDos.size());
+        }
+        return _counter.getCount();
+    }
+
+    public void setBlockCompression(BlockCompressor compressor) {
+        _compressor = compressor;
+        _blockBuffer = new BlockBuffer();
+        _blockDos = new DataOutputStream(_blockBuffer);
+    }
+
+    /**
+     * Encrypted streams always use blocks, without compression the block
+     * bytes are only encrypted.
+     */
+    public void setBlockCipher(BlockCipher cipher) {
+        _cipher = cipher;
+        if (_compressor == null) {
+            setBlockCompression(new BlockCompressor(DataFileEnums.CompressionType.None));
+        }
+    }
+
+    public boolean isBlockCompressed() {
+        return _compressor != null;
+    }
+
+    public boolean inBlock() {
+        return _blockStart != -1L;
+    }
+
+    public int getBlockSize() {
+        return (_blockStart == -1L) ? 0 : _blockDos.size();
+    }
+
+    /**
+     * Bytes written before compression, used to space the index entries by
+     * data size instead of row count.
+     */
+    public long getDataBytesWritten() {
+        return (_compressor == null) ? _counter.getCount() : _uncompressedBytes + getBlockSize();
+    }
+
+    /**
+     * Size of the stream so far. An open compressed block counts with its
+     * uncompressed size.
+     */
+    public long getBytesWritten() {
+        return _counter.getCount() + getBlockSize();
+    }
+
+    public long getUncompressedBytes() {
+        return _uncompressedBytes;
+    }
+
+    public long getCompressedBytes() {
+        return _compressedBytes;
+    }
+
+    public void startBlock() throws IOException {
+        endBlock();
+        memoryMonitor();
+        if (_counter.getCount() > CompressedBlockInputStream.MAX_BLOCK_START) {
+            throw new IOException("Compressed data files are limited to 512 GB.");
+        }
+        _blockStart = _counter.getCount();
+    }
+
+    public void endBlock() throws IOException {
+        if (_blockStart == -1L) {
+            return;
+        }
+        long blockStart = _blockStart;
+        _blockStart = -1L;
+        int rawLength = _blockDos.size();
+        if (rawLength == 0) {
+            return;
+        }
+        byte[] compressed = _compressor.compress(_blockBuffer.getBuffer(), rawLength);
+        int compressedLength = _compressor.getCompressedLength();
+        memoryMonitor();
+        if (_cipher != null) {
+            compressed = _cipher.apply(blockStart, compressed, compressedLength);
+        }
+        _dos.writeInt(compressedLength);
+        _dos.writeInt(rawLength);
+        _dos.write(compressed, 0, compressedLength);
+        _uncompressedBytes += rawLength;
+        _compressedBytes += compressedLength + 8;
+        _blockBuffer.reset();
+        _blockDos = new DataOutputStream(_blockBuffer);
     }
     
     public byte[] getBuffer() {
@@ -137,73 +294,129 @@ public class BinaryOutputStream implements AutoCloseable {
     }
 
     public void write(byte[] b) throws IOException {
-        memoryMonitor();
-        _dos.write(b);
+        out().write(b);
     }
 
     public void write(byte[] b, int off, int len) throws IOException {
-        memoryMonitor();
-        _dos.write(b, off, len);
+        out().write(b, off, len);
     }
 
     public void write(int b) throws IOException {
-        memoryMonitor();
-        _dos.write(b);
+        out().write(b);
     }
 
     public void writeBoolean(boolean v) throws IOException {
-        memoryMonitor();
-        _dos.writeBoolean(v);
+        out().writeBoolean(v);
     }
 
     public void writeByte(int v) throws IOException {
-        memoryMonitor();
-        _dos.writeByte(v);
+        out().writeByte(v);
     }
 
     public void writeBytes(String s) throws IOException {
-        memoryMonitor();
-        _dos.writeBytes(s);
+        out().writeBytes(s);
     }
 
     public void writeChar(int v) throws IOException {
-        memoryMonitor();
-        _dos.writeChar(v);
+        out().writeChar(v);
     }
 
     public void writeChars(String s) throws IOException {
-        memoryMonitor();
-        _dos.writeChars(s);
+        out().writeChars(s);
     }
 
     public void writeDouble(double v) throws IOException {
-        memoryMonitor();
-        _dos.writeDouble(v);
+        out().writeDouble(v);
     }
 
     public void writeFloat(float v) throws IOException {
-        memoryMonitor();
-        _dos.writeFloat(v);
+        out().writeFloat(v);
     }
 
     public void writeInt(int v) throws IOException {
-        memoryMonitor();
-        _dos.writeInt(v);
+        out().writeInt(v);
     }
 
     public void writeLong(long v) throws IOException {
-        memoryMonitor();
-        _dos.writeLong(v);
+        out().writeLong(v);
     }
 
     public void writeShort(int v) throws IOException {
-        memoryMonitor();
-        _dos.writeShort(v);
+        out().writeShort(v);
     }
 
     public void writeUTF(String str) throws IOException {
-        memoryMonitor();
-        _dos.writeUTF(str);
+        out().writeUTF(str);
+    }
+
+    public void setLongStrings(boolean value) {
+        _longStrings = value;
+    }
+
+    /**
+     * String values of data rows. writeUTF is limited to 65,535 encoded bytes,
+     * long strings are written as a varint byte length and standard UTF-8.
+     * ASCII strings are copied byte for byte without the charset encoder.
+     */
+    public void writeString(String value) throws IOException {
+        if (!_longStrings) {
+            out().writeUTF(value);
+            return;
+        }
+        int length = value.length();
+        if (length <= MAX_STRING_BUFFER) {
+            if (length > _stringBuffer.length) {
+                _stringBuffer = new byte[Math.max(length, _stringBuffer.length * 2)];
+            }
+            byte[] buffer = _stringBuffer;
+            int i = 0;
+            while ((i < length) && (value.charAt(i) < 0x80)) {
+                buffer[i] = (byte) value.charAt(i);
+                i++;
+            }
+            if (i == length) {
+                writeVarInt(length);
+                out().write(buffer, 0, length);
+                return;
+            }
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out().write(bytes);
+    }
+
+    // Unsigned LEB128 - 7 bits per byte, high bit set when more bytes follow.
+    public void writeVarInt(int v) throws IOException {
+        DataOutputStream dos = out();
+        while ((v & ~0x7F) != 0) {
+            dos.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        dos.writeByte(v);
+    }
+
+    // ZigZag encoded so small negative values also stay small.
+    public void writeSignedVarLong(long v) throws IOException {
+        writeVarLong((v << 1) ^ (v >> 63));
+    }
+
+    public void writeVarLong(long v) throws IOException {
+        DataOutputStream dos = out();
+        while ((v & ~0x7FL) != 0L) {
+            dos.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        dos.writeByte((int) v);
+    }
+
+    protected DataOutputStream out() throws IOException {
+        if (_blockStart != -1L) {
+            return _blockDos;
+        }
+        if (_monitorMemory && (_counter.getCount() > _memoryLimit)) {
+            memoryMonitor();
+        }
+        return _dos;
     }
 
     protected void memoryMonitor() throws IOException {
@@ -211,15 +424,14 @@ public class BinaryOutputStream implements AutoCloseable {
             return;
         }
 
-        if (_dos.size() > _memoryLimit) {
+        if (_counter.getCount() > _memoryLimit) {
             try {
                 this.close();
-                byte[] aMemoryContents = _baos.toByteArray();
-                _fos = new FileOutputStream(_filename);
-                _bos = new BufferedOutputStream(_fos);
-                _dos = new DataOutputStream(_bos);
+                openFileStream(0L);
 
-                _dos.write(aMemoryContents);
+                // Spilled chunk by chunk, each chunk is released once written.
+                _memory.writeTo(_dos);
+                _memory = null;
                 _isFilestream = true;
                 _monitorMemory = false;
                 _isOpen = true;
@@ -229,4 +441,23 @@ public class BinaryOutputStream implements AutoCloseable {
         }
     }
 
+    // Keeps the open FileOutputStream, only the buffering layer is replaced.
+    protected void openFileStream(long position) throws FileNotFoundException {
+        if (_fos == null) {
+            _fos = new FileOutputStream(_filename);
+        }
+        _bos = _writeBehind ? new WriteBehindOutputStream(_fos) : new BufferedOutputStream(_fos);
+        _counter = new CountingOutputStream(_bos, position);
+        _dos = new DataOutputStream(_counter);
+    }
+
+    protected static class BlockBuffer extends ByteArrayOutputStream {
+        public BlockBuffer() {
+            super(1048576);
+        }
+
+        public byte[] getBuffer() {
+            return buf;
+        }
+    }
 }
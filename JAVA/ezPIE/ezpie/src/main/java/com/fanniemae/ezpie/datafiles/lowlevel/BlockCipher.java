@@ -0,0 +1,103 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES-CTR encryption of the data blocks of a data file. The counter starts at
+ * the file nonce followed by the file offset of the block, so every block has
+ * its own key stream and can be decrypted on its own. Encrypt and decrypt are
+ * the same operation.
+ *
+ * The key comes from the EncryptionKey setting (see SessionManager). Without
+ * it data files keep the original per-field string encryption.
+ *
+ * @since 2018-06-25
+ *
+ */
+
+public class BlockCipher {
+	public static final String ALGORITHM = "AES-CTR";
+
+	private static volatile byte[] _dataFileKey = null;
+
+	protected Cipher _cipher;
+	protected SecretKeySpec _key;
+	protected long _nonce;
+	protected byte[] _iv = new byte[16];
+	protected byte[] _buffer = new byte[65536];
+
+	public BlockCipher(byte[] key, long nonce) throws IOException {
+		try {
+			_cipher = Cipher.getInstance("AES/CTR/NoPadding");
+		} catch (GeneralSecurityException ex) {
+			throw new IOException("AES-CTR encryption is not available. " + ex.getMessage(), ex);
+		}
+		_key = new SecretKeySpec(key, "AES");
+		_nonce = nonce;
+		for (int i = 0; i < 8; i++) {
+			_iv[i] = (byte) (nonce >>> (56 - i * 8));
+		}
+	}
+
+	public static void setDataFileKey(byte[] key) {
+		_dataFileKey = key;
+	}
+
+	public static byte[] getDataFileKey() {
+		return _dataFileKey;
+	}
+
+	public static long newNonce() {
+		return new SecureRandom().nextLong();
+	}
+
+	public long getNonce() {
+		return _nonce;
+	}
+
+	/**
+	 * Key stream at an offset no data block uses. It is saved with the file,
+	 * so readers with a different key fail instead of decrypting garbage.
+	 */
+	public byte[] getKeyCheck(long offset, int length) throws IOException {
+		return Arrays.copyOf(apply(offset, new byte[length], length), length);
+	}
+
+	/**
+	 * Returns the transformed bytes. The returned array is reused by the next
+	 * call, only the first length bytes are valid.
+	 */
+	public byte[] apply(long blockStart, byte[] source, int length) throws IOException {
+		if (_buffer.length < length) {
+			_buffer = new byte[length];
+		}
+		for (int i = 0; i < 8; i++) {
+			_iv[8 + i] = (byte) (blockStart >>> (56 - i * 8));
+		}
+		try {
+			_cipher.init(Cipher.ENCRYPT_MODE, _key, new IvParameterSpec(_iv));
+			_cipher.doFinal(source, 0, length, _buffer, 0);
+		} catch (GeneralSecurityException ex) {
+			throw new IOException("Error during data block encryption. " + ex.getMessage(), ex);
+		}
+		return _buffer;
+	}
+}
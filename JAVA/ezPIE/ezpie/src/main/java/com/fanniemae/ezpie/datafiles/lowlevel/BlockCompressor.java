@@ -0,0 +1,151 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.xerial.snappy.Snappy;
+
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Compresses and decompresses the data blocks of a data file. One instance
+ * is used per stream so the codec state can be reused between blocks.
+ *
+ * @since 2018-06-11
+ *
+ */
+
+public class BlockCompressor {
+	protected CompressionType _compressionType;
+
+	protected Deflater _deflater;
+	protected Inflater _inflater;
+	protected LZ4Compressor _lz4Compressor;
+	protected LZ4FastDecompressor _lz4Decompressor;
+
+	protected byte[] _buffer = new byte[65536];
+	protected int _compressedLength = 0;
+
+	public BlockCompressor(CompressionType compressionType) {
+		_compressionType = compressionType;
+		switch (_compressionType) {
+		case Deflate:
+			_deflater = new Deflater(Deflater.BEST_SPEED);
+			_inflater = new Inflater();
+			break;
+		case LZ4:
+			LZ4Factory factory = LZ4Factory.fastestInstance();
+			_lz4Compressor = factory.fastCompressor();
+			_lz4Decompressor = factory.fastDecompressor();
+			break;
+		default:
+			break;
+		}
+	}
+
+	public CompressionType getCompressionType() {
+		return _compressionType;
+	}
+
+	/**
+	 * Returns the compressed bytes. The returned array is reused by the next
+	 * call, only the first length bytes (see getCompressedLength) are valid.
+	 */
+	public byte[] compress(byte[] source, int length) throws IOException {
+		switch (_compressionType) {
+		case Deflate:
+			_deflater.reset();
+			_deflater.setInput(source, 0, length);
+			_deflater.finish();
+			_compressedLength = 0;
+			while (!_deflater.finished()) {
+				if (_compressedLength == _buffer.length) {
+					_buffer = Arrays.copyOf(_buffer, _buffer.length * 2);
+				}
+				_compressedLength += _deflater.deflate(_buffer, _compressedLength, _buffer.length - _compressedLength);
+			}
+			return _buffer;
+		case LZ4:
+			ensureBuffer(_lz4Compressor.maxCompressedLength(length));
+			_compressedLength = _lz4Compressor.compress(source, 0, length, _buffer, 0);
+			return _buffer;
+		case Snappy:
+			ensureBuffer(Snappy.maxCompressedLength(length));
+			_compressedLength = Snappy.compress(source, 0, length, _buffer, 0);
+			return _buffer;
+		default:
+			_compressedLength = length;
+			return source;
+		}
+	}
+
+	public int getCompressedLength() {
+		return _compressedLength;
+	}
+
+	public void decompress(byte[] source, int sourceLength, byte[] destination, int rawLength) throws IOException {
+		switch (_compressionType) {
+		case Deflate:
+			try {
+				_inflater.reset();
+				_inflater.setInput(source, 0, sourceLength);
+				int count = 0;
+				while (count < rawLength) {
+					int inflated = _inflater.inflate(destination, count, rawLength - count);
+					if ((inflated == 0) && (_inflater.finished() || _inflater.needsInput())) {
+						break;
+					}
+					count += inflated;
+				}
+				if (count != rawLength) {
+					throw new IOException(String.format("Compressed data block is corrupt. Expected %,d bytes, found %,d bytes.", rawLength, count));
+				}
+			} catch (DataFormatException ex) {
+				throw new IOException("Compressed data block is corrupt. " + ex.getMessage(), ex);
+			}
+			break;
+		case LZ4:
+			_lz4Decompressor.decompress(source, 0, destination, 0, rawLength);
+			break;
+		case Snappy:
+			Snappy.uncompress(source, 0, sourceLength, destination, 0);
+			break;
+		default:
+			System.arraycopy(source, 0, destination, 0, rawLength);
+			break;
+		}
+	}
+
+	public void close() {
+		if (_deflater != null) {
+			_deflater.end();
+		}
+		if (_inflater != null) {
+			_inflater.end();
+		}
+	}
+
+	protected void ensureBuffer(int length) {
+		if (_buffer.length < length) {
+			_buffer = new byte[length];
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+/**
+ * Decides from the zone map of a data file whether a block can be skipped
+ * during a sequential read (see DataReader.setBlockFilter).
+ *
+ * @since 2018-07-09
+ *
+ */
+
+public abstract class BlockFilter {
+
+	/**
+	 * Returns true only when no row in the block can be part of the result.
+	 */
+	public abstract boolean skipBlock(ZoneMap zoneMap, int block);
+}
@@ -0,0 +1,147 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Bloom filter of the values of one column in one block of a data file (see
+ * ZoneMap.setBloomFilterColumns). Values are added as 64 bit hashes, the two
+ * halves of the hash are combined to derive every bit position. mightContain
+ * never returns false for a value that was added.
+ *
+ * @since 2018-07-20
+ *
+ */
+
+public class BloomFilter {
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+	protected static final int MAX_HASH_COUNT = 16;
+	protected static final double LN2 = Math.log(2.0);
+
+	protected long[] _bits;
+	protected int _hashCount;
+
+	protected BloomFilter(long[] bits, int hashCount) {
+		_bits = bits;
+		_hashCount = hashCount;
+	}
+
+	/**
+	 * Sizes the filter for the distinct hashes and the false positive rate.
+	 * The array is sorted in place.
+	 */
+	public static BloomFilter build(long[] hashes, int length, double falsePositiveRate) {
+		Arrays.sort(hashes, 0, length);
+		int distinct = 0;
+		for (int i = 0; i < length; i++) {
+			if ((i == 0) || (hashes[i] != hashes[i - 1])) {
+				distinct++;
+			}
+		}
+		if (distinct == 0) {
+			return new BloomFilter(new long[0], 0);
+		}
+
+		long bitCount = (long) Math.ceil(-distinct * Math.log(falsePositiveRate) / (LN2 * LN2));
+		int words = (int) Math.max(1L, Math.min(Integer.MAX_VALUE >> 6, (bitCount + 63) >> 6));
+		int hashCount = (int) Math.round((words * 64.0 / distinct) * LN2);
+		BloomFilter filter = new BloomFilter(new long[words], Math.max(1, Math.min(MAX_HASH_COUNT, hashCount)));
+		for (int i = 0; i < length; i++) {
+			if ((i == 0) || (hashes[i] != hashes[i - 1])) {
+				filter.addHash(hashes[i]);
+			}
+		}
+		return filter;
+	}
+
+	public boolean mightContain(long hash) {
+		if (_bits.length == 0) {
+			return false;
+		}
+		long bitCount = _bits.length * 64L;
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < _hashCount; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+			if ((_bits[(int) (bit >>> 6)] & (1L << bit)) == 0L) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getSizeInBytes() {
+		return _bits.length * 8;
+	}
+
+	public void write(DataOutputStream dos) throws IOException {
+		dos.writeByte(_hashCount);
+		dos.writeInt(_bits.length);
+		for (long word : _bits) {
+			dos.writeLong(word);
+		}
+	}
+
+	public static BloomFilter read(DataInputStream dis) throws IOException {
+		int hashCount = dis.readByte();
+		long[] bits = new long[dis.readInt()];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = dis.readLong();
+		}
+		return new BloomFilter(bits, hashCount);
+	}
+
+	public static long hashLong(long value) {
+		return mix(value);
+	}
+
+	public static long hashDouble(double value) {
+		// 0.0 and -0.0 share a hash, NaN values are canonical.
+		return mix(Double.doubleToLongBits((value == 0.0) ? 0.0 : value));
+	}
+
+	public static long hashString(String value) {
+		// 64 bit FNV-1a of the characters.
+		long hash = 0xcbf29ce484222325L;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	protected void addHash(long hash) {
+		long bitCount = _bits.length * 64L;
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < _hashCount; i++) {
+			long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+			_bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	// Finalizer of MurmurHash3, spreads every input bit over the result.
+	protected static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+}
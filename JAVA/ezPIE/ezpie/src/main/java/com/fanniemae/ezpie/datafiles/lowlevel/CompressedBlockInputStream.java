@@ -0,0 +1,157 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the compressed data blocks of a data file. Each block is stored as
+ * [int compressed length][int raw length][compressed bytes]. Positions are
+ * virtual offsets, the file offset of the block shifted left 24 bits plus the
+ * offset within the uncompressed block. Only the current block is held in
+ * memory. Encrypted blocks are decrypted before they are decompressed.
+ *
+ * @since 2018-06-11
+ *
+ */
+
+public class CompressedBlockInputStream extends InputStream {
+	public static final int BLOCK_OFFSET_BITS = 24;
+	public static final int MAX_BLOCK_SIZE = (1 << BLOCK_OFFSET_BITS) - 1;
+	public static final long MAX_BLOCK_START = Long.MAX_VALUE >>> BLOCK_OFFSET_BITS; // 512 GB
+
+	protected BinaryInputStream _source;
+	protected BlockCompressor _compressor;
+	protected BlockCipher _cipher;
+
+	protected byte[] _compressed = new byte[0];
+	protected byte[] _block = new byte[0];
+	protected int _blockLength = 0;
+	protected int _blockPos = 0;
+	protected long _blockStart = -1L;
+	protected long _nextBlockStart = 0L;
+	protected long _endOfBlocks;
+
+	public CompressedBlockInputStream(BinaryInputStream source, BlockCompressor compressor, BlockCipher cipher, long startOfBlocks, long endOfBlocks) {
+		_source = source;
+		_compressor = compressor;
+		_cipher = cipher;
+		_nextBlockStart = startOfBlocks;
+		_endOfBlocks = endOfBlocks;
+	}
+
+	public static long toVirtualOffset(long blockStart, int offsetInBlock) {
+		return (blockStart << BLOCK_OFFSET_BITS) | offsetInBlock;
+	}
+
+	public long getPosition() {
+		if ((_blockStart == -1L) || (_blockPos >= _blockLength)) {
+			return toVirtualOffset(_nextBlockStart, 0);
+		}
+		return toVirtualOffset(_blockStart, _blockPos);
+	}
+
+	public void seek(long virtualOffset) throws IOException {
+		long blockStart = virtualOffset >>> BLOCK_OFFSET_BITS;
+		int offset = (int) (virtualOffset & MAX_BLOCK_SIZE);
+		if (blockStart >= _endOfBlocks) {
+			_blockStart = -1L;
+			_nextBlockStart = blockStart;
+			return;
+		} else if (blockStart != _blockStart) {
+			readBlock(blockStart);
+		}
+		_blockPos = offset;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if ((_blockPos >= _blockLength) && !nextBlock()) {
+			return -1;
+		}
+		return _block[_blockPos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int total = 0;
+		while (total < len) {
+			if ((_blockPos >= _blockLength) && !nextBlock()) {
+				return (total == 0) ? -1 : total;
+			}
+			int count = Math.min(len - total, _blockLength - _blockPos);
+			System.arraycopy(_block, _blockPos, b, off + total, count);
+			_blockPos += count;
+			total += count;
+		}
+		return total;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long total = 0;
+		while (total < n) {
+			if ((_blockPos >= _blockLength) && !nextBlock()) {
+				break;
+			}
+			int count = (int) Math.min(n - total, _blockLength - _blockPos);
+			_blockPos += count;
+			total += count;
+		}
+		return total;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return _blockLength - _blockPos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_compressor.close();
+	}
+
+	protected boolean nextBlock() throws IOException {
+		if ((_blockStart != -1L) && (_blockPos < _blockLength)) {
+			return true;
+		} else if (_nextBlockStart >= _endOfBlocks) {
+			return false;
+		}
+		readBlock(_nextBlockStart);
+		return true;
+	}
+
+	protected void readBlock(long blockStart) throws IOException {
+		_source.seekRaw(blockStart);
+		DataInput raw = _source.getRawInput();
+		int compressedLength = raw.readInt();
+		int rawLength = raw.readInt();
+		if (_compressed.length < compressedLength) {
+			_compressed = new byte[compressedLength];
+		}
+		if (_block.length < rawLength) {
+			_block = new byte[rawLength];
+		}
+		raw.readFully(_compressed, 0, compressedLength);
+		byte[] compressed = (_cipher == null) ? _compressed : _cipher.apply(blockStart, _compressed, compressedLength);
+		_compressor.decompress(compressed, compressedLength, _block, rawLength);
+		_blockStart = blockStart;
+		_blockLength = rawLength;
+		_blockPos = 0;
+		_nextBlockStart = blockStart + 8L + compressedLength;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written as a long. DataOutputStream.size() is an int that
+ * stops at Integer.MAX_VALUE, so it cannot be used for offsets in data files
+ * larger than 2 GB.
+ *
+ * @since 2018-07-16
+ *
+ */
+
+public class CountingOutputStream extends FilterOutputStream {
+	protected long _count = 0L;
+
+	public CountingOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	public CountingOutputStream(OutputStream out, long count) {
+		super(out);
+		_count = count;
+	}
+
+	public long getCount() {
+		return _count;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		_count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		// FilterOutputStream would write the array one byte at a time.
+		out.write(b, off, len);
+		_count += len;
+	}
+}
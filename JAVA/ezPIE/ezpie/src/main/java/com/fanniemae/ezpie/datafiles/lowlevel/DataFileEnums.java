@@ -37,6 +37,18 @@ public class DataFileEnums {
 		ObjectData
 	}
 
+	public enum DataFileLayout {
+		Row, // Values are stored row by row (original format).
+		Columnar // Rows are grouped and the values of each column are stored together within a group.
+	}
+
+	public enum CompressionType {
+		None,
+		Deflate,
+		LZ4,
+		Snappy
+	}
+
 	public enum ColumnTypes {
 		DataValue, // Column with the potential to contain different values in every row.
 		GlobalValue // Column that is identical for every row of the data. E.g. Aggregates
@@ -14,9 +14,12 @@ package com.fanniemae.ezpie.datafiles.lowlevel;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.ColumnTypes;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
 import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
 
 /**
@@ -27,6 +30,32 @@ import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
  */
 
 abstract public class DataFormat implements AutoCloseable {
+	public static final String COLUMN_CHUNK_SECTION = "ColumnChunks";
+	public static final String STRING_DICTIONARY_SECTION = "StringDictionaries";
+	public static final String DATE_BASE_SECTION = "DateBases";
+	public static final String ZONE_MAP_SECTION = "ZoneMaps";
+	public static final String BLOOM_FILTER_SECTION = "BloomFilters";
+	public static final String SCHEMA_SECTION = "Schema";
+	public static final String KEY_CHECK_SECTION = "KeyCheck";
+
+	// Stored in the high four bits of the file type byte. Version 0 is the
+	// original fixed width encoding, version 1 adds the per-row null bitmap,
+	// varint integers, block relative dates and raw UUIDs. Version 2 is
+	// version 1 with varint length UTF-8 strings of any size.
+	public static final int LEGACY_ENCODING = 0;
+	public static final int COMPACT_ENCODING = 1;
+	public static final int LONG_STRING_ENCODING = 2;
+
+	// Counter offset used to encrypt the zone map section, past any data block offset.
+	protected static final long ZONE_MAP_CIPHER_OFFSET = Long.MAX_VALUE;
+	protected static final long BLOOM_FILTER_CIPHER_OFFSET = Long.MAX_VALUE / 2;
+	protected static final long KEY_CHECK_CIPHER_OFFSET = Long.MAX_VALUE / 4;
+	protected static final long STRING_DICTIONARY_CIPHER_OFFSET = Long.MAX_VALUE / 4 * 3;
+	protected static final int KEY_CHECK_LENGTH = 16;
+
+	// Largest string writeUTF accepts, in bytes.
+	public static final int MAX_UTF_LENGTH = 65535;
+
 	protected String _filename = "";
     protected DataRow _dataRow;
     protected ArrayList<IndexEntry> _indexBlock = null;
@@ -36,6 +65,7 @@ abstract public class DataFormat implements AutoCloseable {
     protected boolean _disposed = false;
     protected long _indexInterval = 5000L;       // Used by index to determine how often to add entry.
     protected long _nextBreak = 5000L;      // Next row count to add an index entry.
+    protected long _indexByteInterval = 65536L;  // Data bytes between index entries, whichever comes first.
     protected long _currentRowNumber = 0L;
     protected long _startOfDataBlock = 0L;
 
@@ -53,6 +83,12 @@ abstract public class DataFormat implements AutoCloseable {
     protected Date _dateCreated = new Date();
     protected Date _dateExpires = new Date();
     protected String _schemaXML = "";
+    protected DataFileLayout _dataFileLayout = DataFileLayout.Row;
+    protected CompressionType _compressionType = CompressionType.None;
+    protected int _encodingVersion = LEGACY_ENCODING;
+
+    // Named binary sections written after the schema. Older readers stop after the schema, so new sections are ignored.
+    protected Map<String, byte[]> _footerSections = new LinkedHashMap<>();
 
     protected Map<DataFileEnums.BinaryFileInfo, Object> _HeaderInformation = null;
 
@@ -100,6 +136,48 @@ abstract public class DataFormat implements AutoCloseable {
         _fullRowCountKnown = value;
     }
 
+    public DataFileLayout getDataFileLayout() {
+        return _dataFileLayout;
+    }
+
+    public CompressionType getCompressionType() {
+        return _compressionType;
+    }
+
+    public int getEncodingVersion() {
+        return _encodingVersion;
+    }
+
+    public boolean isCompactEncoding() {
+        return _encodingVersion >= COMPACT_ENCODING;
+    }
+
+    /**
+     * Number of bytes writeUTF uses for the value (modified UTF-8).
+     */
+    public static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 0x0001) && (c <= 0x007F)) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Optional side file with the position of every data row, 8 bytes per row
+     * after the finger print of the data file.
+     */
+    public static String getRowOffsetFilename(String filename) {
+        return filename + ".rows";
+    }
+
     public DataFormat() {
         _indexBlock = new ArrayList<>();
     }
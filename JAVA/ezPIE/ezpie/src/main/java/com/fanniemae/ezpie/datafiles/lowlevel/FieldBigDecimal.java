@@ -49,4 +49,14 @@ public class FieldBigDecimal extends FieldReadWrite {
         BigDecimal bd = (BigDecimal) o;
         _bos.writeDouble(bd.doubleValue());
     }
+
+    @Override
+    public void Write(RowCursor row, int column) throws IOException {
+        _bos.writeDouble(row.isNull(column) ? Double.MIN_VALUE : row.getDouble(column));
+    }
+
+    @Override
+    public void WriteValue(RowCursor row, int column) throws IOException {
+        _bos.writeDouble(row.getDouble(column));
+    }
 }
@@ -44,4 +44,23 @@ public class FieldByte extends FieldReadWrite {
 		_bos.writeInt((int) ((byte) o));
 	}
 
+	@Override
+	public Object ReadValue() throws IOException {
+		return (int) _bis.readSignedVarLong();
+	}
+
+	@Override
+	public void WriteValue(Object o) throws IOException {
+		_bos.writeSignedVarLong((byte) o);
+	}
+
+	@Override
+	public void Write(RowCursor row, int column) throws IOException {
+		_bos.writeInt(row.isNull(column) ? Integer.MIN_VALUE : row.getInt(column));
+	}
+
+	@Override
+	public void WriteValue(RowCursor row, int column) throws IOException {
+		_bos.writeSignedVarLong(row.getInt(column));
+	}
 }
@@ -44,6 +44,18 @@ public class FieldClob extends FieldReadWrite {
         // return _bis.readUTF();
 	}
 
+	@Override
+	public void Skip() throws IOException {
+        if (!_bis.readBoolean()) {
+            _bis.skipFully(_bis.readInt());
+        }
+	}
+
+	@Override
+	public void SkipValue() throws IOException {
+		Skip();
+	}
+
 	@Override
 	public void Write(Object o, Boolean bIsNull) throws IOException {
         if (bIsNull) {
@@ -23,6 +23,11 @@ import java.util.Date;
 
 public class FieldDate extends FieldReadWrite {
 
+	// Compact encoding stores each date as a zigzag varint delta from the
+	// first date in its block, the block bases are saved in the footer.
+	protected long _base = 0L;
+	protected boolean _baseSet = false;
+
 	public FieldDate(BinaryInputStream streamIn) {
 		super(streamIn);
 	}
@@ -48,4 +53,62 @@ public class FieldDate extends FieldReadWrite {
 		}
 		_bos.writeLong(((Date) o).getTime());
 	}
+
+	@Override
+	public Object ReadValue() throws IOException {
+		return new Date(_base + _bis.readSignedVarLong());
+	}
+
+	@Override
+	public void WriteValue(Object o) throws IOException {
+		writeTime(((Date) o).getTime());
+	}
+
+	@Override
+	public void Read(RowCursor row, int column) throws IOException {
+		long l = _bis.readLong();
+		if (l == 0) {
+			row.setNull(column);
+		} else {
+			row.setEpochMillis(column, l);
+		}
+	}
+
+	@Override
+	public void ReadValue(RowCursor row, int column) throws IOException {
+		row.setEpochMillis(column, _base + _bis.readSignedVarLong());
+	}
+
+	@Override
+	public void Write(RowCursor row, int column) throws IOException {
+		_bos.writeLong(row.isNull(column) ? 0L : row.getEpochMillis(column));
+	}
+
+	@Override
+	public void WriteValue(RowCursor row, int column) throws IOException {
+		writeTime(row.getEpochMillis(column));
+	}
+
+	protected void writeTime(long time) throws IOException {
+		if (!_baseSet) {
+			_base = time;
+			_baseSet = true;
+		}
+		_bos.writeSignedVarLong(time - _base);
+	}
+
+	public void setBase(long base) {
+		_base = base;
+	}
+
+	/**
+	 * Ends the current block and returns its base, the next value written
+	 * starts a new block.
+	 */
+	public long startNewBlock() {
+		long base = _base;
+		_base = 0L;
+		_baseSet = false;
+		return base;
+	}
 }
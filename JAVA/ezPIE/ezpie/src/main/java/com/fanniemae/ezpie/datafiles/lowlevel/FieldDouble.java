@@ -48,4 +48,33 @@ public class FieldDouble extends FieldReadWrite {
 		_bos.writeDouble((double) o);
 	}
 
+	@Override
+	public Object ReadValue() throws IOException {
+		return _bis.readDouble();
+	}
+
+	@Override
+	public void Read(RowCursor row, int column) throws IOException {
+		double d = _bis.readDouble();
+		if (d == Double.MIN_VALUE) {
+			row.setNull(column);
+		} else {
+			row.setDouble(column, d);
+		}
+	}
+
+	@Override
+	public void ReadValue(RowCursor row, int column) throws IOException {
+		row.setDouble(column, _bis.readDouble());
+	}
+
+	@Override
+	public void Write(RowCursor row, int column) throws IOException {
+		_bos.writeDouble(row.isNull(column) ? Double.MIN_VALUE : row.getDouble(column));
+	}
+
+	@Override
+	public void WriteValue(RowCursor row, int column) throws IOException {
+		_bos.writeDouble(row.getDouble(column));
+	}
 }
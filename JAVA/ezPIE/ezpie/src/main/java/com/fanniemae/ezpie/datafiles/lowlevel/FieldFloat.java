@@ -47,4 +47,14 @@ public class FieldFloat extends FieldReadWrite {
         }
         _bos.writeDouble((double) ((float) o));
     }
+
+    @Override
+    public void Write(RowCursor row, int column) throws IOException {
+        _bos.writeDouble(row.isNull(column) ? Double.MIN_VALUE : row.getDouble(column));
+    }
+
+    @Override
+    public void WriteValue(RowCursor row, int column) throws IOException {
+        _bos.writeDouble(row.getDouble(column));
+    }
 }
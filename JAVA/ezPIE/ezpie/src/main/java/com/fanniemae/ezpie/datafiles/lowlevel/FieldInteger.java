@@ -48,4 +48,38 @@ public class FieldInteger extends FieldReadWrite {
         _bos.writeInt((int) o);
     }
 
+    @Override
+    public Object ReadValue() throws IOException {
+        return (int) _bis.readSignedVarLong();
+    }
+
+    @Override
+    public void WriteValue(Object o) throws IOException {
+        _bos.writeSignedVarLong((int) o);
+    }
+
+    @Override
+    public void Read(RowCursor row, int column) throws IOException {
+        int i = _bis.readInt();
+        if (i == Integer.MIN_VALUE) {
+            row.setNull(column);
+        } else {
+            row.setInt(column, i);
+        }
+    }
+
+    @Override
+    public void ReadValue(RowCursor row, int column) throws IOException {
+        row.setInt(column, (int) _bis.readSignedVarLong());
+    }
+
+    @Override
+    public void Write(RowCursor row, int column) throws IOException {
+        _bos.writeInt(row.isNull(column) ? Integer.MIN_VALUE : row.getInt(column));
+    }
+
+    @Override
+    public void WriteValue(RowCursor row, int column) throws IOException {
+        _bos.writeSignedVarLong(row.getInt(column));
+    }
 }
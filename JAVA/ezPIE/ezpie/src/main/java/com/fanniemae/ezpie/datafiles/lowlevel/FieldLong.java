@@ -48,4 +48,38 @@ public class FieldLong extends FieldReadWrite {
         _bos.writeLong((long) o);
     }
 
+    @Override
+    public Object ReadValue() throws IOException {
+        return _bis.readSignedVarLong();
+    }
+
+    @Override
+    public void WriteValue(Object o) throws IOException {
+        _bos.writeSignedVarLong((long) o);
+    }
+
+    @Override
+    public void Read(RowCursor row, int column) throws IOException {
+        long l = _bis.readLong();
+        if (l == Long.MIN_VALUE) {
+            row.setNull(column);
+        } else {
+            row.setLong(column, l);
+        }
+    }
+
+    @Override
+    public void ReadValue(RowCursor row, int column) throws IOException {
+        row.setLong(column, _bis.readSignedVarLong());
+    }
+
+    @Override
+    public void Write(RowCursor row, int column) throws IOException {
+        _bos.writeLong(row.isNull(column) ? Long.MIN_VALUE : row.getLong(column));
+    }
+
+    @Override
+    public void WriteValue(RowCursor row, int column) throws IOException {
+        _bos.writeSignedVarLong(row.getLong(column));
+    }
 }
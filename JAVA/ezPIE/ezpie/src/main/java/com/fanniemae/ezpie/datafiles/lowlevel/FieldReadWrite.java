@@ -35,4 +35,44 @@ abstract public class FieldReadWrite {
 	public abstract Object Read() throws IOException;
 
 	public abstract void Write(Object o, Boolean bIsNull) throws IOException;
+
+	// Compact encoding (encoding version 1). Nulls are kept in the row null
+	// bitmap, so only non-null values are read and written. Types without a
+	// more compact form fall back to the original encoding.
+	public Object ReadValue() throws IOException {
+		return Read();
+	}
+
+	public void WriteValue(Object o) throws IOException {
+		Write(o, false);
+	}
+
+	// Skip versions move past a value without keeping it. Variable length
+	// types override them to skip by the stored length instead of decoding.
+	public void Skip() throws IOException {
+		Read();
+	}
+
+	public void SkipValue() throws IOException {
+		ReadValue();
+	}
+
+	// RowCursor versions. Primitive types override these so the values are
+	// never boxed, the defaults go through the boxed value.
+	public void Read(RowCursor row, int column) throws IOException {
+		row.setObject(column, Read());
+	}
+
+	public void ReadValue(RowCursor row, int column) throws IOException {
+		row.setObject(column, ReadValue());
+	}
+
+	public void Write(RowCursor row, int column) throws IOException {
+		Object o = row.getObject(column);
+		Write(o, o == null);
+	}
+
+	public void WriteValue(RowCursor row, int column) throws IOException {
+		WriteValue(row.getObject(column));
+	}
 }
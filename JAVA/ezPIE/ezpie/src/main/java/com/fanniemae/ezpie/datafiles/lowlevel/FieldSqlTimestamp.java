@@ -21,7 +21,7 @@ import java.util.Date;
  * 
  */
 
-public class FieldSqlTimestamp extends FieldReadWrite {
+public class FieldSqlTimestamp extends FieldDate {
 
     public FieldSqlTimestamp(BinaryInputStream streamIn) {
         super(streamIn);
@@ -50,4 +50,9 @@ public class FieldSqlTimestamp extends FieldReadWrite {
         Date dtValue = new Date(dtSql.getTime());
         _bos.writeLong(dtValue.getTime());
     }
+
+    @Override
+    public void WriteValue(Object o) throws IOException {
+        super.WriteValue(new Date(((java.sql.Timestamp) o).getTime()));
+    }
 }
@@ -35,7 +35,19 @@ public class FieldString extends FieldReadWrite {
         if (_bis.readBoolean()) {
             return null;
         }
-        return _bis.readUTF();
+        return _bis.readString();
+    }
+
+    @Override
+    public void Skip() throws IOException {
+        if (!_bis.readBoolean()) {
+            _bis.skipString();
+        }
+    }
+
+    @Override
+    public void SkipValue() throws IOException {
+        _bis.skipString();
     }
 
     @Override
@@ -45,6 +57,16 @@ public class FieldString extends FieldReadWrite {
             return;
         }
         _bos.writeBoolean(false);
-        _bos.writeUTF((String) o);
+        _bos.writeString((String) o);
+    }
+
+    @Override
+    public Object ReadValue() throws IOException {
+        return _bis.readString();
+    }
+
+    @Override
+    public void WriteValue(Object o) throws IOException {
+        _bos.writeString((String) o);
     }
 }
@@ -0,0 +1,146 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fanniemae.ezpie.common.CryptoUtilities;
+
+/**
+ * Dictionary encoded string column. Each value is written as a varint code:
+ * 0 = null, 1 = plain string follows, n + 2 = dictionary entry n. New values
+ * are added to the dictionary until it reaches the maximum size, after that
+ * they are written plain. The dictionary itself is saved in the footer.
+ *
+ * @since 2018-06-18
+ *
+ */
+
+public class FieldStringDictionary extends FieldReadWrite {
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+	protected static final int MAX_ENTRY_LENGTH = 256;
+
+	protected static final int NULL_CODE = 0;
+	protected static final int PLAIN_CODE = 1;
+	protected static final int FIRST_ENTRY_CODE = 2;
+
+	protected boolean _isEncrypted;
+
+	// Writer
+	protected int _maxEntries;
+	protected Map<String, Integer> _codes;
+	protected List<String> _entries;
+	protected int _plainCount = 0;
+	protected boolean _plainOnly = false;
+	protected long _dictionaryBytes = 0L;
+
+	// Reader
+	protected String[] _dictionary;
+
+	public FieldStringDictionary(BinaryInputStream streamIn, boolean isEncrypted, String[] dictionary) {
+		super(streamIn);
+		_isEncrypted = isEncrypted;
+		_dictionary = dictionary;
+	}
+
+	public FieldStringDictionary(BinaryOutputStream streamOut, boolean isEncrypted, int maxEntries) {
+		super(streamOut);
+		_isEncrypted = isEncrypted;
+		_maxEntries = maxEntries;
+		_codes = new HashMap<>();
+		_entries = new ArrayList<>();
+	}
+
+	public List<String> getDictionary() {
+		return _entries;
+	}
+
+	/**
+	 * Approximate size of the dictionary in the footer, it is only written
+	 * when the file is closed.
+	 */
+	public long getDictionaryBytes() {
+		return _dictionaryBytes;
+	}
+
+	/**
+	 * Starts the dictionary with the entries of an existing file, so rows
+	 * appended to it keep using the same codes.
+	 */
+	public void setDictionary(String[] entries) {
+		_codes.clear();
+		_entries.clear();
+		_dictionaryBytes = 0L;
+		for (String entry : entries) {
+			_codes.put(entry, _entries.size());
+			_entries.add(entry);
+			_dictionaryBytes += entry.length() + 2;
+		}
+	}
+
+	@Override
+	public Object Read() throws IOException {
+		int code = _bis.readVarInt();
+		if (code == NULL_CODE) {
+			return null;
+		} else if (code == PLAIN_CODE) {
+			return _isEncrypted ? CryptoUtilities.EncryptDecrypt(_bis.readString()) : _bis.readString();
+		}
+		return _dictionary[code - FIRST_ENTRY_CODE];
+	}
+
+	@Override
+	public void Skip() throws IOException {
+		if (_bis.readVarInt() == PLAIN_CODE) {
+			_bis.skipString();
+		}
+	}
+
+	@Override
+	public void SkipValue() throws IOException {
+		Skip();
+	}
+
+	@Override
+	public void Write(Object o, Boolean bIsNull) throws IOException {
+		if (bIsNull) {
+			_bos.writeVarInt(NULL_CODE);
+			return;
+		}
+
+		String value = o.toString();
+		Integer code = _plainOnly ? null : _codes.get(value);
+		if ((code == null) && !_plainOnly && (_entries.size() < _maxEntries) && (value.length() <= MAX_ENTRY_LENGTH)) {
+			code = _entries.size();
+			_codes.put(value, code);
+			_entries.add(value);
+			_dictionaryBytes += value.length() + 2;
+		}
+
+		if (code != null) {
+			_bos.writeVarInt(code + FIRST_ENTRY_CODE);
+			return;
+		}
+
+		// Once the dictionary is full and most new values miss, stop looking them up.
+		_plainCount++;
+		if ((_entries.size() >= _maxEntries) && (_plainCount > _maxEntries)) {
+			_plainOnly = true;
+		}
+		_bos.writeVarInt(PLAIN_CODE);
+		_bos.writeString(_isEncrypted ? CryptoUtilities.EncryptDecrypt(value) : value);
+	}
+}
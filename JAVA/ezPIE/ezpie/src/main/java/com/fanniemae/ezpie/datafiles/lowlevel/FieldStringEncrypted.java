@@ -37,7 +37,19 @@ public class FieldStringEncrypted extends FieldReadWrite {
         if (_bis.readBoolean()) {
             return null;
         }
-        return CryptoUtilities.EncryptDecrypt(_bis.readUTF());
+        return CryptoUtilities.EncryptDecrypt(_bis.readString());
+    }
+
+    @Override
+    public void Skip() throws IOException {
+        if (!_bis.readBoolean()) {
+            _bis.skipString();
+        }
+    }
+
+    @Override
+    public void SkipValue() throws IOException {
+        _bis.skipString();
     }
 
     @Override
@@ -48,6 +60,16 @@ public class FieldStringEncrypted extends FieldReadWrite {
         }
         
         _bos.writeBoolean(false);
-        _bos.writeUTF(CryptoUtilities.EncryptDecrypt(o.toString()));
+        _bos.writeString(CryptoUtilities.EncryptDecrypt(o.toString()));
+    }
+
+    @Override
+    public Object ReadValue() throws IOException {
+        return CryptoUtilities.EncryptDecrypt(_bis.readString());
+    }
+
+    @Override
+    public void WriteValue(Object o) throws IOException {
+        _bos.writeString(CryptoUtilities.EncryptDecrypt(o.toString()));
     }
 }
@@ -49,4 +49,15 @@ public class FieldUUID extends FieldReadWrite {
         _bos.writeUTF(((UUID) o).toString()); //Write UUID to string
     }
 
+    @Override
+    public Object ReadValue() throws IOException {
+        return new UUID(_bis.readLong(), _bis.readLong());
+    }
+
+    @Override
+    public void WriteValue(Object o) throws IOException {
+        UUID value = (UUID) o;
+        _bos.writeLong(value.getMostSignificantBits());
+        _bos.writeLong(value.getLeastSignificantBits());
+    }
 }
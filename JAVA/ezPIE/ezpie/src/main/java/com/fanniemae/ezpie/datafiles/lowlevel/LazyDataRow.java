@@ -0,0 +1,30 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.IOException;
+
+/**
+ * Row of a data file whose values are decoded the first time they are asked
+ * for (see RowFilter). Columns that are never asked for are skipped by their
+ * stored length instead of being decoded.
+ *
+ * @since 2018-07-22
+ *
+ */
+
+public abstract class LazyDataRow {
+
+	public abstract int getColumnCount();
+
+	public abstract Object getValue(int column) throws IOException;
+}
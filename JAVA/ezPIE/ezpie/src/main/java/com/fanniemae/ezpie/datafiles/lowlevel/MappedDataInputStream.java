@@ -0,0 +1,270 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.fanniemae.ezpie.common.ExceptionUtilities;
+
+/**
+ * Read only, memory mapped view of a data file. The file is mapped in windows
+ * of up to 1 GB so files larger than 2 GB can be read. A seek only moves the
+ * position (and remaps the window if needed), no buffers are rebuilt.
+ *
+ * @since 2018-06-04
+ *
+ */
+
+public class MappedDataInputStream extends InputStream implements DataInput {
+	protected static final long WINDOW_SIZE = 1L << 30;
+
+	protected RandomAccessFile _raf;
+	protected FileChannel _channel;
+	protected MappedByteBuffer _window;
+
+	protected long _length;
+	protected long _windowStart = 0L;
+	protected long _windowEnd = 0L;
+	protected long _pos = 0L;
+
+	private byte[] _bytearr = new byte[80];
+	private char[] _chararr = new char[80];
+
+	public MappedDataInputStream(String filename) throws IOException {
+		_raf = new RandomAccessFile(filename, "r");
+		_channel = _raf.getChannel();
+		_length = _channel.size();
+		mapWindow(0L);
+	}
+
+	public long getPosition() {
+		return _pos;
+	}
+
+	public long getLength() {
+		return _length;
+	}
+
+	public void seek(long pos) throws IOException {
+		if ((pos < 0) || (pos > _length)) {
+			throw new IOException(String.format("Seek position %,d is outside of the file (%,d bytes).", pos, _length));
+		}
+		_pos = pos;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (_pos >= _length) {
+			return -1;
+		}
+		checkWindow(1);
+		return _window.get((int) (_pos++ - _windowStart)) & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		} else if (_pos >= _length) {
+			return -1;
+		}
+		int total = 0;
+		len = (int) Math.min(len, _length - _pos);
+		while (total < len) {
+			if ((_pos < _windowStart) || (_pos >= _windowEnd)) {
+				mapWindow(_pos);
+			}
+			int count = (int) Math.min(len - total, _windowEnd - _pos);
+			_window.position((int) (_pos - _windowStart));
+			_window.get(b, off + total, count);
+			_pos += count;
+			total += count;
+		}
+		return total;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long count = Math.max(0, Math.min(n, _length - _pos));
+		_pos += count;
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int) Math.min(Integer.MAX_VALUE, _length - _pos);
+	}
+
+	@Override
+	public void close() throws IOException {
+		unmap(_window);
+		_window = null;
+		try {
+			_channel.close();
+		} catch (IOException ex) {
+			ExceptionUtilities.goSilent(ex);
+		}
+		_raf.close();
+	}
+
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		if (len < 0) {
+			throw new IndexOutOfBoundsException();
+		} else if (_pos + len > _length) {
+			throw new EOFException();
+		}
+		read(b, off, len);
+	}
+
+	@Override
+	public int skipBytes(int n) throws IOException {
+		return (int) skip(n);
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		checkWindow(1);
+		return _window.get((int) (_pos++ - _windowStart));
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		checkWindow(2);
+		short value = _window.getShort((int) (_pos - _windowStart));
+		_pos += 2;
+		return value;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		checkWindow(2);
+		char value = _window.getChar((int) (_pos - _windowStart));
+		_pos += 2;
+		return value;
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		checkWindow(4);
+		int value = _window.getInt((int) (_pos - _windowStart));
+		_pos += 4;
+		return value;
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		checkWindow(8);
+		long value = _window.getLong((int) (_pos - _windowStart));
+		_pos += 8;
+		return value;
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Deprecated
+	@Override
+	public String readLine() throws IOException {
+		throw new UnsupportedOperationException("readLine is not supported by memory mapped data files.");
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		int utflen = readUnsignedShort();
+		if (_bytearr.length < utflen) {
+			_bytearr = new byte[utflen * 2];
+			_chararr = new char[utflen * 2];
+		}
+		readFully(_bytearr, 0, utflen);
+		return SeekableDataInputStream.decodeUTF(_bytearr, _chararr, utflen);
+	}
+
+	protected void checkWindow(int size) throws IOException {
+		if (_pos + size > _length) {
+			throw new EOFException();
+		} else if ((_pos < _windowStart) || (_pos + size > _windowEnd)) {
+			mapWindow(_pos);
+		}
+	}
+
+	protected void mapWindow(long pos) throws IOException {
+		unmap(_window);
+		// Windows run a few bytes into the next one so a primitive value never spans two windows.
+		_windowStart = (pos / WINDOW_SIZE) * WINDOW_SIZE;
+		long size = Math.min(WINDOW_SIZE + 8L, _length - _windowStart);
+		_window = _channel.map(FileChannel.MapMode.READ_ONLY, _windowStart, size);
+		_windowEnd = _windowStart + size;
+	}
+
+	// Mapped buffers are only released by the garbage collector. Release them
+	// right away so the staging files can be deleted (required on Windows).
+	protected static void unmap(ByteBuffer buffer) {
+		if ((buffer == null) || !buffer.isDirect()) {
+			return;
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Exception ex) {
+			// Java 9+ no longer allows access to the cleaner, use Unsafe.invokeCleaner instead.
+			try {
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+			} catch (Exception exUnsafe) {
+				ExceptionUtilities.goSilent(exUnsafe);
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory tier of BinaryOutputStream. Bytes are kept in fixed size direct
+ * (off-heap) chunks, so the stream never grows or copies one large heap array.
+ * writeTo moves the chunks to a file one at a time and releases each one as
+ * soon as it is written.
+ *
+ * @since 2018-07-17
+ *
+ */
+
+public class OffHeapOutputStream extends OutputStream {
+	public static final int CHUNK_SIZE = 1048576;
+
+	protected List<ByteBuffer> _chunks = new ArrayList<>();
+	protected ByteBuffer _current = null;
+	protected long _size = 0L;
+
+	public long size() {
+		return _size;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if ((_current == null) || !_current.hasRemaining()) {
+			addChunk();
+		}
+		_current.put((byte) b);
+		_size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if ((_current == null) || !_current.hasRemaining()) {
+				addChunk();
+			}
+			int count = Math.min(len, _current.remaining());
+			_current.put(b, off, count);
+			off += count;
+			len -= count;
+			_size += count;
+		}
+	}
+
+	/**
+	 * Overwrites bytes already written, used to patch the final header in
+	 * place.
+	 */
+	public void patch(long position, byte[] b) throws IOException {
+		if (position < 0 || position + b.length > _size) {
+			throw new IOException(String.format("Patch of %,d bytes at %,d is outside of the %,d bytes written.", b.length, position, _size));
+		}
+		int off = 0;
+		while (off < b.length) {
+			long pos = position + off;
+			ByteBuffer chunk = _chunks.get((int) (pos / CHUNK_SIZE)).duplicate();
+			chunk.position((int) (pos % CHUNK_SIZE));
+			int count = Math.min(b.length - off, CHUNK_SIZE - chunk.position());
+			chunk.put(b, off, count);
+			off += count;
+		}
+	}
+
+	/**
+	 * Writes the contents to out and releases the chunks, the stream is empty
+	 * afterwards.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		byte[] transfer = new byte[(int) Math.min(65536L, Math.max(_size, 1L))];
+		for (int i = 0; i < _chunks.size(); i++) {
+			ByteBuffer chunk = _chunks.get(i);
+			chunk.flip();
+			while (chunk.hasRemaining()) {
+				int count = Math.min(transfer.length, chunk.remaining());
+				chunk.get(transfer, 0, count);
+				out.write(transfer, 0, count);
+			}
+			_chunks.set(i, null);
+		}
+		reset();
+	}
+
+	/**
+	 * Single copy of the contents into a heap array, DataStream and
+	 * BinaryInputStream read memory data files from a byte[].
+	 */
+	public byte[] toByteArray() throws IOException {
+		if (_size > Integer.MAX_VALUE - 8) {
+			throw new IOException(String.format("In memory data of %,d bytes is too large for a byte array.", _size));
+		}
+		byte[] result = new byte[(int) _size];
+		int off = 0;
+		for (ByteBuffer chunk : _chunks) {
+			ByteBuffer source = chunk.duplicate();
+			source.flip();
+			int count = source.remaining();
+			source.get(result, off, count);
+			off += count;
+		}
+		return result;
+	}
+
+	public void reset() {
+		_chunks.clear();
+		_current = null;
+		_size = 0L;
+	}
+
+	protected void addChunk() {
+		_current = ByteBuffer.allocateDirect(CHUNK_SIZE);
+		_chunks.add(_current);
+	}
+}
@@ -0,0 +1,265 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+/**
+ * Reusable row buffer for DataReader.getDataRow(RowCursor) and
+ * DataWriter.writeDataRow(RowCursor). Integer, long and date columns are held
+ * as longs (dates as epoch milliseconds), floating point columns as doubles,
+ * so reading and writing them does not box a value per field. getObject
+ * boxes on demand for code that still needs the object.
+ *
+ * @since 2018-07-02
+ *
+ */
+
+public class RowCursor {
+	protected static final byte OBJECT_SLOT = 0;
+	protected static final byte LONG_SLOT = 1;
+	protected static final byte DOUBLE_SLOT = 2;
+
+	protected DataType[] _dataTypes;
+	protected byte[] _slots;
+	protected boolean[] _nulls;
+	protected long[] _longs;
+	protected double[] _doubles;
+	protected Object[] _objects;
+
+	public RowCursor(DataType[] dataTypes) {
+		int length = dataTypes.length;
+		_dataTypes = dataTypes.clone();
+		_slots = new byte[length];
+		_nulls = new boolean[length];
+		_longs = new long[length];
+		_doubles = new double[length];
+		_objects = new Object[length];
+		for (int i = 0; i < length; i++) {
+			_slots[i] = slotType(dataTypes[i]);
+		}
+		clear();
+	}
+
+	public int getColumnCount() {
+		return _dataTypes.length;
+	}
+
+	public DataType getDataType(int column) {
+		return _dataTypes[column];
+	}
+
+	public void clear() {
+		Arrays.fill(_nulls, true);
+		Arrays.fill(_objects, null);
+	}
+
+	public boolean isNull(int column) {
+		return _nulls[column];
+	}
+
+	public int getInt(int column) {
+		return (int) getLong(column);
+	}
+
+	public long getLong(int column) {
+		switch (_slots[column]) {
+		case LONG_SLOT:
+			return _longs[column];
+		case DOUBLE_SLOT:
+			return (long) _doubles[column];
+		default:
+			Object value = _objects[column];
+			if (value instanceof Date) {
+				return ((Date) value).getTime();
+			}
+			return (value == null) ? 0L : ((Number) value).longValue();
+		}
+	}
+
+	public long getEpochMillis(int column) {
+		return getLong(column);
+	}
+
+	public double getDouble(int column) {
+		switch (_slots[column]) {
+		case DOUBLE_SLOT:
+			return _doubles[column];
+		case LONG_SLOT:
+			return _longs[column];
+		default:
+			Object value = _objects[column];
+			return (value == null) ? 0.0 : ((Number) value).doubleValue();
+		}
+	}
+
+	public String getString(int column) {
+		if (_nulls[column]) {
+			return null;
+		} else if (_slots[column] == OBJECT_SLOT) {
+			return _objects[column].toString();
+		}
+		return getObject(column).toString();
+	}
+
+	public Object getObject(int column) {
+		if (_nulls[column]) {
+			return null;
+		}
+		switch (_slots[column]) {
+		case LONG_SLOT:
+			long l = _longs[column];
+			switch (_dataTypes[column]) {
+			case ByteData:
+				return (byte) l;
+			case ShortData:
+				return (short) l;
+			case IntegerData:
+				return (int) l;
+			case DateData:
+				return new Date(l);
+			case SqlTimestampData:
+				return new Timestamp(l);
+			default:
+				return l;
+			}
+		case DOUBLE_SLOT:
+			double d = _doubles[column];
+			switch (_dataTypes[column]) {
+			case FloatData:
+				return (float) d;
+			case BigDecimalData:
+				return new BigDecimal(d);
+			default:
+				return d;
+			}
+		default:
+			return _objects[column];
+		}
+	}
+
+	public void setNull(int column) {
+		_nulls[column] = true;
+		_objects[column] = null;
+	}
+
+	public void setInt(int column, int value) {
+		setLong(column, value);
+	}
+
+	public void setLong(int column, long value) {
+		switch (_slots[column]) {
+		case LONG_SLOT:
+			_longs[column] = value;
+			_nulls[column] = false;
+			break;
+		case DOUBLE_SLOT:
+			_doubles[column] = value;
+			_nulls[column] = false;
+			break;
+		default:
+			setObject(column, value);
+			break;
+		}
+	}
+
+	public void setEpochMillis(int column, long value) {
+		if (_slots[column] == OBJECT_SLOT) {
+			setObject(column, new Date(value));
+		} else {
+			setLong(column, value);
+		}
+	}
+
+	public void setDouble(int column, double value) {
+		switch (_slots[column]) {
+		case DOUBLE_SLOT:
+			_doubles[column] = value;
+			_nulls[column] = false;
+			break;
+		case LONG_SLOT:
+			_longs[column] = (long) value;
+			_nulls[column] = false;
+			break;
+		default:
+			setObject(column, value);
+			break;
+		}
+	}
+
+	public void setObject(int column, Object value) {
+		if (value == null) {
+			setNull(column);
+			return;
+		}
+		switch (_slots[column]) {
+		case LONG_SLOT:
+			_longs[column] = (value instanceof Date) ? ((Date) value).getTime() : ((Number) value).longValue();
+			break;
+		case DOUBLE_SLOT:
+			_doubles[column] = ((Number) value).doubleValue();
+			break;
+		default:
+			_objects[column] = value;
+			break;
+		}
+		_nulls[column] = false;
+	}
+
+	/**
+	 * Copies one value from another cursor without boxing when both columns
+	 * use the same storage.
+	 */
+	public void copyFrom(int column, RowCursor source, int sourceColumn) {
+		if (source._nulls[sourceColumn]) {
+			setNull(column);
+		} else if (_slots[column] != source._slots[sourceColumn]) {
+			setObject(column, source.getObject(sourceColumn));
+		} else {
+			_longs[column] = source._longs[sourceColumn];
+			_doubles[column] = source._doubles[sourceColumn];
+			_objects[column] = source._objects[sourceColumn];
+			_nulls[column] = false;
+		}
+	}
+
+	public Object[] toArray() {
+		Object[] values = new Object[_dataTypes.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getObject(i);
+		}
+		return values;
+	}
+
+	protected static byte slotType(DataType dataType) {
+		switch (dataType) {
+		case ByteData:
+		case ShortData:
+		case IntegerData:
+		case LongData:
+		case DateData:
+		case SqlTimestampData:
+			return LONG_SLOT;
+		case FloatData:
+		case DoubleData:
+		case BigDecimalData:
+			return DOUBLE_SLOT;
+		default:
+			return OBJECT_SLOT;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.IOException;
+
+/**
+ * Decides from a lazily decoded row whether a sequential read can skip it
+ * (see DataReader.setRowFilter). Only the columns the filter reads are
+ * decoded, the rest of a skipped row is never decoded.
+ *
+ * @since 2018-07-22
+ *
+ */
+
+public abstract class RowFilter {
+
+	/**
+	 * Returns true only when the row cannot be part of the result.
+	 */
+	public abstract boolean skipRow(LazyDataRow row) throws IOException;
+}
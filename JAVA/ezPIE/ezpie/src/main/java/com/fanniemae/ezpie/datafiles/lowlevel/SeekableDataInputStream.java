@@ -47,6 +47,10 @@ public class SeekableDataInputStream extends FilterInputStream implements DataIn
         _pos = lStartOffSet;
     }
 
+    public void setPosition(long pos) {
+        _pos = pos;
+    }
+
     @Override
     public final int read(byte b[]) throws IOException {
         int i = in.read(b, 0, b.length);
@@ -264,12 +268,15 @@ public class SeekableDataInputStream extends FilterInputStream implements DataIn
             chararr = new char[utflen];
         }
 
+        in.readFully(bytearr, 0, utflen);
+        return decodeUTF(bytearr, chararr, utflen);
+    }
+
+    protected final static String decodeUTF(byte[] bytearr, char[] chararr, int utflen) throws UTFDataFormatException {
         int c, char2, char3;
         int count = 0;
         int chararr_count = 0;
 
-        in.readFully(bytearr, 0, utflen);
-
         while (count < utflen) {
             c = (int) bytearr[count] & 0xff;
             if (c > 127) {
@@ -0,0 +1,194 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Double buffered output stream. The producing thread fills one buffer while a
+ * background thread writes the other one to the underlying stream. Only
+ * BUFFER_COUNT buffers exist, so a producer that gets ahead of the disk waits
+ * for a free buffer. A write error on the background thread is rethrown by
+ * the next write, flush or close.
+ *
+ * @since 2018-07-18
+ *
+ */
+
+public class WriteBehindOutputStream extends OutputStream {
+	public static final int BUFFER_SIZE = 1048576;
+	public static final int BUFFER_COUNT = 2;
+
+	protected static final Chunk END_OF_STREAM = new Chunk(0);
+
+	protected OutputStream _out;
+	protected BlockingQueue<Chunk> _filled = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+	protected BlockingQueue<Chunk> _free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+	protected Chunk _current;
+	protected Thread _writer;
+	protected volatile IOException _error = null;
+	protected boolean _closed = false;
+
+	public WriteBehindOutputStream(OutputStream out) {
+		this(out, BUFFER_SIZE);
+	}
+
+	public WriteBehindOutputStream(OutputStream out, int bufferSize) {
+		_out = out;
+		for (int i = 1; i < BUFFER_COUNT; i++) {
+			_free.add(new Chunk(bufferSize));
+		}
+		_current = new Chunk(bufferSize);
+		_writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeChunks();
+			}
+		}, "ezPIE write-behind");
+		_writer.setDaemon(true);
+		_writer.start();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (_current.length == _current.buffer.length) {
+			handOff();
+		}
+		_current.buffer[_current.length++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (_current.length == _current.buffer.length) {
+				handOff();
+			}
+			int count = Math.min(len, _current.buffer.length - _current.length);
+			System.arraycopy(b, off, _current.buffer, _current.length, count);
+			_current.length += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Hands the current buffer to the writer thread, the bytes are not on disk
+	 * until close returns.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (_current.length > 0) {
+			handOff();
+		}
+		checkError();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			_out.close();
+		}
+	}
+
+	/**
+	 * Writes the remaining buffers and stops the writer thread, the underlying
+	 * stream is left open.
+	 */
+	public void finish() throws IOException {
+		if (_closed) {
+			return;
+		}
+		_closed = true;
+		try {
+			flush();
+		} finally {
+			try {
+				put(END_OF_STREAM);
+				_writer.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the write-behind thread.");
+			}
+		}
+		checkError();
+	}
+
+	protected void handOff() throws IOException {
+		checkError();
+		put(_current);
+		try {
+			_current = _free.take();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a write-behind buffer.");
+		}
+		_current.length = 0;
+		checkError();
+	}
+
+	protected void put(Chunk chunk) throws InterruptedIOException {
+		try {
+			_filled.put(chunk);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while handing off a write-behind buffer.");
+		}
+	}
+
+	protected void checkError() throws IOException {
+		if (_error != null) {
+			throw new IOException("Write-behind error: " + _error.getMessage(), _error);
+		}
+	}
+
+	protected void writeChunks() {
+		try {
+			while (true) {
+				Chunk chunk = _filled.take();
+				if (chunk == END_OF_STREAM) {
+					break;
+				}
+				if (_error == null) {
+					try {
+						_out.write(chunk.buffer, 0, chunk.length);
+					} catch (IOException ex) {
+						_error = ex;
+					}
+				}
+				// Buffers are still recycled after an error so the producer never blocks forever.
+				_free.put(chunk);
+			}
+			if (_error == null) {
+				_out.flush();
+			}
+		} catch (IOException ex) {
+			_error = ex;
+		} catch (InterruptedException ex) {
+			_error = new InterruptedIOException("Write-behind thread interrupted.");
+		}
+	}
+
+	protected static class Chunk {
+		protected byte[] buffer;
+		protected int length = 0;
+
+		protected Chunk(int size) {
+			buffer = new byte[size];
+		}
+	}
+}
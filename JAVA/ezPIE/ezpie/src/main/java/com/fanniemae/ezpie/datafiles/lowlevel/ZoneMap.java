@@ -0,0 +1,644 @@
+/**
+ *
+ * Copyright (c) 2018 Fannie Mae, All rights reserved.
+ * This program and the accompany materials are made available under
+ * the terms of the Fannie Mae Open Source Licensing Project available
+ * at https://github.com/FannieMaeOpenSource/ezPie/wiki/License
+ *
+ * ezPIE® is a registered trademark of Fannie Mae
+ *
+ */
+
+package com.fanniemae.ezpie.datafiles.lowlevel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import com.fanniemae.ezpie.common.CryptoUtilities;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+/**
+ * Minimum, maximum and null count of every column for each block of a data
+ * file. Row data files start a block at every index entry, columnar data files
+ * use one block per row group. Readers use them to skip blocks that cannot
+ * contain a requested value (see BlockFilter).
+ *
+ * Numbers and dates are tracked as longs or doubles, strings as strings. Other
+ * types and strings longer than MAX_STRING_LENGTH only record the null count.
+ *
+ * Key columns can also keep a Bloom filter per block, so equality lookups skip
+ * blocks whose range includes the value but whose rows do not. The filters
+ * are saved separately by writeBloomFilters.
+ *
+ * @since 2018-07-09
+ *
+ */
+
+public class ZoneMap {
+	public static final int MAX_STRING_LENGTH = 256;
+
+	protected static final byte NO_RANGE = 0;
+	protected static final byte LONG_RANGE = 1;
+	protected static final byte DOUBLE_RANGE = 2;
+	protected static final byte STRING_RANGE = 3;
+
+	protected DataType[] _dataTypes;
+	protected byte[] _kinds;
+
+	protected List<Long> _firstRows = new ArrayList<>();
+	protected List<Long> _rowCounts = new ArrayList<>();
+	protected List<long[]> _nullCounts = new ArrayList<>();
+	protected List<Object[]> _minValues = new ArrayList<>();
+	protected List<Object[]> _maxValues = new ArrayList<>();
+
+	// Writer - statistics of the current block.
+	protected long _rowCount = 0L;
+	protected long _blockRowCount = 0L;
+	protected long[] _blockNulls;
+	protected boolean[] _hasRange;
+	protected boolean[] _unbounded;
+	protected long[] _longMin;
+	protected long[] _longMax;
+	protected double[] _doubleMin;
+	protected double[] _doubleMax;
+	protected String[] _stringMin;
+	protected String[] _stringMax;
+
+	// Bloom filters - position of each column in _bloomColumns, -1 without a filter.
+	protected int[] _bloomColumns = new int[0];
+	protected int[] _bloomIndex;
+	protected double _falsePositiveRate = BloomFilter.DEFAULT_FALSE_POSITIVE_RATE;
+	protected List<BloomFilter[]> _bloomFilters = new ArrayList<>();
+	protected long[][] _blockHashes;
+	protected int[] _blockHashCounts;
+	protected long _bloomFilterNanos = 0L;
+
+	public ZoneMap(DataType[] dataTypes) {
+		int length = dataTypes.length;
+		_dataTypes = dataTypes.clone();
+		_kinds = new byte[length];
+		for (int i = 0; i < length; i++) {
+			_kinds[i] = rangeType(dataTypes[i]);
+		}
+		_blockNulls = new long[length];
+		_hasRange = new boolean[length];
+		_unbounded = new boolean[length];
+		_longMin = new long[length];
+		_longMax = new long[length];
+		_doubleMin = new double[length];
+		_doubleMax = new double[length];
+		_stringMin = new String[length];
+		_stringMax = new String[length];
+		_bloomIndex = new int[length];
+		Arrays.fill(_bloomIndex, -1);
+	}
+
+	/**
+	 * Builds a Bloom filter for each block of the key columns. Only numbers,
+	 * dates and strings are supported. Must be called before the first row.
+	 */
+	public void setBloomFilterColumns(int[] columns, double falsePositiveRate) {
+		if ((_rowCount > 0L) || (_blockRowCount > 0L)) {
+			throw new IllegalStateException("Bloom filter columns must be set before the first data row is written.");
+		} else if (!(falsePositiveRate > 0.0) || !(falsePositiveRate < 1.0)) {
+			throw new IllegalArgumentException(String.format("Bloom filter false positive rate %s must be between 0 and 1.", falsePositiveRate));
+		}
+		Arrays.fill(_bloomIndex, -1);
+		for (int i = 0; i < columns.length; i++) {
+			if (_kinds[columns[i]] == NO_RANGE) {
+				throw new IllegalArgumentException(String.format("Bloom filters are not supported for %s columns.", _dataTypes[columns[i]]));
+			}
+			_bloomIndex[columns[i]] = i;
+		}
+		_bloomColumns = columns.clone();
+		_falsePositiveRate = falsePositiveRate;
+		_blockHashes = new long[columns.length][1024];
+		_blockHashCounts = new int[columns.length];
+	}
+
+	public boolean hasBloomFilter(int column) {
+		return (column < _bloomIndex.length) && (_bloomIndex[column] != -1);
+	}
+
+	/**
+	 * False only when the block has a Bloom filter for the column and the
+	 * value is definitely not in the block. Null values are counted by
+	 * getNullCount instead.
+	 */
+	public boolean mightContain(int block, int column, Object value) {
+		if ((value == null) || !hasBloomFilter(column)) {
+			return true;
+		}
+		return _bloomFilters.get(block)[_bloomIndex[column]].mightContain(hashValue(column, value));
+	}
+
+	public long getBloomFilterBytes() {
+		long bytes = 0L;
+		for (BloomFilter[] filters : _bloomFilters) {
+			for (BloomFilter filter : filters) {
+				bytes += filter.getSizeInBytes();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Time spent hashing values and building the Bloom filters.
+	 */
+	public long getBloomFilterNanos() {
+		return _bloomFilterNanos;
+	}
+
+	public int getBlockCount() {
+		return _rowCounts.size();
+	}
+
+	public int getColumnCount() {
+		return _kinds.length;
+	}
+
+	/**
+	 * Zero based ordinal of the first row in the block.
+	 */
+	public long getFirstRow(int block) {
+		return _firstRows.get(block);
+	}
+
+	public long getRowCount(int block) {
+		return _rowCounts.get(block);
+	}
+
+	public long getNullCount(int block, int column) {
+		return _nullCounts.get(block)[column];
+	}
+
+	public long getNullCount(int column) {
+		long nullCount = 0L;
+		for (long[] nulls : _nullCounts) {
+			nullCount += nulls[column];
+		}
+		return nullCount;
+	}
+
+	/**
+	 * True when the block has a minimum and maximum for the column. Blocks
+	 * where every value is null and columns without ranges return false.
+	 */
+	public boolean hasRange(int block, int column) {
+		return _minValues.get(block)[column] != null;
+	}
+
+	/**
+	 * Returns the smallest value in the block using the Java type of the column,
+	 * or null when there is no range.
+	 */
+	public Object getMinValue(int block, int column) {
+		return toColumnType(column, _minValues.get(block)[column]);
+	}
+
+	public Object getMaxValue(int block, int column) {
+		return toColumnType(column, _maxValues.get(block)[column]);
+	}
+
+	/**
+	 * Smallest value of the column across all blocks, null when any block with
+	 * values is missing a range.
+	 */
+	public Object getMinValue(int column) {
+		return toColumnType(column, fileRange(column, _minValues, -1));
+	}
+
+	public Object getMaxValue(int column) {
+		return toColumnType(column, fileRange(column, _maxValues, 1));
+	}
+
+	public void add(Object[] values) {
+		for (int i = 0; i < _kinds.length; i++) {
+			Object value = values[i];
+			if (value == null) {
+				_blockNulls[i]++;
+				continue;
+			}
+			switch (_kinds[i]) {
+			case LONG_RANGE:
+				addLong(i, (value instanceof Date) ? ((Date) value).getTime() : ((Number) value).longValue());
+				break;
+			case DOUBLE_RANGE:
+				addDouble(i, ((Number) value).doubleValue());
+				break;
+			case STRING_RANGE:
+				addString(i, value.toString());
+				break;
+			default:
+				break;
+			}
+		}
+		_blockRowCount++;
+
+		if (_bloomColumns.length > 0) {
+			long start = System.nanoTime();
+			for (int i = 0; i < _bloomColumns.length; i++) {
+				Object value = values[_bloomColumns[i]];
+				if (value != null) {
+					addHash(i, hashValue(_bloomColumns[i], value));
+				}
+			}
+			_bloomFilterNanos += System.nanoTime() - start;
+		}
+	}
+
+	public void add(RowCursor row) {
+		for (int i = 0; i < _kinds.length; i++) {
+			if (row.isNull(i)) {
+				_blockNulls[i]++;
+				continue;
+			}
+			switch (_kinds[i]) {
+			case LONG_RANGE:
+				addLong(i, row.getLong(i));
+				break;
+			case DOUBLE_RANGE:
+				addDouble(i, row.getDouble(i));
+				break;
+			case STRING_RANGE:
+				addString(i, row.getString(i));
+				break;
+			default:
+				break;
+			}
+		}
+		_blockRowCount++;
+
+		if (_bloomColumns.length > 0) {
+			long start = System.nanoTime();
+			for (int i = 0; i < _bloomColumns.length; i++) {
+				int column = _bloomColumns[i];
+				if (row.isNull(column)) {
+					continue;
+				}
+				switch (_kinds[column]) {
+				case LONG_RANGE:
+					addHash(i, BloomFilter.hashLong(row.getLong(column)));
+					break;
+				case DOUBLE_RANGE:
+					addHash(i, BloomFilter.hashDouble(row.getDouble(column)));
+					break;
+				default:
+					addHash(i, BloomFilter.hashString(row.getString(column)));
+					break;
+				}
+			}
+			_bloomFilterNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Saves the statistics of the current block and starts the next one.
+	 */
+	public void closeBlock() {
+		int length = _kinds.length;
+		Object[] minValues = new Object[length];
+		Object[] maxValues = new Object[length];
+		for (int i = 0; i < length; i++) {
+			if (!_hasRange[i] || _unbounded[i]) {
+				continue;
+			}
+			switch (_kinds[i]) {
+			case LONG_RANGE:
+				minValues[i] = _longMin[i];
+				maxValues[i] = _longMax[i];
+				break;
+			case DOUBLE_RANGE:
+				minValues[i] = _doubleMin[i];
+				maxValues[i] = _doubleMax[i];
+				break;
+			case STRING_RANGE:
+				if ((_stringMin[i].length() <= MAX_STRING_LENGTH) && (_stringMax[i].length() <= MAX_STRING_LENGTH)) {
+					minValues[i] = _stringMin[i];
+					maxValues[i] = _stringMax[i];
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		if (_bloomColumns.length > 0) {
+			long start = System.nanoTime();
+			BloomFilter[] filters = new BloomFilter[_bloomColumns.length];
+			for (int i = 0; i < filters.length; i++) {
+				filters[i] = BloomFilter.build(_blockHashes[i], _blockHashCounts[i], _falsePositiveRate);
+				_blockHashCounts[i] = 0;
+			}
+			_bloomFilters.add(filters);
+			_bloomFilterNanos += System.nanoTime() - start;
+		}
+		_firstRows.add(_rowCount);
+		_rowCounts.add(_blockRowCount);
+		_nullCounts.add(_blockNulls.clone());
+		_minValues.add(minValues);
+		_maxValues.add(maxValues);
+
+		_rowCount += _blockRowCount;
+		_blockRowCount = 0L;
+		Arrays.fill(_blockNulls, 0L);
+		Arrays.fill(_hasRange, false);
+		Arrays.fill(_unbounded, false);
+		Arrays.fill(_stringMin, null);
+		Arrays.fill(_stringMax, null);
+	}
+
+	public void write(DataOutputStream dos, boolean encryptStrings) throws IOException {
+		int length = _kinds.length;
+		dos.writeInt(length);
+		dos.write(_kinds);
+		dos.writeInt(getBlockCount());
+		for (int block = 0; block < getBlockCount(); block++) {
+			dos.writeLong(_firstRows.get(block));
+			dos.writeLong(_rowCounts.get(block));
+			long[] nulls = _nullCounts.get(block);
+			Object[] minValues = _minValues.get(block);
+			Object[] maxValues = _maxValues.get(block);
+			for (int i = 0; i < length; i++) {
+				dos.writeLong(nulls[i]);
+				dos.writeBoolean(minValues[i] != null);
+				if (minValues[i] == null) {
+					continue;
+				}
+				switch (_kinds[i]) {
+				case LONG_RANGE:
+					dos.writeLong((Long) minValues[i]);
+					dos.writeLong((Long) maxValues[i]);
+					break;
+				case DOUBLE_RANGE:
+					dos.writeDouble((Double) minValues[i]);
+					dos.writeDouble((Double) maxValues[i]);
+					break;
+				default:
+					String min = (String) minValues[i];
+					String max = (String) maxValues[i];
+					dos.writeUTF(encryptStrings ? CryptoUtilities.EncryptDecrypt(min) : min);
+					dos.writeUTF(encryptStrings ? CryptoUtilities.EncryptDecrypt(max) : max);
+					break;
+				}
+			}
+		}
+	}
+
+	public void writeBloomFilters(DataOutputStream dos) throws IOException {
+		dos.writeInt(_bloomColumns.length);
+		for (int column : _bloomColumns) {
+			dos.writeInt(column);
+		}
+		dos.writeInt(_bloomFilters.size());
+		for (BloomFilter[] filters : _bloomFilters) {
+			for (BloomFilter filter : filters) {
+				filter.write(dos);
+			}
+		}
+		dos.writeDouble(_falsePositiveRate);
+	}
+
+	/**
+	 * Adds the Bloom filters saved by writeBloomFilters to a zone map loaded
+	 * by read. Filters of columns the reader does not have are ignored.
+	 */
+	public void readBloomFilters(DataInputStream dis) throws IOException {
+		int[] columns = new int[dis.readInt()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = dis.readInt();
+		}
+		if (dis.readInt() != getBlockCount()) {
+			throw new IOException("Data file Bloom filters do not match the zone maps.");
+		}
+		List<BloomFilter[]> bloomFilters = new ArrayList<>();
+		for (int block = 0; block < getBlockCount(); block++) {
+			BloomFilter[] filters = new BloomFilter[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				filters[i] = BloomFilter.read(dis);
+			}
+			bloomFilters.add(filters);
+		}
+		Arrays.fill(_bloomIndex, -1);
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] < _bloomIndex.length) {
+				_bloomIndex[columns[i]] = i;
+			}
+		}
+		_bloomColumns = columns;
+		_bloomFilters = bloomFilters;
+		// Files written before the rate was saved use the default.
+		if (dis.available() >= 8) {
+			_falsePositiveRate = dis.readDouble();
+		}
+	}
+
+	/**
+	 * Copy of a zone map loaded by read that new blocks can be added to, used
+	 * to append rows to an existing data file. The loaded zone map may be
+	 * shared by other readers, so it is not changed. A file without rows only
+	 * has an empty block, which is dropped so the first appended row starts
+	 * block 0 again.
+	 */
+	public ZoneMap reopen() {
+		ZoneMap zoneMap = new ZoneMap(_dataTypes);
+		zoneMap._kinds = _kinds.clone();
+		for (int block = 0; block < getBlockCount(); block++) {
+			zoneMap._rowCount += _rowCounts.get(block);
+		}
+		if ((zoneMap._rowCount > 0L) || (getBlockCount() > 1)) {
+			zoneMap._firstRows.addAll(_firstRows);
+			zoneMap._rowCounts.addAll(_rowCounts);
+			zoneMap._nullCounts.addAll(_nullCounts);
+			zoneMap._minValues.addAll(_minValues);
+			zoneMap._maxValues.addAll(_maxValues);
+			zoneMap._bloomFilters.addAll(_bloomFilters);
+		}
+		if (_bloomColumns.length > 0) {
+			zoneMap._bloomColumns = _bloomColumns.clone();
+			zoneMap._bloomIndex = _bloomIndex.clone();
+			zoneMap._falsePositiveRate = _falsePositiveRate;
+			zoneMap._blockHashes = new long[_bloomColumns.length][1024];
+			zoneMap._blockHashCounts = new int[_bloomColumns.length];
+		}
+		return zoneMap;
+	}
+
+	/**
+	 * Reads a zone map saved by write. dataTypes are the column types of the
+	 * reader, columns past the end of the saved zone map have no statistics.
+	 */
+	public static ZoneMap read(DataInputStream dis, DataType[] dataTypes, boolean encryptedStrings) throws IOException {
+		int length = dis.readInt();
+		if (length > dataTypes.length) {
+			throw new IOException("Data file zone maps do not match the schema.");
+		}
+		ZoneMap zoneMap = new ZoneMap(Arrays.copyOf(dataTypes, length));
+		dis.readFully(zoneMap._kinds);
+		int blockCount = dis.readInt();
+		for (int block = 0; block < blockCount; block++) {
+			zoneMap._firstRows.add(dis.readLong());
+			zoneMap._rowCounts.add(dis.readLong());
+			long[] nulls = new long[length];
+			Object[] minValues = new Object[length];
+			Object[] maxValues = new Object[length];
+			for (int i = 0; i < length; i++) {
+				nulls[i] = dis.readLong();
+				if (!dis.readBoolean()) {
+					continue;
+				}
+				switch (zoneMap._kinds[i]) {
+				case LONG_RANGE:
+					minValues[i] = dis.readLong();
+					maxValues[i] = dis.readLong();
+					break;
+				case DOUBLE_RANGE:
+					minValues[i] = dis.readDouble();
+					maxValues[i] = dis.readDouble();
+					break;
+				case STRING_RANGE:
+					String min = dis.readUTF();
+					String max = dis.readUTF();
+					minValues[i] = encryptedStrings ? CryptoUtilities.EncryptDecrypt(min) : min;
+					maxValues[i] = encryptedStrings ? CryptoUtilities.EncryptDecrypt(max) : max;
+					break;
+				default:
+					throw new IOException("Data file zone map range type is not supported.");
+				}
+			}
+			zoneMap._nullCounts.add(nulls);
+			zoneMap._minValues.add(minValues);
+			zoneMap._maxValues.add(maxValues);
+		}
+		return zoneMap;
+	}
+
+	protected void addLong(int column, long value) {
+		if (!_hasRange[column]) {
+			_longMin[column] = value;
+			_longMax[column] = value;
+			_hasRange[column] = true;
+		} else if (value < _longMin[column]) {
+			_longMin[column] = value;
+		} else if (value > _longMax[column]) {
+			_longMax[column] = value;
+		}
+	}
+
+	protected void addDouble(int column, double value) {
+		if (Double.isNaN(value)) {
+			_unbounded[column] = true;
+		} else if (!_hasRange[column]) {
+			_doubleMin[column] = value;
+			_doubleMax[column] = value;
+			_hasRange[column] = true;
+		} else if (Double.compare(value, _doubleMin[column]) < 0) {
+			// Double.compare orders -0.0 before 0.0 the same way the compare classes do.
+			_doubleMin[column] = value;
+		} else if (Double.compare(value, _doubleMax[column]) > 0) {
+			_doubleMax[column] = value;
+		}
+	}
+
+	protected void addString(int column, String value) {
+		if (!_hasRange[column]) {
+			_stringMin[column] = value;
+			_stringMax[column] = value;
+			_hasRange[column] = true;
+		} else if (value.compareTo(_stringMin[column]) < 0) {
+			_stringMin[column] = value;
+		} else if (value.compareTo(_stringMax[column]) > 0) {
+			_stringMax[column] = value;
+		}
+	}
+
+	protected void addHash(int index, long hash) {
+		int count = _blockHashCounts[index];
+		if (count == _blockHashes[index].length) {
+			_blockHashes[index] = Arrays.copyOf(_blockHashes[index], count * 2);
+		}
+		_blockHashes[index][count] = hash;
+		_blockHashCounts[index] = count + 1;
+	}
+
+	/**
+	 * Hash of a value in the Java type of the column, converted the same way
+	 * add converts the row values.
+	 */
+	protected long hashValue(int column, Object value) {
+		switch (_kinds[column]) {
+		case LONG_RANGE:
+			return BloomFilter.hashLong((value instanceof Date) ? ((Date) value).getTime() : ((Number) value).longValue());
+		case DOUBLE_RANGE:
+			return BloomFilter.hashDouble(((Number) value).doubleValue());
+		default:
+			return BloomFilter.hashString(value.toString());
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected Object fileRange(int column, List<Object[]> values, int direction) {
+		Comparable result = null;
+		for (int block = 0; block < values.size(); block++) {
+			Comparable value = (Comparable) values.get(block)[column];
+			if (value == null) {
+				if (_nullCounts.get(block)[column] < _rowCounts.get(block)) {
+					return null;
+				}
+			} else if ((result == null) || (value.compareTo(result) * direction > 0)) {
+				result = value;
+			}
+		}
+		return result;
+	}
+
+	protected Object toColumnType(int column, Object value) {
+		if (value == null) {
+			return null;
+		}
+		switch (_dataTypes[column]) {
+		case ByteData:
+			return ((Long) value).byteValue();
+		case ShortData:
+			return ((Long) value).shortValue();
+		case IntegerData:
+			return ((Long) value).intValue();
+		case DateData:
+			return new Date((Long) value);
+		case SqlTimestampData:
+			return new Timestamp((Long) value);
+		case FloatData:
+			return ((Double) value).floatValue();
+		case BigDecimalData:
+			return new BigDecimal((Double) value);
+		default:
+			return value;
+		}
+	}
+
+	protected static byte rangeType(DataType dataType) {
+		switch (dataType) {
+		case ByteData:
+		case ShortData:
+		case IntegerData:
+		case LongData:
+		case DateData:
+		case SqlTimestampData:
+			return LONG_RANGE;
+		case FloatData:
+		case DoubleData:
+		case BigDecimalData:
+			return DOUBLE_RANGE;
+		case StringData:
+			return STRING_RANGE;
+		default:
+			return NO_RANGE;
+		}
+	}
+}
@@ -12,6 +12,7 @@
 package com.fanniemae.ezpie.layout;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -79,7 +80,7 @@ public class JsonLayout {
 		_session.setDataTokens(dataTokens);
 		String dataSetName = _session.optionalAttribute(_action, "DataSetName");
 		if (StringUtilities.isNotNullOrEmpty(dataSetName)) {
-			try (DataReader dr = new DataReader(_session.getDataStream(dataSetName))) {
+			try (DataReader dr = DataReader.open(_session.getDataStream(dataSetName))) {
 				_columnNames = dr.getColumnNames();
 				_dataTypes = dr.getDataTypes();
 
@@ -90,6 +91,7 @@ public class JsonLayout {
 				}
 				int length = dataLayouts.getLength();
 				String[] dataNames = new String[length];
+				List<String> usedColumnNames = new ArrayList<String>();
 				for (int i = 0; i < length; i++) {
 					String name = _session.requiredAttribute(dataLayouts.item(i), "Name");
 					String[] columnNames = StringUtilities.split(_session.requiredAttribute(dataLayouts.item(i), "DataRow"));
@@ -107,6 +109,9 @@ public class JsonLayout {
 							columnJsonTypes[x] = jsonTypes(columnIndexes[x]);
 						}
 					}
+					if (columnNames != null) {
+						usedColumnNames.addAll(Arrays.asList(columnNames));
+					}
 					_dataColumnIndexes.put(name, columnIndexes);
 					_dataLayouts.put(name, new ArrayList<Object>());
 					_dataColumnNames.put(name, columnNames);
@@ -114,6 +119,9 @@ public class JsonLayout {
 					dataNames[i] = name;
 				}
 
+				// Only the columns used by the data layouts need to be read.
+				dr.setColumnProjection(usedColumnNames.toArray(new String[usedColumnNames.size()]));
+
 				// Populate the data arrays with the metric values
 				while (!dr.eof()) {
 					Object[] dataRow = dr.getDataRow();
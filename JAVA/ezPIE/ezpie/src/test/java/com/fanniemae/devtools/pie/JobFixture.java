@@ -0,0 +1,117 @@
+package com.fanniemae.devtools.pie;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Element;
+
+import com.fanniemae.ezpie.JobManager;
+import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.common.FileUtilities;
+import com.fanniemae.ezpie.common.XmlUtilities;
+import com.fanniemae.ezpie.datafiles.DataReader;
+
+/**
+ * Temporary application directory with a settings file, definitions, staging
+ * and text logs for tests that run job definitions.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class JobFixture implements AutoCloseable {
+
+	protected File _root;
+	protected String _settingsFilename;
+	protected String _logFilename;
+	protected int _jobCount = 0;
+
+	public JobFixture() throws IOException {
+		this("");
+	}
+
+	/**
+	 * Settings elements (e.g. Connections) are added after the Configuration
+	 * element.
+	 */
+	public JobFixture(String settings) throws IOException {
+		_root = Files.createTempDirectory("JobFixture").toFile();
+		for (String directory : new String[] { "_Definitions", "_Staging", "_Logs" }) {
+			new File(_root, directory).mkdir();
+		}
+		String path = getPath();
+		String configuration = String.format("<Configuration ApplicationPath=\"%1$s\" StagingPath=\"%1$s_Staging/\" LogPath=\"%1$s_Logs/\" DefinitionPath=\"%1$s_Definitions/\" LogFormat=\"Text\" DataCacheEnabled=\"False\" />", path);
+		_settingsFilename = writeFile("_settings.xml", String.format("<Settings>%s%s</Settings>", configuration, settings));
+	}
+
+	/**
+	 * Application directory with a trailing separator.
+	 */
+	public String getPath() {
+		return _root.getAbsolutePath() + File.separator;
+	}
+
+	public String writeFile(String name, String contents) {
+		return FileUtilities.writeFile(getPath() + name, contents);
+	}
+
+	public String readFile(String name) {
+		return FileUtilities.loadFile(getPath() + name);
+	}
+
+	public SessionManager createSession(String jobDefinition) {
+		_jobCount++;
+		String jobFilename = writeFile(String.format("_Definitions/job%d.xml", _jobCount), jobDefinition);
+		SessionManager session = new SessionManager(_settingsFilename, jobFilename, null);
+		_logFilename = session.getLogFilename();
+		return session;
+	}
+
+	public JobManager createJob(String jobDefinition) {
+		_jobCount++;
+		String jobFilename = writeFile(String.format("_Definitions/job%d.xml", _jobCount), jobDefinition);
+		JobManager job = new JobManager(_settingsFilename, jobFilename, null);
+		_logFilename = job.getLogFilename();
+		return job;
+	}
+
+	/**
+	 * Log of the last session or job created.
+	 */
+	public String getLog() {
+		return FileUtilities.loadFile(_logFilename);
+	}
+
+	public static Element selectElement(SessionManager session, String xPath) {
+		return (Element) XmlUtilities.selectSingleNode(session.getJobDefinition(), xPath);
+	}
+
+	public static List<Object[]> readRows(DataStream ds) throws Exception {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		try (DataReader dr = DataReader.open(ds)) {
+			while (!dr.eof()) {
+				rows.add(dr.getDataRow());
+			}
+		}
+		return rows;
+	}
+
+	@Override
+	public void close() {
+		delete(_root);
+	}
+
+	protected static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
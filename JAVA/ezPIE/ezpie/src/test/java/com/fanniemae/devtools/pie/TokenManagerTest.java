@@ -0,0 +1,146 @@
+package com.fanniemae.devtools.pie;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.fanniemae.ezpie.SessionManager;
+
+import junit.framework.TestCase;
+
+/**
+ * Session tokens resolved and added on several threads at the same time.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class TokenManagerTest extends TestCase {
+
+	protected static final int THREAD_COUNT = 8;
+	protected static final int ITERATIONS = 500;
+
+	protected JobFixture _fixture;
+	protected SessionManager _session;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_fixture = new JobFixture();
+		_session = _fixture.createSession("<PieJob><Secrets Name=\"Plain\" PasswordHide=\"hidden\" /></PieJob>");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_fixture.close();
+		super.tearDown();
+	}
+
+	@Test
+	public void testDataTokensPerThread() throws Exception {
+		final String dataToken = token("Data", "Id");
+		runThreads(new ThreadBody() {
+			@Override
+			public void run(int thread, CountDownLatch start) throws Exception {
+				Map<String, String> dataTokens = new HashMap<String, String>();
+				dataTokens.put("Id", Integer.toString(thread));
+				_session.setDataTokens(dataTokens);
+				start.countDown();
+				start.await();
+				for (int i = 0; i < ITERATIONS; i++) {
+					assertEquals(Integer.toString(thread), _session.resolveTokens(dataToken));
+				}
+				_session.clearDataTokens();
+				// Without a row of data, the data tokens are left for later.
+				assertEquals(dataToken, _session.resolveTokens(dataToken));
+			}
+		});
+	}
+
+	@Test
+	public void testAddTokensWhileResolving() throws Exception {
+		_session.addToken("Local", "Fixed", "Value");
+		final String fixedToken = token("Local", "Fixed");
+		runThreads(new ThreadBody() {
+			@Override
+			public void run(int thread, CountDownLatch start) throws Exception {
+				start.countDown();
+				start.await();
+				for (int i = 0; i < ITERATIONS; i++) {
+					if (thread % 2 == 0) {
+						_session.addToken("Local", String.format("Key%d_%d", thread, i), Integer.toString(i));
+					} else {
+						Map<String, String> newTokens = new HashMap<String, String>();
+						newTokens.put(String.format("Key%d_%d", thread, i), Integer.toString(i));
+						_session.addTokens("Local", newTokens);
+					}
+					assertEquals("Value", _session.resolveTokens(fixedToken));
+				}
+			}
+		});
+		// No token added on one thread was lost by another.
+		for (int thread = 0; thread < THREAD_COUNT; thread++) {
+			for (int i = 0; i < ITERATIONS; i++) {
+				assertEquals(Integer.toString(i), _session.getTokenValue("Local", String.format("Key%d_%d", thread, i)));
+			}
+		}
+	}
+
+	@Test
+	public void testLastAttributeSecurePerThread() throws Exception {
+		final Element secrets = JobFixture.selectElement(_session, "Secrets");
+		runThreads(new ThreadBody() {
+			@Override
+			public void run(int thread, CountDownLatch start) throws Exception {
+				start.countDown();
+				start.await();
+				boolean hidden = (thread % 2 == 0);
+				for (int i = 0; i < ITERATIONS; i++) {
+					assertEquals(hidden ? "hidden" : "Plain", _session.getAttribute(secrets, hidden ? "Password" : "Name"));
+					assertEquals(Boolean.valueOf(hidden), _session.lastAttributeSecure());
+				}
+			}
+		});
+	}
+
+	protected String token(String tokenType, String key) {
+		return String.format("%s%s.%s%s", _session.getTokenPrefix(), tokenType, key, _session.getTokenSuffix());
+	}
+
+	protected static void runThreads(final ThreadBody body) throws Exception {
+		final CountDownLatch start = new CountDownLatch(THREAD_COUNT);
+		ExecutorService pool = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int i = 0; i < THREAD_COUNT; i++) {
+				final int thread = i;
+				results.add(pool.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						body.run(thread, start);
+						return null;
+					}
+				}));
+			}
+			// Rethrows the first assertion or exception of a thread.
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	protected interface ThreadBody {
+		public void run(int thread, CountDownLatch start) throws Exception;
+	}
+}
@@ -0,0 +1,103 @@
+package com.fanniemae.devtools.pie.actions;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fanniemae.devtools.pie.JobFixture;
+import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.actions.DataSet;
+import com.fanniemae.ezpie.common.PieException;
+
+import junit.framework.TestCase;
+
+/**
+ * DataSources of a DataSet read on several threads.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class DataSetTest extends TestCase {
+
+	protected JobFixture _fixture;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_fixture = new JobFixture();
+		// The first file is the largest, so it finishes reading last.
+		writeSource("large.csv", "A", 100000);
+		writeSource("small.csv", "B", 10);
+		writeSource("medium.csv", "C", 1000);
+		writeSource("other.csv", "D", 10);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_fixture.close();
+		super.tearDown();
+	}
+
+	@Test
+	public void testResultsInDeclarationOrder() throws Exception {
+		String[] files = new String[] { "large.csv", "small.csv", "medium.csv" };
+		String[] sources = new String[] { "A", "B", "C" };
+		int[] rowCounts = new int[] { 100000, 10, 1000 };
+
+		SessionManager session = runDataSet("Parallelism=\"3\" Union=\"False\"", files);
+		assertTrue(_fixture.getLog().contains("Reading 3 DataSources, up to 3 at the same time."));
+		for (int i = 0; i < files.length; i++) {
+			List<Object[]> rows = JobFixture.readRows(session.getDataStream(String.format("Data_%d", i + 1)));
+			assertEquals(rowCounts[i], rows.size());
+			assertEquals(sources[i], rows.get(0)[0]);
+		}
+
+		// The union appends the DataSources in declaration order too.
+		List<Object[]> union = JobFixture.readRows(runDataSet("Parallelism=\"3\"", files).getDataStream("Data"));
+		List<Object[]> sequential = JobFixture.readRows(runDataSet("", files).getDataStream("Data"));
+		assertEquals(sequential.size(), union.size());
+		for (int i = 0; i < union.size(); i++) {
+			assertEquals(sequential.get(i)[0], union.get(i)[0]);
+			assertEquals(sequential.get(i)[1], union.get(i)[1]);
+		}
+		assertEquals("A", union.get(0)[0]);
+		assertEquals("B", union.get(100000)[0]);
+		assertEquals("C", union.get(100010)[0]);
+	}
+
+	@Test
+	public void testFailureCancelsRemainingReads() throws Exception {
+		// Two threads: one reads the large file while the missing file fails, the others are still queued.
+		try {
+			runDataSet("Parallelism=\"2\"", new String[] { "large.csv", "missing.csv", "small.csv", "medium.csv", "other.csv" });
+			fail("Expected the missing file to fail the DataSet.");
+		} catch (PieException ex) {
+			assertTrue(ex.getMessage(), ex.getMessage().contains("missing.csv"));
+		}
+		String log = _fixture.getLog();
+		assertFalse(log.contains("small.csv"));
+		assertFalse(log.contains("medium.csv"));
+		assertFalse(log.contains("other.csv"));
+		// The large file was interrupted before it returned any data.
+		assertFalse(log.contains("Data Returned"));
+	}
+
+	protected void writeSource(String name, String source, int rowCount) {
+		StringBuilder sb = new StringBuilder("Source,Row\n");
+		for (int i = 0; i < rowCount; i++) {
+			sb.append(String.format("%s,%d\n", source, i));
+		}
+		_fixture.writeFile(name, sb.toString());
+	}
+
+	protected SessionManager runDataSet(String attributes, String[] files) {
+		StringBuilder dataSources = new StringBuilder();
+		for (String file : files) {
+			dataSources.append(String.format("<DataSource Type=\"Delimited\" Filename=\"%s%s\" />", _fixture.getPath(), file));
+		}
+		SessionManager session = _fixture.createSession(String.format("<PieJob><DataSet Name=\"Data\" %s>%s</DataSet></PieJob>", attributes, dataSources));
+		new DataSet(session, JobFixture.selectElement(session, "DataSet")).executeAction(null);
+		return session;
+	}
+}
@@ -0,0 +1,194 @@
+package com.fanniemae.devtools.pie.common;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fanniemae.devtools.pie.JobFixture;
+import com.fanniemae.ezpie.JobManager;
+import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.common.ActionScheduler;
+import com.fanniemae.ezpie.common.PieException;
+import com.fanniemae.ezpie.common.XmlUtilities;
+
+import junit.framework.TestCase;
+
+/**
+ * Dependencies between the actions of a definition run on several threads.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class ActionSchedulerTest extends TestCase {
+
+	protected JobFixture _fixture;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_fixture = new JobFixture();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_fixture.close();
+		super.tearDown();
+	}
+
+	@Test
+	public void testTokenDependencies() throws Exception {
+		ActionScheduler scheduler = createScheduler("<Tokens><Local Folder=\"in\" /></Tokens>" //
+				+ dataSet("A", "[Local.Folder]/a.csv") //
+				+ dataSet("B", "[Other.Folder]/b.csv") //
+				+ "<Tokens><Local Folder=\"out\" /></Tokens>" //
+				+ dataSet("C", "[Data.Folder]/c.csv"));
+		assertDependencies(scheduler, 1, 0);
+		assertDependencies(scheduler, 2);
+		// Writes a token type read by A, and already written by the first Tokens action.
+		assertDependencies(scheduler, 3, 0, 1);
+		// Data tokens come from the current row.
+		assertDependencies(scheduler, 4);
+	}
+
+	@Test
+	public void testDataSetNameDependencies() throws Exception {
+		ActionScheduler scheduler = createScheduler(dataSet("A", "a.csv") //
+				+ dataSet("B", "b.csv") //
+				+ export("a", "a_out.csv") //
+				+ export("B_2", "b_out.csv") //
+				+ dataSet("A", "a2.csv"));
+		assertDependencies(scheduler, 1);
+		// Data set names ignore case.
+		assertDependencies(scheduler, 2, 0);
+		// B_2 is the second DataSource of B kept separate with Union="False", both exports add ExportDelimited tokens.
+		assertDependencies(scheduler, 3, 1, 2);
+		// Replaces A, so waits for the action reading it.
+		assertDependencies(scheduler, 4, 0, 2);
+	}
+
+	@Test
+	public void testDataSetTokenReferences() throws Exception {
+		ActionScheduler scheduler = createScheduler(dataSet("A", "a.csv") //
+				+ dataSet("B", "b.csv") //
+				+ "<DataSet Name=\"C\"><DataSource Type=\"Delimited\" Filename=\"c.csv\"><Filter DataColumn=\"Id\" Operation=\"Equals\" CompareValue=\"[DataSet.B]\" /></DataSource></DataSet>");
+		assertDependencies(scheduler, 2, 1);
+	}
+
+	@Test
+	public void testFileDependencies() throws Exception {
+		ActionScheduler scheduler = createScheduler(dataSet("A", "a.csv") //
+				+ export("A", "out.csv") //
+				+ dataSet("B", "OUT.csv") //
+				+ dataSet("C", "other.csv") //
+				+ dataSet("D", "[Configuration.ApplicationPath]d.csv") //
+				+ export("C", "a.csv"));
+		assertDependencies(scheduler, 1, 0);
+		// File names ignore case.
+		assertDependencies(scheduler, 2, 1);
+		assertDependencies(scheduler, 3);
+		// A name with a token could be the exported file.
+		assertDependencies(scheduler, 4, 1);
+		// Overwrites the file A reads and D may read, and adds the same tokens as the first export.
+		assertDependencies(scheduler, 5, 0, 1, 3, 4);
+	}
+
+	@Test
+	public void testIndependentActions() throws Exception {
+		ActionScheduler scheduler = createScheduler(dataSet("A", "a.csv") //
+				+ "<RunCommand Command=\"one\" />" //
+				+ dataSet("B", "b.csv") //
+				+ "<RunCommand Command=\"two\" Independent=\"True\" />" //
+				+ dataSet("C", "c.csv") //
+				+ dataSet("D", "[Local.Folder]/d.csv") //
+				+ "<RunCommand Command=\"three\" Independent=\"True\" />");
+		// Ordered with everything before and after it.
+		assertDependencies(scheduler, 1, 0);
+		assertDependencies(scheduler, 2, 1);
+		assertDependencies(scheduler, 3, 1);
+		assertDependencies(scheduler, 4, 1);
+		// Reads tokens, so waits for the tokens the independent action may add.
+		assertDependencies(scheduler, 5, 1, 3);
+		// Independent actions stay in order with each other and with token readers.
+		assertDependencies(scheduler, 6, 1, 3, 5);
+	}
+
+	@Test
+	public void testLogBarriers() throws Exception {
+		ActionScheduler scheduler = createScheduler(dataSet("A", "a.csv") //
+				+ dataSet("B", "b.csv") //
+				+ "<Log Message=\"Between\" Independent=\"True\" />" //
+				+ dataSet("C", "c.csv") //
+				+ "<LogComment Message=\"Last\" />");
+		assertDependencies(scheduler, 1);
+		assertDependencies(scheduler, 2, 0, 1);
+		assertDependencies(scheduler, 3, 2);
+		assertDependencies(scheduler, 4, 0, 1, 2, 3);
+	}
+
+	@Test
+	public void testLogMessagesInDocumentOrder() throws Exception {
+		writeSource("large.csv", 100000);
+		writeSource("small.csv", 10);
+		String definition = String.format("<PieJob Parallelism=\"4\">%s<Log Message=\"Between the data sets\" />%s</PieJob>", dataSet("Large", _fixture.getPath() + "large.csv"), dataSet("Small", _fixture.getPath() + "small.csv"));
+		JobManager job = _fixture.createJob(definition);
+		job.runJob();
+		String log = _fixture.getLog();
+		int message = log.indexOf("Between the data sets");
+		assertTrue(message > log.indexOf("100,000 rows"));
+		assertTrue(message < log.indexOf("10 rows"));
+	}
+
+	@Test
+	public void testFailureStartsNoFurtherActions() throws Exception {
+		writeSource("large.csv", 100000);
+		writeSource("small.csv", 10);
+		// Two threads: one reads the large file while the missing file fails, the others are still queued.
+		String definition = String.format("<PieJob Parallelism=\"2\">%s%s%s%s</PieJob>", //
+				dataSet("Large", _fixture.getPath() + "large.csv"), //
+				dataSet("Missing", _fixture.getPath() + "missing.csv"), //
+				dataSet("Small", _fixture.getPath() + "small.csv"), //
+				dataSet("Other", _fixture.getPath() + "small.csv"));
+		JobManager job = _fixture.createJob(definition);
+		try {
+			job.runJob();
+			fail("Expected the missing file to fail the job.");
+		} catch (PieException ex) {
+			assertTrue(ex.getMessage(), ex.getMessage().contains("missing.csv"));
+		}
+		String log = _fixture.getLog();
+		assertFalse(log.contains("small.csv"));
+		// The large file was interrupted before it returned any data.
+		assertFalse(log.contains("Data Returned"));
+		assertFalse(log.contains("Processing completed successfully"));
+	}
+
+	protected ActionScheduler createScheduler(String actions) {
+		SessionManager session = _fixture.createSession(String.format("<PieJob>%s</PieJob>", actions));
+		return new ActionScheduler(session, XmlUtilities.selectNodes(session.getJobDefinition(), "*"), null, 4);
+	}
+
+	protected void writeSource(String name, int rowCount) {
+		StringBuilder sb = new StringBuilder("Id,Name\n");
+		for (int i = 0; i < rowCount; i++) {
+			sb.append(String.format("%d,N%d\n", i, i));
+		}
+		_fixture.writeFile(name, sb.toString());
+	}
+
+	protected static String dataSet(String name, String filename) {
+		return String.format("<DataSet Name=\"%s\"><DataSource Type=\"Delimited\" Filename=\"%s\" /></DataSet>", name, filename);
+	}
+
+	protected static String export(String dataSetName, String filename) {
+		return String.format("<Export DataSetName=\"%s\" Filename=\"%s\" />", dataSetName, filename);
+	}
+
+	protected static void assertDependencies(ActionScheduler scheduler, int index, Integer... expected) {
+		List<Integer> dependencies = scheduler.getDependencies(index);
+		Collections.sort(dependencies);
+		assertEquals(String.format("Action %d", index), Arrays.asList(expected), dependencies);
+	}
+}
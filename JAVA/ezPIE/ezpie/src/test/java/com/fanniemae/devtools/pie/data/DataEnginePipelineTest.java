@@ -0,0 +1,131 @@
+package com.fanniemae.devtools.pie.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fanniemae.devtools.pie.JobFixture;
+import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.data.DataEngine;
+
+import junit.framework.TestCase;
+
+/**
+ * Isolated transforms (Sort, Join) passing their rows straight to the next
+ * processing group.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class DataEnginePipelineTest extends TestCase {
+
+	protected static final String PIPELINE_MESSAGE = "without an intermediate data file";
+
+	protected JobFixture _fixture;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_fixture = new JobFixture();
+		StringBuilder input = new StringBuilder("ID,Name,Amount\n");
+		for (int i = 0; i < 5000; i++) {
+			input.append(String.format("%d,N%d,%d\n", i, (i * 7919) % 500, (i * 37) % 100000));
+		}
+		_fixture.writeFile("input.csv", input.toString());
+		StringBuilder right = new StringBuilder("RID,Label\n");
+		for (int i = 0; i < 400; i++) {
+			right.append(String.format("N%d,L%d\n", i, i));
+		}
+		_fixture.writeFile("right.csv", right.toString());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_fixture.close();
+		super.tearDown();
+	}
+
+	@Test
+	public void testSortAndJoinPipelined() throws Exception {
+		// Groups: Filter, Sort, Filter, Join, Rename. Sort and Join both feed the next group.
+		String transforms = "<Filter DataColumn=\"Amount\" Operation=\"GreaterThan\" CompareValue=\"10\" />"
+				+ "<Sort DataColumns=\"Name,ID\" />"
+				+ "<Filter DataColumn=\"Amount\" Operation=\"GreaterThan\" CompareValue=\"50000\" />"
+				+ "<Join LeftColumns=\"Name\" RightColumns=\"RID\" JoinType=\"Inner\"><DataSource Name=\"Right\" Type=\"Delimited\" Filename=\"" + _fixture.getPath() + "right.csv\" /></Join>"
+				+ "<Rename InputColumnNames=\"Label\" NewColumnNames=\"Lbl\" />";
+		List<Object[]> unpipelined = getRows(transforms, "Pipeline=\"False\"");
+		assertFalse(_fixture.getLog().contains(PIPELINE_MESSAGE));
+		List<Object[]> pipelined = getRows(transforms, "");
+		String log = _fixture.getLog();
+		assertTrue(log.contains("Passing the rows on to processing group #3 " + PIPELINE_MESSAGE));
+		assertTrue(log.contains("Passing the rows on to processing group #5 " + PIPELINE_MESSAGE));
+
+		assertFalse(unpipelined.isEmpty());
+		assertSameRows(unpipelined, pipelined);
+		// Sorted by Name then ID before the join.
+		for (int i = 1; i < pipelined.size(); i++) {
+			Object[] previous = pipelined.get(i - 1);
+			Object[] current = pipelined.get(i);
+			int compare = previous[1].toString().compareTo(current[1].toString());
+			assertTrue((compare < 0) || ((compare == 0) && (previous[0].toString().compareTo(current[0].toString()) < 0)));
+		}
+	}
+
+	@Test
+	public void testIsolatedFollowedByIsolated() throws Exception {
+		// Groups: Filter, Sort, Sort, Filter. Only the second Sort is followed by a group it can feed.
+		String transforms = "<Filter DataColumn=\"Amount\" Operation=\"GreaterThan\" CompareValue=\"10\" />"
+				+ "<Sort DataColumns=\"Amount\" />"
+				+ "<Sort DataColumns=\"Name,ID\" Direction=\"Descending\" />"
+				+ "<Filter DataColumn=\"Amount\" Operation=\"LessThan\" CompareValue=\"90000\" />";
+		List<Object[]> unpipelined = getRows(transforms, "Pipeline=\"False\"");
+		List<Object[]> pipelined = getRows(transforms, "");
+		String log = _fixture.getLog();
+		assertEquals(1, countOccurrences(log, PIPELINE_MESSAGE));
+		assertTrue(log.contains("Processing Group #2 of 4"));
+		assertTrue(log.contains("Processing Group #3 of 4"));
+		assertTrue(log.contains("Passing the rows on to processing group #4 " + PIPELINE_MESSAGE));
+		assertSameRows(unpipelined, pipelined);
+	}
+
+	@Test
+	public void testShardedFinalGroup() throws Exception {
+		// The final group writes shards, so the Sort writes its own data file first.
+		String transforms = "<Filter DataColumn=\"Amount\" Operation=\"GreaterThan\" CompareValue=\"10\" />"
+				+ "<Sort DataColumns=\"Name,ID\" />"
+				+ "<Filter DataColumn=\"Amount\" Operation=\"GreaterThan\" CompareValue=\"50000\" />";
+		List<Object[]> unpipelined = getRows(transforms, "Pipeline=\"False\"");
+		List<Object[]> sharded = getRows(transforms, "ShardRows=\"500\"");
+		String log = _fixture.getLog();
+		assertFalse(log.contains(PIPELINE_MESSAGE));
+		assertTrue(log.contains(String.format("%,d rows in %,d shards", unpipelined.size(), (unpipelined.size() + 499) / 500)));
+		assertSameRows(unpipelined, sharded);
+	}
+
+	protected List<Object[]> getRows(String transforms, String attributes) throws Exception {
+		String job = String.format("<PieJob><DataSet Name=\"Data\"><DataSource Name=\"Src\" Type=\"Delimited\" Filename=\"%sinput.csv\" %s>%s</DataSource></DataSet></PieJob>", _fixture.getPath(), attributes, transforms);
+		SessionManager session = _fixture.createSession(job);
+		DataStream ds = new DataEngine(session, false, 0).getData(JobFixture.selectElement(session, "DataSet/DataSource"));
+		return JobFixture.readRows(ds);
+	}
+
+	protected static void assertSameRows(List<Object[]> expected, List<Object[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue(String.format("Row %d", i), Arrays.equals(expected.get(i), actual.get(i)));
+		}
+	}
+
+	protected static int countOccurrences(String text, String value) {
+		int count = 0;
+		int index = text.indexOf(value);
+		while (index != -1) {
+			count++;
+			index = text.indexOf(value, index + value.length());
+		}
+		return count;
+	}
+}
@@ -0,0 +1,178 @@
+package com.fanniemae.devtools.pie.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.PieException;
+import com.fanniemae.ezpie.data.ParallelRowProcessor;
+import com.fanniemae.ezpie.data.transforms.DataTransform;
+import com.fanniemae.ezpie.data.transforms.RowConsumer;
+
+import junit.framework.TestCase;
+
+/**
+ * Batches transformed on a pool of threads and written in input order.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class ParallelRowProcessorTest extends TestCase {
+
+	protected static final int ROW_COUNT = 10000;
+
+	@Test
+	public void testOutputInInputOrder() throws Exception {
+		final Set<Thread> parallelThreads = ConcurrentHashMap.newKeySet();
+		final Set<Thread> orderedThreads = ConcurrentHashMap.newKeySet();
+		Map<Integer, DataTransform> operations = new HashMap<Integer, DataTransform>();
+		// Removes every 10th row and takes longer on some rows, so batches finish out of order.
+		operations.put(0, new TestTransform(true) {
+			@Override
+			public Object[] processDataRow(Object[] dataRow) {
+				parallelThreads.add(Thread.currentThread());
+				int id = (Integer) dataRow[0];
+				if (id % 1000 < 5) {
+					sleep(2);
+				}
+				return (id % 10 == 0) ? null : new Object[] { id, id * 2 };
+			}
+		});
+		// Not parallel safe, numbers the rows in the order they arrive.
+		operations.put(1, new TestTransform(false) {
+			protected int _sequence = 0;
+
+			@Override
+			public Object[] processDataRow(Object[] dataRow) {
+				orderedThreads.add(Thread.currentThread());
+				return new Object[] { dataRow[0], dataRow[1], _sequence++ };
+			}
+		});
+
+		CollectingConsumer output = new CollectingConsumer();
+		try (ParallelRowProcessor processor = new ParallelRowProcessor(operations, 4, 100, output)) {
+			Object[] dataRow = new Object[1];
+			for (int i = 0; i < ROW_COUNT; i++) {
+				// The row array is reused, as connectors do.
+				dataRow[0] = i;
+				processor.writeDataRow(dataRow);
+			}
+			processor.finish();
+			assertEquals((long) ROW_COUNT * 9 / 10, processor.getRowCount());
+		}
+
+		assertEquals(ROW_COUNT * 9 / 10, output.rows.size());
+		int i = 0;
+		for (int id = 0; id < ROW_COUNT; id++) {
+			if (id % 10 == 0) {
+				continue;
+			}
+			Object[] row = output.rows.get(i);
+			assertEquals(id, row[0]);
+			assertEquals(id * 2, row[1]);
+			assertEquals(i, row[2]);
+			i++;
+		}
+
+		// The ordered stage and the output run on the calling thread only.
+		assertEquals(1, orderedThreads.size());
+		assertTrue(orderedThreads.contains(Thread.currentThread()));
+		assertEquals(1, output.threads.size());
+		assertTrue(output.threads.contains(Thread.currentThread()));
+		assertFalse(parallelThreads.contains(Thread.currentThread()));
+	}
+
+	@Test
+	public void testWorkerExceptionReachesCaller() throws Exception {
+		Map<Integer, DataTransform> operations = new HashMap<Integer, DataTransform>();
+		operations.put(0, new TestTransform(true) {
+			@Override
+			public Object[] processDataRow(Object[] dataRow) {
+				if ((Integer) dataRow[0] == 4321) {
+					throw new PieException("Bad row 4321");
+				}
+				return dataRow;
+			}
+		});
+		CollectingConsumer output = new CollectingConsumer();
+		try (ParallelRowProcessor processor = new ParallelRowProcessor(operations, 4, 100, output)) {
+			try {
+				for (int i = 0; i < ROW_COUNT; i++) {
+					processor.writeDataRow(new Object[] { i });
+				}
+				processor.finish();
+				fail("Expected the worker exception.");
+			} catch (PieException ex) {
+				assertEquals("Bad row 4321", ex.getMessage());
+			}
+		}
+		// Only rows of the batches before the failed one were written.
+		assertTrue(output.rows.size() <= 4300);
+	}
+
+	@Test
+	public void testRowsProcessedOnSeveralThreads() throws Exception {
+		TestTransform counting = new TestTransform(true) {
+			@Override
+			public Object[] processDataRow(Object[] dataRow) {
+				_rowsProcessed.increment();
+				return dataRow;
+			}
+		};
+		Map<Integer, DataTransform> operations = new HashMap<Integer, DataTransform>();
+		operations.put(0, counting);
+		CollectingConsumer output = new CollectingConsumer();
+		try (ParallelRowProcessor processor = new ParallelRowProcessor(operations, 8, 10, output)) {
+			for (int i = 0; i < ROW_COUNT * 10; i++) {
+				processor.writeDataRow(new Object[] { i });
+			}
+			processor.finish();
+		}
+		assertEquals(ROW_COUNT * 10, counting.getRowsProcessed());
+		assertEquals(ROW_COUNT * 10, output.rows.size());
+	}
+
+	protected static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	protected abstract static class TestTransform extends DataTransform {
+		protected boolean _parallelSafe;
+
+		public TestTransform(boolean parallelSafe) {
+			super(null, "Test");
+			_parallelSafe = parallelSafe;
+		}
+
+		@Override
+		public boolean isParallelSafe() {
+			return _parallelSafe;
+		}
+	}
+
+	protected static class CollectingConsumer extends RowConsumer {
+		protected List<Object[]> rows = new ArrayList<Object[]>();
+		protected Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+		@Override
+		public void setDataColumns(String[][] schema) throws IOException {
+		}
+
+		@Override
+		public void writeDataRow(Object[] dataRow) throws IOException {
+			threads.add(Thread.currentThread());
+			rows.add(dataRow);
+		}
+	}
+}
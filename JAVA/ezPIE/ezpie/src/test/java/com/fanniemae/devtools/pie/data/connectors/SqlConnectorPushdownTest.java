@@ -0,0 +1,183 @@
+package com.fanniemae.devtools.pie.data.connectors;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.fanniemae.devtools.pie.JobFixture;
+import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.common.XmlUtilities;
+import com.fanniemae.ezpie.data.connectors.SqlConnector;
+import com.fanniemae.ezpie.data.transforms.ColumnFilter;
+import com.fanniemae.ezpie.data.transforms.CompareFilter;
+import com.fanniemae.ezpie.data.transforms.DataTransform;
+
+import junit.framework.TestCase;
+
+/**
+ * SQL commands wrapped in a subselect with the columns and filters of the
+ * leading transforms.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class SqlConnectorPushdownTest extends TestCase {
+
+	protected static final String[][] SCHEMA = new String[][] { { "Id", "java.lang.Integer" }, { "Name", "java.lang.String" }, { "Amount", "java.math.BigDecimal" }, { "Region", "java.lang.String" } };
+
+	protected JobFixture _fixture;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		String connections = "<Connections>" //
+				+ "<Connection Name=\"Pg\" Type=\"Postgres\" ConnectionString=\"jdbc:test\" />" //
+				+ "<Connection Name=\"Ms\" Type=\"SqlServer\" ConnectionString=\"jdbc:test\" />" //
+				+ "<Connection Name=\"Other\" Type=\"MySql\" ConnectionString=\"jdbc:test\" />" //
+				+ "</Connections>";
+		_fixture = new JobFixture(connections);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_fixture.close();
+		super.tearDown();
+	}
+
+	@Test
+	public void testWrappedCommand() throws Exception {
+		TestSqlConnector connector = createConnector("Pg", "SELECT * FROM sales;", SCHEMA, //
+				"<Filter DataColumn=\"Amount\" Operation=\"GreaterThan\" CompareValue=\"100\" />" //
+						+ "<ColumnFilter KeepColumns=\"Id,Amount\" />" //
+						+ "<Filter DataColumn=\"Id\" Operation=\"In\" CompareValue=\"1,2\" />");
+		// The trailing semicolon is dropped, the filtered columns are selected as the filters still run on the results.
+		assertEquals("SELECT \"Id\", \"Amount\" FROM (SELECT * FROM sales) pie_source WHERE \"Amount\" >= ? AND (\"Id\" IS NULL OR \"Id\" NOT IN (?, ?))", connector.getPushdownCommand());
+		assertEquals(Arrays.<Object> asList(new BigDecimal("100"), 1, 2), connector.getPushdownParameters());
+		assertTrue(_fixture.getLog().contains("2 of 4 columns selected, 2 filters pushed into the query."));
+	}
+
+	@Test
+	public void testFilteredColumnRemovedLater() throws Exception {
+		// Id is still selected for the filter, even though the ColumnFilter after it removes the column.
+		TestSqlConnector connector = createConnector("Ms", "SELECT * FROM sales", SCHEMA, //
+				"<Filter DataColumn=\"Id\" Operation=\"LessThan\" CompareValue=\"5\" />" //
+						+ "<ColumnFilter RemoveColumns=\"Id,Name\" />");
+		assertEquals("SELECT [Id], [Amount], [Region] FROM (SELECT * FROM sales) pie_source WHERE ([Id] IS NULL OR [Id] <= ?)", connector.getPushdownCommand());
+		assertEquals(Arrays.<Object> asList(5), connector.getPushdownParameters());
+	}
+
+	@Test
+	public void testAllColumnsSelected() throws Exception {
+		TestSqlConnector connector = createConnector("Pg", "SELECT * FROM sales", SCHEMA, "<Filter DataColumn=\"Id\" Operation=\"Equals\" CompareValue=\"7\" />");
+		assertEquals("SELECT * FROM (SELECT * FROM sales) pie_source WHERE (\"Id\" IS NULL OR \"Id\" <> ?)", connector.getPushdownCommand());
+		assertEquals(Arrays.<Object> asList(7), connector.getPushdownParameters());
+	}
+
+	@Test
+	public void testColumnFilterNotUpdated() throws Exception {
+		final int[] updates = new int[1];
+		TestSqlConnector connector = createConnector("Pg", "SELECT * FROM sales", SCHEMA, "<ColumnFilter KeepColumns=\"Name\" />");
+		SessionManager session = connector.getSession();
+		ColumnFilter columnFilter = new ColumnFilter(session, JobFixture.selectElement(session, "DataSet/DataSource/ColumnFilter")) {
+			@Override
+			public String[][] UpdateSchema(String[][] inputSchema) {
+				updates[0]++;
+				return super.UpdateSchema(inputSchema);
+			}
+		};
+		connector.setPushdownTransforms(Arrays.<DataTransform> asList(columnFilter));
+		assertEquals("SELECT \"Name\" FROM (SELECT * FROM sales) pie_source", connector.getPushdownCommand());
+		// The transform is set up later, on the schema of the wrapped command.
+		assertEquals(0, updates[0]);
+		assertEquals(1, columnFilter.UpdateSchema(SCHEMA).length);
+		assertTrue(Arrays.equals(new Object[] { "N" }, columnFilter.processDataRow(new Object[] { 1, "N", null, "R" })));
+	}
+
+	@Test
+	public void testOrderByNotWrapped() throws Exception {
+		String command = "SELECT * FROM sales Order  by Amount";
+		TestSqlConnector connector = createConnector("Pg", command, SCHEMA, "<Filter DataColumn=\"Id\" Operation=\"Equals\" CompareValue=\"7\" />");
+		assertEquals(command, connector.getPushdownCommand());
+		assertTrue(connector.getPushdownParameters().isEmpty());
+		assertEquals(0, connector._schemaReads);
+		assertTrue(_fixture.getLog().contains("Not used, the rows of a query with ORDER BY have to keep their order."));
+	}
+
+	@Test
+	public void testDuplicateColumnsNotWrapped() throws Exception {
+		String filter = "<Filter DataColumn=\"Id\" Operation=\"Equals\" CompareValue=\"7\" />";
+		String[][] duplicate = new String[][] { { "Id", "java.lang.Integer" }, { "ID", "java.lang.Integer" } };
+		String[][] unnamed = new String[][] { { "Id", "java.lang.Integer" }, { "", "java.lang.Integer" } };
+		for (String[][] schema : new String[][][] { duplicate, unnamed }) {
+			TestSqlConnector connector = createConnector("Pg", "SELECT a.Id, b.Id FROM a, b", schema, filter);
+			assertEquals("SELECT a.Id, b.Id FROM a, b", connector.getPushdownCommand());
+			assertTrue(connector.getPushdownParameters().isEmpty());
+			assertEquals(1, connector._schemaReads);
+		}
+	}
+
+	@Test
+	public void testNothingPushed() throws Exception {
+		// String filters stay with the transform and every column is kept.
+		TestSqlConnector connector = createConnector("Pg", "SELECT * FROM sales", SCHEMA, "<Filter DataColumn=\"Name\" Operation=\"Equals\" CompareValue=\"Smith\" />");
+		assertEquals("SELECT * FROM sales", connector.getPushdownCommand());
+		assertTrue(connector.getPushdownParameters().isEmpty());
+
+		// Unknown identifier quoting.
+		connector = createConnector("Other", "SELECT * FROM sales", SCHEMA, "<Filter DataColumn=\"Id\" Operation=\"Equals\" CompareValue=\"7\" />");
+		assertEquals("SELECT * FROM sales", connector.getPushdownCommand());
+		assertEquals(0, connector._schemaReads);
+	}
+
+	protected TestSqlConnector createConnector(String connectionName, String command, String[][] schema, String transforms) {
+		String job = String.format("<PieJob><DataSet Name=\"Data\"><DataSource Name=\"Src\" Type=\"SQL\" ConnectionName=\"%s\" Command=\"%s\">%s</DataSource></DataSet></PieJob>", connectionName, command, transforms);
+		SessionManager session = _fixture.createSession(job);
+		Element dataSource = JobFixture.selectElement(session, "DataSet/DataSource");
+		List<DataTransform> pushdown = new ArrayList<DataTransform>();
+		NodeList nl = XmlUtilities.selectNodes(dataSource, "*");
+		for (int i = 0; i < nl.getLength(); i++) {
+			Element transform = (Element) nl.item(i);
+			pushdown.add("ColumnFilter".equals(transform.getNodeName()) ? new ColumnFilter(session, transform) : new CompareFilter(session, transform));
+		}
+		TestSqlConnector connector = new TestSqlConnector(session, dataSource, schema);
+		connector.setPushdownTransforms(pushdown);
+		return connector;
+	}
+
+	/**
+	 * Returns a fixed schema for the command instead of asking the server.
+	 */
+	protected static class TestSqlConnector extends SqlConnector {
+		protected String[][] _commandSchema;
+		protected int _schemaReads = 0;
+
+		public TestSqlConnector(SessionManager session, Element dataSource, String[][] commandSchema) {
+			super(session, dataSource, false);
+			_commandSchema = commandSchema;
+		}
+
+		@Override
+		protected String[][] readCommandSchema(String command) {
+			_schemaReads++;
+			return _commandSchema;
+		}
+
+		public String getPushdownCommand() {
+			return pushdownCommand();
+		}
+
+		public List<Object> getPushdownParameters() {
+			return _pushdownParameters;
+		}
+
+		public SessionManager getSession() {
+			return _session;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.fanniemae.devtools.pie.data.transforms;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fanniemae.devtools.pie.JobFixture;
+import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.data.jdbcproviders.JdbcProvider;
+import com.fanniemae.ezpie.data.jdbcproviders.JdbcProviderFactory;
+import com.fanniemae.ezpie.data.transforms.CompareFilter;
+
+import junit.framework.TestCase;
+
+/**
+ * Filter transforms pushed into SQL queries as WHERE clause predicates.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class CompareFilterTest extends TestCase {
+
+	protected static final String[][] SCHEMA = new String[][] { { "Id", "java.lang.Integer" }, { "Name", "java.lang.String" }, { "Amount", "java.math.BigDecimal" }, { "Total", "java.lang.Long" }, { "Created", "java.util.Date" } };
+
+	protected JobFixture _fixture;
+	protected SessionManager _session;
+	protected JdbcProvider _postgres;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_fixture = new JobFixture();
+		_session = _fixture.createSession("<PieJob />");
+		_postgres = JdbcProviderFactory.getQuotingProvider(_session, "Postgres");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_fixture.close();
+		super.tearDown();
+	}
+
+	@Test
+	public void testPredicatePerOperation() throws Exception {
+		// The filter removes the rows that match, the predicate keeps the others. Nulls are kept where smaller values are.
+		assertPredicate("(\"Id\" IS NULL OR \"Id\" <> ?)", "Id", "Equals", "10", 10);
+		assertPredicate("\"Id\" = ?", "Id", "NotEquals", "10", 10);
+		assertPredicate("(\"Id\" IS NULL OR \"Id\" <= ?)", "Id", "LessThan", "10", 10);
+		assertPredicate("\"Id\" >= ?", "Id", "GreaterThan", "10", 10);
+		assertPredicate("(\"Id\" IS NULL OR \"Id\" < ?)", "Id", "LessThanEqualTo", "10", 10);
+		assertPredicate("\"Id\" > ?", "Id", "GreaterThanEqualTo", "10", 10);
+		assertPredicate("(\"Id\" IS NULL OR \"Id\" NOT IN (?, ?, ?))", "Id", "In", "1, 2,3", 1, 2, 3);
+		assertPredicate("\"Id\" IN (?, ?)", "Id", "NotIn", "4,5", 4, 5);
+	}
+
+	@Test
+	public void testParameterTypes() throws Exception {
+		// Values are bound with the Java class of the column, names are matched ignoring case.
+		assertPredicate("\"Total\" >= ?", "total", "GreaterThan", "5000000000", 5000000000L);
+		assertPredicate("\"Amount\" >= ?", "Amount", "GreaterThan", "12.50", new BigDecimal("12.50"));
+	}
+
+	@Test
+	public void testNotPushed() throws Exception {
+		// Missing compare values, string and date columns and unknown columns stay with the filter.
+		assertPredicate(null, "Id", "Equals", "");
+		assertPredicate(null, "Id", "In", "1,,3");
+		assertPredicate(null, "Id", "In", "");
+		assertPredicate(null, "Name", "Equals", "Smith");
+		assertPredicate(null, "Created", "LessThan", "2018-07-30");
+		assertPredicate(null, "Missing", "Equals", "10");
+	}
+
+	@Test
+	public void testIdentifierQuoting() throws Exception {
+		String[][] schema = new String[][] { { "My \"Id\" [1]", "java.lang.Integer" } };
+		CompareFilter filter = createFilter("My \"Id\" [1]", "NotIn", "1,2");
+		List<Object> parameters = new ArrayList<Object>();
+		assertEquals("\"My \"\"Id\"\" [1]\" IN (?, ?)", filter.getSqlPredicate(schema, JdbcProviderFactory.getQuotingProvider(_session, "Postgres"), parameters));
+		assertEquals("\"My \"\"Id\"\" [1]\" IN (?, ?)", filter.getSqlPredicate(schema, JdbcProviderFactory.getQuotingProvider(_session, "Oracle"), parameters));
+		assertEquals("[My \"Id\" [1]]] IN (?, ?)", filter.getSqlPredicate(schema, JdbcProviderFactory.getQuotingProvider(_session, "SqlServer"), parameters));
+		assertEquals(Arrays.<Object> asList(1, 2, 1, 2, 1, 2), parameters);
+		// No pushdown for server types with unknown quoting.
+		assertNull(JdbcProviderFactory.getQuotingProvider(_session, "MySql"));
+		assertNull(JdbcProviderFactory.getQuotingProvider(_session, null));
+	}
+
+	protected void assertPredicate(String expected, String dataColumn, String operation, String compareValue, Object... expectedParameters) {
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add("earlier");
+		String predicate = createFilter(dataColumn, operation, compareValue).getSqlPredicate(SCHEMA, _postgres, parameters);
+		assertEquals(String.format("%s %s", operation, compareValue), expected, predicate);
+		// Parameters are appended after those of earlier predicates, none when nothing is pushed.
+		List<Object> expectedList = new ArrayList<Object>();
+		expectedList.add("earlier");
+		expectedList.addAll(Arrays.asList(expectedParameters));
+		assertEquals(expectedList, parameters);
+	}
+
+	protected CompareFilter createFilter(String dataColumn, String operation, String compareValue) {
+		SessionManager session = _fixture.createSession(String.format("<PieJob><Filter DataColumn=\"%s\" Operation=\"%s\" CompareValue=\"%s\" /></PieJob>", dataColumn.replace("\"", "&quot;"), operation, compareValue));
+		return new CompareFilter(session, JobFixture.selectElement(session, "Filter"));
+	}
+}
@@ -0,0 +1,98 @@
+package com.fanniemae.devtools.pie.data.transforms;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fanniemae.devtools.pie.JobFixture;
+import com.fanniemae.ezpie.SessionManager;
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.data.DataEngine;
+
+import junit.framework.TestCase;
+
+/**
+ * Sorted rows written as one data file or as shards, with the index held in
+ * memory or merged from external index files.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class SortTest extends TestCase {
+
+	// Above Index.INDEX_ARRAY_MAX_ITEMS, so the index is spilled to external files and merged.
+	protected static final int LARGE_ROW_COUNT = 150000;
+	protected static final int SMALL_ROW_COUNT = 20000;
+
+	protected JobFixture _fixture;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_fixture = new JobFixture();
+		writeSource("large.csv", LARGE_ROW_COUNT);
+		writeSource("small.csv", SMALL_ROW_COUNT);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_fixture.close();
+		super.tearDown();
+	}
+
+	@Test
+	public void testShardsOfMergedIndex() throws Exception {
+		List<Object[]> sorted = getRows("large.csv", "");
+		assertSorted(sorted, LARGE_ROW_COUNT);
+		List<Object[]> sharded = getRows("large.csv", "ShardRows=\"50000\"");
+		assertTrue(_fixture.getLog().contains(String.format("%,d rows in 3 shards", LARGE_ROW_COUNT)));
+		assertSameRows(sorted, sharded);
+
+		// Shards that do not end on a multiple of the shard size.
+		sharded = getRows("large.csv", "ShardRows=\"40000\"");
+		assertTrue(_fixture.getLog().contains(String.format("%,d rows in 4 shards", LARGE_ROW_COUNT)));
+		assertSameRows(sorted, sharded);
+	}
+
+	@Test
+	public void testShardsOfMemoryIndex() throws Exception {
+		List<Object[]> sorted = getRows("small.csv", "");
+		assertSorted(sorted, SMALL_ROW_COUNT);
+		List<Object[]> sharded = getRows("small.csv", "ShardRows=\"7000\"");
+		assertTrue(_fixture.getLog().contains(String.format("%,d rows in 3 shards", SMALL_ROW_COUNT)));
+		assertSameRows(sorted, sharded);
+	}
+
+	protected void writeSource(String name, int rowCount) {
+		// Key is unique and out of input order.
+		StringBuilder sb = new StringBuilder("ID,Key\n");
+		for (int i = 0; i < rowCount; i++) {
+			sb.append(String.format("%d,%06d\n", i, (i * 7919L) % rowCount));
+		}
+		_fixture.writeFile(name, sb.toString());
+	}
+
+	protected List<Object[]> getRows(String filename, String attributes) throws Exception {
+		// The Filter, which keeps every row, reads the source. Pipeline="False" makes the Sort write its own output.
+		String job = String.format("<PieJob><DataSet Name=\"Data\"><DataSource Name=\"Src\" Type=\"Delimited\" Filename=\"%s%s\" Pipeline=\"False\"><Filter DataColumn=\"ID\" Operation=\"Equals\" CompareValue=\"none\" /><Sort DataColumns=\"Key\" %s /></DataSource></DataSet></PieJob>", _fixture.getPath(), filename, attributes);
+		SessionManager session = _fixture.createSession(job);
+		DataStream ds = new DataEngine(session, false, 0).getData(JobFixture.selectElement(session, "DataSet/DataSource"));
+		return JobFixture.readRows(ds);
+	}
+
+	protected static void assertSorted(List<Object[]> rows, int rowCount) {
+		assertEquals(rowCount, rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			assertEquals(i, Integer.parseInt(rows.get(i)[1].toString()));
+		}
+	}
+
+	protected static void assertSameRows(List<Object[]> expected, List<Object[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue(String.format("Row %d", i), Arrays.equals(expected.get(i), actual.get(i)));
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createTempFile;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.ZoneMap;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import junit.framework.TestCase;
+
+/**
+ * Compressed data blocks (see BlockCompressor).
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class BlockCompressionTest extends TestCase {
+
+	// 1 byte null bitmap, 2 byte length and 1,021 characters - 1,024 rows fill a 1 MB block exactly.
+	protected static final int ROW_BYTES = 1024;
+	protected static final int ROWS_PER_BLOCK = 1048576 / ROW_BYTES;
+
+	@Test
+	public void testCompressedBlocks() throws Exception {
+		File file = createTempFile();
+		try {
+			writeTestFile(file, 0);
+			long uncompressedLength = file.length();
+			for (CompressionType compression : new CompressionType[] { CompressionType.Deflate, CompressionType.LZ4, CompressionType.Snappy }) {
+				for (DataFileLayout layout : DataFileLayout.values()) {
+					DataStream ds = writeTestFile(file, 0, layout, compression);
+					assertTrue(file.length() < uncompressedLength);
+
+					List<Long> positions = new ArrayList<>();
+					try (DataReader dr = new DataReader(ds)) {
+						assertEquals(compression, dr.getCompressionType());
+						int row = 0;
+						while (!dr.eof()) {
+							positions.add(dr.getPosition());
+							assertDataRow(row++, dr.getDataRow());
+						}
+						assertEquals(ROW_COUNT, row);
+						for (int i = ROW_COUNT - 1; i >= 0; i -= 101) {
+							assertDataRow(i, dr.getDataRowAt(positions.get(i)));
+						}
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testBlockBoundaryAtBlockSize() throws Exception {
+		File file = createTempFile();
+		try {
+			for (int rowCount : new int[] { ROWS_PER_BLOCK, ROWS_PER_BLOCK * 3, ROWS_PER_BLOCK * 3 + 1 }) {
+				DataStream ds = writeFixedWidthRows(file, rowCount);
+				try (DataReader dr = new DataReader(ds)) {
+					ZoneMap zoneMap = dr.getZoneMap();
+					// A block that ends exactly at the block size is closed, the next row starts a new one.
+					assertEquals((rowCount + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK, zoneMap.getBlockCount());
+					for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+						assertEquals((long) block * ROWS_PER_BLOCK, zoneMap.getFirstRow(block));
+						assertEquals(Math.min(ROWS_PER_BLOCK, rowCount - block * ROWS_PER_BLOCK), zoneMap.getRowCount(block));
+					}
+
+					List<Long> positions = new ArrayList<>();
+					int row = 0;
+					while (!dr.eof()) {
+						positions.add(dr.getPosition());
+						assertEquals(fixedWidthValue(row++), dr.getDataRow()[0]);
+					}
+					assertEquals(rowCount, row);
+					for (int i : new int[] { rowCount - 1, ROWS_PER_BLOCK, ROWS_PER_BLOCK - 1, 0 }) {
+						if (i < rowCount) {
+							assertEquals(fixedWidthValue(i), dr.getDataRowAt(positions.get(i))[0]);
+							assertEquals(fixedWidthValue(i), dr.getDataRowByRowNumber(i + 1)[0]);
+						}
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEmptyCompressedFile() throws Exception {
+		File file = createTempFile();
+		try {
+			for (DataFileLayout layout : DataFileLayout.values()) {
+				DataStream ds = writeTestFile(file, 0, layout, CompressionType.LZ4, 0);
+				try (DataReader dr = new DataReader(ds)) {
+					assertEquals(CompressionType.LZ4, dr.getCompressionType());
+					assertTrue(dr.eof());
+					ZoneMap zoneMap = dr.getZoneMap();
+					for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+						assertEquals(0L, zoneMap.getRowCount(block));
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	protected static DataStream writeFixedWidthRows(File file, int rowCount) throws Exception {
+		try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+			dw.setDictionaryEncoding(false);
+			dw.setDataColumns(new String[] { "Text" }, new DataType[] { DataType.StringData });
+			dw.setIndexByteInterval(0);
+			dw.setCompression(CompressionType.Deflate);
+			for (int i = 0; i < rowCount; i++) {
+				dw.writeDataRow(new Object[] { fixedWidthValue(i) });
+			}
+			dw.setFullRowCount(rowCount);
+			dw.setBufferFirstRow(1);
+			dw.setBufferLastRow(rowCount);
+			return dw.getDataStream();
+		}
+	}
+
+	protected static String fixedWidthValue(int i) {
+		char[] padding = new char[ROW_BYTES - 3 - 6];
+		Arrays.fill(padding, 'x');
+		return String.format("%06d", i) + new String(padding);
+	}
+}
@@ -0,0 +1,94 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createTempFile;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+
+import junit.framework.TestCase;
+
+/**
+ * Columnar data files and column projection.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class ColumnarLayoutTest extends TestCase {
+
+	@Test
+	public void testColumnarLayoutWithProjection() throws Exception {
+		File file = createTempFile();
+		try {
+			DataStream ds = writeTestFile(file, -1, DataFileLayout.Columnar);
+			try (DataReader dr = new DataReader(ds)) {
+				assertEquals(DataFileLayout.Columnar, dr.getDataFileLayout());
+				int row = 0;
+				while (!dr.eof()) {
+					assertDataRow(row++, dr.getDataRow());
+				}
+				assertEquals(ROW_COUNT, row);
+
+				dr.setColumnProjection(new String[] { "Name" });
+				Object[] dataRow = dr.getDataRowAt(10001);
+				assertNull(dataRow[0]);
+				assertEquals("Name 10001", dataRow[1]);
+				assertNull(dataRow[3]);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testProjectionAcrossRowGroups() throws Exception {
+		File file = createTempFile();
+		try {
+			DataStream ds = writeTestFile(file, 0, DataFileLayout.Columnar, CompressionType.Deflate);
+			try (DataReader dr = new DataReader(ds)) {
+				dr.setColumnProjection(new String[] { "ID", "Created" });
+				int row = 0;
+				while (!dr.eof()) {
+					Object[] dataRow = dr.getDataRow();
+					assertEquals(row, dataRow[0]);
+					assertNull(dataRow[1]);
+					assertNull(dataRow[2]);
+					assertEquals(DataFileFixture.createDataRow(row)[3], dataRow[3]);
+					row++;
+				}
+				assertEquals(ROW_COUNT, row);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEmptyColumnarFile() throws Exception {
+		File file = createTempFile();
+		try {
+			for (CompressionType compression : new CompressionType[] { CompressionType.None, CompressionType.Deflate }) {
+				DataStream ds = writeTestFile(file, 0, DataFileLayout.Columnar, compression, 0);
+				try (DataReader dr = new DataReader(ds)) {
+					assertEquals(DataFileLayout.Columnar, dr.getDataFileLayout());
+					assertEquals(4, dr.getSchema().length);
+					assertTrue(dr.eof());
+					assertEquals(0L, dr.getFullRowCount());
+					dr.setColumnProjection(new String[] { "Name" });
+					assertTrue(dr.eof());
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createTempFile;
+
+import java.io.File;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import junit.framework.TestCase;
+
+/**
+ * Null bitmap, varint numbers, block relative dates and raw UUIDs of the
+ * compact encoding.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class CompactEncodingTest extends TestCase {
+
+	@Test
+	public void testCompactEncoding() throws Exception {
+		File file = createTempFile();
+		try {
+			long[] fileLengths = new long[2];
+			for (int version : new int[] { DataFormat.LEGACY_ENCODING, DataFormat.COMPACT_ENCODING }) {
+				DataStream ds;
+				try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+					dw.setEncodingVersion(version);
+					dw.setDataColumns(new String[] { "ID", "Delta", "Key", "Created" }, new DataType[] { DataType.IntegerData, DataType.LongData, DataType.UUIDData, DataType.DateData });
+					for (int i = 0; i < ROW_COUNT; i++) {
+						dw.writeDataRow(createCompactRow(i));
+					}
+					dw.setFullRowCount(ROW_COUNT);
+					dw.setBufferFirstRow(1);
+					dw.setBufferLastRow(ROW_COUNT);
+					ds = dw.getDataStream();
+				}
+				fileLengths[version] = file.length();
+
+				try (DataReader dr = new DataReader(ds)) {
+					assertEquals(version, dr.getEncodingVersion());
+					int row = 0;
+					while (!dr.eof()) {
+						assertCompactRow(row++, dr.getDataRow());
+					}
+					assertEquals(ROW_COUNT, row);
+					dr.moveToRow(7777);
+					assertCompactRow(7777, dr.getDataRow());
+				}
+			}
+			assertTrue(fileLengths[DataFormat.COMPACT_ENCODING] < fileLengths[DataFormat.LEGACY_ENCODING] / 2);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testExtremeValuesAndWideNullBitmap() throws Exception {
+		// Nine columns so the null bitmap takes two bytes, the last column lands in the second one.
+		// The legacy encoding stores nulls as the minimum value, so it is not part of this test.
+		String[] columnNames = new String[] { "C1", "C2", "C3", "C4", "C5", "C6", "C7", "C8", "C9" };
+		DataType[] dataTypes = new DataType[] { DataType.IntegerData, DataType.LongData, DataType.DateData, DataType.UUIDData, DataType.IntegerData, DataType.LongData, DataType.DoubleData, DataType.StringData, DataType.DateData };
+		Object[][] rows = new Object[][] {
+				{ Integer.MIN_VALUE, Long.MIN_VALUE, new Date(Long.MIN_VALUE / 4), new UUID(Long.MIN_VALUE, Long.MAX_VALUE), 0, 0L, -0.0, "", new Date(0L) },
+				{ Integer.MAX_VALUE, Long.MAX_VALUE, new Date(Long.MAX_VALUE / 4), new UUID(0L, 0L), -1, -1L, Double.MAX_VALUE, "x", new Date(-1L) },
+				{ null, null, null, null, null, null, null, null, null },
+				{ 1, null, null, null, null, null, null, null, new Date(1500000000000L) },
+				{ null, null, null, null, null, null, null, null, new Date(-86400000L * 365 * 100) } };
+		File file = createTempFile();
+		try {
+			for (int version : new int[] { DataFormat.COMPACT_ENCODING, DataFormat.LONG_STRING_ENCODING }) {
+				DataStream ds;
+				try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+					dw.setEncodingVersion(version);
+					dw.setDataColumns(columnNames, dataTypes);
+					for (Object[] row : rows) {
+						dw.writeDataRow(row);
+					}
+					dw.setFullRowCount(rows.length);
+					dw.setBufferFirstRow(1);
+					dw.setBufferLastRow(rows.length);
+					ds = dw.getDataStream();
+				}
+				try (DataReader dr = new DataReader(ds)) {
+					for (int i = 0; i < rows.length; i++) {
+						Object[] dataRow = dr.getDataRow();
+						for (int col = 0; col < columnNames.length; col++) {
+							assertEquals(String.format("Version %d row %d column %d", version, i, col), rows[i][col], dataRow[col]);
+						}
+					}
+					assertTrue(dr.eof());
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static Object[] createCompactRow(int i) {
+		return new Object[] { i - 500, (i % 3 == 0) ? null : (long) -i, new UUID(i, -i), (i % 5 == 0) ? null : new Date(1500000000000L + i * 60000L) };
+	}
+
+	private static void assertCompactRow(int i, Object[] dataRow) {
+		Object[] expected = createCompactRow(i);
+		for (int col = 0; col < expected.length; col++) {
+			assertEquals(expected[col], dataRow[col]);
+		}
+	}
+}
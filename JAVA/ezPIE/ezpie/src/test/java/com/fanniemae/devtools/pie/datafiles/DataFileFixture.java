@@ -0,0 +1,83 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import org.junit.Assert;
+
+/**
+ * Rows and data files shared by the data file tests. Row i holds i, a name
+ * (null on every 7th row), i * 1.5 and a date i seconds after the base date.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class DataFileFixture {
+
+	public static final String[] COLUMN_NAMES = new String[] { "ID", "Name", "Amount", "Created" };
+	public static final DataType[] COLUMN_TYPES = new DataType[] { DataType.IntegerData, DataType.StringData, DataType.DoubleData, DataType.DateData };
+	public static final int ROW_COUNT = 12000;
+	public static final long BASE_DATE = 1500000000000L;
+
+	private DataFileFixture() {
+	}
+
+	public static Object[] createDataRow(int i) {
+		return new Object[] { i, (i % 7 == 0) ? null : "Name " + i, i * 1.5, new Date(BASE_DATE + i * 1000L) };
+	}
+
+	public static String[][] createSchema() {
+		String[][] schema = new String[COLUMN_NAMES.length][];
+		for (int i = 0; i < schema.length; i++) {
+			schema[i] = new String[] { COLUMN_NAMES[i], COLUMN_TYPES[i].toString() };
+		}
+		return schema;
+	}
+
+	public static File createTempFile() throws IOException {
+		return File.createTempFile("DataFileTest", ".dat");
+	}
+
+	public static DataStream writeTestFile(File file, int memoryLimit) throws IOException {
+		return writeTestFile(file, memoryLimit, DataFileLayout.Row, CompressionType.None, ROW_COUNT);
+	}
+
+	public static DataStream writeTestFile(File file, int memoryLimit, DataFileLayout layout) throws IOException {
+		return writeTestFile(file, memoryLimit, layout, CompressionType.None, ROW_COUNT);
+	}
+
+	public static DataStream writeTestFile(File file, int memoryLimit, DataFileLayout layout, CompressionType compression) throws IOException {
+		return writeTestFile(file, memoryLimit, layout, compression, ROW_COUNT);
+	}
+
+	public static DataStream writeTestFile(File file, int memoryLimit, DataFileLayout layout, CompressionType compression, int rowCount) throws IOException {
+		try (DataWriter dw = new DataWriter(file.getAbsolutePath(), memoryLimit)) {
+			dw.setDataColumns(COLUMN_NAMES, COLUMN_TYPES);
+			dw.setDataFileLayout(layout);
+			dw.setCompression(compression);
+			for (int i = 0; i < rowCount; i++) {
+				dw.writeDataRow(createDataRow(i));
+			}
+			dw.setFullRowCount(rowCount);
+			dw.setBufferFirstRow(1);
+			dw.setBufferLastRow(rowCount);
+			dw.setFullRowCountKnown(true);
+			return dw.getDataStream();
+		}
+	}
+
+	public static void assertDataRow(int i, Object[] dataRow) {
+		Object[] expected = createDataRow(i);
+		for (int col = 0; col < expected.length; col++) {
+			Assert.assertEquals(String.format("Row %d column %d", i, col), expected[col], dataRow[col]);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import junit.framework.TestCase;
+
+/**
+ * Binary schema footer and the parsed footer cache.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class DataFileFooterTest extends TestCase {
+
+	@Test
+	public void testCachedHeader() throws Exception {
+		File file = File.createTempFile("DataFileFooterTest", ".dat");
+		try {
+			DataReader.clearHeaderCache();
+			for (DataFileLayout layout : new DataFileLayout[] { DataFileLayout.Row, DataFileLayout.Columnar }) {
+				writeTestFile(file, 0, layout, CompressionType.Deflate);
+				for (int pass = 0; pass < 2; pass++) {
+					try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+						String[][] schema = dr.getSchema();
+						assertEquals("Name", schema[1][0]);
+						// Changes made by one caller must not leak into the next reader.
+						schema[1][0] = "Changed";
+						assertEquals(layout, dr.getDataFileLayout());
+						assertEquals(CompressionType.Deflate, dr.getCompressionType());
+						assertNotNull(dr.getZoneMap());
+						assertDataRow(1000, dr.getDataRowByRowNumber(1001));
+					}
+				}
+			}
+
+			// A rewritten file gets a new finger print, so the cached footer is not used.
+			try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+				dw.setDataColumns(new String[] { "Code" }, new DataType[] { DataType.StringData });
+				dw.writeDataRow(new Object[] { "A" });
+			}
+			try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+				assertEquals(1, dr.getSchema().length);
+				assertEquals("Code", dr.getSchema()[0][0]);
+				assertEquals("A", dr.getDataRow()[0]);
+				assertTrue(dr.eof());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testCachedEmptyFile() throws Exception {
+		File file = File.createTempFile("DataFileFooterTest", ".dat");
+		try {
+			DataReader.clearHeaderCache();
+			for (DataFileLayout layout : new DataFileLayout[] { DataFileLayout.Row, DataFileLayout.Columnar }) {
+				writeTestFile(file, 0, layout, CompressionType.None, 0);
+				for (int pass = 0; pass < 2; pass++) {
+					try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+						assertEquals(4, dr.getSchema().length);
+						assertEquals(layout, dr.getDataFileLayout());
+						assertEquals(0L, dr.getFullRowCount());
+						assertTrue(dr.eof());
+					}
+				}
+			}
+
+			// Rows written over the cached empty file are read.
+			writeTestFile(file, 0, DataFileLayout.Row, CompressionType.None, 10);
+			try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+				assertEquals(10L, dr.getFullRowCount());
+				for (int i = 0; i < 10; i++) {
+					assertDataRow(i, dr.getDataRow());
+				}
+				assertTrue(dr.eof());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
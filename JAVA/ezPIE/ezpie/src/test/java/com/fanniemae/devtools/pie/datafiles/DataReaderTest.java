@@ -0,0 +1,273 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_NAMES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_TYPES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+
+import junit.framework.TestCase;
+
+/**
+ * Sequential, random access and block range reads of a single data file.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class DataReaderTest extends TestCase {
+
+	@Test
+	public void testMemoryMappedRandomAccess() throws Exception {
+		File file = File.createTempFile("DataReaderTest", ".dat");
+		try {
+			DataStream ds = writeTestFile(file, 0);
+			assertFalse(ds.IsMemory());
+
+			List<Long> positions = new ArrayList<>();
+			try (DataReader dr = new DataReader(ds)) {
+				while (!dr.eof()) {
+					positions.add(dr.getPosition());
+					dr.getDataRow();
+				}
+			}
+			assertEquals(ROW_COUNT, positions.size());
+
+			try (DataReader dr = new DataReader(ds, true)) {
+				for (int i = ROW_COUNT - 1; i >= 0; i -= 37) {
+					assertDataRow(i, dr.getDataRowAt(positions.get(i)));
+				}
+				dr.moveToRow(10000);
+				assertDataRow(10000, dr.getDataRow());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRowNumberAccess() throws Exception {
+		File file = File.createTempFile("DataReaderTest", ".dat");
+		File rowOffsets = new File(DataFormat.getRowOffsetFilename(file.getAbsolutePath()));
+		try {
+			for (boolean withOffsets : new boolean[] { false, true }) {
+				DataStream ds;
+				try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+					dw.setDataColumns(COLUMN_NAMES, COLUMN_TYPES);
+					dw.setIndexByteInterval(4096);
+					dw.setRowOffsetFile(withOffsets);
+					for (int i = 0; i < ROW_COUNT; i++) {
+						dw.writeDataRow(createDataRow(i));
+					}
+					dw.setFullRowCount(ROW_COUNT);
+					dw.setBufferFirstRow(1);
+					dw.setBufferLastRow(ROW_COUNT);
+					ds = dw.getDataStream();
+				}
+				assertEquals(withOffsets, rowOffsets.exists());
+
+				try (DataReader dr = new DataReader(ds, true)) {
+					for (int i = ROW_COUNT - 1; i >= 0; i -= 211) {
+						assertDataRow(i, dr.getDataRowByRowNumber(i + 1));
+					}
+					dr.moveToRow(1);
+					assertDataRow(0, dr.getDataRow());
+					dr.moveToRow(4321);
+					assertDataRow(4321, dr.getDataRow());
+				}
+				rowOffsets.delete();
+			}
+		} finally {
+			rowOffsets.delete();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRowNumberAtIndexBoundary() throws Exception {
+		// Index entries are added every 5,000 rows, so these files end exactly on an entry.
+		File file = File.createTempFile("DataReaderTest", ".dat");
+		try {
+			for (int rowCount : new int[] { 5000, 10000, 10001 }) {
+				DataStream ds = writeTestFile(file, 0, DataFileLayout.Row, CompressionType.None, rowCount);
+				try (DataReader dr = new DataReader(ds)) {
+					for (int rowNumber : new int[] { rowCount, 5001, 5000, 4999, 1 }) {
+						if (rowNumber <= rowCount) {
+							assertDataRow(rowNumber - 1, dr.getDataRowByRowNumber(rowNumber));
+						}
+					}
+					dr.moveToRow(4999);
+					assertDataRow(4999, dr.getDataRow());
+					dr.moveToRow(rowCount - 1);
+					assertDataRow(rowCount - 1, dr.getDataRow());
+					assertTrue(dr.eof());
+					dr.moveToRow(rowCount + 1);
+					assertTrue(dr.eof());
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEmptyFile() throws Exception {
+		File file = File.createTempFile("DataReaderTest", ".dat");
+		try {
+			DataStream ds = writeTestFile(file, 0, DataFileLayout.Row, CompressionType.None, 0);
+			for (boolean memoryMapped : new boolean[] { false, true }) {
+				try (DataReader dr = new DataReader(ds, memoryMapped)) {
+					assertEquals(4, dr.getSchema().length);
+					assertTrue(dr.eof());
+					assertEquals(0L, dr.getFullRowCount());
+					dr.moveToRow(1);
+					assertTrue(dr.eof());
+					dr.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+					assertTrue(dr.eof());
+				}
+			}
+			int rows = 0;
+			for (DataReader range : DataReader.openRanges(ds, 4)) {
+				try (DataReader dr = range) {
+					while (!dr.eof()) {
+						dr.getDataRow();
+						rows++;
+					}
+				}
+			}
+			assertEquals(0, rows);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReadAhead() throws Exception {
+		File file = File.createTempFile("DataReaderTest", ".dat");
+		try {
+			for (DataFileLayout layout : DataFileLayout.values()) {
+				DataStream ds = writeTestFile(file, 0, layout);
+				try (DataReader dr = new DataReader(ds)) {
+					dr.setReadAhead(2);
+					int row = 0;
+					while (row < 1500) {
+						assertFalse(dr.eof());
+						assertDataRow(row++, dr.getDataRow());
+					}
+					long position = dr.getPosition();
+					assertDataRow(row, dr.getDataRow());
+					assertTrue(dr.isReadAhead());
+
+					// Random access turns the read-ahead off and reads on from there.
+					assertDataRow(row++, dr.getDataRowAt(position));
+					assertFalse(dr.isReadAhead());
+					while (!dr.eof()) {
+						assertDataRow(row++, dr.getDataRow());
+					}
+					assertEquals(ROW_COUNT, row);
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReadAheadBatchBoundary() throws Exception {
+		// Read-ahead batches hold 1,024 rows, these files end on, and just past, a batch.
+		File file = File.createTempFile("DataReaderTest", ".dat");
+		try {
+			for (DataFileLayout layout : DataFileLayout.values()) {
+				for (int rowCount : new int[] { 0, 1024, 2048, 2049 }) {
+					DataStream ds = writeTestFile(file, 0, layout, CompressionType.None, rowCount);
+					try (DataReader dr = new DataReader(ds)) {
+						dr.setReadAhead(1);
+						int row = 0;
+						while (!dr.eof()) {
+							assertDataRow(row++, dr.getDataRow());
+						}
+						assertEquals(rowCount, row);
+						assertTrue(dr.eof());
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testBlockRanges() throws Exception {
+		File file = File.createTempFile("DataReaderTest", ".dat");
+		try {
+			for (DataFileLayout layout : DataFileLayout.values()) {
+				DataStream ds = writeTestFile(file, 0, layout, CompressionType.Deflate);
+				List<DataReader> ranges = DataReader.openRanges(ds, 4);
+				try {
+					assertTrue(ranges.size() > 1 && ranges.size() <= 4);
+					int row = 0;
+					for (DataReader range : ranges) {
+						int rangeRows = 0;
+						while (!range.eof()) {
+							assertDataRow(row++, range.getDataRow());
+							rangeRows++;
+						}
+						assertTrue(rangeRows > 0);
+					}
+					assertEquals(ROW_COUNT, row);
+				} finally {
+					for (DataReader range : ranges) {
+						range.close();
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testMoreRangesThanBlocks() throws Exception {
+		File file = File.createTempFile("DataReaderTest", ".dat");
+		try {
+			for (DataFileLayout layout : DataFileLayout.values()) {
+				// Empty, single block and two block files asked for more ranges than they have blocks.
+				for (int rowCount : new int[] { 0, 10, 5001 }) {
+					DataStream ds = writeTestFile(file, 0, layout, CompressionType.None, rowCount);
+					List<DataReader> ranges = DataReader.openRanges(ds, 8);
+					try {
+						assertTrue(ranges.size() >= 1);
+						assertTrue(ranges.size() <= Math.max(1, ranges.get(0).getBlockCount()));
+						int row = 0;
+						for (DataReader range : ranges) {
+							while (!range.eof()) {
+								assertDataRow(row++, range.getDataRow());
+							}
+						}
+						assertEquals(rowCount, row);
+					} finally {
+						for (DataReader range : ranges) {
+							range.close();
+						}
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_NAMES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_TYPES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createSchema;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
+import com.fanniemae.ezpie.datafiles.lowlevel.ZoneMap;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.BinaryFileInfo;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+
+import junit.framework.TestCase;
+
+/**
+ * Rows appended to an existing row layout data file.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class DataWriterAppendTest extends TestCase {
+
+	@Test
+	public void testAppend() throws Exception {
+		File file = File.createTempFile("DataWriterAppendTest", ".dat");
+		String[][] schema = createSchema();
+		try {
+			for (CompressionType compression : new CompressionType[] { CompressionType.None, CompressionType.Deflate }) {
+				for (int existingRows : new int[] { 0, 7000 }) {
+					try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+						dw.setDataColumns(COLUMN_NAMES, COLUMN_TYPES);
+						dw.setCompression(compression);
+						dw.setRowOffsetFile(true);
+						dw.setBloomFilterColumns(new String[] { "Name" }, 0.01);
+						for (int i = 0; i < existingRows; i++) {
+							dw.writeDataRow(createDataRow(i));
+						}
+					}
+					// Opened once so the cached footer of the old file is in play.
+					try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+						assertEquals(existingRows == 0, dr.eof());
+					}
+
+					try (DataWriter dw = DataWriter.openForAppend(file.getAbsolutePath(), schema)) {
+						assertEquals(existingRows, dw.getRowCount());
+						for (int i = existingRows; i < ROW_COUNT; i++) {
+							dw.writeDataRow(createDataRow(i));
+						}
+						dw.setFullRowCount(dw.getRowCount());
+						dw.setBufferFirstRow(1);
+						dw.setBufferLastRow(dw.getRowCount());
+					}
+
+					try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+						assertEquals(ROW_COUNT, dr.getFullRowCount());
+						assertEquals(compression, dr.getCompressionType());
+						int row = 0;
+						while (!dr.eof()) {
+							assertDataRow(row++, dr.getDataRow());
+						}
+						assertEquals(ROW_COUNT, row);
+						assertDataRow(existingRows / 2, dr.getDataRowByRowNumber(existingRows / 2 + 1));
+						assertDataRow(ROW_COUNT - 1, dr.getDataRowByRowNumber(ROW_COUNT));
+						assertDataRow(existingRows, dr.getDataRowByRowNumber(existingRows + 1));
+
+						ZoneMap zoneMap = dr.getZoneMap();
+						assertEquals(ROW_COUNT - 1, zoneMap.getMaxValue(0));
+						assertEquals((long) (ROW_COUNT + 6) / 7, zoneMap.getNullCount(1));
+						for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+							int firstRow = (int) zoneMap.getFirstRow(block);
+							assertEquals(firstRow, zoneMap.getMinValue(block, 0));
+							assertTrue(zoneMap.mightContain(block, 1, createDataRow(firstRow + 1)[1]));
+						}
+					}
+				}
+			}
+
+			// Files that cannot be appended to are left unchanged.
+			writeTestFile(file, 0, DataFileLayout.Columnar);
+			long length = file.length();
+			try {
+				DataWriter.openForAppend(file.getAbsolutePath(), schema);
+				fail("Columnar data files cannot be appended to.");
+			} catch (IOException ex) {
+				assertEquals(length, file.length());
+			}
+			writeTestFile(file, 0);
+			length = file.length();
+			schema[2] = new String[] { "Amount", "StringData" };
+			try {
+				DataWriter.openForAppend(file.getAbsolutePath(), schema);
+				fail("The appended schema must match the file.");
+			} catch (IOException ex) {
+				assertEquals(length, file.length());
+			}
+		} finally {
+			file.delete();
+			new File(DataFormat.getRowOffsetFilename(file.getAbsolutePath())).delete();
+		}
+	}
+
+	@Test
+	public void testAppendAfterExpiredCache() throws Exception {
+		File file = File.createTempFile("DataWriterAppendTest", ".dat");
+		Date expired = new Date(System.currentTimeMillis() - 3600000L);
+		Date expires = new Date(System.currentTimeMillis() + 3600000L);
+		try {
+			try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+				dw.setDataColumns(COLUMN_NAMES, COLUMN_TYPES);
+				for (int i = 0; i < 5000; i++) {
+					dw.writeDataRow(createDataRow(i));
+				}
+				dw.setFullRowCount(5000);
+				dw.setBufferFirstRow(1);
+				dw.setBufferLastRow(5000);
+				dw.setBufferExpires(expired);
+				dw.setFullRowCountKnown(true);
+			}
+			// The expired footer is cached, as it is when the engine checks the cache.
+			try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+				assertEquals(expired, dr.getBufferExpires());
+				assertEquals(4999, dr.getZoneMap().getMaxValue(0));
+			}
+
+			DataStream ds;
+			try (DataWriter dw = DataWriter.openForAppend(file.getAbsolutePath(), createSchema())) {
+				assertEquals(expired, dw.getBufferExpires());
+				for (int i = 5000; i < ROW_COUNT; i++) {
+					dw.writeDataRow(createDataRow(i));
+				}
+				dw.setFullRowCount(dw.getRowCount());
+				dw.setBufferFirstRow(1);
+				dw.setBufferLastRow(dw.getRowCount());
+				dw.setBufferExpires(expires);
+				dw.close();
+				ds = dw.getDataStream();
+			}
+			assertEquals(expires, ds.getHeader().get(BinaryFileInfo.DateExpires));
+
+			for (int pass = 0; pass < 2; pass++) {
+				try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+					assertEquals(expires, dr.getBufferExpires());
+					assertEquals((long) ROW_COUNT, dr.getFullRowCount());
+					assertEquals(ROW_COUNT - 1, dr.getZoneMap().getMaxValue(0));
+					int row = 0;
+					while (!dr.eof()) {
+						assertDataRow(row++, dr.getDataRow());
+					}
+					assertEquals(ROW_COUNT, row);
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
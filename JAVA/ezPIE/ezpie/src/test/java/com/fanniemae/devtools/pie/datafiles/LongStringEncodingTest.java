@@ -0,0 +1,141 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockCipher;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import junit.framework.TestCase;
+
+/**
+ * Version 2 varint length strings of any size.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class LongStringEncodingTest extends TestCase {
+
+	@Test
+	public void testLongStrings() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 200000) {
+			sb.append("Long string value ").append(sb.length()).append(' ');
+		}
+		String longValue = sb.toString();
+		String[] values = new String[] { longValue, "Caf\u00e9 \u65e5\u672c " + longValue, null, "", "plain" };
+		File file = File.createTempFile("LongStringEncodingTest", ".dat");
+		try {
+			// Block encryption stores the strings as written, the default string
+			// obfuscation only round trips characters of the platform charset.
+			BlockCipher.setDataFileKey("0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+			for (DataFileLayout layout : DataFileLayout.values()) {
+				DataStream ds;
+				try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+					dw.setDataColumns(new String[] { "ID", "Text" }, new DataType[] { DataType.IntegerData, DataType.StringData });
+					dw.setDataFileLayout(layout);
+					for (int i = 0; i < 50; i++) {
+						dw.writeDataRow(new Object[] { i, values[i % values.length] });
+					}
+					dw.setFullRowCount(50);
+					dw.setBufferFirstRow(1);
+					dw.setBufferLastRow(50);
+					ds = dw.getDataStream();
+				}
+				try (DataReader dr = new DataReader(ds, true)) {
+					assertEquals(DataFormat.LONG_STRING_ENCODING, dr.getEncodingVersion());
+					int row = 0;
+					while (!dr.eof()) {
+						Object[] dataRow = dr.getDataRow();
+						assertEquals(row, dataRow[0]);
+						assertEquals(values[row % values.length], dataRow[1]);
+						row++;
+					}
+					assertEquals(50, row);
+				}
+			}
+			BlockCipher.setDataFileKey(null);
+
+			// Version 1 files keep writeUTF strings and its 64 KB limit.
+			try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+				dw.setEncodingVersion(DataFormat.COMPACT_ENCODING);
+				dw.setDataColumns(new String[] { "Text" }, new DataType[] { DataType.StringData });
+				dw.writeDataRow(new Object[] { "plain" });
+				try {
+					dw.writeDataRow(new Object[] { longValue });
+					fail("writeUTF should reject a string over 64 KB.");
+				} catch (IOException ex) {
+					// expected
+				}
+			}
+		} finally {
+			BlockCipher.setDataFileKey(null);
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testLengthBoundaries() throws Exception {
+		// Varint length prefixes grow at 128 and 16,384 bytes, writeUTF stops at 65,535.
+		int[] lengths = new int[] { 127, 128, 16383, 16384, 65535, 65536 };
+		String[] values = new String[lengths.length + 1];
+		for (int i = 0; i < lengths.length; i++) {
+			char[] chars = new char[lengths[i]];
+			Arrays.fill(chars, (char) ('a' + i));
+			values[i] = new String(chars);
+		}
+		// Two byte characters, 65,536 bytes in UTF-8 from 32,768 characters.
+		char[] chars = new char[32768];
+		Arrays.fill(chars, '\u00e9');
+		values[lengths.length] = new String(chars);
+
+		File file = File.createTempFile("LongStringEncodingTest", ".dat");
+		try {
+			// Block encryption, as in testLongStrings, so the two byte characters round trip.
+			BlockCipher.setDataFileKey("0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+			for (int version : new int[] { DataFormat.COMPACT_ENCODING, DataFormat.LONG_STRING_ENCODING }) {
+				DataStream ds;
+				int written = 0;
+				try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+					dw.setEncodingVersion(version);
+					dw.setDataColumns(new String[] { "Text" }, new DataType[] { DataType.StringData });
+					for (String value : values) {
+						if ((version == DataFormat.COMPACT_ENCODING) && (DataFormat.utfLength(value) > DataFormat.MAX_UTF_LENGTH)) {
+							continue;
+						}
+						dw.writeDataRow(new Object[] { value });
+						written++;
+					}
+					dw.setFullRowCount(written);
+					dw.setBufferFirstRow(1);
+					dw.setBufferLastRow(written);
+					ds = dw.getDataStream();
+				}
+				assertEquals((version == DataFormat.COMPACT_ENCODING) ? 5 : values.length, written);
+
+				try (DataReader dr = new DataReader(ds)) {
+					for (String value : values) {
+						if ((version == DataFormat.COMPACT_ENCODING) && (DataFormat.utfLength(value) > DataFormat.MAX_UTF_LENGTH)) {
+							continue;
+						}
+						assertEquals(value, dr.getDataRow()[0]);
+					}
+					assertTrue(dr.eof());
+				}
+			}
+		} finally {
+			BlockCipher.setDataFileKey(null);
+			file.delete();
+		}
+	}
+}
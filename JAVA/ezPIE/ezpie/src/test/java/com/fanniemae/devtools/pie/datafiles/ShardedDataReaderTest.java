@@ -0,0 +1,177 @@
+package com.fanniemae.devtools.pie.datafiles;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createSchema;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.ShardManifest;
+import com.fanniemae.ezpie.datafiles.ShardedDataReader;
+import com.fanniemae.ezpie.datafiles.ShardedDataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.BinaryFileInfo;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+
+import junit.framework.TestCase;
+
+/**
+ * Data sets split into shards listed in a manifest.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class ShardedDataReaderTest extends TestCase {
+
+	@Test
+	public void testShards() throws Exception {
+		File manifestFile = File.createTempFile("ShardedDataReaderTest", ".dat");
+		File[] directories = new File[] { Files.createTempDirectory("ShardedDataReaderTest").toFile(), Files.createTempDirectory("ShardedDataReaderTest").toFile() };
+		String[] directoryNames = new String[] { directories[0].getAbsolutePath(), directories[1].getAbsolutePath() };
+		String[][] schema = createSchema();
+		try {
+			String manifestFilename = manifestFile.getAbsolutePath();
+			DataStream ds;
+			try (ShardedDataWriter sw = new ShardedDataWriter(manifestFilename, directoryNames, 5000L, 0L)) {
+				sw.setDataColumns(schema);
+				sw.setCompression(CompressionType.Deflate);
+				for (int i = 0; i < ROW_COUNT; i++) {
+					sw.writeDataRow(createDataRow(i));
+				}
+				assertEquals(ROW_COUNT, sw.getRowCount());
+				ds = sw.getDataStream();
+			}
+			ShardManifest manifest = ShardManifest.read(manifestFilename);
+			assertEquals(3, manifest.getShardCount());
+			assertEquals(2000L, manifest.getShard(2).getRowCount());
+			assertTrue(directories[0].list().length > 0);
+			assertTrue(directories[1].list().length > 0);
+			try {
+				new DataReader(ds);
+				fail("Manifests are opened with DataReader.open.");
+			} catch (IOException ex) {
+				assertTrue(ex.getMessage().contains("manifest"));
+			}
+
+			long[] positions = new long[ROW_COUNT];
+			try (DataReader dr = DataReader.open(ds)) {
+				assertTrue(dr instanceof ShardedDataReader);
+				assertEquals(ROW_COUNT, dr.getFullRowCount());
+				assertEquals((long) ROW_COUNT, dr.getHeader().get(BinaryFileInfo.RowCount));
+				dr.setReadAhead(DataReader.DEFAULT_READ_AHEAD_BATCHES);
+				int row = 0;
+				while (!dr.eof()) {
+					positions[row] = dr.getPosition();
+					assertDataRow(row++, dr.getDataRow());
+				}
+				assertEquals(ROW_COUNT, row);
+				for (int i : new int[] { 11999, 0, 5000, 4999, 7777 }) {
+					assertDataRow(i, dr.getDataRowAt(positions[i]));
+				}
+				assertDataRow(7777, dr.getDataRowByRowNumber(7778));
+				// Sequential reads continue after the random access.
+				assertDataRow(7778, dr.getDataRow());
+			}
+
+			int row = 0;
+			for (DataReader range : DataReader.openRanges(ds, 2)) {
+				try (DataReader dr = range) {
+					while (!dr.eof()) {
+						assertDataRow(row++, dr.getDataRow());
+					}
+				}
+			}
+			assertEquals(ROW_COUNT, row);
+
+			// Byte limited shards and an empty data set.
+			try (ShardedDataWriter sw = new ShardedDataWriter(manifestFilename, directoryNames, 0L, 65536L)) {
+				sw.setDataColumns(schema);
+				for (int i = 0; i < ROW_COUNT; i++) {
+					sw.writeDataRow(createDataRow(i));
+				}
+			}
+			manifest.deleteShards();
+			manifest = ShardManifest.read(manifestFilename);
+			assertTrue(manifest.getShardCount() > 3);
+			for (ShardManifest.Shard shard : manifest.getShards()) {
+				assertTrue(String.valueOf(shard.getBytes()) + " " + shard.getRowCount(), shard.getBytes() < 65536L + 4096L);
+			}
+			try (DataReader dr = DataReader.open(manifestFilename)) {
+				row = 0;
+				while (!dr.eof()) {
+					assertDataRow(row++, dr.getDataRow());
+				}
+				assertEquals(ROW_COUNT, row);
+			}
+			ShardManifest.deleteDataSet(manifestFilename);
+			assertFalse(manifestFile.exists());
+
+			try (ShardedDataWriter sw = new ShardedDataWriter(manifestFilename, directoryNames, 5000L, 0L)) {
+				sw.setDataColumns(schema);
+			}
+			try (DataReader dr = DataReader.open(manifestFilename)) {
+				assertTrue(dr.eof());
+				assertEquals(0L, dr.getFullRowCount());
+			}
+			ShardManifest.deleteDataSet(manifestFilename);
+			assertEquals(0, directories[0].list().length + directories[1].list().length);
+		} finally {
+			manifestFile.delete();
+			for (File directory : directories) {
+				for (File file : directory.listFiles()) {
+					file.delete();
+				}
+				directory.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testShardBoundary() throws Exception {
+		File manifestFile = File.createTempFile("ShardedDataReaderTest", ".dat");
+		File directory = Files.createTempDirectory("ShardedDataReaderTest").toFile();
+		String manifestFilename = manifestFile.getAbsolutePath();
+		try {
+			// Exactly two full shards, there is no empty third shard.
+			DataStream ds;
+			try (ShardedDataWriter sw = new ShardedDataWriter(manifestFilename, new String[] { directory.getAbsolutePath() }, 5000L, 0L)) {
+				sw.setDataColumns(createSchema());
+				for (int i = 0; i < 10000; i++) {
+					sw.writeDataRow(createDataRow(i));
+				}
+				ds = sw.getDataStream();
+			}
+			ShardManifest manifest = ShardManifest.read(manifestFilename);
+			assertEquals(2, manifest.getShardCount());
+			assertEquals(5000L, manifest.getShard(1).getRowCount());
+
+			try (DataReader dr = DataReader.open(ds)) {
+				assertEquals(10000L, dr.getFullRowCount());
+				for (int rowNumber : new int[] { 10000, 5001, 5000, 4999, 1 }) {
+					assertDataRow(rowNumber - 1, dr.getDataRowByRowNumber(rowNumber));
+				}
+				// Sequential reads cross into the next shard.
+				dr.getDataRowByRowNumber(4999);
+				assertDataRow(4999, dr.getDataRow());
+				assertDataRow(5000, dr.getDataRow());
+				dr.getDataRowByRowNumber(10000);
+				assertTrue(dr.eof());
+			}
+			ShardManifest.deleteDataSet(manifestFilename);
+			assertEquals(0, directory.list().length);
+		} finally {
+			manifestFile.delete();
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+}
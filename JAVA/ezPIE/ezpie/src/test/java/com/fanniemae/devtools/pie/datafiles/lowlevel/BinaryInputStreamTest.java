@@ -0,0 +1,106 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.datafiles.lowlevel.BinaryInputStream;
+import com.fanniemae.ezpie.datafiles.lowlevel.CountingOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Positions past 2 GB, read through file and memory mapped streams.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class BinaryInputStreamTest extends TestCase {
+
+	@Test
+	public void testLargeFileOffsets() throws Exception {
+		// Synthetic stream - the bytes are counted but not kept.
+		long target = Integer.MAX_VALUE + 4096L;
+		byte[] chunk = new byte[64 * 1048576];
+		CountingOutputStream counter = new CountingOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		});
+		try (DataOutputStream dos = new DataOutputStream(counter)) {
+			while (counter.getCount() + chunk.length <= target) {
+				dos.write(chunk);
+			}
+			dos.write(chunk, 0, (int) (target - counter.getCount()));
+			dos.writeLong(target);
+			assertEquals(target + 8L, counter.getCount());
+			assertEquals(Integer.MAX_VALUE, dos.size());
+		}
+
+		// Sparse file, only the values past 2 GB take up disk space.
+		File file = File.createTempFile("BinaryInputStreamTest", ".dat");
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(target + 64L);
+				raf.seek(target);
+				raf.writeLong(target);
+				raf.writeUTF("Past 2 GB");
+			}
+			for (boolean memoryMapped : new boolean[] { false, true }) {
+				try (BinaryInputStream bis = new BinaryInputStream(file.getAbsolutePath(), memoryMapped)) {
+					assertEquals(target + 64L, bis.getLength());
+					bis.seek(target);
+					assertEquals(target, bis.readLong());
+					assertEquals("Past 2 GB", bis.readUTF());
+					assertEquals(target + 19L, bis.getPosition());
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testMarkPastIntRange() throws Exception {
+		long target = Integer.MAX_VALUE + 4096L;
+		File file = File.createTempFile("BinaryInputStreamTest", ".dat");
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(target + 64L);
+				raf.seek(target);
+				raf.writeLong(target);
+				raf.writeLong(-target);
+			}
+			for (boolean memoryMapped : new boolean[] { false, true }) {
+				try (BinaryInputStream bis = new BinaryInputStream(file.getAbsolutePath(), memoryMapped)) {
+					bis.seek(target);
+					bis.mark();
+					assertEquals(target, bis.readLong());
+					assertEquals(-target, bis.readLong());
+					bis.rewind();
+					assertEquals(target, bis.getPosition());
+					assertEquals(target, bis.readLong());
+					bis.seek(target + 64L);
+					assertEquals(target + 64L, bis.getPosition());
+					try {
+						bis.readByte();
+						fail("Expected EOFException at the end of the file.");
+					} catch (EOFException ex) {
+						assertEquals(target + 64L, bis.getPosition());
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.datafiles.lowlevel.BinaryOutputStream;
+import com.fanniemae.ezpie.datafiles.lowlevel.OffHeapOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Off-heap memory tier of BinaryOutputStream and the spill to disk.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class BinaryOutputStreamTest extends TestCase {
+
+	@Test
+	public void testOffHeapSpill() throws Exception {
+		byte[] header = "HEADER".getBytes(StandardCharsets.UTF_8);
+		byte[] chunk = new byte[1000];
+		File file = File.createTempFile("BinaryOutputStreamTest", ".dat");
+		try {
+			// Hybrid stream with a 1 MB limit spills to the file, memory only never does.
+			for (int memoryLimit : new int[] { 1, -1 }) {
+				byte[] result;
+				try (BinaryOutputStream bos = new BinaryOutputStream(file.getAbsolutePath(), memoryLimit)) {
+					bos.write(new byte[header.length]);
+					for (int i = 0; i < 2500; i++) {
+						Arrays.fill(chunk, (byte) i);
+						bos.write(chunk);
+					}
+					assertEquals(header.length + 2500000L, bos.getPosition());
+					assertEquals(memoryLimit == 1, bos.IsFilestream());
+					bos.writeFinalHeader(header);
+					result = bos.IsFilestream() ? Files.readAllBytes(file.toPath()) : bos.getBuffer();
+				}
+				assertEquals(header.length + 2500000, result.length);
+				assertEquals("HEADER", new String(result, 0, header.length, StandardCharsets.UTF_8));
+				for (int i = 0; i < 2500; i++) {
+					assertEquals((byte) i, result[header.length + i * 1000]);
+					assertEquals((byte) i, result[header.length + i * 1000 + 999]);
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testOffHeapChunkBoundary() throws Exception {
+		int size = OffHeapOutputStream.CHUNK_SIZE;
+		byte[] data = new byte[size];
+		Arrays.fill(data, (byte) 1);
+
+		OffHeapOutputStream ohos = new OffHeapOutputStream();
+		assertEquals(0, ohos.toByteArray().length);
+		ByteArrayOutputStream empty = new ByteArrayOutputStream();
+		ohos.writeTo(empty);
+		assertEquals(0, empty.size());
+
+		// Exactly one chunk, then a single byte that starts the next one.
+		ohos.write(data, 0, size);
+		assertEquals(size, ohos.size());
+		ohos.write(2);
+		// The patch spans the two chunks.
+		ohos.patch(size - 2, new byte[] { 7, 8, 9 });
+		try {
+			ohos.patch(size - 1, new byte[] { 0, 0, 0 });
+			fail("Expected the patch past the end to be rejected.");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().contains("outside"));
+		}
+
+		byte[] result = ohos.toByteArray();
+		assertEquals(size + 1, result.length);
+		assertEquals(1, result[size - 3]);
+		assertEquals(7, result[size - 2]);
+		assertEquals(8, result[size - 1]);
+		assertEquals(9, result[size]);
+
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		ohos.writeTo(copy);
+		assertTrue(Arrays.equals(result, copy.toByteArray()));
+		assertEquals(0L, ohos.size());
+	}
+}
@@ -0,0 +1,121 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createTempFile;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.CryptoUtilities;
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockCipher;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+
+import junit.framework.TestCase;
+
+/**
+ * AES-CTR encrypted data blocks.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class BlockCipherTest extends TestCase {
+
+	protected static final byte[] KEY = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	protected static final byte[] OTHER_KEY = "fedcba9876543210".getBytes(StandardCharsets.US_ASCII);
+
+	@Override
+	protected void tearDown() throws Exception {
+		BlockCipher.setDataFileKey(null);
+		super.tearDown();
+	}
+
+	@Test
+	public void testBlockEncryption() throws Exception {
+		File file = createTempFile();
+		try {
+			BlockCipher.setDataFileKey(KEY);
+			for (CompressionType compression : new CompressionType[] { CompressionType.None, CompressionType.LZ4 }) {
+				DataStream ds = writeTestFile(file, 0, DataFileLayout.Row, compression);
+				String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+				assertFalse(contents.contains("Name 9998"));
+				assertFalse(contents.contains(CryptoUtilities.EncryptDecrypt("Name 9998")));
+				// Written to the string dictionary before the column stopped using it.
+				assertFalse(contents.contains("Name 1"));
+				assertFalse(contents.contains(CryptoUtilities.EncryptDecrypt("Name 1")));
+
+				try (DataReader dr = new DataReader(ds, true)) {
+					int row = 0;
+					while (!dr.eof()) {
+						assertDataRow(row++, dr.getDataRow());
+					}
+					assertEquals(ROW_COUNT, row);
+					dr.moveToRow(9000);
+					assertDataRow(9000, dr.getDataRow());
+				}
+			}
+
+			BlockCipher.setDataFileKey(null);
+			try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+				fail("Encrypted data file opened without a key.");
+			} catch (IOException ex) {
+				assertTrue(ex.getCause().getMessage().contains("EncryptionKey"));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testWrongKey() throws Exception {
+		File file = createTempFile();
+		try {
+			for (DataFileLayout layout : DataFileLayout.values()) {
+				BlockCipher.setDataFileKey(KEY);
+				writeTestFile(file, 0, layout, CompressionType.None);
+				// Read once with the right key, so the parsed footer is cached.
+				try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+					assertDataRow(0, dr.getDataRow());
+				}
+
+				BlockCipher.setDataFileKey(OTHER_KEY);
+				try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+					fail("Encrypted data file opened with the wrong key.");
+				} catch (IOException ex) {
+					assertTrue(ex.getCause().getMessage().contains("different EncryptionKey"));
+				}
+
+				BlockCipher.setDataFileKey(KEY);
+				try (DataReader dr = new DataReader(file.getAbsolutePath())) {
+					assertDataRow(0, dr.getDataRow());
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEmptyEncryptedFile() throws Exception {
+		File file = createTempFile();
+		try {
+			BlockCipher.setDataFileKey(KEY);
+			DataStream ds = writeTestFile(file, 0, DataFileLayout.Row, CompressionType.None, 0);
+			try (DataReader dr = new DataReader(ds)) {
+				assertTrue(dr.eof());
+				assertEquals(4, dr.getSchema().length);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
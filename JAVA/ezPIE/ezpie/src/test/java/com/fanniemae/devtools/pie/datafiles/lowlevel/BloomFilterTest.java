@@ -0,0 +1,164 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_NAMES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_TYPES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createDataRow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.BloomFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.ZoneMap;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import junit.framework.TestCase;
+
+/**
+ * Per block Bloom filters in the zone map.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class BloomFilterTest extends TestCase {
+
+	@Test
+	public void testBloomFilters() throws Exception {
+		File file = File.createTempFile("BloomFilterTest", ".dat");
+		try {
+			for (DataFileLayout layout : DataFileLayout.values()) {
+				DataStream ds;
+				try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+					dw.setDataColumns(COLUMN_NAMES, COLUMN_TYPES);
+					dw.setDataFileLayout(layout);
+					dw.setBloomFilterColumns(new String[] { "Name", "Amount" }, 0.01);
+					for (int i = 0; i < ROW_COUNT; i++) {
+						dw.writeDataRow(createDataRow(i));
+					}
+					dw.setFullRowCount(ROW_COUNT);
+					dw.setBufferFirstRow(1);
+					dw.setBufferLastRow(ROW_COUNT);
+					ds = dw.getDataStream();
+					assertTrue(dw.getBloomFilterBytes() > 0L);
+				}
+
+				try (DataReader dr = new DataReader(ds)) {
+					ZoneMap zoneMap = dr.getZoneMap();
+					assertTrue(zoneMap.hasBloomFilter(1));
+					assertFalse(zoneMap.hasBloomFilter(0));
+					int falsePositives = 0;
+					for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+						for (long row = zoneMap.getFirstRow(block); row < zoneMap.getFirstRow(block) + zoneMap.getRowCount(block); row++) {
+							Object[] expected = createDataRow((int) row);
+							assertTrue((expected[1] == null) || zoneMap.mightContain(block, 1, expected[1]));
+							assertTrue(zoneMap.mightContain(block, 2, expected[2]));
+						}
+						for (int i = 0; i < 100; i++) {
+							falsePositives += zoneMap.mightContain(block, 1, "Missing " + i) ? 1 : 0;
+						}
+					}
+					assertTrue(falsePositives <= zoneMap.getBlockCount() * 5);
+
+					dr.setBlockFilter(new BlockFilter() {
+						@Override
+						public boolean skipBlock(ZoneMap zm, int block) {
+							return !zm.mightContain(block, 1, "Name 5000");
+						}
+					});
+					boolean found = false;
+					while (!dr.eof()) {
+						found |= "Name 5000".equals(dr.getDataRow()[1]);
+					}
+					assertTrue(found);
+					assertTrue(dr.getSkippedRowCount() >= ROW_COUNT / 2);
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFilterEdgeCases() throws Exception {
+		// A block without values has an empty filter that contains nothing.
+		BloomFilter empty = BloomFilter.build(new long[0], 0, BloomFilter.DEFAULT_FALSE_POSITIVE_RATE);
+		assertEquals(0, empty.getSizeInBytes());
+		assertFalse(empty.mightContain(BloomFilter.hashLong(0L)));
+
+		// Duplicate hashes, 0.0 and -0.0 share a hash.
+		long[] hashes = new long[] { BloomFilter.hashDouble(0.0), BloomFilter.hashDouble(-0.0), BloomFilter.hashString(""), BloomFilter.hashString(""), BloomFilter.hashLong(Long.MIN_VALUE) };
+		BloomFilter filter = BloomFilter.build(hashes.clone(), hashes.length, 0.01);
+		assertTrue(filter.mightContain(BloomFilter.hashDouble(-0.0)));
+		assertTrue(filter.mightContain(BloomFilter.hashString("")));
+		assertTrue(filter.mightContain(BloomFilter.hashLong(Long.MIN_VALUE)));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream dos = new DataOutputStream(bytes)) {
+			filter.write(dos);
+			empty.write(dos);
+		}
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			BloomFilter copy = BloomFilter.read(dis);
+			assertEquals(filter.getSizeInBytes(), copy.getSizeInBytes());
+			for (long hash : hashes) {
+				assertTrue(copy.mightContain(hash));
+			}
+			assertFalse(BloomFilter.read(dis).mightContain(hashes[0]));
+		}
+	}
+
+	@Test
+	public void testAllNullBlock() throws Exception {
+		File file = File.createTempFile("BloomFilterTest", ".dat");
+		try {
+			DataStream ds;
+			try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+				dw.setDataColumns(new String[] { "ID", "Code" }, new DataType[] { DataType.IntegerData, DataType.StringData });
+				dw.setBloomFilterColumns(new String[] { "Code" }, 0.01);
+				// The first index block has no codes at all.
+				for (int i = 0; i < 7500; i++) {
+					dw.writeDataRow(new Object[] { i, (i < 5000) ? null : "Code " + i });
+				}
+				dw.setFullRowCount(7500);
+				dw.setBufferFirstRow(1);
+				dw.setBufferLastRow(7500);
+				ds = dw.getDataStream();
+			}
+
+			try (DataReader dr = new DataReader(ds)) {
+				ZoneMap zoneMap = dr.getZoneMap();
+				assertEquals(2, zoneMap.getBlockCount());
+				assertEquals(5000L, zoneMap.getNullCount(0, 1));
+				assertFalse(zoneMap.mightContain(0, 1, "Code 6000"));
+				assertTrue(zoneMap.mightContain(0, 1, null));
+				assertTrue(zoneMap.mightContain(1, 1, "Code 6000"));
+
+				dr.setBlockFilter(new BlockFilter() {
+					@Override
+					public boolean skipBlock(ZoneMap zm, int block) {
+						return !zm.mightContain(block, 1, "Code 6000");
+					}
+				});
+				int matches = 0;
+				while (!dr.eof()) {
+					matches += "Code 6000".equals(dr.getDataRow()[1]) ? 1 : 0;
+				}
+				assertEquals(1, matches);
+				assertEquals(5000L, dr.getSkippedRowCount());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.FieldStringDictionary;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import junit.framework.TestCase;
+
+/**
+ * Dictionary encoded string columns.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class FieldStringDictionaryTest extends TestCase {
+
+	@Test
+	public void testDictionaryEncodedStrings() throws Exception {
+		String[] statusCodes = new String[] { "Active", "Closed", "Pending", null };
+		DataStream ds;
+		try (DataWriter dw = new DataWriter("", -1)) {
+			dw.setDataColumns(new String[] { "Status" }, new DataType[] { DataType.StringData });
+			for (int i = 0; i < 1000; i++) {
+				dw.writeDataRow(new Object[] { statusCodes[i % statusCodes.length] });
+			}
+			ds = dw.getDataStream();
+		}
+
+		try (DataReader dr = new DataReader(ds)) {
+			Object first = dr.getDataRow()[0];
+			assertEquals("Active", first);
+			dr.skipDataRow(3);
+			assertSame(first, dr.getDataRow()[0]);
+			assertEquals("Closed", dr.getDataRow()[0]);
+			dr.skipDataRow(1);
+			assertNull(dr.getDataRow()[0]);
+		}
+	}
+
+	@Test
+	public void testFullDictionaryWritesPlainValues() throws Exception {
+		// Past the maximum number of entries and over the entry length, values are written plain.
+		char[] longText = new char[300];
+		Arrays.fill(longText, 'L');
+		int rowCount = FieldStringDictionary.DEFAULT_MAX_ENTRIES * 2;
+		DataStream ds;
+		try (DataWriter dw = new DataWriter("", -1)) {
+			dw.setDataColumns(new String[] { "ID", "Code" }, new DataType[] { DataType.IntegerData, DataType.StringData });
+			for (int i = 0; i < rowCount; i++) {
+				dw.writeDataRow(new Object[] { i, dictionaryValue(i, longText) });
+			}
+			dw.setFullRowCount(rowCount);
+			dw.setBufferFirstRow(1);
+			dw.setBufferLastRow(rowCount);
+			ds = dw.getDataStream();
+		}
+
+		try (DataReader dr = new DataReader(ds)) {
+			int row = 0;
+			while (!dr.eof()) {
+				Object[] dataRow = dr.getDataRow();
+				assertEquals(row, dataRow[0]);
+				assertEquals(dictionaryValue(row, longText), dataRow[1]);
+				row++;
+			}
+			assertEquals(rowCount, row);
+			assertEquals(dictionaryValue(rowCount - 1, longText), dr.getDataRowByRowNumber(rowCount)[1]);
+			assertEquals(dictionaryValue(5, longText), dr.getDataRowByRowNumber(6)[1]);
+		}
+	}
+
+	protected static String dictionaryValue(int i, char[] longText) {
+		if (i % 11 == 0) {
+			return null;
+		} else if (i % 13 == 0) {
+			return new String(longText) + i;
+		}
+		return "Code " + i;
+	}
+}
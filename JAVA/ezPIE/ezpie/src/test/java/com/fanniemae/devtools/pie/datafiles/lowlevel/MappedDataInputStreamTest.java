@@ -0,0 +1,49 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.datafiles.lowlevel.BinaryInputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Reads through the 1 GB memory mapped windows.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class MappedDataInputStreamTest extends TestCase {
+
+	@Test
+	public void testValueAcrossMappedWindow() throws Exception {
+		// The memory mapped stream maps 1 GB windows, the 2 GB boundary is also the end of int positions.
+		long[] positions = new long[] { (1L << 30) - 3L, (1L << 31) - 4L };
+		File file = File.createTempFile("MappedDataInputStreamTest", ".dat");
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength((1L << 31) + 64L);
+				for (long position : positions) {
+					raf.seek(position);
+					raf.writeLong(position);
+				}
+			}
+			for (boolean memoryMapped : new boolean[] { false, true }) {
+				try (BinaryInputStream bis = new BinaryInputStream(file.getAbsolutePath(), memoryMapped)) {
+					for (int i = positions.length - 1; i >= 0; i--) {
+						bis.seek(positions[i]);
+						assertEquals(positions[i], bis.readLong());
+						assertEquals(positions[i] + 8L, bis.getPosition());
+					}
+					bis.seek((1L << 31) + 60L);
+					assertEquals(0, bis.readInt());
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import junit.framework.TestCase;
+
+/**
+ * Reading and writing rows through a reusable RowCursor.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class RowCursorTest extends TestCase {
+
+	@Test
+	public void testRowCursorCopy() throws Exception {
+		for (int version : new int[] { DataFormat.LEGACY_ENCODING, DataFormat.COMPACT_ENCODING }) {
+			File file = File.createTempFile("RowCursorTest", ".dat");
+			file.delete();
+			DataStream source = writeTestFile(file, -1);
+			DataStream copy;
+			try (DataReader dr = new DataReader(source); DataWriter dw = new DataWriter("", -1)) {
+				dw.setEncodingVersion(version);
+				dw.setDataColumns(dr.getColumnNames(), dr.getDataTypes());
+				RowCursor row = dr.createRowCursor();
+				while (!dr.eof()) {
+					dr.getDataRow(row);
+					dw.writeDataRow(row);
+				}
+				copy = dw.getDataStream();
+			}
+
+			try (DataReader dr = new DataReader(copy)) {
+				RowCursor row = dr.createRowCursor();
+				for (int i = 0; i < ROW_COUNT; i++) {
+					dr.getDataRow(row);
+					assertEquals(i, row.getInt(0));
+					assertEquals((i % 7 == 0), row.isNull(1));
+					assertEquals(i * 1.5, row.getDouble(2));
+					assertEquals(1500000000000L + i * 1000L, row.getEpochMillis(3));
+					assertDataRow(i, row.toArray());
+				}
+				assertTrue(dr.eof());
+			}
+		}
+	}
+
+	@Test
+	public void testColumnarIntoCursor() throws Exception {
+		File file = File.createTempFile("RowCursorTest", ".dat");
+		try {
+			DataStream ds = writeTestFile(file, 0, DataFileLayout.Columnar);
+			try (DataReader dr = new DataReader(ds)) {
+				RowCursor row = dr.createRowCursor();
+				for (int i = 0; i < ROW_COUNT; i++) {
+					dr.getDataRow(row);
+					assertDataRow(i, row.toArray());
+				}
+				assertTrue(dr.eof());
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReuseAfterNull() {
+		RowCursor row = new RowCursor(new DataType[] { DataType.IntegerData, DataType.DoubleData, DataType.StringData, DataType.DateData });
+		row.setInt(0, 42);
+		row.setDouble(1, 2.5);
+		row.setObject(2, "value");
+		row.setEpochMillis(3, 1500000000000L);
+		assertEquals(Integer.valueOf(42), row.getObject(0));
+		assertEquals(new Date(1500000000000L), row.getObject(3));
+
+		// A null written over a value must not hand back the stale value.
+		for (int i = 0; i < 4; i++) {
+			row.setNull(i);
+			assertTrue(row.isNull(i));
+			assertNull(row.getObject(i));
+		}
+		assertNull(row.getString(2));
+
+		row.setLong(0, Integer.MIN_VALUE);
+		assertFalse(row.isNull(0));
+		assertEquals(Integer.MIN_VALUE, row.getInt(0));
+		row.clear();
+		for (int i = 0; i < 4; i++) {
+			assertTrue(row.isNull(i));
+		}
+	}
+
+	@Test
+	public void testCopyFromOtherStorage() {
+		RowCursor source = new RowCursor(new DataType[] { DataType.LongData, DataType.StringData, DataType.IntegerData });
+		source.setLong(0, Long.MAX_VALUE);
+		source.setObject(1, "text");
+		source.setNull(2);
+
+		RowCursor target = new RowCursor(new DataType[] { DataType.LongData, DataType.StringData, DataType.BigDecimalData, DataType.ObjectData });
+		target.setObject(2, new BigDecimal("1.5"));
+		target.copyFrom(0, source, 0);
+		target.copyFrom(1, source, 1);
+		target.copyFrom(2, source, 2);
+		target.copyFrom(3, source, 0);
+
+		assertEquals(Long.MAX_VALUE, target.getLong(0));
+		assertEquals("text", target.getString(1));
+		assertTrue(target.isNull(2));
+		assertEquals(Long.valueOf(Long.MAX_VALUE), target.getObject(3));
+	}
+}
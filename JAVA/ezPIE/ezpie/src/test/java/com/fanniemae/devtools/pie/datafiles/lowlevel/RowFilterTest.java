@@ -0,0 +1,148 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_NAMES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_TYPES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFormat;
+import com.fanniemae.ezpie.datafiles.lowlevel.LazyDataRow;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowCursor;
+import com.fanniemae.ezpie.datafiles.lowlevel.RowFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.CompressionType;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+
+import junit.framework.TestCase;
+
+/**
+ * Rows filtered from a LazyDataRow before they are decoded, and column
+ * projection.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class RowFilterTest extends TestCase {
+
+	@Test
+	public void testRowFilter() throws Exception {
+		File file = File.createTempFile("RowFilterTest", ".dat");
+		RowFilter filter = new RowFilter() {
+			@Override
+			public boolean skipRow(LazyDataRow row) throws IOException {
+				// Amount first, then the earlier Name column so the row is read again.
+				int id = (int) ((Double) row.getValue(2) / 1.5);
+				if (id % 3 != 0) {
+					return true;
+				}
+				assertEquals(id * 1.5, row.getValue(2));
+				return row.getValue(1) == null;
+			}
+		};
+		try {
+			for (int version : new int[] { DataFormat.LEGACY_ENCODING, DataFormat.COMPACT_ENCODING }) {
+				for (CompressionType compression : new CompressionType[] { CompressionType.None, CompressionType.Deflate }) {
+					DataStream ds;
+					try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+						dw.setEncodingVersion(version);
+						dw.setDataColumns(COLUMN_NAMES, COLUMN_TYPES);
+						dw.setCompression(compression);
+						for (int i = 0; i < ROW_COUNT; i++) {
+							dw.writeDataRow(createDataRow(i));
+						}
+						dw.setFullRowCount(ROW_COUNT);
+						dw.setBufferFirstRow(1);
+						dw.setBufferLastRow(ROW_COUNT);
+						ds = dw.getDataStream();
+					}
+
+					for (int readAhead : new int[] { 0, DataReader.DEFAULT_READ_AHEAD_BATCHES }) {
+						try (DataReader dr = new DataReader(ds)) {
+							dr.setRowFilter(filter);
+							dr.setReadAhead(readAhead);
+							int expected = 0;
+							int rowsRead = 0;
+							while (!dr.eof()) {
+								assertFalse(dr.eof());
+								do {
+									expected += 3;
+								} while (expected % 7 == 0);
+								assertDataRow(expected, dr.getDataRow());
+								rowsRead++;
+							}
+							assertEquals(ROW_COUNT - 3, expected);
+							assertEquals(ROW_COUNT, rowsRead + dr.getSkippedRowCount());
+
+							// Random access is not filtered.
+							dr.moveToRow(7777);
+							assertDataRow(7777, dr.getDataRow());
+						}
+					}
+
+					// Columns outside the projection are skipped by length.
+					try (DataReader dr = new DataReader(ds)) {
+						dr.setColumnProjection(new String[] { "ID", "Created" });
+						RowCursor row = dr.createRowCursor();
+						for (int i = 0; i < ROW_COUNT; i += 2) {
+							Object[] dataRow = dr.getDataRow();
+							assertEquals(i, dataRow[0]);
+							assertNull(dataRow[1]);
+							assertNull(dataRow[2]);
+							assertEquals(createDataRow(i)[3], dataRow[3]);
+							dr.getDataRow(row);
+							assertEquals(i + 1, row.getInt(0));
+							assertTrue(row.isNull(1));
+							assertTrue(row.isNull(2));
+							assertEquals(createDataRow(i + 1)[3], row.getObject(3));
+						}
+						assertTrue(dr.eof());
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFilterAtEndOfData() throws Exception {
+		File file = File.createTempFile("RowFilterTest", ".dat");
+		try {
+			DataStream ds = writeTestFile(file, 0, DataFileLayout.Row, CompressionType.None, ROW_COUNT);
+			for (final int keepFrom : new int[] { ROW_COUNT, ROW_COUNT - 1 }) {
+				for (int readAhead : new int[] { 0, DataReader.DEFAULT_READ_AHEAD_BATCHES }) {
+					try (DataReader dr = new DataReader(ds)) {
+						// Every row skipped, or every row but the last one.
+						dr.setRowFilter(new RowFilter() {
+							@Override
+							public boolean skipRow(LazyDataRow row) throws IOException {
+								return (Integer) row.getValue(0) < keepFrom;
+							}
+						});
+						dr.setReadAhead(readAhead);
+						int rowsRead = 0;
+						while (!dr.eof()) {
+							assertDataRow(keepFrom + rowsRead, dr.getDataRow());
+							rowsRead++;
+						}
+						assertEquals(ROW_COUNT - keepFrom, rowsRead);
+						assertEquals((long) keepFrom, dr.getSkippedRowCount());
+						assertTrue(dr.eof());
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
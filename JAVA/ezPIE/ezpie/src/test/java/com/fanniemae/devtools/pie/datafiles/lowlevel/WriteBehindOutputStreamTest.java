@@ -0,0 +1,105 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_NAMES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.COLUMN_TYPES;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.createDataRow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.WriteBehindOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Data file writes handed to a background thread.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class WriteBehindOutputStreamTest extends TestCase {
+
+	@Test
+	public void testWriteBehind() throws Exception {
+		File file = File.createTempFile("WriteBehindOutputStreamTest", ".dat");
+		try {
+			DataStream ds;
+			try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+				dw.setWriteBehind(true);
+				dw.setDataColumns(COLUMN_NAMES, COLUMN_TYPES);
+				for (int i = 0; i < ROW_COUNT; i++) {
+					dw.writeDataRow(createDataRow(i));
+				}
+				dw.setFullRowCount(ROW_COUNT);
+				dw.setBufferFirstRow(1);
+				dw.setBufferLastRow(ROW_COUNT);
+				dw.setFullRowCountKnown(true);
+				ds = dw.getDataStream();
+			}
+			try (DataReader dr = new DataReader(ds)) {
+				int row = 0;
+				while (!dr.eof()) {
+					assertDataRow(row++, dr.getDataRow());
+				}
+				assertEquals(ROW_COUNT, row);
+			}
+		} finally {
+			file.delete();
+		}
+
+		// A failed disk write on the background thread surfaces on a later write or on close.
+		WriteBehindOutputStream wbos = new WriteBehindOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Disk full");
+			}
+		}, 16);
+		try {
+			wbos.write(new byte[100]);
+			wbos.close();
+			fail("Expected the write-behind error.");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().contains("Disk full"));
+		}
+	}
+
+	@Test
+	public void testBufferBoundaries() throws Exception {
+		final int bufferSize = 16;
+		// Empty stream, then exact multiples of the buffer size and a partial last buffer.
+		for (int length : new int[] { 0, bufferSize, bufferSize * 5, bufferSize * 5 + 1 }) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			WriteBehindOutputStream wbos = new WriteBehindOutputStream(out, bufferSize);
+			byte[] expected = new byte[length];
+			for (int i = 0; i < length; i++) {
+				expected[i] = (byte) i;
+			}
+			// Single bytes and arrays that straddle the buffers.
+			int i = 0;
+			while (i < length) {
+				if (i % 3 == 0) {
+					wbos.write(expected[i++]);
+				} else {
+					int count = Math.min(length - i, bufferSize + 3);
+					wbos.write(expected, i, count);
+					i += count;
+				}
+			}
+			wbos.close();
+			wbos.close();
+			assertEquals(length, out.size());
+			assertTrue(Arrays.equals(expected, out.toByteArray()));
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package com.fanniemae.devtools.pie.datafiles.lowlevel;
+
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.ROW_COUNT;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.assertDataRow;
+import static com.fanniemae.devtools.pie.datafiles.DataFileFixture.writeTestFile;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.fanniemae.ezpie.common.DataStream;
+import com.fanniemae.ezpie.datafiles.DataReader;
+import com.fanniemae.ezpie.datafiles.DataWriter;
+import com.fanniemae.ezpie.datafiles.lowlevel.BlockFilter;
+import com.fanniemae.ezpie.datafiles.lowlevel.ZoneMap;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataFileLayout;
+import com.fanniemae.ezpie.datafiles.lowlevel.DataFileEnums.DataType;
+
+import junit.framework.TestCase;
+
+/**
+ * Per block statistics and block skipping.
+ *
+ * @since 2018-07-30
+ *
+ */
+
+public class ZoneMapTest extends TestCase {
+
+	@Test
+	public void testZoneMapBlockSkipping() throws Exception {
+		final Date recent = new Date(1500000000000L + 10000 * 1000L);
+		for (DataFileLayout layout : new DataFileLayout[] { DataFileLayout.Row, DataFileLayout.Columnar }) {
+			File file = File.createTempFile("ZoneMapTest", ".dat");
+			try {
+				DataStream ds = writeTestFile(file, 0, layout);
+				try (DataReader dr = new DataReader(ds)) {
+					ZoneMap zoneMap = dr.getZoneMap();
+					assertTrue(zoneMap.getBlockCount() > 1);
+					assertEquals(0, zoneMap.getMinValue(0, 0));
+					assertEquals(new Date(1500000000000L), zoneMap.getMinValue(3));
+					assertEquals(new Date(1500000000000L + (ROW_COUNT - 1) * 1000L), zoneMap.getMaxValue(3));
+					long nullNames = 0L;
+					for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+						nullNames += zoneMap.getNullCount(block, 1);
+					}
+					assertEquals((ROW_COUNT + 6) / 7, nullNames);
+
+					dr.setBlockFilter(new BlockFilter() {
+						@Override
+						public boolean skipBlock(ZoneMap zm, int block) {
+							return ((Date) zm.getMaxValue(block, 3)).before(recent);
+						}
+					});
+					int rowsRead = 0;
+					int expected = -1;
+					while (!dr.eof()) {
+						Object[] dataRow = dr.getDataRow();
+						expected = (expected == -1) ? (Integer) dataRow[0] : expected + 1;
+						assertDataRow(expected, dataRow);
+						rowsRead++;
+					}
+					assertEquals(ROW_COUNT - 1, expected);
+					assertTrue(expected - rowsRead + 1 <= 10000);
+					assertTrue(dr.getSkippedRowCount() > 0);
+					assertEquals(ROW_COUNT, rowsRead + dr.getSkippedRowCount());
+				}
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testStringLongerThanMaxLength() throws Exception {
+		char[] chars = new char[ZoneMap.MAX_STRING_LENGTH + 1];
+		Arrays.fill(chars, 'z');
+		final String longValue = new String(chars);
+		final int longRow = 7000;
+		for (DataFileLayout layout : new DataFileLayout[] { DataFileLayout.Row, DataFileLayout.Columnar }) {
+			File file = File.createTempFile("ZoneMapTest", ".dat");
+			try {
+				DataStream ds;
+				try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+					dw.setDataColumns(new String[] { "ID", "Code" }, new DataType[] { DataType.IntegerData, DataType.StringData });
+					dw.setDataFileLayout(layout);
+					for (int i = 0; i < ROW_COUNT; i++) {
+						dw.writeDataRow(new Object[] { i, (i == longRow) ? longValue : String.format("a%05d", i) });
+					}
+					dw.setFullRowCount(ROW_COUNT);
+					dw.setBufferFirstRow(1);
+					dw.setBufferLastRow(ROW_COUNT);
+					ds = dw.getDataStream();
+				}
+
+				try (DataReader dr = new DataReader(ds)) {
+					ZoneMap zoneMap = dr.getZoneMap();
+					int longBlock = -1;
+					for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+						long firstRow = zoneMap.getFirstRow(block);
+						if ((longRow >= firstRow) && (longRow < firstRow + zoneMap.getRowCount(block))) {
+							longBlock = block;
+						}
+					}
+					assertTrue(zoneMap.getBlockCount() > 1);
+					assertTrue(longBlock >= 0);
+					for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+						assertEquals(block != longBlock, zoneMap.hasRange(block, 1));
+					}
+					assertNull(zoneMap.getMaxValue(longBlock, 1));
+					assertNull(zoneMap.getMaxValue(1));
+
+					// Only blocks with a range entirely below "b" may be skipped.
+					dr.setBlockFilter(new BlockFilter() {
+						@Override
+						public boolean skipBlock(ZoneMap zm, int block) {
+							return zm.hasRange(block, 1) && (((String) zm.getMaxValue(block, 1)).compareTo("b") < 0);
+						}
+					});
+					int matches = 0;
+					while (!dr.eof()) {
+						Object[] dataRow = dr.getDataRow();
+						if (longValue.equals(dataRow[1])) {
+							assertEquals(longRow, dataRow[0]);
+							matches++;
+						}
+					}
+					assertEquals(1, matches);
+					assertEquals(ROW_COUNT - zoneMap.getRowCount(longBlock), dr.getSkippedRowCount());
+				}
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void testWideFileWithLongStrings() throws Exception {
+		// Column statistics in the schema must not push it past the 64 KB writeUTF limit.
+		char[] chars = new char[250];
+		Arrays.fill(chars, 'x');
+		String value = new String(chars);
+		Object[] stringRow = new Object[120];
+		Arrays.fill(stringRow, value);
+		assertWideFile(DataType.StringData, stringRow);
+
+		Object[] numericRow = new Object[600];
+		for (int i = 0; i < numericRow.length; i++) {
+			numericRow[i] = -1234567.891234 * (i + 1);
+		}
+		assertWideFile(DataType.DoubleData, numericRow);
+	}
+
+	protected void assertWideFile(DataType dataType, Object[] dataRow) throws Exception {
+		int columnCount = dataRow.length;
+		String[] columnNames = new String[columnCount];
+		DataType[] dataTypes = new DataType[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			columnNames[i] = String.format("Column%03d", i);
+			dataTypes[i] = dataType;
+		}
+		File file = File.createTempFile("ZoneMapTest", ".dat");
+		try {
+			DataStream ds;
+			try (DataWriter dw = new DataWriter(file.getAbsolutePath(), 0)) {
+				dw.setDataColumns(columnNames, dataTypes);
+				for (int i = 0; i < 10; i++) {
+					dw.writeDataRow(dataRow);
+				}
+				dw.setFullRowCount(10);
+				dw.setBufferFirstRow(1);
+				dw.setBufferLastRow(10);
+				ds = dw.getDataStream();
+			}
+
+			try (DataReader dr = new DataReader(ds)) {
+				assertEquals(columnCount, dr.getColumnNames().length);
+				assertEquals(dataRow[columnCount - 1], dr.getZoneMap().getMaxValue(columnCount - 1));
+				int rows = 0;
+				while (!dr.eof()) {
+					assertTrue(Arrays.equals(dataRow, dr.getDataRow()));
+					rows++;
+				}
+				assertEquals(10, rows);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}